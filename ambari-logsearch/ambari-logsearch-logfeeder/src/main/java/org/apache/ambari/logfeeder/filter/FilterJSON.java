@@ -23,7 +23,6 @@ import java.util.Map;
 import org.apache.ambari.logfeeder.common.LogfeederException;
 import org.apache.ambari.logfeeder.input.InputMarker;
 import org.apache.ambari.logfeeder.util.DateUtil;
-import org.apache.ambari.logfeeder.util.LogFeederUtil;
 import org.apache.log4j.Logger;
 
 public class FilterJSON extends Filter {
@@ -34,15 +33,10 @@ public class FilterJSON extends Filter {
   public void apply(String inputStr, InputMarker inputMarker) throws LogfeederException {
     Map<String, Object> jsonMap = null;
     try {
-      jsonMap = LogFeederUtil.toJSONObject(inputStr);
+      jsonMap = JsonEventParser.parse(inputStr);
     } catch (Exception e) {
       LOG.error(e.getLocalizedMessage());
-      throw new LogfeederException("Json parsing failed for inputstr = " + inputStr ,e.getCause());
-    }
-    Double lineNumberD = (Double) jsonMap.get("line_number");
-    if (lineNumberD != null) {
-      long lineNumber = lineNumberD.longValue();
-      jsonMap.put("line_number", lineNumber);
+      throw new LogfeederException("Json parsing failed for inputstr = " + inputStr, e);
     }
     String timeStampStr = (String) jsonMap.get("logtime");
     if (timeStampStr != null && !timeStampStr.isEmpty()) {
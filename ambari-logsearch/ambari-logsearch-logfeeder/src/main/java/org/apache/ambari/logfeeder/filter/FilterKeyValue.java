@@ -19,10 +19,8 @@
 
 package org.apache.ambari.logfeeder.filter;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 import org.apache.ambari.logfeeder.common.LogfeederException;
 import org.apache.ambari.logfeeder.input.InputMarker;
@@ -39,6 +37,7 @@ public class FilterKeyValue extends Filter {
   private String valueSplit = "=";
   private String fieldSplit = "\t";
   private String valueBorders = null;
+  private KeyValueParser keyValueParser;
   
   private MetricData errorMetric = new MetricData("filter.error.keyvalue", false);
 
@@ -50,6 +49,7 @@ public class FilterKeyValue extends Filter {
     valueSplit = getStringValue("value_split", valueSplit);
     fieldSplit = getStringValue("field_split", fieldSplit);
     valueBorders = getStringValue("value_borders");
+    keyValueParser = new KeyValueParser(fieldSplit, valueSplit, valueBorders);
 
     LOG.info("init() done. source_field=" + sourceField + ", value_split=" + valueSplit + ", " + ", field_split=" +
         fieldSplit + ", " + getShortDescription());
@@ -70,67 +70,23 @@ public class FilterKeyValue extends Filter {
       return;
     }
     if (jsonObj.containsKey(sourceField)) {
-      String keyValueString = (String) jsonObj.get(sourceField);
-      Map<String, String> valueMap = new HashMap<>();
-      if (valueBorders != null) {
-        keyValueString = preProcessBorders(keyValueString, valueMap);
-      }
-      
-      String splitPattern = Pattern.quote(fieldSplit);
-      String[] tokens = keyValueString.split(splitPattern);
-      for (String nv : tokens) {
-        String[] nameValue = getNameValue(nv);
-        String name = nameValue != null && nameValue.length == 2 ? nameValue[0] : null;
-        String value = nameValue != null && nameValue.length == 2 ? nameValue[1] : null;
-        if (name != null && value != null) {
-          if (valueMap.containsKey(value)) {
-            value = valueMap.get(value);
-          }
-          jsonObj.put(name, value);
-        } else {
-         logParseError("name=" + name + ", pair=" + nv + ", field=" + sourceField + ", field_value=" + keyValueString);
+      final String keyValueString = (String) jsonObj.get(sourceField);
+      final Map<String, Object> target = jsonObj;
+      keyValueParser.parse(keyValueString, new KeyValueParser.FieldHandler() {
+        @Override
+        public void onField(CharSequence source, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+          target.put(keyValueString.substring(nameStart, nameEnd), keyValueString.substring(valueStart, valueEnd));
         }
-      }
-    }
-    super.apply(jsonObj, inputMarker);
-    statMetric.value++;
-  }
 
-  private String preProcessBorders(String keyValueString, Map<String, String> valueMap) {
-    char openBorder = valueBorders.charAt(0);
-    char closeBorder = valueBorders.charAt(1);
-    
-    StringBuilder processed = new StringBuilder();
-    int lastPos = 0;
-    int openBorderNum = 0;
-    int valueNum = 0;
-    for (int pos = 0; pos < keyValueString.length(); pos++) {
-      char c = keyValueString.charAt(pos);
-      if (c == openBorder) {
-        if (openBorderNum == 0 ) {
-          processed.append(keyValueString.substring(lastPos, pos));
-          lastPos = pos + 1;
-        }
-        openBorderNum++;
-      }
-      if (c == closeBorder) {
-        openBorderNum--;
-        if (openBorderNum == 0) {
-          String value = keyValueString.substring(lastPos, pos).trim();
-          String valueId = "$VALUE" + (++valueNum);
-          valueMap.put(valueId, value);
-          processed.append(valueSplit + valueId);
-          lastPos = pos + 1;
+        @Override
+        public void onError(CharSequence source, int start, int end) {
+          logParseError("pair=" + keyValueString.substring(start, end) + ", field=" + sourceField + ", field_value=" +
+              keyValueString);
         }
-      }
+      });
     }
-    
-    return processed.toString();
-  }
-
-  private String[] getNameValue(String nv) {
-    String splitPattern = Pattern.quote(valueSplit);
-    return nv.split(splitPattern);
+    super.apply(jsonObj, inputMarker);
+    statMetric.value++;
   }
 
   private void logParseError(String inputStr) {
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logfeeder.filter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ambari.logfeeder.util.LogFeederUtil;
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads a JSON formatted log line into an event map in a single pass with Gson's streaming reader.
+ *
+ * Unlike {@link LogFeederUtil#toJSONObject(String)} the top level fields are read directly, without the reflective
+ * map adapter, and "line_number" is read as a long instead of being boxed as a Double first. Nested objects and
+ * arrays are read the same way as Gson does, so the result is the same as the one of toJSONObject().
+ */
+class JsonEventParser {
+  private static final String LINE_NUMBER_FIELD = "line_number";
+
+  private static final TypeAdapter<Object> OBJECT_ADAPTER = LogFeederUtil.getGson().getAdapter(Object.class);
+
+  private JsonEventParser() {
+    throw new UnsupportedOperationException();
+  }
+
+  static Map<String, Object> parse(String json) throws IOException {
+    Map<String, Object> event = new LinkedHashMap<>();
+    if (StringUtils.isBlank(json)) {
+      return event;
+    }
+    JsonReader reader = new JsonReader(new StringReader(json));
+    reader.setLenient(true);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (LINE_NUMBER_FIELD.equals(name) && reader.peek() == JsonToken.NUMBER) {
+        event.put(name, (long) reader.nextDouble());
+      } else {
+        event.put(name, readValue(reader));
+      }
+    }
+    reader.endObject();
+    return event;
+  }
+
+  private static Object readValue(JsonReader reader) throws IOException {
+    switch (reader.peek()) {
+      case STRING:
+        return reader.nextString();
+      case NUMBER:
+        return reader.nextDouble();
+      case BOOLEAN:
+        return reader.nextBoolean();
+      case NULL:
+        reader.nextNull();
+        return null;
+      default:
+        return OBJECT_ADAPTER.read(reader);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logfeeder.filter;
+
+/**
+ * Splits a key/value formatted message (e.g. "name1=value1&name2=value2") in a single pass.
+ *
+ * The fields are reported to a {@link FieldHandler} as positions in the original message, so nothing is copied
+ * unless the handler decides to materialize the name or the value. If value borders are configured (e.g. "()"),
+ * a value can be given as "name(value)" and may contain the field and value separators.
+ */
+class KeyValueParser {
+
+  interface FieldHandler {
+    void onField(CharSequence source, int nameStart, int nameEnd, int valueStart, int valueEnd);
+
+    void onError(CharSequence source, int start, int end);
+  }
+
+  private final String fieldSplit;
+  private final String valueSplit;
+  private final boolean hasBorders;
+  private final char openBorder;
+  private final char closeBorder;
+
+  KeyValueParser(String fieldSplit, String valueSplit, String valueBorders) {
+    this.fieldSplit = fieldSplit;
+    this.valueSplit = valueSplit;
+    this.hasBorders = valueBorders != null && valueBorders.length() >= 2;
+    this.openBorder = hasBorders ? valueBorders.charAt(0) : 0;
+    this.closeBorder = hasBorders ? valueBorders.charAt(1) : 0;
+  }
+
+  void parse(CharSequence source, FieldHandler handler) {
+    int length = source.length();
+    if (length == 0) {
+      handler.onError(source, 0, 0);
+      return;
+    }
+    int tokenStart = 0;
+    int splitPos = -1;
+    int splitCount = 0;
+    int borderValueStart = -1;
+    int borderValueEnd = -1;
+    int nameEnd = -1;
+    int emptyTokens = 0;
+    int pos = 0;
+    while (true) {
+      if (pos >= length || regionMatches(source, pos, fieldSplit)) {
+        int tokenEnd = Math.min(pos, length);
+        if (tokenStart == tokenEnd && borderValueStart < 0) {
+          // empty tokens are only reported if a field follows them, like String.split() does
+          emptyTokens++;
+        } else {
+          for (; emptyTokens > 0; emptyTokens--) {
+            handler.onError(source, tokenStart, tokenStart);
+          }
+          if (borderValueStart >= 0) {
+            handler.onField(source, tokenStart, nameEnd, borderValueStart, borderValueEnd);
+          } else if (splitCount == 1 && splitPos + valueSplit.length() < tokenEnd) {
+            handler.onField(source, tokenStart, splitPos, splitPos + valueSplit.length(), tokenEnd);
+          } else {
+            handler.onError(source, tokenStart, tokenEnd);
+          }
+        }
+        if (pos >= length) {
+          return;
+        }
+        pos += fieldSplit.length();
+        tokenStart = pos;
+        splitPos = -1;
+        splitCount = 0;
+        borderValueStart = -1;
+        continue;
+      }
+      if (borderValueStart >= 0) {
+        // anything between the closing border and the next field separator is ignored
+        pos++;
+        continue;
+      }
+      char c = source.charAt(pos);
+      if (hasBorders && c == openBorder) {
+        int close = findCloseBorder(source, pos + 1);
+        if (close < 0) {
+          handler.onError(source, tokenStart, length);
+          return;
+        }
+        nameEnd = splitPos >= 0 ? splitPos : pos;
+        borderValueStart = pos + 1;
+        borderValueEnd = close;
+        while (borderValueStart < borderValueEnd && Character.isWhitespace(source.charAt(borderValueStart))) {
+          borderValueStart++;
+        }
+        while (borderValueEnd > borderValueStart && Character.isWhitespace(source.charAt(borderValueEnd - 1))) {
+          borderValueEnd--;
+        }
+        pos = close + 1;
+        continue;
+      }
+      if (regionMatches(source, pos, valueSplit)) {
+        if (splitCount++ == 0) {
+          splitPos = pos;
+        }
+        pos += valueSplit.length();
+        continue;
+      }
+      pos++;
+    }
+  }
+
+  private int findCloseBorder(CharSequence source, int from) {
+    int depth = 1;
+    for (int pos = from; pos < source.length(); pos++) {
+      char c = source.charAt(pos);
+      if (c == closeBorder) {
+        depth--;
+        if (depth == 0) {
+          return pos;
+        }
+      } else if (c == openBorder) {
+        depth++;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean regionMatches(CharSequence source, int pos, String pattern) {
+    int patternLength = pattern.length();
+    if (patternLength == 0 || pos + patternLength > source.length()) {
+      return false;
+    }
+    for (int i = 0; i < patternLength; i++) {
+      if (source.charAt(pos + i) != pattern.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
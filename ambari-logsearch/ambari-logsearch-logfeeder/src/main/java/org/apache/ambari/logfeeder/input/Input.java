@@ -33,6 +33,8 @@ import org.apache.ambari.logfeeder.output.Output;
 import org.apache.ambari.logfeeder.output.OutputManager;
 import org.apache.log4j.Logger;
 
+import com.google.common.annotations.VisibleForTesting;
+
 public abstract class Input extends ConfigBlock implements Runnable {
   private static final Logger LOG = Logger.getLogger(Input.class);
 
@@ -49,6 +51,7 @@ public abstract class Input extends ConfigBlock implements Runnable {
   protected String filePath;
   private Filter firstFilter;
   private boolean isClosed;
+  private InputPipeline.Lane pipelineLane;
 
   protected boolean tail;
   private boolean useEventMD5;
@@ -114,6 +117,10 @@ public abstract class Input extends ConfigBlock implements Runnable {
     if (firstFilter != null) {
       firstFilter.init();
     }
+    InputPipeline inputPipeline = InputPipeline.getInstance();
+    if (inputPipeline != null) {
+      pipelineLane = inputPipeline.createLane(this);
+    }
   }
 
   boolean monitor() {
@@ -151,6 +158,14 @@ public abstract class Input extends ConfigBlock implements Runnable {
     statMetric.value++;
     readBytesMetric.value += (line.length());
 
+    if (pipelineLane != null) {
+      pipelineLane.add(line, marker);
+    } else {
+      applyFilters(line, marker);
+    }
+  }
+
+  void applyFilters(String line, InputMarker marker) {
     if (firstFilter != null) {
       try {
         firstFilter.apply(line, marker);
@@ -164,6 +179,14 @@ public abstract class Input extends ConfigBlock implements Runnable {
   }
 
   protected void flush() {
+    if (pipelineLane != null) {
+      pipelineLane.flush();
+    } else {
+      flushFilters();
+    }
+  }
+
+  void flushFilters() {
     if (firstFilter != null) {
       firstFilter.flush();
     }
@@ -205,6 +228,9 @@ public abstract class Input extends ConfigBlock implements Runnable {
   public void close() {
     LOG.info("Close called. " + getShortDescription());
 
+    if (pipelineLane != null) {
+      pipelineLane.close();
+    }
     try {
       if (firstFilter != null) {
         firstFilter.close();
@@ -229,6 +255,11 @@ public abstract class Input extends ConfigBlock implements Runnable {
     return genEventMD5;
   }
 
+  @VisibleForTesting
+  void setPipelineLane(InputPipeline.Lane pipelineLane) {
+    this.pipelineLane = pipelineLane;
+  }
+
   public Filter getFirstFilter() {
     return firstFilter;
   }
@@ -230,6 +230,10 @@ public class InputManager {
     }
     filesCountMetric.value = getActiveFilesCount();
     metricsList.add(filesCountMetric);
+    InputPipeline inputPipeline = InputPipeline.getInstance();
+    if (inputPipeline != null) {
+      inputPipeline.addMetricsContainers(metricsList);
+    }
   }
 
   public void logStats() {
@@ -239,6 +243,10 @@ public class InputManager {
 
     filesCountMetric.value = getActiveFilesCount();
     LogFeederUtil.logStatForMetric(filesCountMetric, "Stat: Files Monitored Count", "");
+    InputPipeline inputPipeline = InputPipeline.getInstance();
+    if (inputPipeline != null) {
+      inputPipeline.logStats();
+    }
   }
 
 
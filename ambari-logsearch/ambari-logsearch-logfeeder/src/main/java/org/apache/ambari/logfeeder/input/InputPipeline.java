@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logfeeder.input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.logfeeder.metrics.MetricData;
+import org.apache.ambari.logfeeder.util.LogFeederUtil;
+import org.apache.log4j.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Optional staged runtime for the inputs.
+ *
+ * When enabled, the input threads only read lines: they collect them into batches and hand the batches over to a
+ * bounded {@link Lane} per input. The filter chain (and through it the outputs) is applied by a shared pool of
+ * filter workers. A lane is processed by at most one worker at a time, so the lines of a file reach the filters and
+ * the outputs in the order they were read, and the {@link InputMarker}s arrive at the check points in order. If a
+ * lane is full, the input thread waits, so a slow filter or output still slows down reading instead of buffering
+ * without limit.
+ *
+ * A batch is handed over once it is full, or once its first line waited {@link #MAX_BATCH_LATENCY_PROPERTY}
+ * milliseconds, so the lines of a slowly written log are not held back until a batch fills up.
+ */
+public class InputPipeline {
+  private static final Logger LOG = Logger.getLogger(InputPipeline.class);
+
+  public static final String ENABLED_PROPERTY = "logfeeder.pipeline.enabled";
+  public static final String FILTER_THREADS_PROPERTY = "logfeeder.pipeline.filter_threads";
+  public static final String BATCH_SIZE_PROPERTY = "logfeeder.pipeline.batch_size";
+  public static final String QUEUE_BATCHES_PROPERTY = "logfeeder.pipeline.queue_batches";
+  public static final String MAX_BATCH_LATENCY_PROPERTY = "logfeeder.pipeline.max_batch_latency_ms";
+
+  private static final int DEFAULT_BATCH_SIZE = 100;
+  private static final int DEFAULT_QUEUE_BATCHES = 64;
+  private static final int DEFAULT_MAX_BATCH_LATENCY_MS = 1000;
+  private static final int MAX_BATCHES_PER_RUN = 8;
+  private static final long OFFER_TIMEOUT_MS = 1000;
+
+  private static InputPipeline instance;
+
+  private final int filterThreads;
+  private final int batchSize;
+  private final int queueBatches;
+  private final long maxBatchLatencyMs;
+  private ExecutorService executor;
+  private ScheduledExecutorService timer;
+
+  private final AtomicLong queuedLines = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+  private final AtomicLong processNanos = new AtomicLong();
+  private final AtomicLong batchCount = new AtomicLong();
+  private long prevBatchCount = 0;
+
+  private final MetricData queuedLinesMetric = new MetricData("input.pipeline.queued_lines", true);
+  private final MetricData batchesMetric = new MetricData("filter.pipeline.batches", false);
+  private final MetricData waitTimeMetric = new MetricData("filter.pipeline.queue_wait_ms", true);
+  private final MetricData processTimeMetric = new MetricData("filter.pipeline.process_ms", true);
+
+  /**
+   * @return the pipeline, or null if the staged runtime is not enabled
+   */
+  public static synchronized InputPipeline getInstance() {
+    if (instance == null && LogFeederUtil.getBooleanProperty(ENABLED_PROPERTY, false)) {
+      instance = new InputPipeline(
+          LogFeederUtil.getIntProperty(FILTER_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+          LogFeederUtil.getIntProperty(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE),
+          LogFeederUtil.getIntProperty(QUEUE_BATCHES_PROPERTY, DEFAULT_QUEUE_BATCHES),
+          LogFeederUtil.getIntProperty(MAX_BATCH_LATENCY_PROPERTY, DEFAULT_MAX_BATCH_LATENCY_MS));
+    }
+    return instance;
+  }
+
+  @VisibleForTesting
+  InputPipeline(int filterThreads, int batchSize, int queueBatches, long maxBatchLatencyMs) {
+    this.filterThreads = Math.max(1, filterThreads);
+    this.batchSize = Math.max(1, batchSize);
+    this.queueBatches = Math.max(1, queueBatches);
+    this.maxBatchLatencyMs = Math.max(1, maxBatchLatencyMs);
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      LOG.info("Starting input pipeline with " + filterThreads + " filter threads, batchSize=" + batchSize +
+          ", queueBatches=" + queueBatches + ", maxBatchLatencyMs=" + maxBatchLatencyMs);
+      executor = new ThreadPoolExecutor(filterThreads, filterThreads, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "filter-worker-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+    return executor;
+  }
+
+  private synchronized ScheduledExecutorService getTimer() {
+    if (timer == null) {
+      timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "pipeline-batch-timer");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return timer;
+  }
+
+  Lane createLane(Input input) {
+    return new Lane(input);
+  }
+
+  public void addMetricsContainers(List<MetricData> metricsList) {
+    updateMetrics();
+    metricsList.add(queuedLinesMetric);
+    metricsList.add(batchesMetric);
+    metricsList.add(waitTimeMetric);
+    metricsList.add(processTimeMetric);
+  }
+
+  public void logStats() {
+    updateMetrics();
+    LogFeederUtil.logStatForMetric(batchesMetric, "Stat: Pipeline Batches Filtered", ", queued_lines=" +
+        queuedLinesMetric.value + ", avg_queue_wait_ms=" + waitTimeMetric.value + ", avg_process_ms=" +
+        processTimeMetric.value);
+  }
+
+  private synchronized void updateMetrics() {
+    queuedLinesMetric.value = queuedLines.get();
+    long batches = batchCount.get();
+    long newBatches = batches - prevBatchCount;
+    if (newBatches > 0) {
+      waitTimeMetric.value = TimeUnit.NANOSECONDS.toMillis(waitNanos.getAndSet(0)) / newBatches;
+      processTimeMetric.value = TimeUnit.NANOSECONDS.toMillis(processNanos.getAndSet(0)) / newBatches;
+    }
+    prevBatchCount = batches;
+    batchesMetric.value = batches;
+  }
+
+  private static class Batch {
+    private final List<String> lines;
+    private final List<InputMarker> markers;
+    private boolean flush;
+    private long createTime;
+    private long enqueueTime;
+
+    Batch(int size) {
+      lines = new ArrayList<>(size);
+      markers = new ArrayList<>(size);
+    }
+  }
+
+  /**
+   * The queue of batches of one input. {@link #add}, {@link #flush} and {@link #close} must be called by the input
+   * thread only; the timer only hands over the current batch once it waited too long.
+   */
+  class Lane implements Runnable {
+    private final Input input;
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(queueBatches);
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Object currentLock = new Object();
+    private final Object idleLock = new Object();
+    private Batch current;
+
+    private Lane(Input input) {
+      this.input = input;
+    }
+
+    void add(String line, InputMarker marker) {
+      boolean ready;
+      synchronized (currentLock) {
+        if (current == null) {
+          current = new Batch(batchSize);
+          current.createTime = System.nanoTime();
+          scheduleLatencyCheck(current);
+        }
+        current.lines.add(line);
+        current.markers.add(marker);
+        ready = current.lines.size() >= batchSize ||
+            System.nanoTime() - current.createTime >= TimeUnit.MILLISECONDS.toNanos(maxBatchLatencyMs);
+      }
+      if (ready) {
+        submit(false);
+      }
+    }
+
+    /**
+     * Hands over the lines read so far and asks the filters to flush once they are processed.
+     */
+    void flush() {
+      submit(true);
+    }
+
+    /**
+     * Hands over the lines read so far and waits until all of them are processed.
+     */
+    void close() {
+      submit(false);
+      synchronized (idleLock) {
+        while (!queue.isEmpty() || scheduled.get()) {
+          try {
+            idleLock.wait();
+          } catch (InterruptedException e) {
+            LOG.warn("Interrupted while waiting for the pipeline to process the queued lines. " + input.getShortDescription());
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+    }
+
+    private void scheduleLatencyCheck(final Batch batch) {
+      getTimer().schedule(new Runnable() {
+        @Override
+        public void run() {
+          submitIfWaiting(batch);
+        }
+      }, maxBatchLatencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands over the batch if it is still the one being filled. The timer doesn't wait for a full lane, the lines are
+     * then handed over by the input thread or the next check.
+     */
+    private void submitIfWaiting(Batch batch) {
+      synchronized (currentLock) {
+        if (current != batch) {
+          return;
+        }
+        batch.enqueueTime = System.nanoTime();
+        queuedLines.addAndGet(batch.lines.size());
+        if (!queue.offer(batch)) {
+          queuedLines.addAndGet(-batch.lines.size());
+          scheduleLatencyCheck(batch);
+          return;
+        }
+        current = null;
+      }
+      schedule();
+    }
+
+    private void submit(boolean flush) {
+      Batch batch;
+      synchronized (currentLock) {
+        batch = current;
+        current = null;
+      }
+      if (batch == null) {
+        if (!flush) {
+          return;
+        }
+        batch = new Batch(0);
+      }
+      batch.flush = flush;
+      batch.enqueueTime = System.nanoTime();
+      queuedLines.addAndGet(batch.lines.size());
+      boolean interrupted = false;
+      while (true) {
+        try {
+          if (queue.offer(batch, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            break;
+          }
+        } catch (InterruptedException e) {
+          // the lines are already read, don't lose them because of a drain request
+          interrupted = true;
+        }
+        schedule();
+      }
+      schedule();
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void schedule() {
+      if (scheduled.compareAndSet(false, true)) {
+        getExecutor().execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        Batch batch;
+        for (int i = 0; i < MAX_BATCHES_PER_RUN && (batch = queue.poll()) != null; i++) {
+          process(batch);
+        }
+      } finally {
+        scheduled.set(false);
+        if (!queue.isEmpty()) {
+          schedule();
+        }
+        synchronized (idleLock) {
+          idleLock.notifyAll();
+        }
+      }
+    }
+
+    private void process(Batch batch) {
+      long start = System.nanoTime();
+      waitNanos.addAndGet(start - batch.enqueueTime);
+      try {
+        for (int i = 0; i < batch.lines.size(); i++) {
+          input.applyFilters(batch.lines.get(i), batch.markers.get(i));
+        }
+        if (batch.flush) {
+          input.flushFilters();
+        }
+      } catch (Throwable t) {
+        LOG.error("Error while filtering batch. " + input.getShortDescription(), t);
+      } finally {
+        queuedLines.addAndGet(-batch.lines.size());
+        processNanos.addAndGet(System.nanoTime() - start);
+        batchCount.incrementAndGet();
+      }
+    }
+  }
+}
@@ -32,10 +32,10 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An {@link Output} that records logs to HDFS.
@@ -47,11 +47,7 @@ public class OutputHDFSFile extends Output implements RolloverHandler, RolloverC
   
   private static final long DEFAULT_ROLLOVER_THRESHOLD_TIME_SECONDS = 5 * 60L;// 5 min by default
 
-  private ConcurrentLinkedQueue<File> localReadyFiles = new ConcurrentLinkedQueue<File>();
-
-  private final Object readyMonitor = new Object();
-
-  private Thread hdfsCopyThread = null;
+  private final AtomicInteger pendingCopies = new AtomicInteger();
 
   private String filenamePrefix = "service-logs-";
   private long rolloverThresholdTimeMillis;
@@ -89,14 +85,13 @@ public class OutputHDFSFile extends Output implements RolloverHandler, RolloverC
     LOG.info("hdfs Output dir=" + hdfsOutDir);
     String localFileDir = LogFeederUtil.getLogfeederTempDir() + "hdfs/service/";
     logSpooler = new LogSpooler(localFileDir, filenamePrefix, this, this);
-    this.startHDFSCopyThread();
   }
 
   @Override
   public void close() {
     LOG.info("Closing file." + getShortDescription());
     logSpooler.rollover();
-    this.stopHDFSCopyThread();
+    this.stopHDFSCopy();
     isClosed = true;
   }
 
@@ -114,73 +109,25 @@ public class OutputHDFSFile extends Output implements RolloverHandler, RolloverC
     return "output:destination=hdfs,hdfsOutDir=" + hdfsOutDir;
   }
 
-  private void startHDFSCopyThread() {
-
-    hdfsCopyThread = new Thread("hdfsCopyThread") {
-      @Override
-      public void run() {
-        try {
-          while (true) {
-            Iterator<File> localFileIterator = localReadyFiles.iterator();
-            while (localFileIterator.hasNext()) {
-              File localFile = localFileIterator.next();
-              fileSystem = LogfeederHDFSUtil.buildFileSystem(hdfsHost, hdfsPort);
-              if (fileSystem != null && localFile.exists()) {
-                String destFilePath = hdfsOutDir + "/" + localFile.getName();
-                String localPath = localFile.getAbsolutePath();
-                boolean overWrite = true;
-                boolean delSrc = true;
-                boolean isCopied = LogfeederHDFSUtil.copyFromLocal(localFile.getAbsolutePath(), destFilePath, fileSystem,
-                    overWrite, delSrc);
-                if (isCopied) {
-                  LOG.debug("File copy to hdfs hdfspath :" + destFilePath + " and deleted local file :" + localPath);
-                } else {
-                  // TODO Need to write retry logic, in next release we can handle it
-                  LOG.error("Hdfs file copy  failed for hdfspath :" + destFilePath + " and localpath :" + localPath);
-                }
-              }
-              localFileIterator.remove();
-            }
-            try {
-              // wait till new file comes in reayList
-              synchronized (readyMonitor) {
-                if (localReadyFiles.isEmpty()) {
-                  readyMonitor.wait();
-                }
-              }
-            } catch (InterruptedException e) {
-              LOG.error(e.getLocalizedMessage(),e);
-            }
-          }
-        } catch (Exception e) {
-          LOG.error("Exception in hdfsCopyThread errorMsg:" + e.getLocalizedMessage(), e);
-        }
-      }
-    };
-    hdfsCopyThread.setDaemon(true);
-    hdfsCopyThread.start();
+  private synchronized FileSystem getFileSystem() {
+    if (fileSystem == null) {
+      fileSystem = LogfeederHDFSUtil.buildFileSystem(hdfsHost, hdfsPort);
+    }
+    return fileSystem;
   }
 
-  private void stopHDFSCopyThread() {
-    if (hdfsCopyThread != null) {
-      LOG.info("waiting till copy all local files to hdfs.......");
-      while (!localReadyFiles.isEmpty()) {
-        try {
-          Thread.sleep(1000);
-        } catch (InterruptedException e) {
-          LOG.error(e.getLocalizedMessage(), e);
-        }
-        LOG.debug("still waiting to copy all local files to hdfs.......");
-      }
-      LOG.info("calling interrupt method for hdfsCopyThread to stop it.");
+  private void stopHDFSCopy() {
+    LOG.info("waiting till copy all local files to hdfs.......");
+    while (pendingCopies.get() > 0) {
       try {
-        hdfsCopyThread.interrupt();
-      } catch (SecurityException exception) {
-        LOG.error(" Current thread : '" + Thread.currentThread().getName() +
-            "' does not have permission to interrupt the Thread: '" + hdfsCopyThread.getName() + "'");
+        Thread.sleep(1000);
+      } catch (InterruptedException e) {
+        LOG.error(e.getLocalizedMessage(), e);
+        break;
       }
-      LogfeederHDFSUtil.closeFileSystem(fileSystem);
+      LOG.debug("still waiting to copy all local files to hdfs.......");
     }
+    LogfeederHDFSUtil.closeFileSystem(fileSystem);
   }
 
   private HashMap<String, String> buildContextParam() {
@@ -189,15 +136,36 @@ public class OutputHDFSFile extends Output implements RolloverHandler, RolloverC
     return contextParam;
   }
 
-  private void addFileInReadyList(File localFile) {
-    localReadyFiles.add(localFile);
-    try {
-      synchronized (readyMonitor) {
-        readyMonitor.notifyAll();
+  private void addFileInReadyList(final File localFile) {
+    pendingCopies.incrementAndGet();
+    UploadScheduler.getInstance().submit(new UploadScheduler.UploadTask() {
+      private final String destFilePath = hdfsOutDir + "/" + localFile.getName();
+
+      @Override
+      public void upload() throws Exception {
+        FileSystem fs = getFileSystem();
+        if (fs == null) {
+          throw new IOException("HDFS file system is not available, hdfsHost=" + hdfsHost + ", hdfsPort=" + hdfsPort);
+        }
+        if (localFile.exists()) {
+          LogfeederHDFSUtil.resumableCopyFromLocal(localFile, destFilePath, fs, true);
+          LOG.debug("File copy to hdfs hdfspath :" + destFilePath + " and deleted local file :" + localFile.getAbsolutePath());
+        }
       }
-    } catch (Exception e) {
-      LOG.error(e.getLocalizedMessage(),e);
-    }
+
+      @Override
+      public void done(boolean success) {
+        if (!success) {
+          LOG.error("Hdfs file copy  failed for hdfspath :" + destFilePath + " and localpath :" + localFile.getAbsolutePath());
+        }
+        pendingCopies.decrementAndGet();
+      }
+
+      @Override
+      public String getDescription() {
+        return localFile.getAbsolutePath() + " -> " + destFilePath;
+      }
+    });
   }
 
   @Override
@@ -206,7 +174,7 @@ public class OutputHDFSFile extends Output implements RolloverHandler, RolloverC
   }
 
   /**
-   * Add the rollover file to a daemon thread for uploading to HDFS
+   * Add the rollover file to the {@link UploadScheduler} for uploading to HDFS
    * @param rolloverFile the file to be uploaded to HDFS
    */
   @Override
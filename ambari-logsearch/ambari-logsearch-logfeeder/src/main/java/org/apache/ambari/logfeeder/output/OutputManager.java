@@ -198,10 +198,12 @@ public class OutputManager {
       output.logStat();
     }
     LogFeederUtil.logStatForMetric(messageTruncateMetric, "Stat: Messages Truncated", "");
+    UploadScheduler.getInstance().logStats();
   }
 
   public void addMetricsContainers(List<MetricData> metricsList) {
     metricsList.add(messageTruncateMetric);
+    UploadScheduler.getInstance().addMetricsContainers(metricsList);
     for (Output output : outputs) {
       output.addMetricsContainers(metricsList);
     }
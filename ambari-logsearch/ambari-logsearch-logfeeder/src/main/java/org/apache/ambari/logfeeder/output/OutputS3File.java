@@ -56,6 +56,7 @@ public class OutputS3File extends Output implements RolloverCondition, RolloverH
   private LogSpooler logSpooler;
   private S3OutputConfiguration s3OutputConfiguration;
   private S3Uploader s3Uploader;
+  private S3Uploader copyUploader;
 
   @Override
   public void init() throws Exception {
@@ -67,16 +68,33 @@ public class OutputS3File extends Output implements RolloverCondition, RolloverH
 
   /**
    * Copy local log files and corresponding config to S3 bucket one time.
+   *
+   * The file is queued for upload and the config is uploaded after it, this method does not wait for them.
    * @param inputFile The file to be copied
    * @param inputMarker Contains information about the configuration to be uploaded.
    */
   @Override
-  public void copyFile(File inputFile, InputMarker inputMarker) {
-    String type = inputMarker.input.getStringValue(INPUT_ATTRIBUTE_TYPE);
-    S3Uploader s3Uploader = new S3Uploader(s3OutputConfiguration, false, type);
-    String resolvedPath = s3Uploader.uploadFile(inputFile, inputMarker.input.getStringValue(INPUT_ATTRIBUTE_TYPE));
+  public void copyFile(File inputFile, final InputMarker inputMarker) {
+    final String type = inputMarker.input.getStringValue(INPUT_ATTRIBUTE_TYPE);
+    getCopyUploader().uploadFile(inputFile, type, new S3Uploader.UploadListener() {
+      @Override
+      public void uploaded(File uploadedFile, String s3Path) {
+        uploadConfig(inputMarker, type, s3OutputConfiguration, s3Path);
+      }
+    });
+  }
 
-    uploadConfig(inputMarker, type, s3OutputConfiguration, resolvedPath);
+  private synchronized S3Uploader getCopyUploader() {
+    if (copyUploader == null) {
+      copyUploader = createCopyUploader();
+    }
+    return copyUploader;
+  }
+
+  @VisibleForTesting
+  protected S3Uploader createCopyUploader() {
+    // the log type is passed with every file to upload
+    return new S3Uploader(s3OutputConfiguration, false, null);
   }
 
   private void uploadConfig(InputMarker inputMarker, String type, S3OutputConfiguration s3OutputConfiguration,
@@ -212,9 +230,7 @@ public class OutputS3File extends Output implements RolloverCondition, RolloverH
 
   @VisibleForTesting
   protected S3Uploader createUploader(String logType) {
-    S3Uploader uploader = new S3Uploader(s3OutputConfiguration, true, logType);
-    uploader.startUploaderThread();
-    return uploader;
+    return new S3Uploader(s3OutputConfiguration, true, logType);
   }
 
   @VisibleForTesting
@@ -251,7 +267,12 @@ public class OutputS3File extends Output implements RolloverCondition, RolloverH
   @Override
   public void close() {
     if (s3Uploader != null) {
-      s3Uploader.stopUploaderThread();
+      s3Uploader.stop();
+    }
+    synchronized (this) {
+      if (copyUploader != null) {
+        copyUploader.stop();
+      }
     }
     if (logSpooler != null) {
       logSpooler.close();
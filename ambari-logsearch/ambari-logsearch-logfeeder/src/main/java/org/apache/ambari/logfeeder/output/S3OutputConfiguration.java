@@ -33,6 +33,9 @@ public class S3OutputConfiguration {
   public static final Long DEFAULT_ROLLOVER_SIZE_THRESHOLD_BYTES = 10 * 1024 * 1024L;
   public static final String ROLLOVER_TIME_THRESHOLD_SECS_KEY = "rollover_time_threshold_secs";
   public static final Long DEFAULT_ROLLOVER_TIME_THRESHOLD_SECS = 3600L;
+  public static final String MULTIPART_SIZE_BYTES_KEY = "multipart_size_bytes";
+  public static final Long DEFAULT_MULTIPART_SIZE_BYTES = 8 * 1024 * 1024L;
+  public static final long MIN_MULTIPART_SIZE_BYTES = 5 * 1024 * 1024L;
   public static final String S3_BUCKET_NAME_KEY = "s3_bucket";
   public static final String S3_LOG_DIR_KEY = "s3_log_dir";
   public static final String S3_ACCESS_KEY = "s3_access_key";
@@ -75,6 +78,15 @@ public class S3OutputConfiguration {
     return (Long) configs.get(ROLLOVER_TIME_THRESHOLD_SECS_KEY);
   }
 
+  /**
+   * Files larger than this are uploaded with multipart upload, in compressed parts of at least this size.
+   * S3 requires at least 5 MB for every part but the last one.
+   */
+  public Long getMultipartSizeBytes() {
+    Long multipartSizeBytes = (Long) configs.get(MULTIPART_SIZE_BYTES_KEY);
+    return multipartSizeBytes != null ? multipartSizeBytes : DEFAULT_MULTIPART_SIZE_BYTES;
+  }
+
   @SuppressWarnings("unchecked")
   public String getCluster() {
     return ((Map<String, String>) configs.get(ADDITIONAL_FIELDS_KEY)).get(CLUSTER_KEY);
@@ -95,17 +107,23 @@ public class S3OutputConfiguration {
     }
 
     String[] longValuedKeysToCopy = new String[] {
-        ROLLOVER_SIZE_THRESHOLD_BYTES_KEY, ROLLOVER_TIME_THRESHOLD_SECS_KEY
+        ROLLOVER_SIZE_THRESHOLD_BYTES_KEY, ROLLOVER_TIME_THRESHOLD_SECS_KEY, MULTIPART_SIZE_BYTES_KEY
     };
 
     Long[] defaultValuesForLongValuedKeys = new Long[] {
-        DEFAULT_ROLLOVER_SIZE_THRESHOLD_BYTES, DEFAULT_ROLLOVER_TIME_THRESHOLD_SECS
+        DEFAULT_ROLLOVER_SIZE_THRESHOLD_BYTES, DEFAULT_ROLLOVER_TIME_THRESHOLD_SECS, DEFAULT_MULTIPART_SIZE_BYTES
     };
 
     for (int i = 0; i < longValuedKeysToCopy.length; i++) {
       configs.put(longValuedKeysToCopy[i], configBlock.getLongValue(longValuedKeysToCopy[i], defaultValuesForLongValuedKeys[i]));
     }
 
+    Long multipartSizeBytes = (Long) configs.get(MULTIPART_SIZE_BYTES_KEY);
+    if (multipartSizeBytes < MIN_MULTIPART_SIZE_BYTES) {
+      throw new IllegalArgumentException(String.format("%s must be at least %d bytes, the minimum S3 part size, but was %d",
+          MULTIPART_SIZE_BYTES_KEY, MIN_MULTIPART_SIZE_BYTES, multipartSizeBytes));
+    }
+
     configs.put(ADDITIONAL_FIELDS_KEY, configBlock.getNVList(ADDITIONAL_FIELDS_KEY));
 
     return new S3OutputConfiguration(configs);
@@ -18,72 +18,91 @@
 
 package org.apache.ambari.logfeeder.output;
 
-import com.amazonaws.AmazonClientException;
-import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.Upload;
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.google.common.annotations.VisibleForTesting;
 
 import org.apache.ambari.logfeeder.common.LogFeederConstants;
-import org.apache.ambari.logfeeder.util.CompressionUtil;
 import org.apache.ambari.logfeeder.util.S3Util;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.util.Date;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A class that handles the uploading of files to S3.
  *
- * This class can be used to upload a file one time, or start a daemon thread that can
- * be used to upload files added to a queue one after the other. When used to upload
- * files via a queue, one instance of this class is created for each file handled in
- * {@link org.apache.ambari.logfeeder.input.InputFile}.
+ * This class can be used to upload a file one time, or to queue files for asynchronous upload. In both cases the
+ * files are uploaded by the shared {@link UploadScheduler}, so files of different log types are uploaded in parallel
+ * and the caller does not wait for the upload and its retries. All uploads of an uploader share one S3 client,
+ * which is shut down when the uploader is stopped and its queued uploads are finished.
+ *
+ * Files are compressed while they are uploaded, without a temporary compressed copy. Files bigger than
+ * {@link S3OutputConfiguration#getMultipartSizeBytes()} are uploaded with multipart upload; for compression
+ * algorithms which allow concatenated streams (gz, bzip2, xz) every part is an independent compressed member,
+ * so a failed upload is retried from the end of the last uploaded part.
  */
-public class S3Uploader implements Runnable {
+public class S3Uploader {
   private static final Logger LOG = Logger.getLogger(S3Uploader.class);
-  
-  public static final String POISON_PILL = "POISON-PILL";
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
 
   private final S3OutputConfiguration s3OutputConfiguration;
   private final boolean deleteOnEnd;
   private final String logType;
-  private final BlockingQueue<String> fileContextsToUpload;
-  private final AtomicBoolean stopRunningThread = new AtomicBoolean(false);
+  private final UploadScheduler uploadScheduler;
+  private final AtomicInteger pendingUploads = new AtomicInteger();
+  private volatile boolean stopped = false;
+  private AmazonS3 s3Client;
+
+  /**
+   * Notified by the upload thread after a file was uploaded.
+   */
+  interface UploadListener {
+    void uploaded(File uploadedFile, String s3Path);
+  }
 
   public S3Uploader(S3OutputConfiguration s3OutputConfiguration, boolean deleteOnEnd, String logType) {
+    this(s3OutputConfiguration, deleteOnEnd, logType, UploadScheduler.getInstance());
+  }
+
+  @VisibleForTesting
+  S3Uploader(S3OutputConfiguration s3OutputConfiguration, boolean deleteOnEnd, String logType,
+      UploadScheduler uploadScheduler) {
     this.s3OutputConfiguration = s3OutputConfiguration;
     this.deleteOnEnd = deleteOnEnd;
     this.logType = logType;
-    this.fileContextsToUpload = new LinkedBlockingQueue<>();
-  }
-
-  /**
-   * Starts a thread that can be used to upload files from a queue.
-   *
-   * Add files to be uploaded using the method {@link #addFileForUpload(String)}.
-   * If this thread is started, it must be stopped using the method {@link #stopUploaderThread()}.
-   */
-  void startUploaderThread() {
-    Thread s3UploaderThread = new Thread(this, "s3-uploader-thread-"+logType);
-    s3UploaderThread.setDaemon(true);
-    s3UploaderThread.start();
+    this.uploadScheduler = uploadScheduler;
   }
 
   /**
-   * Stops the thread used to upload files from a queue.
+   * Stops accepting files for upload.
    *
-   * This method must be called to cleanly free up resources, typically on shutdown of the process.
-   * Note that this method does not drain any remaining files, and instead stops the thread
-   * as soon as any file being currently uploaded is complete.
+   * Uploads which are already queued are finished by the {@link UploadScheduler}, the S3 client is shut down after
+   * the last of them.
    */
-  void stopUploaderThread() {
-    stopRunningThread.set(true);
-    boolean offerStatus = fileContextsToUpload.offer(POISON_PILL);
-    if (!offerStatus) {
-      LOG.warn("Could not add poison pill to interrupt uploader thread.");
+  void stop() {
+    stopped = true;
+    if (pendingUploads.get() == 0) {
+      shutdownS3Client();
     }
   }
 
@@ -92,84 +111,278 @@ public class S3Uploader implements Runnable {
    * @param fileToUpload Full path to the local file which must be uploaded.
    */
   void addFileForUpload(String fileToUpload) {
-    boolean offerStatus = fileContextsToUpload.offer(fileToUpload);
-    if (!offerStatus) {
-      LOG.error("Could not add file " + fileToUpload + " for upload.");
-    }
-  }
-
-  @Override
-  public void run() {
-    while (!stopRunningThread.get()) {
-      try {
-        String fileNameToUpload = fileContextsToUpload.take();
-        if (POISON_PILL.equals(fileNameToUpload)) {
-          LOG.warn("Found poison pill while waiting for files to upload, exiting");
-          return;
-        }
-        uploadFile(new File(fileNameToUpload), logType);
-      } catch (InterruptedException e) {
-        LOG.error("Interrupted while waiting for elements from fileContextsToUpload", e);
-        return;
-      }
+    if (stopped) {
+      LOG.error("Could not add file " + fileToUpload + " for upload, uploader is stopped.");
+      return;
     }
+    submit(createUploadTask(new File(fileToUpload), logType, null));
   }
 
   /**
-   * Upload the given file to S3.
+   * Queue the given file for a one time upload to S3 and return without waiting for it.
    *
-   * The file which should be available locally, is first compressed using the compression
-   * method specified by {@link S3OutputConfiguration#getCompressionAlgo()}. This compressed
-   * file is what is uploaded to S3.
+   * The file which should be available locally, is compressed using the compression method specified by
+   * {@link S3OutputConfiguration#getCompressionAlgo()} while it is uploaded.
    * @param fileToUpload the file to upload
    * @param logType the name of the log which is used in the S3 path constructed.
-   * @return
+   * @param listener notified after the file was uploaded, may be null
+   * @return the S3 key the file is uploaded to
    */
-  String uploadFile(File fileToUpload, String logType) {
-    String bucketName = s3OutputConfiguration.getS3BucketName();
-    String s3AccessKey = s3OutputConfiguration.getS3AccessKey();
-    String s3SecretKey = s3OutputConfiguration.getS3SecretKey();
-    String compressionAlgo = s3OutputConfiguration.getCompressionAlgo();
+  String uploadFile(File fileToUpload, String logType, UploadListener listener) {
+    S3FileUploadTask uploadTask = createUploadTask(fileToUpload, logType, listener);
+    if (stopped) {
+      LOG.error("Could not upload file " + fileToUpload + ", uploader is stopped.");
+    } else {
+      submit(uploadTask);
+    }
+    return uploadTask.s3Path;
+  }
+
+  private void submit(S3FileUploadTask uploadTask) {
+    pendingUploads.incrementAndGet();
+    uploadScheduler.submit(uploadTask);
+  }
 
-    String keySuffix = fileToUpload.getName() + "." + compressionAlgo;
+  private void uploadFinished() {
+    if (pendingUploads.decrementAndGet() == 0 && stopped) {
+      shutdownS3Client();
+    }
+  }
+
+  private S3FileUploadTask createUploadTask(File fileToUpload, String logType, UploadListener listener) {
+    String keySuffix = fileToUpload.getName() + "." + s3OutputConfiguration.getCompressionAlgo();
     String s3Path = new S3LogPathResolver().getResolvedPath(
         s3OutputConfiguration.getS3Path() + LogFeederConstants.S3_PATH_SEPARATOR + logType, keySuffix,
         s3OutputConfiguration.getCluster());
     LOG.info(String.format("keyPrefix=%s, keySuffix=%s, s3Path=%s", s3OutputConfiguration.getS3Path(), keySuffix, s3Path));
-    File sourceFile = createCompressedFileForUpload(fileToUpload, compressionAlgo);
+    return new S3FileUploadTask(fileToUpload, s3Path, listener);
+  }
 
-    LOG.info("Starting S3 upload " + sourceFile + " -> " + bucketName + ", " + s3Path);
-    uploadFileToS3(bucketName, s3Path, sourceFile, s3AccessKey, s3SecretKey);
+  /**
+   * Compresses and uploads the file, continuing the multipart upload recorded in the progress if there is one.
+   */
+  @VisibleForTesting
+  void uploadCompressed(String bucketName, String s3Key, File localFile, S3UploadProgress progress) throws IOException {
+    String compressionAlgo = s3OutputConfiguration.getCompressionAlgo();
+    long partSize = s3OutputConfiguration.getMultipartSizeBytes();
+
+    if (progress.getUploadId() == null && localFile.length() < partSize) {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      try (InputStream in = new FileInputStream(localFile);
+           OutputStream compressor = createCompressor(compressionAlgo, buffer)) {
+        IOUtils.copy(in, compressor);
+      }
+      byte[] data = buffer.toByteArray();
+      putObject(bucketName, s3Key, data, data.length);
+      return;
+    }
+
+    boolean resumable = isConcatenable(compressionAlgo);
+    if (!resumable && progress.getUploadId() != null) {
+      abortMultipartUpload(bucketName, s3Key, progress.getUploadId());
+      progress.reset();
+    }
+    if (progress.getUploadId() == null) {
+      progress.start(initiateMultipartUpload(bucketName, s3Key));
+    } else {
+      LOG.info("Resuming upload of " + localFile + " from offset " + progress.getSourceOffset() + ", part " +
+          (progress.getPartETags().size() + 1));
+    }
 
-    // delete local compressed file
-    sourceFile.delete();
-    if (deleteOnEnd) {
-      LOG.info("Deleting input file as required");
-      if (!fileToUpload.delete()) {
-        LOG.error("Could not delete file " + fileToUpload.getAbsolutePath() + " after upload to S3");
+    try (InputStream in = new FileInputStream(localFile)) {
+      IOUtils.skipFully(in, progress.getSourceOffset());
+      ByteArrayOutputStream partBuffer = new ByteArrayOutputStream((int) partSize + READ_BUFFER_SIZE);
+      OutputStream compressor = null;
+      long offset = progress.getSourceOffset();
+      byte[] buffer = new byte[READ_BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        if (compressor == null) {
+          compressor = createCompressor(compressionAlgo, partBuffer);
+        }
+        compressor.write(buffer, 0, read);
+        offset += read;
+        if (partBuffer.size() >= partSize) {
+          if (resumable) {
+            compressor.close();
+            compressor = null;
+          }
+          uploadNextPart(bucketName, s3Key, progress, partBuffer, offset);
+          partBuffer.reset();
+        }
+      }
+      if (compressor != null) {
+        compressor.close();
+      }
+      if (partBuffer.size() > 0 || progress.getPartETags().isEmpty()) {
+        uploadNextPart(bucketName, s3Key, progress, partBuffer, offset);
       }
     }
-    return s3Path;
+    completeMultipartUpload(bucketName, s3Key, progress.getUploadId(), progress.getPartETags());
   }
 
-  @VisibleForTesting
-  protected void uploadFileToS3(String bucketName, String s3Key, File localFile, String accessKey, String secretKey) {
-    TransferManager transferManager = S3Util.getTransferManager(accessKey, secretKey);
+  private void uploadNextPart(String bucketName, String s3Key, S3UploadProgress progress, ByteArrayOutputStream partBuffer,
+      long sourceOffset) {
+    int partNumber = progress.getPartETags().size() + 1;
+    byte[] data = partBuffer.toByteArray();
+    PartETag partETag = uploadPart(bucketName, s3Key, progress.getUploadId(), partNumber, data, data.length);
+    progress.partUploaded(partETag, sourceOffset);
+  }
+
+  private OutputStream createCompressor(String compressionAlgo, OutputStream out) throws IOException {
     try {
-      Upload upload = transferManager.upload(bucketName, s3Key, localFile);
-      upload.waitForUploadResult();
-    } catch (AmazonClientException | InterruptedException e) {
-      LOG.error("s3 uploading failed for file :" + localFile.getAbsolutePath(), e);
-    } finally {
-      S3Util.shutdownTransferManager(transferManager);
+      return new CompressorStreamFactory().createCompressorOutputStream(compressionAlgo, out);
+    } catch (CompressorException e) {
+      throw new IOException("Could not create compressor for " + compressionAlgo, e);
+    }
+  }
+
+  private boolean isConcatenable(String compressionAlgo) {
+    return CompressorStreamFactory.GZIP.equalsIgnoreCase(compressionAlgo) ||
+        CompressorStreamFactory.BZIP2.equalsIgnoreCase(compressionAlgo) ||
+        CompressorStreamFactory.XZ.equalsIgnoreCase(compressionAlgo);
+  }
+
+  private synchronized AmazonS3 getS3Client() {
+    if (s3Client == null) {
+      s3Client = S3Util.getS3Client(s3OutputConfiguration.getS3AccessKey(), s3OutputConfiguration.getS3SecretKey());
     }
+    return s3Client;
   }
 
+  private synchronized void shutdownS3Client() {
+    if (s3Client instanceof AmazonWebServiceClient) {
+      ((AmazonWebServiceClient) s3Client).shutdown();
+    }
+    s3Client = null;
+  }
+
+  @VisibleForTesting
+  protected void putObject(String bucketName, String s3Key, byte[] data, int length) {
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(length);
+    getS3Client().putObject(new PutObjectRequest(bucketName, s3Key, new ByteArrayInputStream(data, 0, length), metadata));
+  }
+
+  @VisibleForTesting
+  protected String initiateMultipartUpload(String bucketName, String s3Key) {
+    return getS3Client().initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, s3Key)).getUploadId();
+  }
+
+  @VisibleForTesting
+  protected PartETag uploadPart(String bucketName, String s3Key, String uploadId, int partNumber, byte[] data, int length) {
+    UploadPartRequest uploadPartRequest = new UploadPartRequest()
+        .withBucketName(bucketName)
+        .withKey(s3Key)
+        .withUploadId(uploadId)
+        .withPartNumber(partNumber)
+        .withInputStream(new ByteArrayInputStream(data, 0, length))
+        .withPartSize(length);
+    return getS3Client().uploadPart(uploadPartRequest).getPartETag();
+  }
+
+  @VisibleForTesting
+  protected void completeMultipartUpload(String bucketName, String s3Key, String uploadId, List<PartETag> partETags) {
+    getS3Client().completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, s3Key, uploadId, partETags));
+  }
+
+  @VisibleForTesting
+  protected void abortMultipartUpload(String bucketName, String s3Key, String uploadId) {
+    getS3Client().abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, s3Key, uploadId));
+  }
+
+  /**
+   * State of a multipart upload which survives failed attempts: the uploaded parts and the offset of the source
+   * file up to which they contain the data.
+   */
   @VisibleForTesting
-  protected File createCompressedFileForUpload(File fileToUpload, String compressionAlgo) {
-    File outputFile = new File(fileToUpload.getParent(), fileToUpload.getName() + "_" + new Date().getTime() +
-        "." + compressionAlgo);
-    outputFile = CompressionUtil.compressFile(fileToUpload, outputFile, compressionAlgo);
-    return outputFile;
+  static class S3UploadProgress {
+    private String uploadId;
+    private long sourceOffset;
+    private final List<PartETag> partETags = new ArrayList<>();
+
+    String getUploadId() {
+      return uploadId;
+    }
+
+    long getSourceOffset() {
+      return sourceOffset;
+    }
+
+    List<PartETag> getPartETags() {
+      return partETags;
+    }
+
+    void start(String uploadId) {
+      this.uploadId = uploadId;
+    }
+
+    void partUploaded(PartETag partETag, long sourceOffset) {
+      partETags.add(partETag);
+      this.sourceOffset = sourceOffset;
+    }
+
+    void reset() {
+      uploadId = null;
+      sourceOffset = 0;
+      partETags.clear();
+    }
+  }
+
+  private class S3FileUploadTask implements UploadScheduler.UploadTask {
+    private final File fileToUpload;
+    private final String s3Path;
+    private final UploadListener listener;
+    private final S3UploadProgress progress = new S3UploadProgress();
+
+    S3FileUploadTask(File fileToUpload, String s3Path, UploadListener listener) {
+      this.fileToUpload = fileToUpload;
+      this.s3Path = s3Path;
+      this.listener = listener;
+    }
+
+    @Override
+    public void upload() throws Exception {
+      String bucketName = s3OutputConfiguration.getS3BucketName();
+      LOG.info("Starting S3 upload " + fileToUpload + " -> " + bucketName + ", " + s3Path);
+      uploadCompressed(bucketName, s3Path, fileToUpload, progress);
+    }
+
+    @Override
+    public void done(boolean success) {
+      try {
+        finish(success);
+      } finally {
+        uploadFinished();
+      }
+    }
+
+    private void finish(boolean success) {
+      if (!success) {
+        LOG.error("s3 uploading failed for file :" + fileToUpload.getAbsolutePath());
+        if (progress.getUploadId() != null) {
+          try {
+            abortMultipartUpload(s3OutputConfiguration.getS3BucketName(), s3Path, progress.getUploadId());
+          } catch (Exception e) {
+            LOG.warn("Could not abort multipart upload of " + s3Path, e);
+          }
+        }
+        return;
+      }
+      if (deleteOnEnd) {
+        LOG.info("Deleting input file as required");
+        if (!fileToUpload.delete()) {
+          LOG.error("Could not delete file " + fileToUpload.getAbsolutePath() + " after upload to S3");
+        }
+      }
+      if (listener != null) {
+        listener.uploaded(fileToUpload, s3Path);
+      }
+    }
+
+    @Override
+    public String getDescription() {
+      return fileToUpload.getAbsolutePath() + " -> " + s3Path;
+    }
   }
 }
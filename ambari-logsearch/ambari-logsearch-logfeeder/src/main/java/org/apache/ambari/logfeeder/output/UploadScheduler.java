@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logfeeder.output;
+
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.logfeeder.metrics.MetricData;
+import org.apache.ambari.logfeeder.util.LogFeederUtil;
+import org.apache.log4j.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Shared scheduler for the uploads of rolled over spool files (S3, HDFS).
+ *
+ * All outputs submit their uploads to one bounded pool, so a backlog of one log type is worked off in parallel
+ * with the others instead of by one dedicated thread per log type. Failed attempts are re-scheduled with an
+ * exponential backoff; an {@link UploadTask} keeps its own progress, so a retry continues where the previous
+ * attempt stopped.
+ */
+public class UploadScheduler {
+  private static final Logger LOG = Logger.getLogger(UploadScheduler.class);
+
+  public static final String THREADS_PROPERTY = "logfeeder.upload.threads";
+  public static final String MAX_RETRIES_PROPERTY = "logfeeder.upload.max_retries";
+  public static final String RETRY_INTERVAL_PROPERTY = "logfeeder.upload.retry_interval_ms";
+
+  private static final int DEFAULT_THREADS = 4;
+  private static final int DEFAULT_MAX_RETRIES = 10;
+  private static final int DEFAULT_RETRY_INTERVAL_MS = 5000;
+  private static final long MAX_RETRY_INTERVAL_MS = 5 * 60 * 1000L;
+
+  private static UploadScheduler instance;
+
+  /**
+   * A unit of upload work. Implementations must be able to continue a partially finished upload when
+   * {@link #upload()} is called again after a failure.
+   */
+  public interface UploadTask {
+    void upload() throws Exception;
+
+    /**
+     * Called once, after the upload either succeeded or failed for the last time.
+     */
+    void done(boolean success);
+
+    String getDescription();
+  }
+
+  private final int threads;
+  private final int maxRetries;
+  private final long retryIntervalMs;
+  private ScheduledThreadPoolExecutor executor;
+
+  private final AtomicInteger pending = new AtomicInteger();
+  private final AtomicLong uploaded = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final MetricData pendingMetric = new MetricData("output.upload.pending", true);
+  private final MetricData uploadedMetric = new MetricData("output.upload.count", false);
+  private final MetricData retryMetric = new MetricData("output.upload.retry", false);
+  private final MetricData failureMetric = new MetricData("output.upload.failure", false);
+
+  public static synchronized UploadScheduler getInstance() {
+    if (instance == null) {
+      instance = new UploadScheduler(
+          LogFeederUtil.getIntProperty(THREADS_PROPERTY, DEFAULT_THREADS),
+          LogFeederUtil.getIntProperty(MAX_RETRIES_PROPERTY, DEFAULT_MAX_RETRIES),
+          LogFeederUtil.getIntProperty(RETRY_INTERVAL_PROPERTY, DEFAULT_RETRY_INTERVAL_MS));
+    }
+    return instance;
+  }
+
+  @VisibleForTesting
+  UploadScheduler(int threads, int maxRetries, long retryIntervalMs) {
+    this.threads = Math.max(1, threads);
+    this.maxRetries = maxRetries;
+    this.retryIntervalMs = retryIntervalMs;
+  }
+
+  private synchronized ScheduledThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      LOG.info("Starting upload scheduler with " + threads + " threads");
+      executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "upload-scheduler-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+
+  /**
+   * Queues the task for upload, it is run as soon as one of the upload threads is free.
+   */
+  public void submit(UploadTask task) {
+    pending.incrementAndGet();
+    getExecutor().execute(new Attempt(task, 0));
+  }
+
+  public int getPendingCount() {
+    return pending.get();
+  }
+
+  @VisibleForTesting
+  long getRetryDelay(int attempt) {
+    long delay = retryIntervalMs << Math.min(attempt, 16);
+    return Math.min(delay, MAX_RETRY_INTERVAL_MS);
+  }
+
+  /**
+   * The counters are updated by the upload threads, the metrics only by the thread reporting them.
+   */
+  private void updateMetrics() {
+    pendingMetric.value = pending.get();
+    uploadedMetric.value = uploaded.get();
+    retryMetric.value = retries.get();
+    failureMetric.value = failures.get();
+  }
+
+  public void addMetricsContainers(List<MetricData> metricsList) {
+    updateMetrics();
+    metricsList.add(pendingMetric);
+    metricsList.add(uploadedMetric);
+    metricsList.add(retryMetric);
+    metricsList.add(failureMetric);
+  }
+
+  public void logStats() {
+    updateMetrics();
+    LogFeederUtil.logStatForMetric(uploadedMetric, "Stat: Files Uploaded", ", pending=" + pendingMetric.value);
+    LogFeederUtil.logStatForMetric(retryMetric, "Stat: Upload Retries", "");
+    LogFeederUtil.logStatForMetric(failureMetric, "Stat: Upload Failures", "");
+  }
+
+  private class Attempt implements Runnable {
+    private final UploadTask task;
+    private final int attempt;
+
+    Attempt(UploadTask task, int attempt) {
+      this.task = task;
+      this.attempt = attempt;
+    }
+
+    @Override
+    public void run() {
+      try {
+        task.upload();
+        uploaded.incrementAndGet();
+        finish(true);
+      } catch (Exception e) {
+        if (attempt >= maxRetries) {
+          LOG.error("Giving up upload of " + task.getDescription() + " after " + (attempt + 1) + " attempts", e);
+          failures.incrementAndGet();
+          finish(false);
+        } else {
+          long delay = getRetryDelay(attempt);
+          LOG.warn("Upload of " + task.getDescription() + " failed, retrying in " + delay + " ms. attempt=" + (attempt + 1), e);
+          retries.incrementAndGet();
+          getExecutor().schedule(new Attempt(task, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+
+    private void finish(boolean success) {
+      try {
+        task.done(success);
+      } finally {
+        pending.decrementAndGet();
+      }
+    }
+  }
+}
@@ -18,9 +18,14 @@
  */
 package org.apache.ambari.logfeeder.util;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.log4j.Logger;
@@ -28,6 +33,8 @@ import org.apache.log4j.Logger;
 public class LogfeederHDFSUtil {
   private static final Logger LOG = Logger.getLogger(LogfeederHDFSUtil.class);
 
+  private static final String COPYING_SUFFIX = "._COPYING_";
+
   private LogfeederHDFSUtil() {
     throw new UnsupportedOperationException();
   }
@@ -47,6 +54,50 @@ public class LogfeederHDFSUtil {
     return isCopied;
   }
 
+  /**
+   * Streams the local file into a "._COPYING_" file next to the destination and renames it when it is complete.
+   *
+   * If a previous attempt left a partial copy behind, the copy is continued from its length when the file system
+   * supports append, otherwise it is started over. The local file is deleted after a successful copy if delSrc is set.
+   */
+  public static void resumableCopyFromLocal(File localFile, String destFilePath, FileSystem fileSystem, boolean delSrc)
+      throws IOException {
+    Path dst = new Path(destFilePath);
+    Path tmp = new Path(destFilePath + COPYING_SUFFIX);
+    long offset = 0;
+    FSDataOutputStream out = null;
+    if (fileSystem.exists(tmp)) {
+      long copied = fileSystem.getFileStatus(tmp).getLen();
+      if (copied <= localFile.length()) {
+        try {
+          out = fileSystem.append(tmp);
+          offset = copied;
+        } catch (IOException | UnsupportedOperationException e) {
+          LOG.info("Could not append to " + tmp + ", copying " + localFile + " from the beginning");
+        }
+      }
+    }
+    if (out == null) {
+      out = fileSystem.create(tmp, true);
+    }
+    LOG.info("copying localfile := " + localFile + " to hdfsPath := " + destFilePath + " from offset " + offset);
+    try (InputStream in = new FileInputStream(localFile)) {
+      IOUtils.skipFully(in, offset);
+      IOUtils.copyLarge(in, out);
+    } finally {
+      out.close();
+    }
+    if (fileSystem.exists(dst)) {
+      fileSystem.delete(dst, false);
+    }
+    if (!fileSystem.rename(tmp, dst)) {
+      throw new IOException("Could not rename " + tmp + " to " + dst);
+    }
+    if (delSrc && !localFile.delete()) {
+      LOG.warn("Could not delete local file " + localFile + " after copying it to " + destFilePath);
+    }
+  }
+
   public static FileSystem buildFileSystem(String hdfsHost, String hdfsPort) {
     try {
       Configuration configuration = buildHdfsConfiguration(hdfsHost, hdfsPort);
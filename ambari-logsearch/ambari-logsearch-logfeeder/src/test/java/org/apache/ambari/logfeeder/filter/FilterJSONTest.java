@@ -20,6 +20,8 @@ package org.apache.ambari.logfeeder.filter;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -125,6 +127,28 @@ public class FilterJSONTest {
   }
   
   
+  @Test
+  public void testJSONFilterCode_nestedValues() throws Exception {
+    LOG.info("testJSONFilterCode_nestedValues()");
+
+    init(new HashMap<String, Object>());
+
+    mockOutputManager.write(EasyMock.capture(capture), EasyMock.anyObject(InputMarker.class));
+    EasyMock.expectLastCall();
+    EasyMock.replay(mockOutputManager);
+
+    filterJson.apply("{ tags: ['a', 'b'], counts: { errors: 2 }, ratio: 0.5, enabled: true }", new InputMarker(null, null, 0));
+
+    EasyMock.verify(mockOutputManager);
+    Map<String, Object> jsonParams = capture.getValue();
+
+    assertEquals("Incorrect decoding: tags", Arrays.asList("a", "b"), jsonParams.remove("tags"));
+    assertEquals("Incorrect decoding: counts", Collections.singletonMap("errors", 2.0), jsonParams.remove("counts"));
+    assertEquals("Incorrect decoding: ratio", 0.5, jsonParams.remove("ratio"));
+    assertEquals("Incorrect decoding: enabled", true, jsonParams.remove("enabled"));
+    assertTrue("jsonParams are not empty!", jsonParams.isEmpty());
+  }
+
   @Test
   public void testJSONFilterCode_invalidJson() throws Exception {
     LOG.info("testJSONFilterCode_invalidJson()");
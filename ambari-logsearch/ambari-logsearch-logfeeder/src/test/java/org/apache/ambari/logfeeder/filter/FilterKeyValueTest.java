@@ -101,6 +101,31 @@ public class FilterKeyValueTest {
     assertTrue("jsonParams are not empty!", jsonParams.isEmpty());
   }
 
+  @Test
+  public void testFilterKeyValue_extractionWithSeparatorsInBorders() throws Exception {
+    LOG.info("testFilterKeyValue_extractionWithSeparatorsInBorders()");
+
+    Map<String, Object> config = new HashMap<String, Object>();
+    config.put("source_field", "keyValueField");
+    config.put("field_split", "&");
+    config.put("value_borders", "()");
+    init(config);
+
+    mockOutputManager.write(EasyMock.capture(capture), EasyMock.anyObject(InputMarker.class));
+    EasyMock.expectLastCall();
+    EasyMock.replay(mockOutputManager);
+
+    filterKeyValue.apply("{ keyValueField: 'name1( a&b=(c) )&name2=(value2)' }", new InputMarker(null, null, 0));
+
+    EasyMock.verify(mockOutputManager);
+    Map<String, Object> jsonParams = capture.getValue();
+
+    assertEquals("Original missing!", "name1( a&b=(c) )&name2=(value2)", jsonParams.remove("keyValueField"));
+    assertEquals("Incorrect extraction: name1", "a&b=(c)", jsonParams.remove("name1"));
+    assertEquals("Incorrect extraction: name2", "value2", jsonParams.remove("name2"));
+    assertTrue("jsonParams are not empty!", jsonParams.isEmpty());
+  }
+
   @Test
   public void testFilterKeyValue_missingSourceField() throws Exception {
     LOG.info("testFilterKeyValue_missingSourceField()");
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.logfeeder.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ambari.logfeeder.input.InputMarker;
+import org.apache.ambari.logfeeder.output.OutputManager;
+
+/**
+ * Measures the throughput (lines/sec) of the key/value and JSON filters. Not a unit test, run it manually:
+ * <pre>
+ * java -cp ... org.apache.ambari.logfeeder.filter.FilterParserBenchmark [lines]
+ * </pre>
+ */
+public class FilterParserBenchmark {
+
+  private static final int DEFAULT_LINES = 1000000;
+  private static final int WARMUP_ROUNDS = 3;
+
+  public static void main(String[] args) throws Exception {
+    int lines = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+
+    FilterKeyValue filterKeyValue = new FilterKeyValue();
+    Map<String, Object> keyValueConfig = new HashMap<String, Object>();
+    keyValueConfig.put("source_field", "log_message");
+    keyValueConfig.put("field_split", "&");
+    keyValueConfig.put("value_borders", "()");
+    filterKeyValue.loadConfig(keyValueConfig);
+    filterKeyValue.setOutputManager(new NullOutputManager());
+    filterKeyValue.init();
+
+    FilterJSON filterJson = new FilterJSON();
+    filterJson.loadConfig(new HashMap<String, Object>());
+    filterJson.setOutputManager(new NullOutputManager());
+    filterJson.init();
+
+    final String keyValueLine = "user(admin)&op(getfileinfo)&src(/apps/hive/warehouse)&dst(null)&perm(null)&proto(rpc)" +
+        "&ip(/10.0.0.1)&callerContext(CLI  with = and & inside)";
+    final String jsonLine = "{\"logtime\":\"1468403149640\",\"line_number\":42,\"level\":\"INFO\",\"host\":\"c6401\"," +
+        "\"type\":\"hdfs_namenode\",\"log_message\":\"Roll Edit Log from 10.0.0.1\",\"tags\":[\"a\",\"b\"]}";
+
+    for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+      boolean warmup = round < WARMUP_ROUNDS;
+      report("keyvalue", warmup, lines, run(filterKeyValue, lines, new LineSource() {
+        @Override
+        public void apply(Filter filter, InputMarker inputMarker) throws Exception {
+          Map<String, Object> jsonObj = new HashMap<String, Object>();
+          jsonObj.put("log_message", keyValueLine);
+          filter.apply(jsonObj, inputMarker);
+        }
+      }));
+      report("json", warmup, lines, run(filterJson, lines, new LineSource() {
+        @Override
+        public void apply(Filter filter, InputMarker inputMarker) throws Exception {
+          filter.apply(jsonLine, inputMarker);
+        }
+      }));
+    }
+  }
+
+  private interface LineSource {
+    void apply(Filter filter, InputMarker inputMarker) throws Exception;
+  }
+
+  private static long run(Filter filter, int lines, LineSource lineSource) throws Exception {
+    InputMarker inputMarker = new InputMarker(null, null, 0);
+    long start = System.nanoTime();
+    for (int i = 0; i < lines; i++) {
+      lineSource.apply(filter, inputMarker);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static void report(String name, boolean warmup, int lines, long nanos) {
+    if (!warmup) {
+      System.out.println(String.format("%-10s %,12d lines/sec", name, (long) (lines * 1e9 / nanos)));
+    }
+  }
+
+  private static class NullOutputManager extends OutputManager {
+    @Override
+    public void write(Map<String, Object> jsonObj, InputMarker inputMarker) {
+    }
+
+    @Override
+    public void write(String jsonBlock, InputMarker inputMarker) {
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.logfeeder.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ambari.logfeeder.filter.Filter;
+import org.apache.ambari.logfeeder.metrics.MetricData;
+import org.junit.Test;
+
+public class InputPipelineTest {
+
+  @Test
+  public void testInputPipeline_keepsOrderPerInput() throws Exception {
+    InputPipeline pipeline = new InputPipeline(4, 7, 2, 1000);
+    List<TestInput> inputs = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      inputs.add(new TestInput(pipeline));
+    }
+
+    for (int line = 1; line <= 1000; line++) {
+      for (TestInput input : inputs) {
+        input.outputLine("line" + line, new InputMarker(input, null, line));
+        if (line == 500) {
+          input.flush();
+        }
+      }
+    }
+    for (TestInput input : inputs) {
+      input.close();
+    }
+
+    for (TestInput input : inputs) {
+      assertEquals(1001, input.received.size());
+      assertEquals("line500", input.received.get(499));
+      assertEquals("FLUSH", input.received.get(500));
+      assertEquals("line501", input.received.get(501));
+      assertEquals("line1000", input.received.get(1000));
+      List<Integer> lineNumbers = new ArrayList<>(input.lineNumbers);
+      Collections.sort(lineNumbers);
+      assertEquals(lineNumbers, input.lineNumbers);
+    }
+
+    List<MetricData> metrics = new ArrayList<>();
+    pipeline.addMetricsContainers(metrics);
+    assertEquals(4, metrics.size());
+    assertEquals(0, metrics.get(0).value);
+  }
+
+  @Test
+  public void testInputPipeline_handsOverPartialBatchAfterMaxLatency() throws Exception {
+    InputPipeline pipeline = new InputPipeline(1, 100, 2, 50);
+    TestInput input = new TestInput(pipeline);
+
+    for (int line = 1; line <= 3; line++) {
+      input.outputLine("line" + line, new InputMarker(input, null, line));
+    }
+
+    // neither full nor flushed, the timer hands the lines over
+    long deadline = System.currentTimeMillis() + 10000;
+    while (input.received.size() < 3 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(3, input.received.size());
+    assertEquals("line3", input.received.get(2));
+
+    input.outputLine("line4", new InputMarker(input, null, 4));
+    input.close();
+    assertEquals(4, input.received.size());
+    assertTrue(input.lineNumbers.contains(4));
+  }
+
+  private static class TestInput extends Input {
+    private final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Integer> lineNumbers = Collections.synchronizedList(new ArrayList<Integer>());
+
+    TestInput(InputPipeline pipeline) throws Exception {
+      addFilter(new Filter() {
+        @Override
+        public void apply(String inputStr, InputMarker inputMarker) {
+          received.add(inputStr);
+          lineNumbers.add(inputMarker.lineNumber);
+        }
+
+        @Override
+        public void flush() {
+          received.add("FLUSH");
+        }
+      });
+      setPipelineLane(pipeline.createLane(this));
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    void start() throws Exception {
+    }
+
+    @Override
+    public void checkIn(InputMarker inputMarker) {
+    }
+
+    @Override
+    public void lastCheckIn() {
+    }
+
+    @Override
+    public String getShortDescription() {
+      return "test";
+    }
+  }
+}
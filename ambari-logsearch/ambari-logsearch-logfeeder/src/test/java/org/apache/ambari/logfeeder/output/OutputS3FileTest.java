@@ -95,6 +95,14 @@ public class OutputS3FileTest {
     verify(spooler);
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectMultipartSizeBelowS3Minimum() throws Exception {
+    configMap.put(S3OutputConfiguration.MULTIPART_SIZE_BYTES_KEY, String.valueOf(1024 * 1024L));
+    OutputS3File outputS3File = new OutputS3File();
+    outputS3File.loadConfig(configMap);
+    outputS3File.init();
+  }
+
   @Test
   public void shouldReuseSpoolerForSamePath() throws Exception {
     Input input = mock(Input.class);
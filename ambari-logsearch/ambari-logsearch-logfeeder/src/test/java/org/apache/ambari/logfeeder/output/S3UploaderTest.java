@@ -18,14 +18,32 @@
 
 package org.apache.ambari.logfeeder.output;
 
+import com.amazonaws.services.s3.model.PartETag;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
-import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class S3UploaderTest {
 
@@ -35,110 +53,167 @@ public class S3UploaderTest {
   public static final String LOG_TYPE = "hdfs_namenode";
   public static final String ACCESS_KEY_VALUE = "accessKeyValue";
   public static final String SECRET_KEY_VALUE = "secretKeyValue";
+  public static final String FILE_NAME = "hdfs_namenode.log.123343493473948";
 
-  @Test
-  public void shouldUploadToS3ToRightBucket() {
-    File fileToUpload = mock(File.class);
-    String fileName = "hdfs_namenode.log.123343493473948";
-    expect(fileToUpload.getName()).andReturn(fileName);
-    final File compressedFile = mock(File.class);
-    Map<String, Object> configs = setupS3Configs();
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
-    S3OutputConfiguration s3OutputConfiguration = new S3OutputConfiguration(configs);
-    expect(compressedFile.delete()).andReturn(true);
-    expect(fileToUpload.delete()).andReturn(true);
-    replay(fileToUpload, compressedFile);
+  private UploadScheduler uploadScheduler;
 
-    S3Uploader s3Uploader = new S3Uploader(s3OutputConfiguration, true, LOG_TYPE) {
-      @Override
-      protected File createCompressedFileForUpload(File fileToUpload, String compressionAlgo) {
-        return compressedFile;
-      }
-      protected void uploadFileToS3(String bucketName, String s3Key, File localFile, String accessKey, String secretKey) {
-      }
-    };
-    String resolvedPath = s3Uploader.uploadFile(fileToUpload, LOG_TYPE);
+  @Before
+  public void setUp() {
+    uploadScheduler = new UploadScheduler(1, 3, 0);
+  }
+
+  @Test
+  public void shouldUploadToS3ToRightBucket() throws IOException {
+    File fileToUpload = createFile(FILE_NAME, 100);
+    InMemoryS3Uploader s3Uploader = new InMemoryS3Uploader(new S3OutputConfiguration(setupS3Configs()), true);
+
+    String resolvedPath = uploadAndWait(s3Uploader, fileToUpload);
 
     assertEquals("test_path/hdfs_namenode/hdfs_namenode.log.123343493473948.gz", resolvedPath);
+    assertEquals(TEST_BUCKET, s3Uploader.bucketName);
+    assertEquals(resolvedPath, s3Uploader.s3Key);
   }
 
   @Test
-  public void shouldCleanupLocalFilesOnSuccessfulUpload() {
-    File fileToUpload = mock(File.class);
-    String fileName = "hdfs_namenode.log.123343493473948";
-    expect(fileToUpload.getName()).andReturn(fileName);
-    final File compressedFile = mock(File.class);
-    Map<String, Object> configs = setupS3Configs();
+  public void shouldCleanupLocalFilesOnSuccessfulUpload() throws IOException {
+    File fileToUpload = createFile(FILE_NAME, 100);
+    InMemoryS3Uploader s3Uploader = new InMemoryS3Uploader(new S3OutputConfiguration(setupS3Configs()), true);
 
-    S3OutputConfiguration s3OutputConfiguration = new S3OutputConfiguration(configs);
-    expect(compressedFile.delete()).andReturn(true);
-    expect(fileToUpload.delete()).andReturn(true);
-    replay(fileToUpload, compressedFile);
+    uploadAndWait(s3Uploader, fileToUpload);
 
-    S3Uploader s3Uploader = new S3Uploader(s3OutputConfiguration, true, LOG_TYPE) {
-      @Override
-      protected File createCompressedFileForUpload(File fileToUpload, String compressionAlgo) {
-        return compressedFile;
-      }
-      protected void uploadFileToS3(String bucketName, String s3Key, File localFile, String accessKey, String secretKey) {
-      }
-    };
-    s3Uploader.uploadFile(fileToUpload, LOG_TYPE);
+    assertFalse(fileToUpload.exists());
+  }
 
-    verify(fileToUpload);
-    verify(compressedFile);
+  @Test
+  public void shouldNotCleanupUncompressedFileIfNotRequired() throws IOException {
+    File fileToUpload = createFile(FILE_NAME, 100);
+    InMemoryS3Uploader s3Uploader = new InMemoryS3Uploader(new S3OutputConfiguration(setupS3Configs()), false);
+
+    uploadAndWait(s3Uploader, fileToUpload);
+
+    assertTrue(fileToUpload.exists());
   }
 
   @Test
-  public void shouldNotCleanupUncompressedFileIfNotRequired() {
-    File fileToUpload = mock(File.class);
-    String fileName = "hdfs_namenode.log.123343493473948";
-    expect(fileToUpload.getName()).andReturn(fileName);
-    final File compressedFile = mock(File.class);
+  public void shouldExpandVariablesInPath() throws IOException {
+    File fileToUpload = createFile(FILE_NAME, 100);
     Map<String, Object> configs = setupS3Configs();
+    configs.put(S3OutputConfiguration.S3_LOG_DIR_KEY, "$cluster/"+TEST_PATH);
+    InMemoryS3Uploader s3Uploader = new InMemoryS3Uploader(new S3OutputConfiguration(configs), true);
 
-    S3OutputConfiguration s3OutputConfiguration = new S3OutputConfiguration(configs);
-    expect(compressedFile.delete()).andReturn(true);
-    replay(fileToUpload, compressedFile);
+    String resolvedPath = uploadAndWait(s3Uploader, fileToUpload);
 
-    S3Uploader s3Uploader = new S3Uploader(s3OutputConfiguration, false, LOG_TYPE) {
-      @Override
-      protected File createCompressedFileForUpload(File fileToUpload, String compressionAlgo) {
-        return compressedFile;
-      }
-      protected void uploadFileToS3(String bucketName, String s3Key, File localFile, String accessKey, String secretKey) {
-      }
-    };
-    s3Uploader.uploadFile(fileToUpload, LOG_TYPE);
+    assertEquals("cl1/test_path/hdfs_namenode/hdfs_namenode.log.123343493473948.gz", resolvedPath);
+  }
+
+  @Test
+  public void shouldUploadSmallFileInOneRequest() throws IOException {
+    File fileToUpload = createFile(FILE_NAME, 100);
+    InMemoryS3Uploader s3Uploader = new InMemoryS3Uploader(new S3OutputConfiguration(setupS3Configs()), false);
+
+    uploadAndWait(s3Uploader, fileToUpload);
 
-    verify(fileToUpload);
-    verify(compressedFile);
+    assertEquals(0, s3Uploader.parts.size());
+    assertArrayEquals(FileUtils.readFileToByteArray(fileToUpload), gunzip(s3Uploader.uploaded));
   }
 
   @Test
-  public void shouldExpandVariablesInPath() {
-    File fileToUpload = mock(File.class);
-    String fileName = "hdfs_namenode.log.123343493473948";
-    expect(fileToUpload.getName()).andReturn(fileName);
-    final File compressedFile = mock(File.class);
+  public void shouldUploadLargeFileInParts() throws IOException {
+    File fileToUpload = createFile(FILE_NAME, 20000);
     Map<String, Object> configs = setupS3Configs();
-    configs.put(S3OutputConfiguration.S3_LOG_DIR_KEY, "$cluster/"+TEST_PATH);
+    configs.put(S3OutputConfiguration.MULTIPART_SIZE_BYTES_KEY, 16 * 1024L);
+    InMemoryS3Uploader s3Uploader = new InMemoryS3Uploader(new S3OutputConfiguration(configs), false);
 
+    uploadAndWait(s3Uploader, fileToUpload);
 
-    S3OutputConfiguration s3OutputConfiguration = new S3OutputConfiguration(configs);
-    expect(compressedFile.delete()).andReturn(true);
-    expect(fileToUpload.delete()).andReturn(true);
-    replay(fileToUpload, compressedFile);
+    assertTrue(s3Uploader.parts.size() > 1);
+    assertArrayEquals(FileUtils.readFileToByteArray(fileToUpload), gunzip(s3Uploader.uploaded));
+  }
 
-    S3Uploader s3Uploader = new S3Uploader(s3OutputConfiguration, true, LOG_TYPE) {
+  @Test
+  public void shouldResumeMultipartUploadAfterFailedPart() throws IOException {
+    File fileToUpload = createFile(FILE_NAME, 20000);
+    Map<String, Object> configs = setupS3Configs();
+    configs.put(S3OutputConfiguration.MULTIPART_SIZE_BYTES_KEY, 16 * 1024L);
+    InMemoryS3Uploader s3Uploader = new InMemoryS3Uploader(new S3OutputConfiguration(configs), true);
+    s3Uploader.failAtPart = 3;
+
+    uploadAndWait(s3Uploader, fileToUpload);
+
+    assertEquals(1, s3Uploader.initiatedUploads);
+    assertEquals(s3Uploader.parts.size() + 1, s3Uploader.partRequests);
+    assertFalse(fileToUpload.exists());
+  }
+
+  @Test
+  public void shouldNotWaitForTheUpload() throws Exception {
+    File fileToUpload = createFile(FILE_NAME, 100);
+    final CountDownLatch release = new CountDownLatch(1);
+    InMemoryS3Uploader s3Uploader = new InMemoryS3Uploader(new S3OutputConfiguration(setupS3Configs()), false) {
       @Override
-      protected File createCompressedFileForUpload(File fileToUpload, String compressionAlgo) {
-        return compressedFile;
-      }
-      protected void uploadFileToS3(String bucketName, String s3Key, File localFile, String accessKey, String secretKey) {
+      protected void putObject(String bucketName, String s3Key, byte[] data, int length) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.putObject(bucketName, s3Key, data, length);
       }
     };
-    s3Uploader.uploadFile(fileToUpload, LOG_TYPE);
+    final CountDownLatch uploaded = new CountDownLatch(1);
+
+    String resolvedPath = s3Uploader.uploadFile(fileToUpload, LOG_TYPE, new S3Uploader.UploadListener() {
+      @Override
+      public void uploaded(File uploadedFile, String s3Path) {
+        uploaded.countDown();
+      }
+    });
+
+    assertEquals("test_path/hdfs_namenode/hdfs_namenode.log.123343493473948.gz", resolvedPath);
+    assertEquals(1, uploadScheduler.getPendingCount());
+    release.countDown();
+    assertTrue(uploaded.await(10, TimeUnit.SECONDS));
+    assertEquals(resolvedPath, s3Uploader.s3Key);
+  }
+
+  private String uploadAndWait(S3Uploader s3Uploader, File fileToUpload) throws IOException {
+    final CountDownLatch uploaded = new CountDownLatch(1);
+    String resolvedPath = s3Uploader.uploadFile(fileToUpload, LOG_TYPE, new S3Uploader.UploadListener() {
+      @Override
+      public void uploaded(File uploadedFile, String s3Path) {
+        uploaded.countDown();
+      }
+    });
+    try {
+      assertTrue("upload of " + fileToUpload + " did not finish", uploaded.await(10, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+    return resolvedPath;
+  }
+
+  private File createFile(String name, int lines) throws IOException {
+    File file = temporaryFolder.newFile(name);
+    Random random = new Random(lines);
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      content.append("2016-07-13 10:45:49,640 INFO  namenode.FSNamesystem line ").append(i).append(' ')
+          .append(Long.toHexString(random.nextLong())).append('\n');
+    }
+    FileUtils.writeStringToFile(file, content.toString());
+    return file;
+  }
+
+  private byte[] gunzip(byte[] data) throws IOException {
+    GzipCompressorInputStream in = new GzipCompressorInputStream(new ByteArrayInputStream(data), true);
+    try {
+      return IOUtils.toByteArray(in);
+    } finally {
+      in.close();
+    }
   }
 
   private Map<String, Object> setupS3Configs() {
@@ -153,4 +228,59 @@ public class S3UploaderTest {
     configs.put(S3OutputConfiguration.ADDITIONAL_FIELDS_KEY, nameValueMap);
     return configs;
   }
+
+  private class InMemoryS3Uploader extends S3Uploader {
+    private String bucketName;
+    private String s3Key;
+    private byte[] uploaded;
+    private final List<byte[]> parts = new ArrayList<>();
+    private int initiatedUploads;
+    private int partRequests;
+    private int failAtPart = -1;
+
+    InMemoryS3Uploader(S3OutputConfiguration s3OutputConfiguration, boolean deleteOnEnd) {
+      super(s3OutputConfiguration, deleteOnEnd, LOG_TYPE, uploadScheduler);
+    }
+
+    @Override
+    protected void putObject(String bucketName, String s3Key, byte[] data, int length) {
+      this.bucketName = bucketName;
+      this.s3Key = s3Key;
+      this.uploaded = Arrays.copyOf(data, length);
+    }
+
+    @Override
+    protected String initiateMultipartUpload(String bucketName, String s3Key) {
+      initiatedUploads++;
+      return "upload-" + initiatedUploads;
+    }
+
+    @Override
+    protected PartETag uploadPart(String bucketName, String s3Key, String uploadId, int partNumber, byte[] data, int length) {
+      partRequests++;
+      if (partRequests == failAtPart) {
+        throw new RuntimeException("injected failure of part " + partNumber);
+      }
+      assertEquals(parts.size() + 1, partNumber);
+      parts.add(Arrays.copyOf(data, length));
+      return new PartETag(partNumber, "etag-" + partNumber);
+    }
+
+    @Override
+    protected void completeMultipartUpload(String bucketName, String s3Key, String uploadId, List<PartETag> partETags) {
+      assertEquals(parts.size(), partETags.size());
+      this.bucketName = bucketName;
+      this.s3Key = s3Key;
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      for (byte[] part : parts) {
+        out.write(part, 0, part.length);
+      }
+      uploaded = out.toByteArray();
+    }
+
+    @Override
+    protected void abortMultipartUpload(String bucketName, String s3Key, String uploadId) {
+      parts.clear();
+    }
+  }
 }
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logfeeder.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LogfeederHDFSUtilTest {
+
+  private static final String CONTENT = "line1\nline2\nline3\n";
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  private File localFile;
+  private String destFilePath;
+
+  @Before
+  public void setUp() throws Exception {
+    localFile = testFolder.newFile("service.log");
+    FileUtils.writeStringToFile(localFile, CONTENT, StandardCharsets.UTF_8);
+    destFilePath = new File(testFolder.newFolder("hdfs"), "service.log").getAbsolutePath();
+  }
+
+  @Test
+  public void testResumableCopyFromLocal_freshCopy() throws Exception {
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+
+    LogfeederHDFSUtil.resumableCopyFromLocal(localFile, destFilePath, fileSystem, true);
+
+    assertEquals(CONTENT, readDestination());
+    assertFalse(fileSystem.exists(new Path(destFilePath + "._COPYING_")));
+    assertFalse(localFile.exists());
+  }
+
+  @Test
+  public void testResumableCopyFromLocal_appendsToPartialCopy() throws Exception {
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration()).getRawFileSystem();
+    // the partial copy is kept and only the rest of the file is appended to it
+    writePartialCopy(fileSystem, "LINE1\n");
+
+    LogfeederHDFSUtil.resumableCopyFromLocal(localFile, destFilePath, fileSystem, false);
+
+    assertEquals("LINE1\nline2\nline3\n", readDestination());
+    assertFalse(fileSystem.exists(new Path(destFilePath + "._COPYING_")));
+    assertTrue(localFile.exists());
+  }
+
+  @Test
+  public void testResumableCopyFromLocal_startsOverWithoutAppend() throws Exception {
+    // the checksummed local file system doesn't support append
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    writePartialCopy(fileSystem, "LINE1\n");
+
+    LogfeederHDFSUtil.resumableCopyFromLocal(localFile, destFilePath, fileSystem, false);
+
+    assertEquals(CONTENT, readDestination());
+    assertFalse(fileSystem.exists(new Path(destFilePath + "._COPYING_")));
+  }
+
+  @Test
+  public void testResumableCopyFromLocal_startsOverIfPartialCopyIsLonger() throws Exception {
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration()).getRawFileSystem();
+    writePartialCopy(fileSystem, CONTENT + "line4\n");
+
+    LogfeederHDFSUtil.resumableCopyFromLocal(localFile, destFilePath, fileSystem, false);
+
+    assertEquals(CONTENT, readDestination());
+  }
+
+  private void writePartialCopy(FileSystem fileSystem, String content) throws Exception {
+    try (FSDataOutputStream out = fileSystem.create(new Path(destFilePath + "._COPYING_"), true)) {
+      out.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private String readDestination() throws Exception {
+    return FileUtils.readFileToString(new File(destFilePath), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logsearch.conf;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FacetCachePropsConfig {
+
+  @Value("${logsearch.facet.cache.enabled:true}")
+  private boolean enabled;
+
+  @Value("${logsearch.facet.cache.max.entries:1000}")
+  private Integer maxEntries;
+
+  @Value("${logsearch.facet.cache.bucket.seconds:60}")
+  private Integer bucketSeconds;
+
+  @Value("${logsearch.facet.cache.closed.expire.minutes:60}")
+  private Integer closedExpireMinutes;
+
+  @Value("${logsearch.facet.cache.closed.delay.seconds:60}")
+  private Integer closedDelaySeconds;
+
+  @Value("${logsearch.facet.cache.stats.log.interval:1000}")
+  private Integer statsLogInterval;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public Integer getMaxEntries() {
+    return maxEntries;
+  }
+
+  public void setMaxEntries(Integer maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  public Integer getBucketSeconds() {
+    return bucketSeconds;
+  }
+
+  public void setBucketSeconds(Integer bucketSeconds) {
+    this.bucketSeconds = bucketSeconds;
+  }
+
+  public Integer getClosedExpireMinutes() {
+    return closedExpireMinutes;
+  }
+
+  public void setClosedExpireMinutes(Integer closedExpireMinutes) {
+    this.closedExpireMinutes = closedExpireMinutes;
+  }
+
+  public Integer getClosedDelaySeconds() {
+    return closedDelaySeconds;
+  }
+
+  public void setClosedDelaySeconds(Integer closedDelaySeconds) {
+    this.closedDelaySeconds = closedDelaySeconds;
+  }
+
+  public Integer getStatsLogInterval() {
+    return statsLogInterval;
+  }
+
+  public void setStatsLogInterval(Integer statsLogInterval) {
+    this.statsLogInterval = statsLogInterval;
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logsearch.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.xml.bind.DatatypeConverter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.ambari.logsearch.conf.FacetCachePropsConfig;
+import org.apache.ambari.logsearch.model.request.DateRangeParamDefinition;
+import org.apache.ambari.logsearch.model.response.BarGraphData;
+import org.apache.ambari.logsearch.model.response.BarGraphDataListResponse;
+import org.apache.ambari.logsearch.model.response.NameValueData;
+import org.apache.ambari.logsearch.util.DateUtil;
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.apache.solr.client.solrj.SolrQuery;
+
+/**
+ * Result cache for the facet and graph queries behind the dashboard widgets.
+ * <p>
+ * Results are keyed by the canonical form of the converted Solr query. Time ranges which end before the last closed time
+ * bucket never change, so their results are kept for a long time. Time ranges reaching into the open bucket are aligned
+ * to bucket boundaries in the key and expire with the bucket, so refreshes within a bucket are served from the cache.
+ * <p>
+ * Histograms are additive per range facet bucket: the closed buckets of a histogram are kept separately and only the
+ * open tail of the requested range is queried from Solr.
+ */
+@Named
+public class FacetQueryCache {
+  private static final Logger logger = Logger.getLogger(FacetQueryCache.class);
+
+  private static final Pattern GAP_PATTERN = Pattern.compile("^\\+?(\\d+)(MILLISECOND|MILLI|SECOND|MINUTE|HOUR|DAY)S?$");
+
+  @Inject
+  private FacetCachePropsConfig facetCachePropsConfig;
+
+  private Cache<String, Object> openResults;
+  private Cache<String, Object> closedResults;
+  private Cache<String, HistogramBuckets> histogramBuckets;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong tailQueries = new AtomicLong();
+  private final AtomicLong reusedBuckets = new AtomicLong();
+
+  public interface Loader<T> {
+    T load();
+  }
+
+  public interface HistogramLoader {
+    BarGraphDataListResponse load(SolrQuery solrQuery);
+  }
+
+  @PostConstruct
+  public void init() {
+    openResults = CacheBuilder.newBuilder()
+      .maximumSize(facetCachePropsConfig.getMaxEntries())
+      .expireAfterWrite(facetCachePropsConfig.getBucketSeconds(), TimeUnit.SECONDS)
+      .build();
+    closedResults = CacheBuilder.newBuilder()
+      .maximumSize(facetCachePropsConfig.getMaxEntries())
+      .expireAfterAccess(facetCachePropsConfig.getClosedExpireMinutes(), TimeUnit.MINUTES)
+      .build();
+    histogramBuckets = CacheBuilder.newBuilder()
+      .maximumSize(facetCachePropsConfig.getMaxEntries())
+      .expireAfterAccess(facetCachePropsConfig.getClosedExpireMinutes(), TimeUnit.MINUTES)
+      .build();
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> T get(String widget, SolrQuery solrQuery, DateRangeParamDefinition request, Loader<T> loader) {
+    if (!facetCachePropsConfig.isEnabled()) {
+      return loader.load();
+    }
+    long now = System.currentTimeMillis();
+    Long to = parseDate(request.getTo());
+    boolean closed = to != null && to < getClosedUntil(now);
+    String key = widget + "|" + (closed ? createKey(solrQuery) : createAlignedKey(solrQuery, request));
+    Cache<String, Object> results = closed ? closedResults : openResults;
+    Object result = results.getIfPresent(key);
+    if (result != null) {
+      recordHit();
+      return (T) result;
+    }
+    recordMiss();
+    T loaded = loader.load();
+    if (loaded != null) {
+      results.put(key, loaded);
+    }
+    return loaded;
+  }
+
+  /**
+   * Returns the histogram for a date range facet query, reusing the closed buckets of earlier queries with the same
+   * filters and gap. Falls back to a plain query if the gap has no fixed length (e.g. months).
+   */
+  public BarGraphDataListResponse getHistogram(SolrQuery solrQuery, String dateField, String gap, HistogramLoader loader) {
+    String startParam = String.format(Locale.ROOT, "f.%s.facet.range.start", dateField);
+    String endParam = String.format(Locale.ROOT, "f.%s.facet.range.end", dateField);
+    Long gapMillis = parseGap(gap);
+    Long from = parseDate(solrQuery.get(startParam));
+    Long to = parseDate(solrQuery.get(endParam));
+    if (!facetCachePropsConfig.isEnabled() || gapMillis == null || from == null || to == null) {
+      return loader.load(solrQuery);
+    }
+    long closedUntil = getClosedUntil(System.currentTimeMillis());
+    SolrQuery keyQuery = solrQuery.getCopy();
+    keyQuery.remove(startParam);
+    keyQuery.remove(endParam);
+    String key = createKey(keyQuery);
+
+    HistogramBuckets cached = histogramBuckets.getIfPresent(key);
+    long tailStart = from;
+    if (cached != null && cached.covers(from, gapMillis)) {
+      tailStart = cached.getCoveredUntil();
+    }
+    BarGraphDataListResponse tail;
+    if (tailStart == from) {
+      recordMiss();
+      tail = loader.load(solrQuery);
+    } else if (tailStart >= to) {
+      recordHit();
+      tail = new BarGraphDataListResponse();
+    } else {
+      recordHit();
+      tailQueries.incrementAndGet();
+      SolrQuery tailQuery = solrQuery.getCopy();
+      tailQuery.set(startParam, DateUtil.convertDateWithMillisecondsToSolrDate(new Date(tailStart)));
+      tail = loader.load(tailQuery);
+    }
+
+    HistogramBuckets updated = (tailStart == from ? new HistogramBuckets(from) : cached.copy()).addClosed(tail, gapMillis, Math.min(closedUntil, to));
+    histogramBuckets.put(key, updated);
+    if (tailStart == from) {
+      return tail;
+    }
+    long cachedUntil = Math.min(tailStart, to);
+    reusedBuckets.addAndGet((cachedUntil - from) / gapMillis);
+    return merge(cached, from, cachedUntil, tail);
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public double getHitRate() {
+    long total = hits.get() + misses.get();
+    return total == 0 ? 0.0 : (double) hits.get() / total;
+  }
+
+  private void recordHit() {
+    logStats(hits.incrementAndGet() + misses.get());
+  }
+
+  private void recordMiss() {
+    logStats(hits.get() + misses.incrementAndGet());
+  }
+
+  private void logStats(long lookups) {
+    int interval = facetCachePropsConfig.getStatsLogInterval();
+    if (interval > 0 && lookups % interval == 0) {
+      logger.info(String.format("Facet query cache: lookups=%d, hits=%d, hitRate=%.2f, histogramTailQueries=%d, reusedBuckets=%d",
+        lookups, hits.get(), getHitRate(), tailQueries.get(), reusedBuckets.get()));
+    }
+  }
+
+  private long getClosedUntil(long now) {
+    long bucketMillis = facetCachePropsConfig.getBucketSeconds() * 1000L;
+    long settled = now - facetCachePropsConfig.getClosedDelaySeconds() * 1000L;
+    return settled - settled % bucketMillis;
+  }
+
+  private String createAlignedKey(SolrQuery solrQuery, DateRangeParamDefinition request) {
+    String key = createKey(solrQuery);
+    long bucketMillis = facetCachePropsConfig.getBucketSeconds() * 1000L;
+    key = replaceDate(key, request.getFrom(), bucketMillis);
+    return replaceDate(key, request.getTo(), bucketMillis);
+  }
+
+  private String replaceDate(String key, String date, long bucketMillis) {
+    Long millis = parseDate(date);
+    if (millis == null) {
+      return key;
+    }
+    return key.replace(date, "B" + (millis / bucketMillis));
+  }
+
+  /**
+   * Creates a canonical representation of the query, parameters and multi-valued parameters (e.g. filter queries) are
+   * sorted so the same filters given in a different order share the entry.
+   */
+  static String createKey(SolrQuery solrQuery) {
+    List<String> names = new ArrayList<>(solrQuery.getParameterNames());
+    Collections.sort(names);
+    StringBuilder key = new StringBuilder();
+    for (String name : names) {
+      String[] values = solrQuery.getParams(name);
+      if (values == null) {
+        continue;
+      }
+      String[] sortedValues = Arrays.copyOf(values, values.length);
+      Arrays.sort(sortedValues);
+      key.append(name).append('=').append(StringUtils.join(sortedValues, ',')).append('&');
+    }
+    return key.toString();
+  }
+
+  static Long parseGap(String gap) {
+    if (StringUtils.isBlank(gap)) {
+      return null;
+    }
+    Matcher matcher = GAP_PATTERN.matcher(gap.trim().toUpperCase(Locale.ROOT));
+    if (!matcher.matches()) {
+      return null;
+    }
+    long amount = Long.parseLong(matcher.group(1));
+    String unit = matcher.group(2);
+    if ("DAY".equals(unit)) {
+      return TimeUnit.DAYS.toMillis(amount);
+    } else if ("HOUR".equals(unit)) {
+      return TimeUnit.HOURS.toMillis(amount);
+    } else if ("MINUTE".equals(unit)) {
+      return TimeUnit.MINUTES.toMillis(amount);
+    } else if ("SECOND".equals(unit)) {
+      return TimeUnit.SECONDS.toMillis(amount);
+    }
+    return amount;
+  }
+
+  static Long parseDate(String date) {
+    if (StringUtils.isBlank(date)) {
+      return null;
+    }
+    try {
+      return DatatypeConverter.parseDateTime(date).getTimeInMillis();
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private BarGraphDataListResponse merge(HistogramBuckets cached, long from, long cachedUntil, BarGraphDataListResponse tail) {
+    // levels keep the order of the response they were first seen in, like a response which is not served from the cache
+    Map<String, List<NameValueData>> merged = new LinkedHashMap<>();
+    for (Map.Entry<String, TreeMap<Long, NameValueData>> entry : cached.getBuckets().entrySet()) {
+      merged.put(entry.getKey(), new ArrayList<>(entry.getValue().subMap(from, cachedUntil).values()));
+    }
+    Set<String> tailLevels = new HashSet<>();
+    for (BarGraphData barGraphData : tail.getGraphData()) {
+      tailLevels.add(barGraphData.getName());
+      List<NameValueData> values = merged.get(barGraphData.getName());
+      if (values == null) {
+        values = new ArrayList<>();
+        merged.put(barGraphData.getName(), values);
+      }
+      values.addAll(barGraphData.getDataCount());
+    }
+    BarGraphDataListResponse response = new BarGraphDataListResponse();
+    for (Map.Entry<String, List<NameValueData>> entry : merged.entrySet()) {
+      if (entry.getValue().isEmpty() && !tailLevels.contains(entry.getKey())) {
+        continue;
+      }
+      BarGraphData barGraphData = new BarGraphData();
+      barGraphData.setName(entry.getKey());
+      barGraphData.setDataCount(entry.getValue());
+      response.getGraphData().add(barGraphData);
+    }
+    return response;
+  }
+
+  /**
+   * Closed buckets of a histogram: every bucket in [coveredFrom, coveredUntil) is known, missing ones had no logs.
+   */
+  private static class HistogramBuckets {
+    private final long coveredFrom;
+    private long coveredUntil;
+    private final Map<String, TreeMap<Long, NameValueData>> buckets = new LinkedHashMap<>();
+
+    HistogramBuckets(long coveredFrom) {
+      this.coveredFrom = coveredFrom;
+      this.coveredUntil = coveredFrom;
+    }
+
+    boolean covers(long from, long gapMillis) {
+      return from >= coveredFrom && from < coveredUntil && (from - coveredFrom) % gapMillis == 0;
+    }
+
+    long getCoveredUntil() {
+      return coveredUntil;
+    }
+
+    Map<String, TreeMap<Long, NameValueData>> getBuckets() {
+      return buckets;
+    }
+
+    HistogramBuckets copy() {
+      HistogramBuckets copy = new HistogramBuckets(coveredFrom);
+      copy.coveredUntil = coveredUntil;
+      for (Map.Entry<String, TreeMap<Long, NameValueData>> entry : buckets.entrySet()) {
+        copy.buckets.put(entry.getKey(), new TreeMap<>(entry.getValue()));
+      }
+      return copy;
+    }
+
+    /**
+     * Adds the buckets of a response which starts at the currently covered end, and moves the covered end to the
+     * first bucket which is not closed yet or was not part of the response.
+     */
+    HistogramBuckets addClosed(BarGraphDataListResponse response, long gapMillis, long limit) {
+      long newCoveredUntil = coveredUntil;
+      while (newCoveredUntil + gapMillis <= limit) {
+        newCoveredUntil += gapMillis;
+      }
+      for (BarGraphData barGraphData : response.getGraphData()) {
+        TreeMap<Long, NameValueData> levelBuckets = buckets.get(barGraphData.getName());
+        if (levelBuckets == null) {
+          levelBuckets = new TreeMap<>();
+          buckets.put(barGraphData.getName(), levelBuckets);
+        }
+        for (NameValueData nameValue : barGraphData.getDataCount()) {
+          Long bucketStart = parseDate(nameValue.getName());
+          if (bucketStart != null && bucketStart >= coveredUntil && bucketStart < newCoveredUntil) {
+            levelBuckets.put(bucketStart, nameValue);
+          }
+        }
+      }
+      coveredUntil = newCoveredUntil;
+      return this;
+    }
+  }
+}
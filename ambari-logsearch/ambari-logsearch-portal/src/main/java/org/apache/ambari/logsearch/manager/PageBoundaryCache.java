@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logsearch.manager;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.ambari.logsearch.common.LogSearchContext;
+import org.apache.ambari.logsearch.model.response.ServiceLogData;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.log4j.Logger;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+/**
+ * Remembers the first and last (logtime, seq_num) pair of every service log page served to a session, so keyword
+ * navigation can start searching right after the current page without asking Solr where that page ends.
+ * Entries are keyed by session, by the query string without paging and by the page number.
+ */
+@Named
+public class PageBoundaryCache {
+  private static final Logger logger = Logger.getLogger(PageBoundaryCache.class);
+
+  private static final int MAX_ENTRIES = 10000;
+  private static final int EXPIRE_MINUTES = 30;
+
+  private final Cache<String, PageBoundary> boundaries = CacheBuilder.newBuilder()
+    .maximumSize(MAX_ENTRIES)
+    .expireAfterAccess(EXPIRE_MINUTES, TimeUnit.MINUTES)
+    .build();
+
+  public void put(String querySignature, int page, List<? extends ServiceLogData> logList) {
+    if (CollectionUtils.isEmpty(logList)) {
+      return;
+    }
+    ServiceLogData first = logList.get(0);
+    ServiceLogData last = logList.get(logList.size() - 1);
+    if (first.getLogTime() == null || first.getSeqNum() == null || last.getLogTime() == null || last.getSeqNum() == null) {
+      return;
+    }
+    boundaries.put(createKey(querySignature, page), new PageBoundary(first.getLogTime(), first.getSeqNum(), last.getLogTime(), last.getSeqNum()));
+  }
+
+  public PageBoundary get(String querySignature, int page) {
+    PageBoundary boundary = boundaries.getIfPresent(createKey(querySignature, page));
+    if (logger.isDebugEnabled()) {
+      logger.debug(String.format("Page boundary cache %s for page %d", boundary == null ? "miss" : "hit", page));
+    }
+    return boundary;
+  }
+
+  private String createKey(String querySignature, int page) {
+    return getSessionKey() + "|" + page + "|" + querySignature;
+  }
+
+  private String getSessionKey() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication != null && authentication.getDetails() instanceof WebAuthenticationDetails) {
+      String sessionId = ((WebAuthenticationDetails) authentication.getDetails()).getSessionId();
+      if (sessionId != null) {
+        return sessionId;
+      }
+    }
+    return String.valueOf(LogSearchContext.getCurrentUsername());
+  }
+
+  public static class PageBoundary {
+    private final Date firstLogTime;
+    private final long firstSeqNum;
+    private final Date lastLogTime;
+    private final long lastSeqNum;
+
+    public PageBoundary(Date firstLogTime, long firstSeqNum, Date lastLogTime, long lastSeqNum) {
+      this.firstLogTime = firstLogTime;
+      this.firstSeqNum = firstSeqNum;
+      this.lastLogTime = lastLogTime;
+      this.lastSeqNum = lastSeqNum;
+    }
+
+    public Date getFirstLogTime() {
+      return firstLogTime;
+    }
+
+    public long getFirstSeqNum() {
+      return firstSeqNum;
+    }
+
+    public Date getLastLogTime() {
+      return lastLogTime;
+    }
+
+    public long getLastSeqNum() {
+      return lastSeqNum;
+    }
+  }
+}
@@ -85,7 +85,6 @@ import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.FacetField.Count;
 import org.apache.solr.client.solrj.response.QueryResponse;
-import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
 import org.springframework.core.convert.ConversionService;
@@ -120,6 +119,10 @@ public class ServiceLogsManager extends ManagerBase<SolrServiceLogData, ServiceL
   private Configuration freemarkerConfiguration;
   @Inject
   private SolrSchemaFieldDao solrSchemaFieldDao;
+  @Inject
+  private PageBoundaryCache pageBoundaryCache;
+  @Inject
+  private FacetQueryCache facetQueryCache;
 
   public ServiceLogResponse searchLogs(ServiceLogRequest request) {
     String event = "/service/logs";
@@ -140,7 +143,9 @@ public class ServiceLogsManager extends ManagerBase<SolrServiceLogData, ServiceL
       }
       return logResponse;
     } else {
-      return getLogAsPaginationProvided(solrQuery, serviceLogsSolrDao, event);
+      ServiceLogResponse logResponse = getLogAsPaginationProvided(solrQuery, serviceLogsSolrDao, event);
+      cachePageBoundaries(createQuerySignature(request), logResponse);
+      return logResponse;
     }
   }
 
@@ -154,12 +159,17 @@ public class ServiceLogsManager extends ManagerBase<SolrServiceLogData, ServiceL
 
   public GraphDataListResponse getAggregatedInfo(ServiceLogAggregatedInfoRequest request) {
     SimpleQuery solrDataQuery = new BaseServiceLogRequestQueryConverter().convert(request);
-    SolrQuery solrQuery = new DefaultQueryParser().doConstructSolrQuery(solrDataQuery);
-    String hierarchy = String.format("%s,%s,%s", HOST, COMPONENT, LEVEL);
+    final SolrQuery solrQuery = new DefaultQueryParser().doConstructSolrQuery(solrDataQuery);
+    final String hierarchy = String.format("%s,%s,%s", HOST, COMPONENT, LEVEL);
     solrQuery.setQuery("*:*");
     SolrUtil.setFacetPivot(solrQuery, 1, hierarchy);
-    QueryResponse response = serviceLogsSolrDao.process(solrQuery);
-    return responseDataGenerator.generateSimpleGraphResponse(response, hierarchy);
+    return facetQueryCache.get("aggregated", solrQuery, request, new FacetQueryCache.Loader<GraphDataListResponse>() {
+      @Override
+      public GraphDataListResponse load() {
+        QueryResponse response = serviceLogsSolrDao.process(solrQuery);
+        return responseDataGenerator.generateSimpleGraphResponse(response, hierarchy);
+      }
+    });
   }
 
   public CountDataListResponse getFieldCount(String field) {
@@ -209,15 +219,27 @@ public class ServiceLogsManager extends ManagerBase<SolrServiceLogData, ServiceL
   }
 
   public NameValueDataListResponse getLogsLevelCount(ServiceLogLevelCountRequest request) {
-    SimpleFacetQuery facetQuery = conversionService.convert(request, SimpleFacetQuery.class);
-    QueryResponse response = serviceLogsSolrDao.process(facetQuery, "/service/logs/levels/counts");
-    return responseDataGenerator.getNameValueDataListResponseWithDefaults(response, LogSearchConstants.SUPPORTED_LOG_LEVELS, false);
+    final SimpleFacetQuery facetQuery = conversionService.convert(request, SimpleFacetQuery.class);
+    SolrQuery solrQuery = new DefaultQueryParser().doConstructSolrQuery(facetQuery);
+    return facetQueryCache.get("levels/counts", solrQuery, request, new FacetQueryCache.Loader<NameValueDataListResponse>() {
+      @Override
+      public NameValueDataListResponse load() {
+        QueryResponse response = serviceLogsSolrDao.process(facetQuery, "/service/logs/levels/counts");
+        return responseDataGenerator.getNameValueDataListResponseWithDefaults(response, LogSearchConstants.SUPPORTED_LOG_LEVELS, false);
+      }
+    });
   }
 
   public BarGraphDataListResponse getHistogramData(ServiceGraphRequest request) {
     SolrQuery solrQuery = conversionService.convert(request, SolrQuery.class);
-    QueryResponse response = serviceLogsSolrDao.process(solrQuery, "/service/logs/histogram");
-    return responseDataGenerator.generateBarGraphDataResponseWithRanges(response, LEVEL, true);
+    String unit = StringUtils.defaultIfEmpty(request.getUnit(), "+1HOUR");
+    return facetQueryCache.getHistogram(solrQuery, LOGTIME, unit, new FacetQueryCache.HistogramLoader() {
+      @Override
+      public BarGraphDataListResponse load(SolrQuery histogramQuery) {
+        QueryResponse response = serviceLogsSolrDao.process(histogramQuery, "/service/logs/histogram");
+        return responseDataGenerator.generateBarGraphDataResponseWithRanges(response, LEVEL, true);
+      }
+    });
   }
 
   public LogListResponse getPageByKeyword(ServiceLogRequest request, String event)
@@ -233,77 +255,59 @@ public class ServiceLogsManager extends ManagerBase<SolrServiceLogData, ServiceL
   }
 
   private LogListResponse getPageForKeywordByType(ServiceLogRequest request, String keyword, boolean isNext, String event) {
-    String fromDate = request.getFrom(); // store start & end dates
-    String toDate = request.getTo();
     boolean timeAscending = LogSearchConstants.ASCENDING_ORDER.equals(request.getSortType());
-
     int currentPageNumber = Integer.parseInt(request.getPage());
     int maxRows = Integer.parseInt(request.getPageSize());
-    Date logDate = getDocDateFromNextOrLastPage(request, keyword, isNext, currentPageNumber, maxRows);
-    if (logDate == null) {
-      throw RESTErrorUtil.createRESTException("The keyword " + "\"" + keyword + "\"" + " was not found", MessageEnums.ERROR_SYSTEM);
+    if (!isNext && currentPageNumber == 0) {
+      throw RESTErrorUtil.createRESTException("This is the first Page", MessageEnums.DATA_NOT_FOUND);
     }
 
-    String nextOrPreviousPageDate = DateUtil.convertDateWithMillisecondsToSolrDate(logDate);
-    SolrServiceLogData firstKeywordLog = getNextHitForKeyword(request, keyword, isNext, event, timeAscending, nextOrPreviousPageDate);
-
-    long keywordSeqNum = firstKeywordLog.getSeqNum();
-    String keywordLogtime = DateUtil.convertDateWithMillisecondsToSolrDate(firstKeywordLog.getLogTime());
+    // the anchor is the last log of the current page (next) or the first one (previous), the search starts right after it
+    String querySignature = createQuerySignature(request);
+    Date anchorLogTime;
+    long anchorSeqNum;
+    PageBoundaryCache.PageBoundary boundary = pageBoundaryCache.get(querySignature, currentPageNumber);
+    if (boundary != null) {
+      anchorLogTime = isNext ? boundary.getLastLogTime() : boundary.getFirstLogTime();
+      anchorSeqNum = isNext ? boundary.getLastSeqNum() : boundary.getFirstSeqNum();
+    } else {
+      SolrServiceLogData anchorLog = getAnchorLogOfCurrentPage(request, keyword, isNext, currentPageNumber, maxRows);
+      anchorLogTime = anchorLog.getLogTime();
+      anchorSeqNum = anchorLog.getSeqNum();
+    }
 
-    long numberOfDateDuplicates = countNumberOfDuplicates(request, isNext, keywordSeqNum, keywordLogtime);
+    SolrServiceLogData keywordLog = getNextHitForKeyword(request, keyword, isNext, event, timeAscending, anchorLogTime, anchorSeqNum);
 
-    long numberOfLogsUntilFound = getNumberOfLogsUntilFound(request, fromDate, toDate, timeAscending, keywordLogtime, numberOfDateDuplicates);
-    int start = (int) ((numberOfLogsUntilFound / maxRows));
+    long numberOfLogsBeforeFound = getNumberOfLogsBefore(request, timeAscending, keywordLog.getLogTime(), keywordLog.getSeqNum());
+    int start = (int) (numberOfLogsBeforeFound / maxRows);
 
-    request.setFrom(fromDate);
-    request.setTo(toDate);
     request.setPage(String.valueOf(start));
     SolrQuery keywordNextPageQuery = new DefaultQueryParser().doConstructSolrQuery(conversionService.convert(request, SimpleQuery.class));
-    return getLogAsPaginationProvided(keywordNextPageQuery, serviceLogsSolrDao, event);
-  }
-
-  private Long getNumberOfLogsUntilFound(ServiceLogRequest request, String fromDate, String toDate, boolean timeAscending,
-                                         String keywordLogtime, long numberOfDateDuplicates) {
-    if (!timeAscending) {
-      request.setTo(toDate);
-      request.setFrom(keywordLogtime);
-    } else {
-      request.setTo(keywordLogtime);
-      request.setFrom(fromDate);
-    }
-    SimpleQuery rangeQuery = conversionService.convert(request, SimpleQuery.class);
-    return serviceLogsSolrDao.count(rangeQuery) - numberOfDateDuplicates;
+    ServiceLogResponse logResponse = getLogAsPaginationProvided(keywordNextPageQuery, serviceLogsSolrDao, event);
+    cachePageBoundaries(querySignature, logResponse);
+    return logResponse;
   }
 
-  private long countNumberOfDuplicates(ServiceLogRequest request, boolean isNext, long keywordSeqNum, String keywordLogtime) {
-    request.setFrom(keywordLogtime);
-    request.setTo(keywordLogtime);
-    SimpleQuery duplicationsQuery = conversionService.convert(request, SimpleQuery.class);
-    if (isNext) {
-      duplicationsQuery.addFilterQuery(new SimpleFilterQuery(new SimpleStringCriteria(String.format("%s:[* TO %d]", SEQUENCE_ID, keywordSeqNum - 1))));
-    } else {
-      duplicationsQuery.addFilterQuery(new SimpleFilterQuery(new SimpleStringCriteria(String.format("%s:[%d TO *]", SEQUENCE_ID, keywordSeqNum + 1))));
-    }
-    return serviceLogsSolrDao.count(duplicationsQuery);
+  /**
+   * Counts the logs which precede the given log in the display order (logtime in the requested direction, then seq_num descending).
+   */
+  private long getNumberOfLogsBefore(ServiceLogRequest request, boolean timeAscending, Date logTime, long seqNum) {
+    SimpleQuery countQuery = conversionService.convert(request, SimpleQuery.class);
+    countQuery.addFilterQuery(new SimpleFilterQuery(createSortPositionCriteria(logTime, seqNum, timeAscending, false)));
+    return serviceLogsSolrDao.count(countQuery);
   }
 
-  private SolrServiceLogData getNextHitForKeyword(ServiceLogRequest request, String keyword, boolean isNext, String event, boolean timeAscending, String nextOrPreviousPageDate) {
-    if (hasNextOrAscOrder(isNext, timeAscending)) {
-      request.setTo(nextOrPreviousPageDate);
-    } else {
-      request.setFrom(nextOrPreviousPageDate);
-    }
+  private SolrServiceLogData getNextHitForKeyword(ServiceLogRequest request, String keyword, boolean isNext, String event, boolean timeAscending,
+                                                  Date anchorLogTime, long anchorSeqNum) {
     SimpleQuery keywordNextQuery = conversionService.convert(request, SimpleQuery.class);
     keywordNextQuery.addFilterQuery(new SimpleFilterQuery(new Criteria(KEY_LOG_MESSAGE).contains(keyword)));
+    boolean olderLogTime = isNext != timeAscending;
+    keywordNextQuery.addFilterQuery(new SimpleFilterQuery(createSortPositionCriteria(anchorLogTime, anchorSeqNum, olderLogTime, isNext)));
     keywordNextQuery.setRows(1);
     SolrQuery kewordNextSolrQuery = new DefaultQueryParser().doConstructSolrQuery(keywordNextQuery);
     kewordNextSolrQuery.setStart(0);
-    if (hasNextOrAscOrder(isNext, timeAscending)) {
-      kewordNextSolrQuery.setSort(LOGTIME, SolrQuery.ORDER.desc);
-    } else {
-      kewordNextSolrQuery.setSort(LOGTIME, SolrQuery.ORDER.asc);
-    }
-    kewordNextSolrQuery.addSort(SEQUENCE_ID, SolrQuery.ORDER.desc);
+    kewordNextSolrQuery.setSort(LOGTIME, olderLogTime ? SolrQuery.ORDER.desc : SolrQuery.ORDER.asc);
+    kewordNextSolrQuery.addSort(SEQUENCE_ID, isNext ? SolrQuery.ORDER.desc : SolrQuery.ORDER.asc);
     QueryResponse  queryResponse = serviceLogsSolrDao.process(kewordNextSolrQuery, event);
     if (queryResponse == null) {
       throw RESTErrorUtil.createRESTException("The keyword " + "\"" + keyword + "\"" + " was not found", MessageEnums.ERROR_SYSTEM);
@@ -315,38 +319,49 @@ public class ServiceLogsManager extends ManagerBase<SolrServiceLogData, ServiceL
     return solrServiceLogDataList.get(0);
   }
 
-  private Date getDocDateFromNextOrLastPage(ServiceLogRequest request, String keyword, boolean isNext, int currentPageNumber, int maxRows) {
-    int lastOrFirstLogIndex;
-    if (isNext) {
-      lastOrFirstLogIndex = ((currentPageNumber + 1) * maxRows);
-    } else {
-      if (currentPageNumber == 0) {
-        throw RESTErrorUtil.createRESTException("This is the first Page", MessageEnums.DATA_NOT_FOUND);
-      }
-      lastOrFirstLogIndex = (currentPageNumber * maxRows) - 1;
-    }
+  private SolrServiceLogData getAnchorLogOfCurrentPage(ServiceLogRequest request, String keyword, boolean isNext, int currentPageNumber, int maxRows) {
+    int lastOrFirstLogIndex = isNext ? ((currentPageNumber + 1) * maxRows) - 1 : currentPageNumber * maxRows;
     SimpleQuery sq = conversionService.convert(request, SimpleQuery.class);
-    SolrQuery nextPageLogTimeQuery = new DefaultQueryParser().doConstructSolrQuery(sq);
-    nextPageLogTimeQuery.remove("start");
-    nextPageLogTimeQuery.remove("rows");
-    nextPageLogTimeQuery.setStart(lastOrFirstLogIndex);
-    nextPageLogTimeQuery.setRows(1);
+    SolrQuery anchorLogQuery = new DefaultQueryParser().doConstructSolrQuery(sq);
+    anchorLogQuery.remove("start");
+    anchorLogQuery.remove("rows");
+    anchorLogQuery.setStart(lastOrFirstLogIndex);
+    anchorLogQuery.setRows(1);
 
-    QueryResponse queryResponse = serviceLogsSolrDao.process(nextPageLogTimeQuery);
+    QueryResponse queryResponse = serviceLogsSolrDao.process(anchorLogQuery);
     if (queryResponse == null) {
       throw RESTErrorUtil.createRESTException(String.format("Cannot process next page query for \"%s\" ", keyword), MessageEnums.ERROR_SYSTEM);
     }
-    SolrDocumentList docList = queryResponse.getResults();
-    if (docList == null || docList.isEmpty()) {
+    List<SolrServiceLogData> docList = queryResponse.getBeans(SolrServiceLogData.class);
+    if (CollectionUtils.isEmpty(docList)) {
       throw RESTErrorUtil.createRESTException(String.format("Next page element for \"%s\" is not found", keyword), MessageEnums.ERROR_SYSTEM);
     }
+    return docList.get(0);
+  }
 
-    SolrDocument solrDoc = docList.get(0);
-    return (Date) solrDoc.get(LOGTIME);
+  /**
+   * Creates a criteria which matches the logs on one side of the (logtime, seq_num) position, e.g. older logs or logs with
+   * the same logtime and lower sequence number.
+   */
+  static SimpleStringCriteria createSortPositionCriteria(Date logTime, long seqNum, boolean olderLogTime, boolean lowerSeqNum) {
+    String solrDate = DateUtil.convertDateWithMillisecondsToSolrDate(logTime);
+    String logTimeRange = olderLogTime ? String.format("{* TO %s}", solrDate) : String.format("{%s TO *}", solrDate);
+    String seqNumRange = lowerSeqNum ? String.format("{* TO %d}", seqNum) : String.format("{%d TO *}", seqNum);
+    return new SimpleStringCriteria(String.format("(%s:%s OR (%s:[%s TO %s] AND %s:%s))",
+      LOGTIME, logTimeRange, LOGTIME, solrDate, solrDate, SEQUENCE_ID, seqNumRange));
   }
 
-  private boolean hasNextOrAscOrder(boolean isNext, boolean timeAscending) {
-    return isNext && !timeAscending || !isNext && timeAscending;
+  private String createQuerySignature(ServiceLogRequest request) {
+    SolrQuery solrQuery = new DefaultQueryParser().doConstructSolrQuery(conversionService.convert(request, SimpleQuery.class));
+    solrQuery.remove("start");
+    solrQuery.remove("rows");
+    return solrQuery.toString();
+  }
+
+  private void cachePageBoundaries(String querySignature, ServiceLogResponse logResponse) {
+    if (logResponse != null && logResponse.getPageSize() > 0) {
+      pageBoundaryCache.put(querySignature, logResponse.getStartIndex() / logResponse.getPageSize(), logResponse.getLogList());
+    }
   }
 
   public Response export(ServiceLogExportRequest request) {
@@ -413,11 +428,16 @@ public class ServiceLogsManager extends ManagerBase<SolrServiceLogData, ServiceL
   }
 
   public NodeListResponse getComponentListWithLevelCounts(ServiceLogComponentLevelRequest request) {
-    SimpleFacetQuery facetQuery = conversionService.convert(request, SimpleFacetQuery.class);
+    final SimpleFacetQuery facetQuery = conversionService.convert(request, SimpleFacetQuery.class);
     SolrQuery solrQuery = new DefaultQueryParser().doConstructSolrQuery(facetQuery);
     solrQuery.setFacetSort(StringUtils.isEmpty(request.getSortBy()) ? COMPONENT: request.getSortBy());
-    QueryResponse response = serviceLogsSolrDao.process(facetQuery, "/service/logs/components/levels/counts");
-    return responseDataGenerator.generateOneLevelServiceNodeTree(response, String.format("%s,%s", COMPONENT, LEVEL));
+    return facetQueryCache.get("components/levels/counts", solrQuery, request, new FacetQueryCache.Loader<NodeListResponse>() {
+      @Override
+      public NodeListResponse load() {
+        QueryResponse response = serviceLogsSolrDao.process(facetQuery, "/service/logs/components/levels/counts");
+        return responseDataGenerator.generateOneLevelServiceNodeTree(response, String.format("%s,%s", COMPONENT, LEVEL));
+      }
+    });
   }
 
   public String getServiceLogsSchemaFieldsName() {
@@ -425,9 +445,15 @@ public class ServiceLogsManager extends ManagerBase<SolrServiceLogData, ServiceL
   }
 
   public BarGraphDataListResponse getAnyGraphCountData(ServiceAnyGraphRequest request) {
-    SimpleFacetQuery solrDataQuery = conversionService.convert(request, SimpleFacetQuery.class);
-    QueryResponse queryResponse = serviceLogsSolrDao.process(solrDataQuery);
-    return responseDataGenerator.getGraphDataWithDefaults(queryResponse, LEVEL, LogSearchConstants.SUPPORTED_LOG_LEVELS);
+    final SimpleFacetQuery solrDataQuery = conversionService.convert(request, SimpleFacetQuery.class);
+    SolrQuery solrQuery = new DefaultQueryParser().doConstructSolrQuery(solrDataQuery);
+    return facetQueryCache.get("graph", solrQuery, request, new FacetQueryCache.Loader<BarGraphDataListResponse>() {
+      @Override
+      public BarGraphDataListResponse load() {
+        QueryResponse queryResponse = serviceLogsSolrDao.process(solrDataQuery);
+        return responseDataGenerator.getGraphDataWithDefaults(queryResponse, LEVEL, LogSearchConstants.SUPPORTED_LOG_LEVELS);
+      }
+    });
   }
 
   public ServiceLogResponse getAfterBeforeLogs(ServiceLogTruncatedRequest request) {
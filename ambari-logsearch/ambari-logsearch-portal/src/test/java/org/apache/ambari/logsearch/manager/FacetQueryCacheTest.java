@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logsearch.manager;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ambari.logsearch.conf.FacetCachePropsConfig;
+import org.apache.ambari.logsearch.model.request.impl.ServiceLogLevelCountRequest;
+import org.apache.ambari.logsearch.model.response.BarGraphData;
+import org.apache.ambari.logsearch.model.response.BarGraphDataListResponse;
+import org.apache.ambari.logsearch.model.response.NameValueData;
+import org.apache.ambari.logsearch.util.DateUtil;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FacetQueryCacheTest {
+
+  private static final long HOUR = 60 * 60 * 1000L;
+  private static final long START = 1451606400000L; // 2016-01-01T00:00:00.000Z
+
+  private FacetQueryCache underTest;
+  private List<String> loadedStarts;
+
+  @Before
+  public void setUp() throws Exception {
+    FacetCachePropsConfig config = new FacetCachePropsConfig();
+    config.setEnabled(true);
+    config.setMaxEntries(100);
+    config.setBucketSeconds(60);
+    config.setClosedExpireMinutes(60);
+    config.setClosedDelaySeconds(60);
+    config.setStatsLogInterval(0);
+    underTest = new FacetQueryCache();
+    Field configField = FacetQueryCache.class.getDeclaredField("facetCachePropsConfig");
+    configField.setAccessible(true);
+    configField.set(underTest, config);
+    underTest.init();
+    loadedStarts = new ArrayList<>();
+  }
+
+  @Test
+  public void testCreateKeyIgnoresFilterOrder() {
+    SolrQuery first = new SolrQuery("*:*");
+    first.addFilterQuery("level:ERROR", "host:h1");
+    SolrQuery second = new SolrQuery("*:*");
+    second.addFilterQuery("host:h1", "level:ERROR");
+    assertEquals(FacetQueryCache.createKey(first), FacetQueryCache.createKey(second));
+  }
+
+  @Test
+  public void testParseGap() {
+    assertEquals(Long.valueOf(HOUR), FacetQueryCache.parseGap("+1HOUR"));
+    assertEquals(Long.valueOf(5 * 60 * 1000L), FacetQueryCache.parseGap("+5MINUTES"));
+    assertNull(FacetQueryCache.parseGap("+1MONTH"));
+  }
+
+  @Test
+  public void testClosedRangeIsServedFromCache() {
+    ServiceLogLevelCountRequest request = new ServiceLogLevelCountRequest();
+    request.setFrom(date(START));
+    request.setTo(date(START + HOUR));
+    SolrQuery solrQuery = new SolrQuery("*:*");
+    solrQuery.addFilterQuery("logtime:[" + request.getFrom() + " TO " + request.getTo() + "]");
+    final int[] loads = {0};
+    FacetQueryCache.Loader<String> loader = new FacetQueryCache.Loader<String>() {
+      @Override
+      public String load() {
+        loads[0]++;
+        return "result";
+      }
+    };
+    assertEquals("result", underTest.get("levels", solrQuery, request, loader));
+    assertEquals("result", underTest.get("levels", solrQuery, request, loader));
+    assertEquals(1, loads[0]);
+    assertEquals(0.5, underTest.getHitRate(), 0.001);
+  }
+
+  @Test
+  public void testHistogramQueriesOnlyTheTail() {
+    BarGraphDataListResponse first = underTest.getHistogram(histogramQuery(START, START + 5 * HOUR), "logtime", "+1HOUR", loader());
+    assertEquals(5, first.getGraphData().iterator().next().getDataCount().size());
+
+    BarGraphDataListResponse second = underTest.getHistogram(histogramQuery(START, START + 8 * HOUR), "logtime", "+1HOUR", loader());
+    assertEquals(8, second.getGraphData().iterator().next().getDataCount().size());
+    assertEquals(2, loadedStarts.size());
+    assertEquals(date(START + 5 * HOUR), loadedStarts.get(1));
+
+    BarGraphDataListResponse third = underTest.getHistogram(histogramQuery(START + 2 * HOUR, START + 8 * HOUR), "logtime", "+1HOUR", loader());
+    assertEquals(6, third.getGraphData().iterator().next().getDataCount().size());
+    assertEquals(2, loadedStarts.size());
+  }
+
+  @Test
+  public void testHistogramKeepsLevelOrderOfResponse() {
+    List<String> levels = Arrays.asList("WARN", "ERROR", "INFO");
+    BarGraphDataListResponse miss = underTest.getHistogram(histogramQuery(START, START + 5 * HOUR), "logtime", "+1HOUR", loader(levels));
+    assertEquals(levels, levelNames(miss));
+
+    BarGraphDataListResponse hit = underTest.getHistogram(histogramQuery(START, START + 8 * HOUR), "logtime", "+1HOUR", loader(levels));
+    assertEquals(2, loadedStarts.size());
+    assertEquals(levels, levelNames(hit));
+  }
+
+  private List<String> levelNames(BarGraphDataListResponse response) {
+    List<String> names = new ArrayList<>();
+    for (BarGraphData barGraphData : response.getGraphData()) {
+      names.add(barGraphData.getName());
+    }
+    return names;
+  }
+
+  private SolrQuery histogramQuery(long from, long to) {
+    SolrQuery solrQuery = new SolrQuery("*:*");
+    solrQuery.add("f.logtime.facet.range.start", date(from));
+    solrQuery.add("f.logtime.facet.range.end", date(to));
+    solrQuery.add("f.logtime.facet.range.gap", "+1HOUR");
+    return solrQuery;
+  }
+
+  private FacetQueryCache.HistogramLoader loader() {
+    return loader(Arrays.asList("ERROR"));
+  }
+
+  private FacetQueryCache.HistogramLoader loader(final List<String> levels) {
+    return new FacetQueryCache.HistogramLoader() {
+      @Override
+      public BarGraphDataListResponse load(SolrQuery solrQuery) {
+        String start = solrQuery.get("f.logtime.facet.range.start");
+        loadedStarts.add(start);
+        long from = FacetQueryCache.parseDate(start);
+        long to = FacetQueryCache.parseDate(solrQuery.get("f.logtime.facet.range.end"));
+        BarGraphDataListResponse response = new BarGraphDataListResponse();
+        for (String level : levels) {
+          BarGraphData barGraphData = new BarGraphData();
+          barGraphData.setName(level);
+          List<NameValueData> counts = new ArrayList<>();
+          for (long bucket = from; bucket < to; bucket += HOUR) {
+            NameValueData count = new NameValueData();
+            count.setName(date(bucket));
+            count.setValue("1");
+            counts.add(count);
+          }
+          barGraphData.setDataCount(counts);
+          response.getGraphData().add(barGraphData);
+        }
+        return response;
+      }
+    };
+  }
+
+  private static String date(long millis) {
+    return DateUtil.convertDateWithMillisecondsToSolrDate(new Date(millis));
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logsearch.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ambari.logsearch.model.response.ServiceLogData;
+import org.apache.ambari.logsearch.solr.model.SolrServiceLogData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PageBoundaryCacheTest {
+
+  private static final String QUERY = "q=*:*&sort=logtime desc";
+
+  private PageBoundaryCache underTest;
+
+  @Before
+  public void setUp() {
+    underTest = new PageBoundaryCache();
+    login("session1");
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void testPutKeepsFirstAndLastLogOfPage() {
+    underTest.put(QUERY, 2, Arrays.asList(log(3000L, 30L), log(2000L, 20L), log(1000L, 10L)));
+
+    PageBoundaryCache.PageBoundary boundary = underTest.get(QUERY, 2);
+    assertNotNull(boundary);
+    assertEquals(new Date(3000L), boundary.getFirstLogTime());
+    assertEquals(30L, boundary.getFirstSeqNum());
+    assertEquals(new Date(1000L), boundary.getLastLogTime());
+    assertEquals(10L, boundary.getLastSeqNum());
+  }
+
+  @Test
+  public void testEntriesAreKeyedByPageQueryAndSession() {
+    underTest.put(QUERY, 2, Collections.singletonList(log(1000L, 10L)));
+
+    assertNull(underTest.get(QUERY, 3));
+    assertNull(underTest.get(QUERY + "&fq=level:ERROR", 2));
+    login("session2");
+    assertNull(underTest.get(QUERY, 2));
+    login("session1");
+    assertNotNull(underTest.get(QUERY, 2));
+  }
+
+  @Test
+  public void testPageWithoutPositionIsNotCached() {
+    underTest.put(QUERY, 0, new ArrayList<ServiceLogData>());
+    underTest.put(QUERY, 1, Arrays.asList(log(2000L, 20L), log(1000L, null)));
+
+    assertNull(underTest.get(QUERY, 0));
+    assertNull(underTest.get(QUERY, 1));
+  }
+
+  private void login(String sessionId) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setSession(new MockHttpSession(null, sessionId));
+    TestingAuthenticationToken authentication = new TestingAuthenticationToken("user", "password");
+    authentication.setDetails(new WebAuthenticationDetails(request));
+    SecurityContextHolder.getContext().setAuthentication(authentication);
+  }
+
+  private static SolrServiceLogData log(long logTime, Long seqNum) {
+    SolrServiceLogData log = new SolrServiceLogData();
+    log.setLogTime(new Date(logTime));
+    log.setSeqNum(seqNum);
+    return log;
+  }
+}
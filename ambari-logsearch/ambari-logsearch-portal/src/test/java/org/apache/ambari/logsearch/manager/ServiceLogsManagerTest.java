@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logsearch.manager;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ServiceLogsManagerTest {
+
+  private static final Date LOG_TIME = new Date(1451606400000L); // 2016-01-01T00:00:00.000Z
+
+  @Test
+  public void testSortPositionCriteriaForOlderLogs() {
+    assertEquals("(logtime:{* TO 2016-01-01T00:00:00.000Z} OR (logtime:[2016-01-01T00:00:00.000Z TO 2016-01-01T00:00:00.000Z] AND seq_num:{* TO 42}))",
+      ServiceLogsManager.createSortPositionCriteria(LOG_TIME, 42L, true, true).getQueryString());
+  }
+
+  @Test
+  public void testSortPositionCriteriaForNewerLogs() {
+    assertEquals("(logtime:{2016-01-01T00:00:00.000Z TO *} OR (logtime:[2016-01-01T00:00:00.000Z TO 2016-01-01T00:00:00.000Z] AND seq_num:{42 TO *}))",
+      ServiceLogsManager.createSortPositionCriteria(LOG_TIME, 42L, false, false).getQueryString());
+  }
+
+  @Test
+  public void testSortPositionCriteriaForNewerLogsWithLowerSequenceNumber() {
+    assertEquals("(logtime:{2016-01-01T00:00:00.000Z TO *} OR (logtime:[2016-01-01T00:00:00.000Z TO 2016-01-01T00:00:00.000Z] AND seq_num:{* TO 42}))",
+      ServiceLogsManager.createSortPositionCriteria(LOG_TIME, 42L, false, true).getQueryString());
+  }
+}
@@ -37,6 +37,13 @@ public enum ExperimentalFeature {
    */
   ALERT_CACHING,
 
+  /**
+   * Keeping the current state of hosts and host components in memory and
+   * writing it to the database periodically, in order to reduce the load that
+   * agent heartbeats put on the database.
+   */
+  STATE_WRITE_BEHIND,
+
   /**
    * Used for code that is targeted for patch upgrades
    */
@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -45,6 +46,7 @@ import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.CalculatedStatus;
 import org.apache.ambari.server.events.HostRemovedEvent;
 import org.apache.ambari.server.events.RequestFinishedEvent;
+import org.apache.ambari.server.events.RequestsPurgedEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.orm.dao.ClusterDAO;
 import org.apache.ambari.server.orm.dao.ExecutionCommandDAO;
@@ -354,6 +356,10 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
 
     addRequestToAuditlogCache(request);
 
+    // hosts and their log prefixes are looked up once per request rather than once per task
+    Map<Long, HostEntity> hostEntities = new HashMap<Long, HostEntity>();
+    Map<Long, String> hostPrefixes = new HashMap<Long, String>();
+
     for (Stage stage : request.getStages()) {
       StageEntity stageEntity = stage.constructNewPersistenceEntity();
       stageEntities.add(stageEntity);
@@ -362,45 +368,55 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       stageDAO.create(stageEntity);
 
       List<HostRoleCommand> orderedHostRoleCommands = stage.getOrderedHostRoleCommands();
+      List<HostRoleCommandEntity> hostRoleCommandEntities =
+          new ArrayList<HostRoleCommandEntity>(orderedHostRoleCommands.size());
 
       for (HostRoleCommand hostRoleCommand : orderedHostRoleCommands) {
         HostRoleCommandEntity hostRoleCommandEntity = hostRoleCommand.constructNewPersistenceEntity();
         hostRoleCommandEntity.setStage(stageEntity);
-        hostRoleCommandDAO.create(hostRoleCommandEntity);
-
-        assert hostRoleCommandEntity.getTaskId() != null;
-        hostRoleCommand.setTaskId(hostRoleCommandEntity.getTaskId());
 
-        String prefix = "";
-        String output = "output-" + hostRoleCommandEntity.getTaskId() + ".txt";
-        String error = "errors-" + hostRoleCommandEntity.getTaskId() + ".txt";
+        Long hostId = hostRoleCommandEntity.getHostId();
+        if (null != hostId) {
+          HostEntity hostEntity = hostEntities.get(hostId);
+          if (null == hostEntity) {
+            hostEntity = hostDAO.findById(hostId);
+            if (hostEntity == null) {
+              String msg = String.format("Host %s doesn't exist in database", hostRoleCommandEntity.getHostName());
+              LOG.error(msg);
+              throw new AmbariException(msg);
+            }
 
-        HostEntity hostEntity = null;
-        if (null != hostRoleCommandEntity.getHostId()) {
-          hostEntity = hostDAO.findById(hostRoleCommandEntity.getHostId());
-          if (hostEntity == null) {
-            String msg = String.format("Host %s doesn't exist in database", hostRoleCommandEntity.getHostName());
-            LOG.error(msg);
-            throw new AmbariException(msg);
+            hostEntities.put(hostId, hostEntity);
+            hostPrefixes.put(hostId, getLogPrefix(hostEntity));
           }
 
           hostRoleCommandEntity.setHostEntity(hostEntity);
+        }
 
-          try {
-            // Get the in-memory host object and its prefix to construct the output and error log paths.
-            Host hostObject = clusters.getHost(hostEntity.getHostName());
+        hostRoleCommandEntities.add(hostRoleCommandEntity);
+      }
 
-            if (!StringUtils.isBlank(hostObject.getPrefix())) {
-              prefix = hostObject.getPrefix();
-              if (!prefix.endsWith("/")) {
-                prefix = prefix + "/";
-              }
-            }
-          } catch (AmbariException e) {
-            LOG.warn("Exception in getting prefix for host and setting output and error log files.  Using no prefix");
-          }
+      // the task IDs are taken from the range pre-allocated from the sequence table
+      hostRoleCommandDAO.createAll(hostRoleCommandEntities);
+
+      List<ExecutionCommandEntity> executionCommandEntities =
+          new ArrayList<ExecutionCommandEntity>(hostRoleCommandEntities.size());
+
+      for (int i = 0; i < orderedHostRoleCommands.size(); i++) {
+        HostRoleCommand hostRoleCommand = orderedHostRoleCommands.get(i);
+        HostRoleCommandEntity hostRoleCommandEntity = hostRoleCommandEntities.get(i);
+
+        assert hostRoleCommandEntity.getTaskId() != null;
+        hostRoleCommand.setTaskId(hostRoleCommandEntity.getTaskId());
+
+        String prefix = "";
+        if (null != hostRoleCommandEntity.getHostId()) {
+          prefix = hostPrefixes.get(hostRoleCommandEntity.getHostId());
         }
 
+        String output = "output-" + hostRoleCommandEntity.getTaskId() + ".txt";
+        String error = "errors-" + hostRoleCommandEntity.getTaskId() + ".txt";
+
         hostRoleCommand.setOutputLog(prefix + output);
         hostRoleCommand.setErrorLog(prefix + error);
         hostRoleCommandEntity.setOutputLog(hostRoleCommand.getOutputLog());
@@ -412,14 +428,13 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         executionCommandEntity.setTaskId(hostRoleCommandEntity.getTaskId());
         hostRoleCommandEntity.setExecutionCommand(executionCommandEntity);
 
-        executionCommandDAO.create(hostRoleCommandEntity.getExecutionCommand());
-        hostRoleCommandEntity = hostRoleCommandDAO.merge(hostRoleCommandEntity);
-
-        if (null != hostEntity) {
-          hostEntity = hostDAO.merge(hostEntity);
-        }
+        executionCommandEntities.add(executionCommandEntity);
       }
 
+      // the commands are managed already, so changes made to them after they were
+      // persisted are written on commit without merging them one at a time
+      executionCommandDAO.createAll(executionCommandEntities);
+
       for (RoleSuccessCriteriaEntity roleSuccessCriteriaEntity : stageEntity.getRoleSuccessCriterias()) {
         roleSuccessCriteriaDAO.create(roleSuccessCriteriaEntity);
       }
@@ -431,6 +446,34 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     requestDAO.merge(requestEntity);
   }
 
+  /**
+   * Gets the prefix of the output and error log paths of tasks on the given
+   * host, based on the prefix of the in-memory host object.
+   *
+   * @param hostEntity
+   *          the host
+   * @return the prefix, ending with a {@code /}, or an empty string if the
+   *         host has none
+   */
+  private String getLogPrefix(HostEntity hostEntity) {
+    String prefix = "";
+    try {
+      // Get the in-memory host object and its prefix to construct the output and error log paths.
+      Host hostObject = clusters.getHost(hostEntity.getHostName());
+
+      if (!StringUtils.isBlank(hostObject.getPrefix())) {
+        prefix = hostObject.getPrefix();
+        if (!prefix.endsWith("/")) {
+          prefix = prefix + "/";
+        }
+      }
+    } catch (AmbariException e) {
+      LOG.warn("Exception in getting prefix for host and setting output and error log files.  Using no prefix");
+    }
+
+    return prefix;
+  }
+
   @Override
   @Transactional
   public void startRequest(long requestId) {
@@ -821,6 +864,23 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     hostRoleCommandCache.invalidateAll(taskIds);
   }
 
+  /**
+   * Invalidate the cached HostRoleCommands and audit log details of purged requests.
+   * @param event @RequestsPurgedEvent
+   */
+  @Subscribe
+  public void invalidateCommandCacheOnRequestsPurged(RequestsPurgedEvent event) {
+    LOG.debug("Invalidating HRC cache after receiving {}", event);
+    Collection<Long> requestIds = event.getRequestIds();
+    Iterator<HostRoleCommand> iterator = hostRoleCommandCache.asMap().values().iterator();
+    while (iterator.hasNext()) {
+      if (requestIds.contains(iterator.next().getRequestId())) {
+        iterator.remove();
+      }
+    }
+    auditlogRequestCache.invalidateAll(requestIds);
+  }
+
   /**
    * Invalidate cached HostRoleCommands if a host is deleted.
    * @param event @HostRemovedEvent
@@ -52,11 +52,11 @@ import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.events.publishers.JPAEventPublisher;
 import org.apache.ambari.server.metadata.RoleCommandOrder;
 import org.apache.ambari.server.metadata.RoleCommandOrderProvider;
-import org.apache.ambari.server.metadata.RoleCommandPair;
 import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.apache.ambari.server.orm.entities.RequestEntity;
 import org.apache.ambari.server.serveraction.ServerActionExecutor;
+import org.apache.ambari.server.stageplanner.RoleDependencyGraph;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.ConfigHelper;
@@ -69,7 +69,6 @@ import org.apache.ambari.server.state.ServiceComponentHostEvent;
 import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
 import org.apache.ambari.server.state.svccomphost.ServiceComponentHostOpFailedEvent;
 import org.apache.ambari.server.utils.StageUtils;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -182,6 +181,12 @@ class ActionScheduler implements Runnable {
   private Cache<String, Map<String, String>> commandParamsStageCache;
   private Cache<String, Map<String, String>> hostParamsStageCache;
 
+  /**
+   * The role dependencies of {@link CommandExecutionType#DEPENDENCY_ORDERED}
+   * stages, keyed by action id (requestId-stageId).
+   */
+  private Cache<String, RoleDependencyGraph> dependencyGraphCache;
+
   /**
    * Guice-injected Constructor.
    *
@@ -263,6 +268,10 @@ class ActionScheduler implements Runnable {
     hostParamsStageCache = CacheBuilder.newBuilder().
       expireAfterAccess(5, TimeUnit.MINUTES).
       build();
+
+    dependencyGraphCache = CacheBuilder.newBuilder().
+      expireAfterAccess(5, TimeUnit.MINUTES).
+      build();
   }
 
   public void start() {
@@ -703,7 +712,11 @@ class ActionScheduler implements Runnable {
     // Map to track role status
     Map<String, RoleStats> roleStats = initRoleStats(s);
     long now = System.currentTimeMillis();
-    Set<RoleCommandPair> rolesCommandsInProgress = s.getHostRolesInProgress();
+    RoleDependencyGraph dependencyGraph = null;
+    if (CommandExecutionType.DEPENDENCY_ORDERED == s.getCommandExecutionType() &&
+        CommandExecutionType.DEPENDENCY_ORDERED == configuration.getStageExecutionType()) {
+      dependencyGraph = getDependencyGraph(s);
+    }
 
     Cluster cluster = null;
     if (null != s.getClusterName()) {
@@ -843,9 +856,7 @@ class ActionScheduler implements Runnable {
           // in case of DEPENDENCY_ORDERED stage command can be scheduled only if all of it's dependencies are
           // already finished
           if (CommandExecutionType.STAGE == s.getCommandExecutionType() ||
-                (CommandExecutionType.DEPENDENCY_ORDERED == s.getCommandExecutionType() &&
-                  CommandExecutionType.DEPENDENCY_ORDERED == configuration.getStageExecutionType() &&
-                  areCommandDependenciesFinished(c, s, rolesCommandsInProgress))) {
+                (null != dependencyGraph && dependencyGraph.areDependenciesFinished(roleStr))) {
 
             //Need to schedule first time
             commandsToSchedule.add(c);
@@ -862,28 +873,25 @@ class ActionScheduler implements Runnable {
   }
 
   /**
-   * Returns true if all command dependencies are already finished (not IN_PROGRESS states).
-   * @param command
+   * Gets the role dependencies of a {@link CommandExecutionType#DEPENDENCY_ORDERED}
+   * stage, building them the first time the stage is processed, with the
+   * unfinished command counts updated to the current statuses of the stage.
+   *
    * @param stage
-   * @param rolesCommandsInProgress
-   * @return
+   *          the stage
+   * @return the role dependencies of the stage
    */
-  private boolean areCommandDependenciesFinished(ExecutionCommand command, Stage stage, Set<RoleCommandPair>
-    rolesCommandsInProgress) {
-    boolean areCommandDependenciesFinished = true;
-    RoleCommandOrder rco = roleCommandOrderProvider.getRoleCommandOrder(stage.getClusterId());
-    if (rco != null) {
-      Set<RoleCommandPair> roleCommandDependencies = rco.getDependencies().get(new
-        RoleCommandPair(Role.valueOf(command.getRole()), command.getRoleCommand()));
-
-      // check if there are any dependencies IN_PROGRESS
-      if (roleCommandDependencies != null && CollectionUtils.containsAny(rolesCommandsInProgress, roleCommandDependencies)) {
-        areCommandDependenciesFinished = false;
-      }
+  private RoleDependencyGraph getDependencyGraph(Stage stage) {
+    RoleDependencyGraph dependencyGraph = dependencyGraphCache.getIfPresent(stage.getActionId());
+    if (null == dependencyGraph) {
+      RoleCommandOrder rco = roleCommandOrderProvider.getRoleCommandOrder(stage.getClusterId());
+      dependencyGraph = new RoleDependencyGraph(stage, rco);
+      dependencyGraphCache.put(stage.getActionId(), dependencyGraph);
+    } else {
+      dependencyGraph.updateCounts(stage);
     }
 
-    return areCommandDependenciesFinished;
-
+    return dependencyGraph;
   }
 
   /**
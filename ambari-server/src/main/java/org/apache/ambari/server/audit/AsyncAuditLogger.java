@@ -18,41 +18,85 @@
 package org.apache.ambari.server.audit;
 
 
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ambari.server.audit.event.AuditEvent;
 import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.configuration.Configuration.AuditLoggerOverflowPolicy;
+import org.apache.ambari.server.metrics.system.impl.AuditLoggerMetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.google.common.eventbus.AsyncEventBus;
-import com.google.common.eventbus.EventBus;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 
 /**
- * This is a wrapper for an audit log implementation that uses {@link EventBus} to make audit logging asynchronous
+ * This is a wrapper for an audit log implementation that makes audit logging
+ * asynchronous. Events are put into a bounded queue and written by a single
+ * thread, which takes all queued events at once, up to the configured batch
+ * size. When the queue is full, the configured
+ * {@link AuditLoggerOverflowPolicy} decides what happens to an event, so that
+ * a slow audit log does not slow down the threads logging events. The depth
+ * of the queue and the number of logged, dropped, spilled and caller written
+ * events are registered with the {@link AuditLoggerMetricsSource}.
  */
 @Singleton
 class AsyncAuditLogger implements AuditLogger {
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncAuditLogger.class);
+
+  /**
+   * Receives the events which do not fit into the queue with the
+   * {@link AuditLoggerOverflowPolicy#SPILL} policy.
+   */
+  private static final Logger OVERFLOW_LOG = LoggerFactory.getLogger("audit-overflow");
+
   /**
    * Name for guice injection
    */
   final static String InnerLogger = "AsyncAuditLogger";
 
   /**
-   * Event bus that holds audit event objects
+   * How many dropped or caller written events to count between warnings
+   * about them.
    */
-  private EventBus eventBus;
+  private static final long WARNING_INTERVAL = 1000L;
+
+  private static final AtomicInteger nextId = new AtomicInteger(1);
+
+  /**
+   * The audit logger that writes the events
+   */
+  private final AuditLogger auditLogger;
 
   /**
    * Indicates if audit log feature is enabled
    */
   private final boolean isEnabled;
 
+  /**
+   * The events waiting to be written
+   */
+  private BlockingQueue<AuditEvent> queue;
+
+  private int batchSize;
+
+  private AuditLoggerOverflowPolicy overflowPolicy;
+
+  private long overflowTimeout;
+
+  private final Counter loggedEvents = new Counter();
+  private final Counter droppedEvents = new Counter();
+  private final Counter spilledEvents = new Counter();
+  private final Counter callerWrittenEvents = new Counter();
+
   /**
    * Constructor.
    *
@@ -60,19 +104,64 @@ class AsyncAuditLogger implements AuditLogger {
    */
   @Inject
   public AsyncAuditLogger(@Named(InnerLogger) AuditLogger auditLogger, Configuration configuration) {
+    this.auditLogger = auditLogger;
     isEnabled = configuration.isAuditLogEnabled();
     if(isEnabled) {
-      eventBus = new AsyncEventBus("AuditLoggerEventBus", new ThreadPoolExecutor(0, 1, 5L, TimeUnit.MINUTES,
-        new LinkedBlockingQueue<Runnable>(configuration.getAuditLoggerCapacity()), new AuditLogThreadFactory(),
-        new ThreadPoolExecutor.CallerRunsPolicy()));
-      eventBus.register(auditLogger);
+      queue = new ArrayBlockingQueue<AuditEvent>(Math.max(1, configuration.getAuditLoggerCapacity()));
+      batchSize = Math.max(1, configuration.getAuditLoggerBatchSize());
+      overflowPolicy = configuration.getAuditLoggerOverflowPolicy();
+      overflowTimeout = configuration.getAuditLoggerOverflowTimeout();
+
+      AuditLoggerMetricsSource.register("auditlog.queue.size", new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return queue.size();
+        }
+      });
+      AuditLoggerMetricsSource.register("auditlog.events.logged", loggedEvents);
+      AuditLoggerMetricsSource.register("auditlog.events.dropped", droppedEvents);
+      AuditLoggerMetricsSource.register("auditlog.events.spilled", spilledEvents);
+      AuditLoggerMetricsSource.register("auditlog.events.caller.written", callerWrittenEvents);
+
+      Thread thread = new Thread(new AuditLogWriter(), "auditlog-" + nextId.getAndIncrement());
+      thread.setDaemon(true);
+      thread.start();
     }
   }
 
   @Override
   public void log(AuditEvent event) {
-    if(isEnabled) {
-      eventBus.post(event);
+    if(!isEnabled || queue.offer(event)) {
+      return;
+    }
+
+    switch (overflowPolicy) {
+      case BLOCK:
+        try {
+          if (queue.offer(event, overflowTimeout, TimeUnit.MILLISECONDS)) {
+            return;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        // never lose the event, write it in the calling thread as it still does not fit
+        writeInCallingThread(event);
+        break;
+      case SPILL:
+        spilledEvents.inc();
+        OVERFLOW_LOG.info("{}, {}", AuditLoggerDefaultImpl.formatTimestamp(event.getTimestamp()),
+            event.getAuditMessage());
+        break;
+      default:
+        drop();
+        break;
+    }
+  }
+
+  @Override
+  public void log(List<AuditEvent> events) {
+    for (AuditEvent event : events) {
+      log(event);
     }
   }
 
@@ -82,20 +171,87 @@ class AsyncAuditLogger implements AuditLogger {
   }
 
   /**
-   * A custom {@link ThreadFactory} for the threads that logs audit events
+   * @return the number of events waiting to be written
    */
-  private static final class AuditLogThreadFactory implements ThreadFactory {
+  int getQueueSize() {
+    return isEnabled ? queue.size() : 0;
+  }
 
-    private static final AtomicInteger nextId = new AtomicInteger(1);
+  /**
+   * @return the number of events written by the audit logger
+   */
+  long getLoggedEvents() {
+    return loggedEvents.getCount();
+  }
+
+  /**
+   * @return the number of events dropped because the queue was full
+   */
+  long getDroppedEvents() {
+    return droppedEvents.getCount();
+  }
 
-    /**
-     * {@inheritDoc}
-     */
+  /**
+   * @return the number of events written to the overflow log because the
+   *         queue was full
+   */
+  long getSpilledEvents() {
+    return spilledEvents.getCount();
+  }
+
+  /**
+   * @return the number of events written by the threads logging them
+   *         because the queue stayed full for the overflow timeout
+   */
+  long getCallerWrittenEvents() {
+    return callerWrittenEvents.getCount();
+  }
+
+  private void writeInCallingThread(AuditEvent event) {
+    callerWrittenEvents.inc();
+    long written = callerWrittenEvents.getCount();
+    if (written == 1 || written % WARNING_INTERVAL == 0) {
+      LOG.warn("The audit log queue of {} events is full, {} audit events have been written by the threads logging them so far",
+          queue.remainingCapacity() + queue.size(), written);
+    }
+    auditLogger.log(event);
+    loggedEvents.inc();
+  }
+
+  private void drop() {
+    droppedEvents.inc();
+    long dropped = droppedEvents.getCount();
+    if (dropped == 1 || dropped % WARNING_INTERVAL == 0) {
+      LOG.warn("The audit log queue of {} events is full, {} audit events have been dropped so far",
+          queue.remainingCapacity() + queue.size(), dropped);
+    }
+  }
+
+  /**
+   * Writes the queued events, taking as many as are queued up to the batch
+   * size and writing them with a single call to the audit logger.
+   */
+  private final class AuditLogWriter implements Runnable {
     @Override
-    public Thread newThread(Runnable runnable) {
-      Thread thread = new Thread(runnable, "auditlog-" + nextId.getAndIncrement());
-      thread.setDaemon(true);
-      return thread;
+    public void run() {
+      List<AuditEvent> batch = new ArrayList<AuditEvent>(batchSize);
+      while (true) {
+        try {
+          batch.add(queue.take());
+        } catch (InterruptedException e) {
+          LOG.warn("The audit log writer was interrupted, {} audit events are not written", queue.size());
+          return;
+        }
+        queue.drainTo(batch, batchSize - 1);
+
+        try {
+          auditLogger.log(batch);
+          loggedEvents.inc(batch.size());
+        } catch (RuntimeException e) {
+          LOG.error("Unable to write {} audit events", batch.size(), e);
+        }
+        batch.clear();
+      }
     }
   }
 }
@@ -18,6 +18,8 @@
 
 package org.apache.ambari.server.audit;
 
+import java.util.List;
+
 import org.apache.ambari.server.audit.event.AuditEvent;
 
 /**
@@ -31,6 +33,12 @@ public interface AuditLogger {
    */
   void log(final AuditEvent event);
 
+  /**
+   * Logs audit log events, in the order of the list
+   * @param events
+   */
+  void log(final List<AuditEvent> events);
+
   /**
    * Returns if the feature is enabled
    */
@@ -21,13 +21,13 @@ package org.apache.ambari.server.audit;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.ambari.server.audit.event.AuditEvent;
 import org.apache.ambari.server.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -39,12 +39,14 @@ public class AuditLoggerDefaultImpl implements AuditLogger {
 
   private static final Logger LOG = LoggerFactory.getLogger("audit");
 
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
   /**
    * Indicates if audit log feature is enabled
    */
   private final boolean isEnabled;
 
-  private ThreadLocal<DateFormat> dateFormatThreadLocal = new ThreadLocal<DateFormat>(){
+  private static final ThreadLocal<DateFormat> dateFormatThreadLocal = new ThreadLocal<DateFormat>(){
     @Override
     protected DateFormat initialValue() {
       //2016-03-11T10:42:36.376Z
@@ -61,14 +63,45 @@ public class AuditLoggerDefaultImpl implements AuditLogger {
    * {@inheritDoc}
    */
   @Override
-  @Subscribe
   public void log(AuditEvent event) {
     if(!isEnabled) {
       return;
     }
 
-    Date date = new Date(event.getTimestamp());
-    LOG.info("{}, {}", dateFormatThreadLocal.get().format(date), event.getAuditMessage());
+    LOG.info("{}, {}", formatTimestamp(event.getTimestamp()), event.getAuditMessage());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The events are written with a single call to the audit log, one event per line. The layout of the
+   * audit log only appends a line separator to each message, so the result is the same as logging the
+   * events one by one.
+   */
+  @Override
+  public void log(List<AuditEvent> events) {
+    if(!isEnabled || events.isEmpty()) {
+      return;
+    }
+
+    StringBuilder messages = new StringBuilder();
+    for (AuditEvent event : events) {
+      if (messages.length() > 0) {
+        messages.append(LINE_SEPARATOR);
+      }
+      messages.append(formatTimestamp(event.getTimestamp())).append(", ").append(event.getAuditMessage());
+    }
+    LOG.info(messages.toString());
+  }
+
+  /**
+   * Formats the timestamp of an audit event the way it appears in the audit log.
+   *
+   * @param timestamp the timestamp in milliseconds
+   * @return the formatted timestamp
+   */
+  static String formatTimestamp(long timestamp) {
+    return dateFormatThreadLocal.get().format(new Date(timestamp));
   }
 
   @Override
@@ -0,0 +1,305 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Bootstraps the hosts of a request in parallel, running a command for each
+ * host on a bounded pool of threads. The status of each host is kept in memory
+ * and published as soon as it changes, rather than being polled from the
+ * request directory. A host whose bootstrap fails is bootstrapped again up to
+ * the given number of retries.
+ */
+class BSHostScheduler {
+  private static Log LOG = LogFactory.getLog(BSHostScheduler.class);
+
+  /**
+   * The exit code reported for hosts whose command could not be run or did
+   * not finish in time, as for failures of the whole bootstrap.
+   */
+  static final String ERROR_STATUS_CODE = "99";
+
+  /**
+   * How often to check whether the command of a host has finished.
+   */
+  private static final long POLL_INTERVAL = 100L;
+
+  /**
+   * Creates the command bootstrapping a single host.
+   */
+  interface HostCommandFactory {
+    /**
+     * @param host
+     *          the host to bootstrap
+     * @return the command, which is expected to write the {@code .done} and
+     *         {@code .log} files of the host to the request directory
+     */
+    ProcessBuilder create(String host);
+  }
+
+  /**
+   * Receives the status of all hosts whenever the status of one of them
+   * changes.
+   */
+  interface StatusListener {
+    /**
+     * @param hostStatus
+     *          the status of the hosts, in the order of the request
+     */
+    void statusChanged(List<BSHostStatus> hostStatus);
+  }
+
+  private final File requestIdDir;
+  private final List<String> hosts;
+  private final int parallelism;
+  private final int retries;
+  private final long hostTimeout;
+  private final HostCommandFactory commandFactory;
+  private final StatusListener listener;
+  private final BSHostStatusCollector collector;
+
+  /**
+   * [ HostName -> status ] in the order of the request, guarded by itself.
+   */
+  private final Map<String, BSHostStatus> hostStatus = new LinkedHashMap<String, BSHostStatus>();
+
+  /**
+   * @param requestIdDir
+   *          the directory of the request
+   * @param hosts
+   *          the hosts to bootstrap
+   * @param parallelism
+   *          how many hosts to bootstrap at once
+   * @param retries
+   *          how many times to retry the bootstrap of a failed host
+   * @param hostTimeout
+   *          the time in milliseconds after which the command of a host is
+   *          destroyed
+   * @param commandFactory
+   *          creates the command of each host
+   * @param listener
+   *          receives the status of the hosts
+   */
+  BSHostScheduler(File requestIdDir, List<String> hosts, int parallelism, int retries,
+      long hostTimeout, HostCommandFactory commandFactory, StatusListener listener) {
+    this.requestIdDir = requestIdDir;
+    this.hosts = hosts;
+    this.parallelism = parallelism;
+    this.retries = retries;
+    this.hostTimeout = hostTimeout;
+    this.commandFactory = commandFactory;
+    this.listener = listener;
+    collector = new BSHostStatusCollector(requestIdDir, hosts);
+  }
+
+  /**
+   * Bootstraps all hosts and waits for them to finish. If the calling thread is
+   * interrupted, the commands which are still running are destroyed.
+   *
+   * @return the final status of the hosts, in the order of the request
+   * @throws InterruptedException
+   *           if the calling thread is interrupted
+   */
+  List<BSHostStatus> run() throws InterruptedException {
+    synchronized (hostStatus) {
+      for (String host : hosts) {
+        BSHostStatus status = new BSHostStatus();
+        status.setHostName(host);
+        status.setStatus("RUNNING");
+        status.setLog("");
+        hostStatus.put(host, status);
+      }
+      listener.statusChanged(new ArrayList<BSHostStatus>(hostStatus.values()));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(parallelism, hosts.size())),
+        new ThreadFactoryBuilder().setNameFormat("ambari-bootstrap-host-%d").setDaemon(true).build());
+
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>(hosts.size());
+      for (final String host : hosts) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            bootstrap(host);
+          }
+        }));
+      }
+
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          LOG.error("Unable to bootstrap host", e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return getHostStatus();
+  }
+
+  /**
+   * @return a copy of the current status of the hosts
+   */
+  List<BSHostStatus> getHostStatus() {
+    synchronized (hostStatus) {
+      return new ArrayList<BSHostStatus>(hostStatus.values());
+    }
+  }
+
+  /**
+   * Bootstraps a host, retrying failed attempts, and publishes its final
+   * status.
+   */
+  private void bootstrap(String host) {
+    BSHostStatus status = null;
+    for (int attempt = 0; attempt <= retries && !Thread.currentThread().isInterrupted(); attempt++) {
+      if (attempt > 0) {
+        LOG.info("Retrying bootstrap of host " + host + ", attempt " + (attempt + 1) + " of "
+            + (retries + 1) + ", previous status code " + status.getStatusCode());
+      }
+
+      status = runCommand(host);
+      if ("DONE".equals(status.getStatus())) {
+        break;
+      }
+    }
+
+    if (null == status) {
+      status = createFailedStatus(host, "Bootstrap was interrupted");
+    }
+
+    setStatus(status);
+  }
+
+  /**
+   * Runs the command of a host once and reads the status it left in the
+   * request directory.
+   */
+  private BSHostStatus runCommand(String host) {
+    File doneFile = new File(requestIdDir, host + BSHostStatusCollector.doneFileFilter);
+    File logFile = new File(requestIdDir, host + BSHostStatusCollector.logFileFilter);
+    File outputFile = new File(requestIdDir, host + ".out");
+
+    // the files of a previous attempt
+    FileUtils.deleteQuietly(doneFile);
+    FileUtils.deleteQuietly(logFile);
+
+    ProcessBuilder pb = commandFactory.create(host);
+    pb.redirectErrorStream(true);
+    pb.redirectOutput(outputFile);
+
+    Process process;
+    try {
+      process = pb.start();
+    } catch (IOException e) {
+      LOG.warn("Unable to run the bootstrap of host " + host, e);
+      return createFailedStatus(host, "Error while bootstrapping:\n" + e.getMessage());
+    }
+
+    try {
+      if (!waitFor(process, hostTimeout)) {
+        LOG.warn("Bootstrap of host " + host + " timed out. It will be destroyed.");
+        return createFailedStatus(host, "Bootstrap of host " + host + " timed out after "
+            + hostTimeout / 1000 + " seconds.");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return createFailedStatus(host, "Bootstrap was interrupted");
+    } finally {
+      process.destroy();
+    }
+
+    BSHostStatus status = collector.collect(host);
+    if ("RUNNING".equals(status.getStatus())) {
+      // the command finished without reporting the status of the host
+      String output = "";
+      try {
+        output = FileUtils.readFileToString(outputFile);
+      } catch (IOException e) {
+        LOG.info("Error reading output file " + outputFile);
+      }
+
+      status = createFailedStatus(host, output);
+      status.setStatusCode(Integer.toString(process.exitValue()));
+    }
+
+    return status;
+  }
+
+  /**
+   * Waits until the process has terminated or waiting time elapses.
+   *
+   * @return {@code true} if the process has exited
+   */
+  private boolean waitFor(Process process, long timeout) throws InterruptedException {
+    long startTime = System.currentTimeMillis();
+    while (true) {
+      try {
+        process.exitValue();
+        return true;
+      } catch (IllegalThreadStateException ignored) {
+      }
+
+      if (System.currentTimeMillis() - startTime >= timeout) {
+        return false;
+      }
+
+      Thread.sleep(POLL_INTERVAL);
+    }
+  }
+
+  private BSHostStatus createFailedStatus(String host, String log) {
+    BSHostStatus status = new BSHostStatus();
+    status.setHostName(host);
+    status.setStatus("FAILED");
+    status.setStatusCode(ERROR_STATUS_CODE);
+    status.setLog(log);
+    return status;
+  }
+
+  /**
+   * Replaces the status of a host and publishes the status of all hosts.
+   */
+  private void setStatus(BSHostStatus status) {
+    synchronized (hostStatus) {
+      hostStatus.put(status.getHostName(), status);
+      listener.statusChanged(new ArrayList<BSHostStatus>(hostStatus.values()));
+    }
+  }
+}
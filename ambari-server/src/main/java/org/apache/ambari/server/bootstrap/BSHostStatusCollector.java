@@ -58,71 +58,80 @@ class BSHostStatusCollector {
     if (hosts == null) {
       return;
     }
-    File done;
-    File log;
     LOG.info("HostList for polling on " + hosts);
     for (String host : hosts) {
-      /* Read through the files and gather output */
-      BSHostStatus status = new BSHostStatus();
-      status.setHostName(host);
-      done = new File(requestIdDir, host + doneFileFilter);
-      log = new File(requestIdDir, host + logFileFilter);
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Polling bootstrap status for host"
-            + ", requestDir=" + requestIdDir
-            + ", host=" + host
-            + ", doneFileExists=" + done.exists()
-            + ", logFileExists=" + log.exists());
-      }
-      if (!done.exists()) {
-        status.setStatus("RUNNING");
-      } else {
-        status.setStatus("FAILED");
-        try {
-          String statusCode = FileUtils.readFileToString(done).trim();
-          if (statusCode.equals("0")) {
-            status.setStatus("DONE");
-          }
-          
-          updateStatus(status, statusCode);
-        } catch (IOException e) {
-          LOG.info("Error reading done file " + done);
+      hostStatus.add(collect(host));
+    }
+  }
+
+  /**
+   * Reads the status of a single host from the files in the request directory.
+   *
+   * @param host
+   *          the host
+   * @return the status of the host, {@code RUNNING} if the host is not done yet
+   */
+  BSHostStatus collect(String host) {
+    /* Read through the files and gather output */
+    BSHostStatus status = new BSHostStatus();
+    status.setHostName(host);
+    File done = new File(requestIdDir, host + doneFileFilter);
+    File log = new File(requestIdDir, host + logFileFilter);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Polling bootstrap status for host"
+          + ", requestDir=" + requestIdDir
+          + ", host=" + host
+          + ", doneFileExists=" + done.exists()
+          + ", logFileExists=" + log.exists());
+    }
+    if (!done.exists()) {
+      status.setStatus("RUNNING");
+    } else {
+      status.setStatus("FAILED");
+      try {
+        String statusCode = FileUtils.readFileToString(done).trim();
+        if (statusCode.equals("0")) {
+          status.setStatus("DONE");
         }
+        
+        updateStatus(status, statusCode);
+      } catch (IOException e) {
+        LOG.info("Error reading done file " + done);
       }
-      if (!log.exists()) {
-        status.setLog("");
-      } else {
-        String logString = "";
-        BufferedReader reader = null;
-        try {
-          StringBuilder sb = new StringBuilder();
-          reader = new BufferedReader(new FileReader(log));
+    }
+    if (!log.exists()) {
+      status.setLog("");
+    } else {
+      String logString = "";
+      BufferedReader reader = null;
+      try {
+        StringBuilder sb = new StringBuilder();
+        reader = new BufferedReader(new FileReader(log));
 
-          String line = null;
-          while (null != (line = reader.readLine())) {
-            if (line.startsWith("tcgetattr:") || line.startsWith("tput:"))
-              continue;
+        String line = null;
+        while (null != (line = reader.readLine())) {
+          if (line.startsWith("tcgetattr:") || line.startsWith("tput:"))
+            continue;
 
-            if (0 != sb.length() || 0 == line.length())
-              sb.append('\n');
+          if (0 != sb.length() || 0 == line.length())
+            sb.append('\n');
 
-            if (-1 != line.indexOf ("\\n"))
-              sb.append(line.replace("\\n", "\n"));
-            else
-              sb.append(line);
-          }
-          
-          logString = sb.toString();
-        } catch (IOException e) {
-          LOG.info("Error reading log file " + log +
-                  ". Log file may be have not created yet");
-        } finally {
-          Closeables.closeSilently(reader);
+          if (-1 != line.indexOf ("\\n"))
+            sb.append(line.replace("\\n", "\n"));
+          else
+            sb.append(line);
         }
-        status.setLog(logString);
+        
+        logString = sb.toString();
+      } catch (IOException e) {
+        LOG.info("Error reading log file " + log +
+                ". Log file may be have not created yet");
+      } finally {
+        Closeables.closeSilently(reader);
       }
-      hostStatus.add(status);
+      status.setLog(logString);
     }
+    return status;
   }
   
   private void updateStatus(BSHostStatus status, String statusCode) {
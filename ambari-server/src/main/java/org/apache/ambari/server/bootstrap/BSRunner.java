@@ -44,6 +44,7 @@ class BSRunner extends Thread {
 
   private static final String DEFAULT_USER = "root";
   private static final String DEFAULT_SSHPORT = "22";
+  private static final long HOST_BS_TIMEOUT = 300000L; // 5 minutes timeout for a host (average). Same as in bootstrap.py
 
   private  boolean finished = false;
   private SshHostInfo sshHostInfo;
@@ -61,11 +62,13 @@ class BSRunner extends Thread {
   private final String clusterOsFamily;
   private String projectVersion;
   private int serverPort;
+  private int hostParallelism;
+  private int hostRetries;
 
   public BSRunner(BootStrapImpl impl, SshHostInfo sshHostInfo, String bootDir,
       String bsScript, String agentSetupScript, String agentSetupPassword,
       int requestId, long timeout, String hostName, boolean isVerbose, String clusterOsFamily,
-      String projectVersion, int serverPort)
+      String projectVersion, int serverPort, int hostParallelism, int hostRetries)
   {
     this.requestId = requestId;
     this.sshHostInfo = sshHostInfo;
@@ -81,6 +84,8 @@ class BSRunner extends Thread {
     this.projectVersion = projectVersion;
     this.bsImpl = impl;
     this.serverPort = serverPort;
+    this.hostParallelism = hostParallelism;
+    this.hostRetries = hostRetries;
     BootStrapStatus status = new BootStrapStatus();
     status.setLog("RUNNING");
     status.setStatus(BSStat.RUNNING);
@@ -172,7 +177,6 @@ class BSRunner extends Thread {
    */
   private long calculateBSTimeout(int hostCount) {
     final int PARALLEL_BS_COUNT = 20; // bootstrap.py bootstraps 20 hosts in parallel
-    final long HOST_BS_TIMEOUT = 300000L; // 5 minutes timeout for a host (average). Same as in bootstrap.py
 
     return Math.max(HOST_BS_TIMEOUT, HOST_BS_TIMEOUT * hostCount / PARALLEL_BS_COUNT);
   }
@@ -184,14 +188,6 @@ class BSRunner extends Thread {
   @Override
   public void run() {
     String hostString = createHostString(sshHostInfo.getHosts());
-    long bootstrapTimeout = calculateBSTimeout(sshHostInfo.getHosts().size());
-    // Startup a scheduled executor service to look through the logs
-    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    BSStatusCollector statusCollector = new BSStatusCollector();
-    ScheduledFuture<?> handle = scheduler.scheduleWithFixedDelay(statusCollector,
-        0, 10, TimeUnit.SECONDS);
-    LOG.info("Kicking off the scheduler for polling on logs in " +
-    this.requestIdDir);
     String user = sshHostInfo.getUser();
     String userRunAs = sshHostInfo.getUserRunAs();
     if (user == null || user.isEmpty()) {
@@ -203,7 +199,6 @@ class BSRunner extends Thread {
        sshPort = DEFAULT_SSHPORT;
     }
 
-    String command[] = new String[13];
     BSStat stat = BSStat.RUNNING;
     String scriptlog = "";
     try {
@@ -226,147 +221,35 @@ class BSRunner extends Thread {
       }
 
       writeSshKeyFile(sshHostInfo.getSshKey());
-      /* Running command:
-       * script hostlist bsdir user sshkeyfile
-       */
-      command[0] = this.bsScript;
-      command[1] = hostString;
-      command[2] = this.requestIdDir.toString();
-      command[3] = user;
-      command[4] = sshPort;
-      command[5] = this.sshKeyFile.toString();
-      command[6] = this.agentSetupScript.toString();
-      command[7] = this.ambariHostname;
-      command[8] = this.clusterOsFamily;
-      command[9] = this.projectVersion;
-      command[10] = this.serverPort+"";
-      command[11] = userRunAs;
-      command[12] = (this.passwordFile==null) ? "null" : this.passwordFile.toString();
 
       Map<String, String> envVariables = new HashMap<String, String>();
-
       if (System.getProperty("os.name").contains("Windows")) {
-        String command2[] = new String[command.length + 1];
-        command2[0] = "python";
-        System.arraycopy(command, 0, command2, 1, command.length);
-        command = command2;
-
         Map<String, String> envVarsWin = System.getenv();
         if (envVarsWin != null) {
           envVariables.putAll(envVarsWin);  //envVarsWin is non-modifiable
         }
       }
 
-      LOG.info("Host= " + hostString + " bs=" + this.bsScript + " requestDir=" +
-          requestIdDir + " user=" + user + " sshPort=" + sshPort + " keyfile=" + this.sshKeyFile +
-          " passwordFile " + this.passwordFile + " server=" + this.ambariHostname +
-          " version=" + projectVersion + " serverPort=" + this.serverPort + " userRunAs=" + userRunAs +
-          " timeout=" + bootstrapTimeout / 1000);
-
       envVariables.put("AMBARI_PASSPHRASE", agentSetupPassword);
       if (this.verbose)
         envVariables.put("BS_VERBOSE", "\"-vvv\"");
 
-      if (LOG.isDebugEnabled()) {
-        LOG.debug(Arrays.toString(command));
-      }
-
-      String bootStrapOutputFilePath = requestIdDir + File.separator + "bootstrap.out";
-      String bootStrapErrorFilePath = requestIdDir + File.separator + "bootstrap.err";
-
-      ProcessBuilder pb = new ProcessBuilder(command);
-      pb.redirectOutput(new File(bootStrapOutputFilePath));
-      pb.redirectError(new File(bootStrapErrorFilePath));
-      Map<String, String> env = pb.environment();
-      env.putAll(envVariables);
-
-      Process process = pb.start();
-
-      try {
-        String logInfoMessage = "Bootstrap output, log="
-              + bootStrapErrorFilePath + " " + bootStrapOutputFilePath + " at " + this.ambariHostname;
-        LOG.info(logInfoMessage);
-
-        int exitCode = 1;
-        boolean timedOut = false;
-        if (waitForProcessTermination(process, bootstrapTimeout)){
-          exitCode = process.exitValue();
-        } else {
-          LOG.warn("Bootstrap process timed out. It will be destroyed.");
-          process.destroy();
-          timedOut = true;
-        }
-
-        String outMesg = "";
-        String errMesg = "";       
-        try {
-          outMesg = FileUtils.readFileToString(new File(bootStrapOutputFilePath));
-          errMesg = FileUtils.readFileToString(new File(bootStrapErrorFilePath));
-        } catch(IOException io) {
-          LOG.info("Error in reading files ", io);
-        }
-        scriptlog = outMesg + "\n\n" + errMesg;
-        if (timedOut) {
-          scriptlog += "\n\n Bootstrap process timed out. It was destroyed.";
-        }
-        LOG.info("Script log Mesg " + scriptlog);
-        if (exitCode != 0) {
-          stat = BSStat.ERROR;
-          interuptSetupAgent(99, scriptlog);
-        } else {
-          stat = BSStat.SUCCESS;
-        }
-
-        scheduler.schedule(new BSStatusCollector(), 0, TimeUnit.SECONDS);
-        long startTime = System.currentTimeMillis();
-        while (true) {
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("Waiting for hosts status to be updated");
-          }
-          boolean pendingHosts = false;
-          BootStrapStatus tmpStatus = bsImpl.getStatus(requestId);
-          List <BSHostStatus> hostStatusList = tmpStatus.getHostsStatus();
-          if (hostStatusList != null) {
-            for (BSHostStatus status : hostStatusList) {
-              if (status.getStatus().equals("RUNNING")) {
-                pendingHosts = true;
-              }
-            }
-          } else {
-            //Failed to get host status, waiting for hosts status to be updated
-            pendingHosts = true;
-          }
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("Whether hosts status yet to be updated, pending="
-                + pendingHosts);
-          }
-          if (!pendingHosts) {
-            break;
-          }
-          try {
-            Thread.sleep(1000);
-          } catch (InterruptedException e) {
-            // continue
-          }
-          long now = System.currentTimeMillis();
-          if (now >= (startTime+15000)) {
-            LOG.warn("Gave up waiting for hosts status to be updated");
-            break;
-          }
-        }
-      } catch (InterruptedException e) {
-        throw new IOException(e);
-      } finally {
-        handle.cancel(true);
-        /* schedule a last update */
-        scheduler.schedule(new BSStatusCollector(), 0, TimeUnit.SECONDS);
-        scheduler.shutdownNow();
-        try {
-          scheduler.awaitTermination(10, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-          LOG.info("Interruped while waiting for scheduler");
-        }
-        process.destroy();
+      if (hostParallelism > 0) {
+        scriptlog = runHostBootstraps(user, sshPort, userRunAs, envVariables);
+        stat = BSStat.SUCCESS;
+      } else {
+        long bootstrapTimeout = calculateBSTimeout(sshHostInfo.getHosts().size());
+        String[] command = createCommand(hostString, user, sshPort, userRunAs);
+
+        LOG.info("Host= " + hostString + " bs=" + this.bsScript + " requestDir=" +
+            requestIdDir + " user=" + user + " sshPort=" + sshPort + " keyfile=" + this.sshKeyFile +
+            " passwordFile " + this.passwordFile + " server=" + this.ambariHostname +
+            " version=" + projectVersion + " serverPort=" + this.serverPort + " userRunAs=" + userRunAs +
+            " timeout=" + bootstrapTimeout / 1000);
+
+        StringBuilder log = new StringBuilder();
+        stat = runBootstrapScript(command, envVariables, bootstrapTimeout, log);
+        scriptlog = log.toString();
       }
     } catch(IOException io) {
       LOG.info("Error executing bootstrap " + io.getMessage());
@@ -416,6 +299,233 @@ class BSRunner extends Thread {
     }
   }
 
+  /**
+   * Creates the command running the bootstrap script for the given hosts.
+   *
+   * @param hostString
+   *          the comma separated hosts to bootstrap
+   * @return the command
+   */
+  private String[] createCommand(String hostString, String user, String sshPort, String userRunAs) {
+    /* Running command:
+     * script hostlist bsdir user sshkeyfile
+     */
+    String command[] = new String[13];
+    command[0] = this.bsScript;
+    command[1] = hostString;
+    command[2] = this.requestIdDir.toString();
+    command[3] = user;
+    command[4] = sshPort;
+    command[5] = this.sshKeyFile.toString();
+    command[6] = this.agentSetupScript.toString();
+    command[7] = this.ambariHostname;
+    command[8] = this.clusterOsFamily;
+    command[9] = this.projectVersion;
+    command[10] = this.serverPort+"";
+    command[11] = userRunAs;
+    command[12] = (this.passwordFile==null) ? "null" : this.passwordFile.toString();
+
+    if (System.getProperty("os.name").contains("Windows")) {
+      String command2[] = new String[command.length + 1];
+      command2[0] = "python";
+      System.arraycopy(command, 0, command2, 1, command.length);
+      command = command2;
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(Arrays.toString(command));
+    }
+
+    return command;
+  }
+
+  /**
+   * Runs the bootstrap script once for all hosts, polling the status of the
+   * hosts from the files the script writes to the request directory.
+   *
+   * @param command
+   *          the command running the script
+   * @param envVariables
+   *          the environment of the script
+   * @param bootstrapTimeout
+   *          the time to wait for the script in milliseconds
+   * @param scriptlog
+   *          the output of the script is appended to it
+   * @return the status of the bootstrap
+   */
+  private BSStat runBootstrapScript(String[] command, Map<String, String> envVariables,
+      long bootstrapTimeout, StringBuilder scriptlog) throws IOException {
+    BSStat stat;
+
+    // Startup a scheduled executor service to look through the logs
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    BSStatusCollector statusCollector = new BSStatusCollector();
+    ScheduledFuture<?> handle = scheduler.scheduleWithFixedDelay(statusCollector,
+        0, 10, TimeUnit.SECONDS);
+    LOG.info("Kicking off the scheduler for polling on logs in " +
+    this.requestIdDir);
+
+    String bootStrapOutputFilePath = requestIdDir + File.separator + "bootstrap.out";
+    String bootStrapErrorFilePath = requestIdDir + File.separator + "bootstrap.err";
+
+    ProcessBuilder pb = new ProcessBuilder(command);
+    pb.redirectOutput(new File(bootStrapOutputFilePath));
+    pb.redirectError(new File(bootStrapErrorFilePath));
+    Map<String, String> env = pb.environment();
+    env.putAll(envVariables);
+
+    Process process;
+    try {
+      process = pb.start();
+    } catch (IOException e) {
+      handle.cancel(true);
+      scheduler.shutdownNow();
+      throw e;
+    }
+
+    try {
+      String logInfoMessage = "Bootstrap output, log="
+            + bootStrapErrorFilePath + " " + bootStrapOutputFilePath + " at " + this.ambariHostname;
+      LOG.info(logInfoMessage);
+
+      int exitCode = 1;
+      boolean timedOut = false;
+      if (waitForProcessTermination(process, bootstrapTimeout)){
+        exitCode = process.exitValue();
+      } else {
+        LOG.warn("Bootstrap process timed out. It will be destroyed.");
+        process.destroy();
+        timedOut = true;
+      }
+
+      String outMesg = "";
+      String errMesg = "";       
+      try {
+        outMesg = FileUtils.readFileToString(new File(bootStrapOutputFilePath));
+        errMesg = FileUtils.readFileToString(new File(bootStrapErrorFilePath));
+      } catch(IOException io) {
+        LOG.info("Error in reading files ", io);
+      }
+      scriptlog.append(outMesg).append("\n\n").append(errMesg);
+      if (timedOut) {
+        scriptlog.append("\n\n Bootstrap process timed out. It was destroyed.");
+      }
+      LOG.info("Script log Mesg " + scriptlog);
+      if (exitCode != 0) {
+        stat = BSStat.ERROR;
+        interuptSetupAgent(99, scriptlog.toString());
+      } else {
+        stat = BSStat.SUCCESS;
+      }
+
+      scheduler.schedule(new BSStatusCollector(), 0, TimeUnit.SECONDS);
+      long startTime = System.currentTimeMillis();
+      while (true) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Waiting for hosts status to be updated");
+        }
+        boolean pendingHosts = false;
+        BootStrapStatus tmpStatus = bsImpl.getStatus(requestId);
+        List <BSHostStatus> hostStatusList = tmpStatus.getHostsStatus();
+        if (hostStatusList != null) {
+          for (BSHostStatus status : hostStatusList) {
+            if (status.getStatus().equals("RUNNING")) {
+              pendingHosts = true;
+            }
+          }
+        } else {
+          //Failed to get host status, waiting for hosts status to be updated
+          pendingHosts = true;
+        }
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Whether hosts status yet to be updated, pending="
+              + pendingHosts);
+        }
+        if (!pendingHosts) {
+          break;
+        }
+        try {
+          Thread.sleep(1000);
+        } catch (InterruptedException e) {
+          // continue
+        }
+        long now = System.currentTimeMillis();
+        if (now >= (startTime+15000)) {
+          LOG.warn("Gave up waiting for hosts status to be updated");
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    } finally {
+      handle.cancel(true);
+      /* schedule a last update */
+      scheduler.schedule(new BSStatusCollector(), 0, TimeUnit.SECONDS);
+      scheduler.shutdownNow();
+      try {
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        LOG.info("Interruped while waiting for scheduler");
+      }
+      process.destroy();
+    }
+
+    return stat;
+  }
+
+  /**
+   * Bootstraps each host with its own run of the bootstrap script, running up
+   * to {@link #hostParallelism} of them at once. The status of the hosts is
+   * updated as soon as a host finishes rather than by polling the request
+   * directory.
+   *
+   * @param envVariables
+   *          the environment of the script
+   * @return a summary of the bootstrap
+   */
+  private String runHostBootstraps(final String user, final String sshPort, final String userRunAs,
+      final Map<String, String> envVariables) throws IOException {
+    LOG.info("Bootstrapping " + sshHostInfo.getHosts().size() + " hosts, " + hostParallelism
+        + " at once with up to " + hostRetries + " retries each, bs=" + this.bsScript
+        + " requestDir=" + requestIdDir + " user=" + user + " sshPort=" + sshPort
+        + " server=" + this.ambariHostname + " version=" + projectVersion
+        + " serverPort=" + this.serverPort + " userRunAs=" + userRunAs);
+
+    BSHostScheduler scheduler = new BSHostScheduler(requestIdDir, sshHostInfo.getHosts(),
+        hostParallelism, hostRetries, HOST_BS_TIMEOUT,
+        new BSHostScheduler.HostCommandFactory() {
+          @Override
+          public ProcessBuilder create(String host) {
+            ProcessBuilder pb = new ProcessBuilder(createCommand(host, user, sshPort, userRunAs));
+            pb.environment().putAll(envVariables);
+            return pb;
+          }
+        },
+        new BSHostScheduler.StatusListener() {
+          @Override
+          public void statusChanged(List<BSHostStatus> hostStatus) {
+            BootStrapStatus status = new BootStrapStatus();
+            status.setHostsStatus(hostStatus);
+            status.setLog("");
+            status.setStatus(BSStat.RUNNING);
+            bsImpl.updateStatus(requestId, status);
+          }
+        });
+
+    try {
+      List<BSHostStatus> hostStatus = scheduler.run();
+      int failed = 0;
+      for (BSHostStatus status : hostStatus) {
+        if ("FAILED".equals(status.getStatus())) {
+          failed++;
+        }
+      }
+      return "Bootstrapped " + (hostStatus.size() - failed) + " of " + hostStatus.size() + " hosts";
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+
   public synchronized void interuptSetupAgent(int exitCode, String errMesg){
     PrintWriter setupAgentDoneWriter = null;
     PrintWriter setupAgentLogWriter  = null;
@@ -53,6 +53,8 @@ public class BootStrapImpl {
   private final String clusterOsFamily;
   private String projectVersion;
   private int serverPort;
+  private final int hostParallelism;
+  private final int hostRetries;
 
   @Inject
   public BootStrapImpl(Configuration conf, AmbariMetaInfo ambariMetaInfo) throws IOException {
@@ -68,6 +70,8 @@ public class BootStrapImpl {
     this.projectVersion = ambariMetaInfo.getServerVersion();
     this.projectVersion = (this.projectVersion.equals(DEV_VERSION)) ? DEV_VERSION.replace("$", "") : this.projectVersion;
     this.serverPort = (conf.getApiSSLAuthentication())? conf.getClientSSLApiPort() : conf.getClientApiPort();
+    this.hostParallelism = conf.getBootStrapHostParallelism();
+    this.hostRetries = conf.getBootStrapHostRetries();
   }
 
   /**
@@ -127,7 +131,8 @@ public class BootStrapImpl {
     } else {
       bsRunner = new BSRunner(this, info, bootStrapDir.toString(),
           bootScript, bootSetupAgentScript, bootSetupAgentPassword, requestId, 0L,
-          this.masterHostname, info.isVerbose(), this.clusterOsFamily, this.projectVersion, this.serverPort);
+          this.masterHostname, info.isVerbose(), this.clusterOsFamily, this.projectVersion, this.serverPort,
+          this.hostParallelism, this.hostRetries);
       bsRunner.start();
       response.setStatus(BSRunStat.OK);
       response.setLog("Running Bootstrap now.");
@@ -379,6 +379,27 @@ public class Configuration {
   public static final ConfigurationProperty<String> BOOTSTRAP_SETUP_AGENT_PASSWORD = new ConfigurationProperty<>(
       "bootstrap.setup_agent.password", "password");
 
+  /**
+   * The number of hosts which are bootstrapped at once, each with its own run
+   * of the bootstrap script. When {@code 0}, all hosts of a request are passed
+   * to a single run of the script.
+   */
+  @Markdown(description = "The number of hosts which are bootstrapped at once, each with its own run of the bootstrap script. "
+      + "The status of each host is available as soon as its bootstrap finishes. When `0`, all hosts of a request are passed "
+      + "to a single run of the bootstrap script, which bootstraps up to 20 hosts at once.")
+  public static final ConfigurationProperty<Integer> BOOTSTRAP_HOST_PARALLELISM = new ConfigurationProperty<>(
+      "bootstrap.host.parallelism", 0);
+
+  /**
+   * The number of times the bootstrap of a host is retried after it fails.
+   */
+  @Markdown(
+      relatedTo = "bootstrap.host.parallelism",
+      description = "The number of times the bootstrap of a host is retried after it fails. "
+          + "Only used when `bootstrap.host.parallelism` is greater than `0`.")
+  public static final ConfigurationProperty<Integer> BOOTSTRAP_HOST_RETRIES = new ConfigurationProperty<>(
+      "bootstrap.host.retries", 0);
+
   /**
    * The host name of the Ambari Server which will be used by the Ambari Agents
    * for communication.
@@ -1152,6 +1173,14 @@ public class Configuration {
       "authentication.ldap.sync.groupMemberFilter",
       LDAP_SYNC_MEMBER_FILTER_DEFAULT);
 
+  /**
+   * Determines whether a sync of all LDAP groups skips refreshing the members of the groups that
+   * were not modified since the previous sync.
+   */
+  @Markdown(description = "Determines whether synchronizing all LDAP groups only refreshes the members of the groups whose `modifyTimestamp` is not older than the newest one seen by the previous synchronization. Groups having other groups as members are always refreshed. The first synchronization after Ambari Server starts, or after the LDAP settings change, refreshes all groups.")
+  public static final ConfigurationProperty<Boolean> LDAP_SYNC_INCREMENTAL_ENABLED = new ConfigurationProperty<>(
+      "authentication.ldap.sync.incremental.enabled", Boolean.FALSE);
+
 
   /**
    * Enable the profiling of internal locks.
@@ -1423,6 +1452,26 @@ public class Configuration {
   @Markdown(description = "The time to wait (in seconds) between failed kerberos operations retries.")
   public static final ConfigurationProperty<Integer> KERBEROS_OPERATION_RETRY_TIMEOUT = new ConfigurationProperty<>(
       "kerberos.operation.retry.timeout", 10);
+
+  @Markdown(description = "Determines whether MIT KDC operations are sent to long running interactive kadmin sessions "
+      + "instead of starting a kadmin process for every operation.")
+  public static final ConfigurationProperty<Boolean> KERBEROS_OPERATION_KADMIN_SESSION_ENABLED = new ConfigurationProperty<>(
+      "kerberos.operation.kadmin.session.enabled", Boolean.FALSE);
+
+  @Markdown(description = "The maximum number of interactive kadmin sessions kept open by an MIT KDC operation handler.")
+  public static final ConfigurationProperty<Integer> KERBEROS_OPERATION_KADMIN_SESSIONS = new ConfigurationProperty<>(
+      "kerberos.operation.kadmin.sessions", 1);
+
+  @Markdown(description = "The time to wait (in seconds) for an interactive kadmin session to answer a request before "
+      + "the session is abandoned and the request is executed by a new kadmin process.")
+  public static final ConfigurationProperty<Integer> KERBEROS_OPERATION_KADMIN_SESSION_TIMEOUT = new ConfigurationProperty<>(
+      "kerberos.operation.kadmin.session.timeout", 60);
+
+  @Markdown(description = "The maximum number of Kerberos identities processed at the same time against the KDC when "
+      + "creating principals, creating keytab files or destroying principals. Each concurrent operation uses its own "
+      + "connection to the KDC.")
+  public static final ConfigurationProperty<Integer> KERBEROS_OPERATION_CONCURRENCY = new ConfigurationProperty<>(
+      "kerberos.operation.concurrency", 4);
   /**
    * The type of connection pool to use with JDBC connections to the database.
    */
@@ -2261,6 +2310,69 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> ALERTS_CACHE_SIZE = new ConfigurationProperty<>(
       "alerts.cache.size", 50000);
 
+  /**
+   * If {@code true} then the current state of hosts and host components
+   * reported by the agents is kept in memory and written to the database
+   * periodically.
+   */
+  @Markdown(description = "Determines whether the current state of hosts and host components, as reported by the Ambari Agents, is kept in memory and periodically written to the database rather than on every change. "
+      + "Enabling this can increase heartbeat throughput on large clusters, but changes of the current state which were not yet written are lost if Ambari Server stops unexpectedly. Desired state is always written immediately.")
+  public static final ConfigurationProperty<Boolean> STATE_WRITE_BEHIND_ENABLED = new ConfigurationProperty<>(
+      "server.state.writebehind.enabled", Boolean.FALSE);
+
+  /**
+   * The interval, in seconds, at which in-memory host and host component state
+   * is written to the database.
+   */
+  @Markdown(
+      relatedTo = "server.state.writebehind.enabled",
+      description = "The time, in seconds, after which changes of the current state of hosts and host components are written to the database.")
+  public static final ConfigurationProperty<Integer> STATE_WRITE_BEHIND_FLUSH_INTERVAL = new ConfigurationProperty<>(
+      "server.state.writebehind.flush.interval", 10);
+
+  /**
+   * The number of days after which finished requests are purged while Ambari
+   * Server runs, or {@code 0} to keep them.
+   */
+  @Markdown(description = "The number of days after which finished requests, along with their stages, tasks, execution commands and topology requests, are purged from the database while Ambari Server runs. "
+      + "Requests of upgrades and of cluster provisioning are kept. A value of `0` disables the purge.")
+  public static final ConfigurationProperty<Integer> CLEANUP_REQUESTS_RETENTION_DAYS = new ConfigurationProperty<>(
+      "server.cleanup.requests.retention.days", 0);
+
+  /**
+   * Determines whether {@code ambari-server db-cleanup} also purges finished
+   * requests.
+   */
+  @Markdown(description = "Determines whether `ambari-server db-cleanup` also purges the finished requests, along with their stages, tasks, execution commands and topology requests, which are older than the date it is given. "
+      + "Requests of upgrades and of cluster provisioning are kept.")
+  public static final ConfigurationProperty<Boolean> CLEANUP_REQUESTS_DB_CLEANUP_ENABLED = new ConfigurationProperty<>(
+      "server.cleanup.requests.db-cleanup.enabled", Boolean.FALSE);
+
+  /**
+   * The interval, in hours, at which finished requests are purged.
+   */
+  @Markdown(
+      relatedTo = "server.cleanup.requests.retention.days",
+      description = "The time, in hours, between purges of finished requests while Ambari Server runs.")
+  public static final ConfigurationProperty<Integer> CLEANUP_REQUESTS_INTERVAL = new ConfigurationProperty<>(
+      "server.cleanup.requests.interval", 24);
+
+  /**
+   * The number of requests purged per transaction.
+   */
+  @Markdown(description = "The number of requests, along with their stages, tasks, execution commands and topology requests, which are purged from the database in a single transaction.")
+  public static final ConfigurationProperty<Integer> CLEANUP_REQUESTS_BATCH_SIZE = new ConfigurationProperty<>(
+      "server.cleanup.requests.batch.size", 100);
+
+  /**
+   * The pause, in milliseconds, between the transactions of a purge.
+   */
+  @Markdown(
+      relatedTo = "server.cleanup.requests.batch.size",
+      description = "The time, in milliseconds, to pause between the transactions purging requests, so that a purge does not keep the database busy.")
+  public static final ConfigurationProperty<Long> CLEANUP_REQUESTS_BATCH_PAUSE = new ConfigurationProperty<>(
+      "server.cleanup.requests.batch.pause", 100L);
+
   /**
    * When using SSL, this will be used to set the {@code Strict-Transport-Security} response header.
    */
@@ -2418,6 +2530,40 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> AUDIT_LOGGER_CAPACITY = new ConfigurationProperty<>(
       "auditlog.logger.capacity", 10000);
 
+  /**
+   * The maximum number of audit events written by the audit logger thread at
+   * once.
+   */
+  @Markdown(
+      relatedTo = "auditlog.logger.capacity",
+      description = "The maximum number of queued audit events which are written to the audit log at once.")
+  public static final ConfigurationProperty<Integer> AUDIT_LOGGER_BATCH_SIZE = new ConfigurationProperty<>(
+      "auditlog.logger.batch.size", 100);
+
+  /**
+   * What to do with an audit event when the queue of the audit logger is full.
+   */
+  @Markdown(
+      relatedTo = "auditlog.logger.capacity",
+      description = "Determines what happens to an audit event when the queue of the audit logger is full. "
+          + "`block` waits for room in the queue for up to `auditlog.logger.overflow.timeout` milliseconds "
+          + "and writes the event to the audit log in the calling thread afterwards, so no event is lost, `drop` drops "
+          + "the event immediately and `spill` writes the event to the `audit-overflow` logger in the calling thread. "
+          + "Dropped events are counted.",
+      examples = { "block", "drop", "spill" })
+  public static final ConfigurationProperty<String> AUDIT_LOGGER_OVERFLOW_POLICY = new ConfigurationProperty<>(
+      "auditlog.logger.overflow.policy", "block");
+
+  /**
+   * The time to wait for room in the queue of the audit logger when it is
+   * full and the overflow policy is {@code block}.
+   */
+  @Markdown(
+      relatedTo = "auditlog.logger.overflow.policy",
+      description = "The time, in milliseconds, to wait for room in the full queue of the audit logger before an audit event is written in the calling thread, when the overflow policy is `block`.")
+  public static final ConfigurationProperty<Long> AUDIT_LOGGER_OVERFLOW_TIMEOUT = new ConfigurationProperty<>(
+      "auditlog.logger.overflow.timeout", 1000L);
+
   /**
    * The UDP port to use when binding the SNMP dispatcher on Ambari Server startup.
    */
@@ -2630,6 +2776,18 @@ public class Configuration {
     SKIP
   }
 
+  /**
+   * Audit logger overflow policy.
+   * BLOCK - wait for room in the queue, dropping the event after a timeout.
+   * DROP - drop the event.
+   * SPILL - write the event to the overflow logger in the calling thread.
+   */
+  public enum AuditLoggerOverflowPolicy {
+    BLOCK,
+    DROP,
+    SPILL
+  }
+
   /**
    * The {@link DatabaseType} enum represents the database being used.
    */
@@ -3212,6 +3370,26 @@ public class Configuration {
     return getProperty(BOOTSTRAP_SETUP_AGENT_SCRIPT);
   }
 
+  /**
+   * Gets the number of hosts which are bootstrapped at once, each with its own
+   * run of the bootstrap script.
+   *
+   * @return the number of hosts, or {@code 0} to bootstrap all hosts of a
+   *         request with a single run of the script.
+   */
+  public int getBootStrapHostParallelism() {
+    return Integer.parseInt(getProperty(BOOTSTRAP_HOST_PARALLELISM));
+  }
+
+  /**
+   * Gets the number of times the bootstrap of a host is retried after it fails.
+   *
+   * @return the number of retries
+   */
+  public int getBootStrapHostRetries() {
+    return Integer.parseInt(getProperty(BOOTSTRAP_HOST_RETRIES));
+  }
+
   public String getBootSetupAgentPassword() {
     String pass = configsMap.get(PASSPHRASE.getKey());
 
@@ -5102,6 +5280,79 @@ public class Configuration {
     return Integer.parseInt(getProperty(ALERTS_CACHE_SIZE));
   }
 
+  /**
+   * Gets whether the current state of hosts and host components is kept in
+   * memory and written to the database periodically.
+   * <p/>
+   * The default value is {@code false}.
+   *
+   * @return {@code true} if the state is written behind, {@code false}
+   *         otherwise.
+   */
+  @Experimental(feature = ExperimentalFeature.STATE_WRITE_BEHIND)
+  public boolean isStateWriteBehindEnabled() {
+    return Boolean.parseBoolean(getProperty(STATE_WRITE_BEHIND_ENABLED));
+  }
+
+  /**
+   * Gets the interval at which in-memory host and host component state is
+   * written to the database, if enabled.
+   *
+   * @return the flush interval, in seconds.
+   */
+  @Experimental(feature = ExperimentalFeature.STATE_WRITE_BEHIND)
+  public int getStateWriteBehindFlushInterval() {
+    return Integer.parseInt(getProperty(STATE_WRITE_BEHIND_FLUSH_INTERVAL));
+  }
+
+  /**
+   * Gets the number of days after which finished requests are purged while
+   * Ambari Server runs.
+   *
+   * @return the retention, in days, or {@code 0} if requests are not purged.
+   */
+  public int getCleanupRequestsRetentionDays() {
+    return Integer.parseInt(getProperty(CLEANUP_REQUESTS_RETENTION_DAYS));
+  }
+
+  /**
+   * Gets whether {@code ambari-server db-cleanup} also purges finished
+   * requests.
+   *
+   * @return {@code true} if finished requests are purged by db-cleanup.
+   */
+  public boolean isCleanupRequestsDbCleanupEnabled() {
+    return Boolean.parseBoolean(getProperty(CLEANUP_REQUESTS_DB_CLEANUP_ENABLED));
+  }
+
+  /**
+   * Gets the interval at which finished requests are purged while Ambari
+   * Server runs.
+   *
+   * @return the interval, in hours.
+   */
+  public int getCleanupRequestsInterval() {
+    return Integer.parseInt(getProperty(CLEANUP_REQUESTS_INTERVAL));
+  }
+
+  /**
+   * Gets the number of requests purged per transaction.
+   *
+   * @return the number of requests.
+   */
+  public int getCleanupRequestsBatchSize() {
+    return Integer.parseInt(getProperty(CLEANUP_REQUESTS_BATCH_SIZE));
+  }
+
+  /**
+   * Gets the pause between the transactions purging requests.
+   *
+   * @return the pause, in milliseconds.
+   */
+  public long getCleanupRequestsBatchPause() {
+    return Long.parseLong(getProperty(CLEANUP_REQUESTS_BATCH_PAUSE));
+  }
+
   /**
    * Get the ambari display URL
    * @return
@@ -5165,6 +5416,14 @@ public class Configuration {
     return Boolean.parseBoolean(getProperty(SERVER_LOCKS_PROFILING));
   }
 
+  /**
+   * @return true if syncing all LDAP groups should only refresh the members of the groups modified
+   *         since the previous sync
+   */
+  public boolean isLdapSyncIncrementalEnabled() {
+    return Boolean.parseBoolean(getProperty(LDAP_SYNC_INCREMENTAL_ENABLED));
+  }
+
   /**
    * @return the capacity of async audit logger
    */
@@ -5172,6 +5431,39 @@ public class Configuration {
     return NumberUtils.toInt(getProperty(AUDIT_LOGGER_CAPACITY));
   }
 
+  /**
+   * @return the maximum number of audit events written by the async audit
+   *         logger at once
+   */
+  public int getAuditLoggerBatchSize() {
+    return NumberUtils.toInt(getProperty(AUDIT_LOGGER_BATCH_SIZE));
+  }
+
+  /**
+   * @return what the async audit logger does with an event when its queue is
+   *         full, {@link AuditLoggerOverflowPolicy#BLOCK} if the value is not
+   *         known
+   */
+  public AuditLoggerOverflowPolicy getAuditLoggerOverflowPolicy() {
+    String policy = getProperty(AUDIT_LOGGER_OVERFLOW_POLICY).toLowerCase();
+    if (policy.equals("drop")) {
+      return AuditLoggerOverflowPolicy.DROP;
+    }
+    if (policy.equals("spill")) {
+      return AuditLoggerOverflowPolicy.SPILL;
+    }
+    return AuditLoggerOverflowPolicy.BLOCK;
+  }
+
+  /**
+   * @return the time in milliseconds to wait for room in the full queue of
+   *         the async audit logger before writing an event in the
+   *         calling thread
+   */
+  public long getAuditLoggerOverflowTimeout() {
+    return NumberUtils.toLong(getProperty(AUDIT_LOGGER_OVERFLOW_TIMEOUT));
+  }
+
   /**
    * Customized UDP port for SNMP dispatcher
    * @return Integer if property exists else null
@@ -5863,6 +6155,22 @@ public class Configuration {
     return Integer.valueOf(getProperty(KERBEROS_OPERATION_RETRY_TIMEOUT));
   }
 
+  public boolean isKerberosKadminSessionEnabled() {
+    return Boolean.parseBoolean(getProperty(KERBEROS_OPERATION_KADMIN_SESSION_ENABLED));
+  }
+
+  public int getKerberosKadminSessions() {
+    return Integer.valueOf(getProperty(KERBEROS_OPERATION_KADMIN_SESSIONS));
+  }
+
+  public int getKerberosKadminSessionTimeout() {
+    return Integer.valueOf(getProperty(KERBEROS_OPERATION_KADMIN_SESSION_TIMEOUT));
+  }
+
+  public int getKerberosOperationConcurrency() {
+    return Integer.valueOf(getProperty(KERBEROS_OPERATION_CONCURRENCY));
+  }
+
   /**
    * Return configured acceptors for agent api connector. Default = null
    */
@@ -2925,14 +2925,7 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
       }
 
       RoleCommandOrder rco = getRoleCommandOrder(cluster);
-      RoleGraph rg = roleGraphFactory.createNew(rco);
-
-
-      if (CommandExecutionType.DEPENDENCY_ORDERED == configs.getStageExecutionType() && "INITIAL_START".equals
-        (requestProperties.get("phase"))) {
-        LOG.info("Set DEPENDENCY_ORDERED CommandExecutionType on stage: {}", stage.getRequestContext());
-        rg.setCommandExecutionType(CommandExecutionType.DEPENDENCY_ORDERED);
-      }
+      RoleGraph rg = createRoleGraph(rco, stage);
       rg.build(stage);
       requestStages.addStages(rg.getStages());
 
@@ -3186,6 +3179,29 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
     return request.getRequestStatusResponse();
   }
 
+  /**
+   * Creates the role graph which splits the commands of the given stage into
+   * stages. If {@link Configuration#COMMAND_EXECUTION_TYPE} is
+   * {@link CommandExecutionType#DEPENDENCY_ORDERED}, the commands are kept in a
+   * single stage, and the action scheduler runs each command once the commands
+   * it depends on are finished. Otherwise each stage waits for all commands of
+   * the previous stage.
+   *
+   * @param rco
+   *          the role command order of the cluster
+   * @param stage
+   *          the stage to split
+   * @return the role graph
+   */
+  private RoleGraph createRoleGraph(RoleCommandOrder rco, Stage stage) {
+    RoleGraph rg = roleGraphFactory.createNew(rco);
+    if (CommandExecutionType.DEPENDENCY_ORDERED == configs.getStageExecutionType()) {
+      LOG.info("Set DEPENDENCY_ORDERED CommandExecutionType on stage: {}", stage.getRequestContext());
+      rg.setCommandExecutionType(CommandExecutionType.DEPENDENCY_ORDERED);
+    }
+    return rg;
+  }
+
   @Override
   public RequestStageContainer addStages(RequestStageContainer requestStages, Cluster cluster, Map<String, String> requestProperties,
                                  Map<String, String> requestParameters, Map<State, List<Service>> changedServices,
@@ -3999,7 +4015,7 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
     RoleGraph rg;
     if (null != cluster) {
       RoleCommandOrder rco = getRoleCommandOrder(cluster);
-      rg = roleGraphFactory.createNew(rco);
+      rg = createRoleGraph(rco, stage);
     } else {
       rg = roleGraphFactory.createNew();
     }
@@ -4962,6 +4978,7 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
       }
 
       users.processLdapSync(batchInfo);
+      ldapDataPopulator.commitSyncHighWaterMark();
       return batchInfo;
     } finally {
       ldapSyncInProgress = false;
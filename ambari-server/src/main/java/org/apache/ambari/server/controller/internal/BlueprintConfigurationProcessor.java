@@ -131,6 +131,11 @@ public class BlueprintConfigurationProcessor {
    */
   private static Pattern HOSTGROUP_PORT_REGEX = Pattern.compile("%HOSTGROUP::(\\S+?)%:?(\\d+)?");
 
+  /**
+   * Start of a hostgroup token.
+   */
+  private static final String HOSTGROUP_TOKEN_PREFIX = "%HOSTGROUP::";
+
   /**
    * Compiled regex for hostgroup token with port information.
    */
@@ -280,6 +285,9 @@ public class BlueprintConfigurationProcessor {
   public Collection<String> getRequiredHostGroups() {
     Collection<String> requiredHostGroups = new HashSet<String>();
 
+    // cluster scoped configuration which also includes all default and BP properties
+    Map<String, Map<String, String>> clusterProps = clusterTopology.getConfiguration().getFullProperties();
+
     for (Map<String, Map<String, PropertyUpdater>> updaterMap : createCollectionOfUpdaters()) {
       for (Map.Entry<String, Map<String, PropertyUpdater>> entry : updaterMap.entrySet()) {
         String type = entry.getKey();
@@ -287,8 +295,6 @@ public class BlueprintConfigurationProcessor {
           String propertyName = updaterEntry.getKey();
           PropertyUpdater updater = updaterEntry.getValue();
 
-          // cluster scoped configuration which also includes all default and BP properties
-          Map<String, Map<String, String>> clusterProps = clusterTopology.getConfiguration().getFullProperties();
           Map<String, String> typeMap = clusterProps.get(type);
           if (typeMap != null && typeMap.containsKey(propertyName) && typeMap.get(propertyName) != null) {
             requiredHostGroups.addAll(updater.getRequiredHostGroups(
@@ -332,15 +338,31 @@ public class BlueprintConfigurationProcessor {
     // removes a property other than the property it is registered for then we will
     // have an issue as it won't be removed from the clusterProps map as it is a copy.
     Map<String, Map<String, String>> clusterProps = clusterConfig.getFullProperties();
+
+    // the merged host group properties are created once, rather than for each updater and host group
+    Collection<HostGroupProperties> hostGroupProperties = new ArrayList<HostGroupProperties>();
+    Set<String> hostGroupConfigTypes = new HashSet<String>();
+    for (HostGroupInfo groupInfo : groupInfoMap.values()) {
+      HostGroupProperties groupProperties = new HostGroupProperties(groupInfo.getConfiguration());
+      hostGroupProperties.add(groupProperties);
+      hostGroupConfigTypes.addAll(groupProperties.getConfigTypes());
+    }
+
     for (Map<String, Map<String, PropertyUpdater>> updaterMap : createCollectionOfUpdaters()) {
       for (Map.Entry<String, Map<String, PropertyUpdater>> entry : updaterMap.entrySet()) {
         String type = entry.getKey();
+
+        // topo cluster scoped configuration which also includes all default and BP properties
+        Map<String, String> typeMap = clusterProps.get(type);
+        if (typeMap == null && !hostGroupConfigTypes.contains(type)) {
+          // none of the updaters of this config type apply
+          continue;
+        }
+
         for (Map.Entry<String, PropertyUpdater> updaterEntry : entry.getValue().entrySet()) {
           String propertyName = updaterEntry.getKey();
           PropertyUpdater updater = updaterEntry.getValue();
 
-          // topo cluster scoped configuration which also includes all default and BP properties
-          Map<String, String> typeMap = clusterProps.get(type);
           if (typeMap != null && typeMap.containsKey(propertyName) && typeMap.get(propertyName) != null) {
             final String originalValue = typeMap.get(propertyName);
             final String updatedValue =
@@ -355,15 +377,16 @@ public class BlueprintConfigurationProcessor {
             }
 
             clusterConfig.setProperty(type, propertyName, updatedValue);
+            for (HostGroupProperties groupProperties : hostGroupProperties) {
+              groupProperties.parentPropertySet(clusterConfig, type, propertyName, updatedValue);
+            }
           }
 
           // host group configs
-          for (HostGroupInfo groupInfo : groupInfoMap.values()) {
-            Configuration hgConfig = groupInfo.getConfiguration();
-            Map<String, Map<String, String>> hgConfigProps = hgConfig.getFullProperties(1);
-            Map<String, String> hgTypeMap = hgConfigProps.get(type);
-            if (hgTypeMap != null && hgTypeMap.containsKey(propertyName)) {
-              final String originalValue = hgTypeMap.get(propertyName);
+          for (HostGroupProperties groupProperties : hostGroupProperties) {
+            if (groupProperties.containsProperty(type, propertyName)) {
+              Map<String, Map<String, String>> hgConfigProps = groupProperties.getProperties();
+              final String originalValue = hgConfigProps.get(type).get(propertyName);
               final String updatedValue =
                 updater.updateForClusterCreate(propertyName, originalValue, hgConfigProps, clusterTopology);
 
@@ -371,7 +394,7 @@ public class BlueprintConfigurationProcessor {
                 configTypesUpdated.add(type);
               }
 
-              hgConfig.setProperty(type, propertyName, updatedValue);
+              groupProperties.setProperty(type, propertyName, updatedValue);
             }
           }
         }
@@ -1216,6 +1239,10 @@ public class BlueprintConfigurationProcessor {
   private static Collection<String> getHostStrings(String val, ClusterTopology topology) {
 
     Collection<String> hosts = new LinkedHashSet<String>();
+    if (!containsHostGroupToken(val)) {
+      return hosts;
+    }
+
     Matcher m = HOSTGROUP_PORT_REGEX.matcher(val);
     while (m.find()) {
       String groupName = m.group(1);
@@ -1237,6 +1264,18 @@ public class BlueprintConfigurationProcessor {
     return hosts;
   }
 
+  /**
+   * Determines whether a property value may contain a host group token, so the token regular
+   * expressions only need to be run on the values which do.
+   *
+   * @param val  value to check
+   *
+   * @return true if the value contains the start of a host group token
+   */
+  private static boolean containsHostGroupToken(String val) {
+    return val != null && val.contains(HOSTGROUP_TOKEN_PREFIX);
+  }
+
   /**
    * Convenience method for splitting out the HA-related properties, while
    *   also removing leading/trailing whitespace.
@@ -1277,6 +1316,121 @@ public class BlueprintConfigurationProcessor {
     }
   }
 
+  /**
+   * The properties of a host group merged with the properties of its parent configuration, the
+   * same as {@link Configuration#getFullProperties(int)} with a depth of 1 returns them.  The merged
+   * properties are only created once, and are then kept up to date with the properties set during
+   * the update for cluster creation.  This relies on the property updaters not modifying the
+   * properties they are passed.
+   */
+  private static class HostGroupProperties {
+    /**
+     * Host group configuration
+     */
+    private final Configuration configuration;
+
+    /**
+     * Merged properties, created when first needed
+     */
+    private Map<String, Map<String, String>> properties;
+
+    private HostGroupProperties(Configuration configuration) {
+      this.configuration = configuration;
+    }
+
+    /**
+     * Get the config types of the host group and its parent configuration.
+     *
+     * @return config type names
+     */
+    public Set<String> getConfigTypes() {
+      Set<String> configTypes = new HashSet<String>(configuration.getProperties().keySet());
+      Configuration parent = configuration.getParentConfiguration();
+      if (parent != null) {
+        configTypes.addAll(parent.getProperties().keySet());
+      }
+      return configTypes;
+    }
+
+    /**
+     * Determine whether the merged properties contain the given property, without creating them.
+     *
+     * @param configType    config type
+     * @param propertyName  property name
+     *
+     * @return true if the host group or its parent configuration contains the property
+     */
+    public boolean containsProperty(String configType, String propertyName) {
+      if (properties != null) {
+        Map<String, String> typeProperties = properties.get(configType);
+        return typeProperties != null && typeProperties.containsKey(propertyName);
+      }
+
+      if (containsProperty(configuration, configType, propertyName)) {
+        return true;
+      }
+      Configuration parent = configuration.getParentConfiguration();
+      return parent != null && containsProperty(parent, configType, propertyName);
+    }
+
+    /**
+     * Get the merged properties.
+     *
+     * @return map of merged properties keyed by config type
+     */
+    public Map<String, Map<String, String>> getProperties() {
+      if (properties == null) {
+        properties = configuration.getFullProperties(1);
+      }
+      return properties;
+    }
+
+    /**
+     * Set a property of the host group configuration.
+     *
+     * @param configType    config type
+     * @param propertyName  property name
+     * @param value         property value
+     */
+    public void setProperty(String configType, String propertyName, String value) {
+      configuration.setProperty(configType, propertyName, value);
+      putMergedProperty(configType, propertyName, value);
+    }
+
+    /**
+     * Update the merged properties after a property of the given configuration was set.  This has
+     * no effect unless the configuration is the parent of the host group configuration, and the host
+     * group doesn't override the property.
+     *
+     * @param parent        configuration the property was set on
+     * @param configType    config type
+     * @param propertyName  property name
+     * @param value         property value
+     */
+    public void parentPropertySet(Configuration parent, String configType, String propertyName, String value) {
+      if (parent == configuration.getParentConfiguration()
+          && !containsProperty(configuration, configType, propertyName)) {
+        putMergedProperty(configType, propertyName, value);
+      }
+    }
+
+    private void putMergedProperty(String configType, String propertyName, String value) {
+      if (properties != null) {
+        Map<String, String> typeProperties = properties.get(configType);
+        if (typeProperties == null) {
+          typeProperties = new HashMap<String, String>();
+          properties.put(configType, typeProperties);
+        }
+        typeProperties.put(propertyName, value);
+      }
+    }
+
+    private static boolean containsProperty(Configuration configuration, String configType, String propertyName) {
+      Map<String, String> typeProperties = configuration.getProperties().get(configType);
+      return typeProperties != null && typeProperties.containsKey(propertyName);
+    }
+  }
+
   /**
    * Provides functionality to update a property value.
    */
@@ -1349,7 +1503,7 @@ public class BlueprintConfigurationProcessor {
 
       //todo: getHostStrings
       Matcher m = HostGroup.HOSTGROUP_REGEX.matcher(origValue);
-      if (m.find()) {
+      if (containsHostGroupToken(origValue) && m.find()) {
         String hostGroupName = m.group(1);
 
         HostGroupInfo groupInfo = topology.getHostGroupInfo().get(hostGroupName);
@@ -1472,7 +1626,7 @@ public class BlueprintConfigurationProcessor {
                                                     ClusterTopology topology) {
       //todo: getHostStrings
       Matcher m = HostGroup.HOSTGROUP_REGEX.matcher(origValue);
-      if (m.find()) {
+      if (containsHostGroupToken(origValue) && m.find()) {
         String hostGroupName = m.group(1);
         return Collections.singleton(hostGroupName);
       } else {
@@ -30,6 +30,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -202,6 +203,18 @@ public class UpgradeResourceProvider extends AbstractControllerResourceProvider
    */
   protected static final String UPGRADE_HOST_ORDERED_HOSTS = "Upgrade/host_order";
 
+  /**
+   * The time (in milliseconds) spent in each phase of creating the upgrade,
+   * such as resolving the master hosts or creating the stages. Only known for
+   * upgrades created since Ambari Server started.
+   */
+  protected static final String UPGRADE_PLANNING_TIMES = "Upgrade/planning_times";
+
+  /**
+   * The number of upgrades to remember the planning times of.
+   */
+  private static final int PLANNING_TIMES_CACHE_SIZE = 20;
+
   /*
    * Lifted from RequestResourceProvider
    */
@@ -248,6 +261,17 @@ public class UpgradeResourceProvider extends AbstractControllerResourceProvider
 
   private static final Map<Resource.Type, String> KEY_PROPERTY_IDS = new HashMap<>();
 
+  /**
+   * The planning times of the most recently created upgrades, by request id.
+   */
+  private static final Map<Long, Map<String, Long>> s_planningTimes = Collections.synchronizedMap(
+      new LinkedHashMap<Long, Map<String, Long>>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Map<String, Long>> eldest) {
+          return size() > PLANNING_TIMES_CACHE_SIZE;
+        }
+      });
+
   @Inject
   protected static UpgradeDAO s_upgradeDAO = null;
 
@@ -308,6 +332,7 @@ public class UpgradeResourceProvider extends AbstractControllerResourceProvider
     PROPERTY_IDS.add(UPGRADE_SKIP_PREREQUISITE_CHECKS);
     PROPERTY_IDS.add(UPGRADE_FAIL_ON_CHECK_WARNINGS);
     PROPERTY_IDS.add(UPGRADE_HOST_ORDERED_HOSTS);
+    PROPERTY_IDS.add(UPGRADE_PLANNING_TIMES);
 
     PROPERTY_IDS.add(REQUEST_CONTEXT_ID);
     PROPERTY_IDS.add(REQUEST_CREATE_TIME_ID);
@@ -414,6 +439,12 @@ public class UpgradeResourceProvider extends AbstractControllerResourceProvider
 
     Resource res = new ResourceImpl(Resource.Type.Upgrade);
     res.setProperty(UPGRADE_REQUEST_ID, entity.getRequestId());
+
+    Map<String, Long> planningTimes = s_planningTimes.get(entity.getRequestId());
+    if (null != planningTimes) {
+      setResourceProperty(res, UPGRADE_PLANNING_TIMES, planningTimes,
+          Collections.singleton(UPGRADE_PLANNING_TIMES));
+    }
     return new RequestStatusImpl(null, Collections.singleton(res));
   }
 
@@ -618,6 +649,11 @@ public class UpgradeResourceProvider extends AbstractControllerResourceProvider
     setResourceProperty(resource, UPGRADE_SKIP_FAILURES, entity.isComponentFailureAutoSkipped(), requestedIds);
     setResourceProperty(resource, UPGRADE_SKIP_SC_FAILURES, entity.isServiceCheckFailureAutoSkipped(), requestedIds);
 
+    Map<String, Long> planningTimes = s_planningTimes.get(entity.getRequestId());
+    if (null != planningTimes) {
+      setResourceProperty(resource, UPGRADE_PLANNING_TIMES, planningTimes, requestedIds);
+    }
+
     return resource;
   }
 
@@ -860,6 +896,8 @@ public class UpgradeResourceProvider extends AbstractControllerResourceProvider
     // from IN_PROGRESS (e.g. canceled downgrade)
     s_upgradeHelper.putComponentsToUpgradingState(version, targetComponents);
 
+    long stagesStartTime = System.currentTimeMillis();
+
     for (UpgradeGroupHolder group : groups) {
       boolean skippable = group.skippable;
       boolean supportsAutoSkipOnFailure = group.supportsAutoSkipOnFailure;
@@ -950,7 +988,20 @@ public class UpgradeResourceProvider extends AbstractControllerResourceProvider
     }
 
     req.getRequestStatusResponse();
-    return createUpgradeInsideTransaction(cluster, req, entity);
+
+    long persistStartTime = System.currentTimeMillis();
+    upgradeContext.addPlanningTime(UpgradeContext.PLANNING_CREATE_STAGES, persistStartTime - stagesStartTime);
+
+    UpgradeEntity upgradeEntity = createUpgradeInsideTransaction(cluster, req, entity);
+
+    upgradeContext.addPlanningTime(UpgradeContext.PLANNING_PERSIST, System.currentTimeMillis() - persistStartTime);
+
+    Map<String, Long> planningTimes = new LinkedHashMap<>(upgradeContext.getPlanningTimes());
+    s_planningTimes.put(upgradeEntity.getRequestId(), planningTimes);
+    LOG.info("Created upgrade {} of cluster {}, planning times (ms): {}", upgradeEntity.getRequestId(),
+        cluster.getClusterName(), planningTimes);
+
+    return upgradeEntity;
   }
 
   /**
@@ -107,6 +107,11 @@ public abstract class AmbariEvent {
      */
     REQUEST_FINISHED,
 
+    /**
+     * Sent when finished requests are purged from the database
+     */
+    REQUESTS_PURGED,
+
     /**
      * The cluster was renamed.
      */
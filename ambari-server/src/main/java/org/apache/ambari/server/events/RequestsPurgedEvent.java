@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events;
+
+import java.util.Collection;
+
+/**
+ * The {@link RequestsPurgedEvent} is fired when finished requests of a cluster
+ * are purged from the database, so that they are also removed from memory.
+ */
+public class RequestsPurgedEvent extends ClusterEvent {
+
+  /**
+   * IDs of the purged requests
+   */
+  private final Collection<Long> requestIds;
+
+  /**
+   * Constructor.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   * @param requestIds
+   *          the IDs of the purged requests.
+   */
+  public RequestsPurgedEvent(long clusterId, Collection<Long> requestIds) {
+    super(AmbariEventType.REQUESTS_PURGED, clusterId);
+    this.requestIds = requestIds;
+  }
+
+  public Collection<Long> getRequestIds() {
+    return requestIds;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return "RequestsPurgedEvent{clusterId=" + m_clusterId + ", requestIds=" + requestIds + "}";
+  }
+}
@@ -107,7 +107,9 @@ public class LockFactory {
           .append(lock)
           .append(" waited: ").append(lock.getTimeSpentWaitingForLock())
           .append(" held: ").append(lock.getTimeSpentLocked())
-          .append(" times locked: ").append(lock.getLockCount());
+          .append(" times locked: ").append(lock.getLockCount())
+          .append(" times contended: ").append(lock.getContendedLockCount())
+          .append(" longest held: ").append(lock.getLongestTimeLocked());
       }
       if (!profiledLocks.isEmpty()) {
         sb.append("\n");
@@ -45,6 +45,8 @@ final class LockProfileDelegate {
   private final ConcurrentMap<String, Long> timeSpentWaitingForLock = new ConcurrentHashMap<>();
   private final ConcurrentMap<String, Long> timeSpentLocked = new ConcurrentHashMap<>();
   private final ConcurrentMap<String, Integer> lockCount = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Integer> contendedLockCount = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Long> longestTimeLocked = new ConcurrentHashMap<>();
   private final String label;
   private final ProfiledLock lock;
   private final Ticker ticker;
@@ -88,6 +90,20 @@ final class LockProfileDelegate {
     return new TreeMap<>(lockCount);
   }
 
+  /**
+   * @return the number of times the lock had to be waited for by thread name
+   */
+  Map<String, Integer> getContendedLockCount() {
+    return new TreeMap<>(contendedLockCount);
+  }
+
+  /**
+   * @return the longest time the lock was held at once (in milliseconds) by thread name
+   */
+  Map<String, Long> getLongestTimeLocked() {
+    return new TreeMap<>(longestTimeLocked);
+  }
+
   /**
    * Should be called by the lock to indicate that the lock was requested.
    *
@@ -99,6 +115,9 @@ final class LockProfileDelegate {
       if (LOG.isDebugEnabled()) {
         LOG.debug("{}request {} from {}", label, lock, getFilteredStackTrace());
       }
+      if (lock.isHeldByOtherThread()) {
+        increment(contendedLockCount);
+      }
       lockRequestTime.set(ticker.read());
     }
     return alreadyOwned;
@@ -132,6 +151,7 @@ final class LockProfileDelegate {
     boolean released = !lock.isHeldByCurrentThread();
     if (released) {
       long elapsed = storeElapsedTime(lockAcquireTime, timeSpentLocked);
+      storeMaximum(longestTimeLocked, elapsed);
       if (LOG.isDebugEnabled()) {
         LOG.debug("{}released {} after {} ms", label, lock, elapsed);
       }
@@ -154,6 +174,17 @@ final class LockProfileDelegate {
     return elapsed;
   }
 
+  private static void storeMaximum(ConcurrentMap<String, Long> map, long value) {
+    if (value < 0) {
+      return;
+    }
+    String name = Thread.currentThread().getName();
+    Long maximum = map.get(name);
+    if (maximum == null || value > maximum) {
+      map.put(name, value);
+    }
+  }
+
   private static void increment(ConcurrentMap<String, Integer> map) {
     String name = Thread.currentThread().getName();
     map.putIfAbsent(name, 0);
@@ -31,6 +31,12 @@ interface ProfiledLock extends Lock {
    */
   boolean isHeldByCurrentThread();
 
+  /**
+   * @return true if the lock is held by another thread, so that a request by
+   *         the current thread has to wait for it
+   */
+  boolean isHeldByOtherThread();
+
   /**
    * @return time spent waiting for the lock (in milliseconds) by thread name
    */
@@ -46,5 +52,15 @@ interface ProfiledLock extends Lock {
    */
   Map<String, Integer> getLockCount();
 
+  /**
+   * @return the number of times the lock had to be waited for by thread name
+   */
+  Map<String, Integer> getContendedLockCount();
+
+  /**
+   * @return the longest time the lock was held at once (in milliseconds) by thread name
+   */
+  Map<String, Long> getLongestTimeLocked();
+
   String getLabel();
 }
@@ -88,6 +88,11 @@ final class ProfiledReentrantLock implements ProfiledLock {
     return delegate.isHeldByCurrentThread();
   }
 
+  @Override
+  public boolean isHeldByOtherThread() {
+    return delegate.isLocked() && !delegate.isHeldByCurrentThread();
+  }
+
   @Override
   public Map<String, Long> getTimeSpentWaitingForLock() {
     return helper.getTimeSpentWaitingForLock();
@@ -103,6 +108,16 @@ final class ProfiledReentrantLock implements ProfiledLock {
     return helper.getLockCount();
   }
 
+  @Override
+  public Map<String, Integer> getContendedLockCount() {
+    return helper.getContendedLockCount();
+  }
+
+  @Override
+  public Map<String, Long> getLongestTimeLocked() {
+    return helper.getLongestTimeLocked();
+  }
+
   @Override
   public String getLabel() {
     return helper.getLabel();
@@ -107,6 +107,14 @@ final class ProfiledReentrantReadWriteLock implements ReadWriteLock {
       return delegate.getReadHoldCount() > 0;
     }
 
+    /**
+     * @return true if another thread holds the write lock
+     */
+    @Override
+    public boolean isHeldByOtherThread() {
+      return delegate.isWriteLocked() && !delegate.isWriteLockedByCurrentThread();
+    }
+
     @Override
     public Map<String, Long> getTimeSpentWaitingForLock() {
       return helper.getTimeSpentWaitingForLock();
@@ -122,6 +130,16 @@ final class ProfiledReentrantReadWriteLock implements ReadWriteLock {
       return helper.getLockCount();
     }
 
+    @Override
+    public Map<String, Integer> getContendedLockCount() {
+      return helper.getContendedLockCount();
+    }
+
+    @Override
+    public Map<String, Long> getLongestTimeLocked() {
+      return helper.getLongestTimeLocked();
+    }
+
     @Override
     public String toString() {
       return delegate.readLock().toString();
@@ -180,6 +198,16 @@ final class ProfiledReentrantReadWriteLock implements ReadWriteLock {
       helper.logUnlock();
     }
 
+    /**
+     * @return true if another thread holds the write lock, or any thread holds
+     *         the read lock
+     */
+    @Override
+    public boolean isHeldByOtherThread() {
+      return (delegate.isWriteLocked() && !delegate.isWriteLockedByCurrentThread())
+          || delegate.getReadLockCount() > 0;
+    }
+
     @Override
     public Map<String, Long> getTimeSpentWaitingForLock() {
       return helper.getTimeSpentWaitingForLock();
@@ -195,6 +223,16 @@ final class ProfiledReentrantReadWriteLock implements ReadWriteLock {
       return helper.getLockCount();
     }
 
+    @Override
+    public Map<String, Integer> getContendedLockCount() {
+      return helper.getContendedLockCount();
+    }
+
+    @Override
+    public Map<String, Long> getLongestTimeLocked() {
+      return helper.getLongestTimeLocked();
+    }
+
     @Override
     public String toString() {
       return delegate.writeLock().toString();
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.metrics.system.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Publishes the queue depth and the event counters of the audit logger, which
+ * registers them with {@link #register(String, Metric)}.
+ */
+public class AuditLoggerMetricsSource extends AbstractMetricsSource {
+  static final MetricRegistry registry = new MetricRegistry();
+  private static Logger LOG = LoggerFactory.getLogger(AuditLoggerMetricsSource.class);
+
+  /**
+   * Registers a metric of the audit logger, replacing any metric registered
+   * before with the same name.
+   *
+   * @param name
+   *          the name of the metric
+   * @param metric
+   *          a {@link Gauge} of a number or a {@link Counter}
+   */
+  public static synchronized void register(String name, Metric metric) {
+    registry.remove(name);
+    registry.register(name, metric);
+  }
+
+  @Override
+  public void run() {
+    this.sink.publish(getMetrics());
+    LOG.debug("Published audit logger metrics to sink");
+  }
+
+  @Override
+  public Map<String, Number> getMetrics() {
+    Map<String, Number> map = new HashMap<>();
+    for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+      Metric metric = entry.getValue();
+      if (metric instanceof Gauge<?>) {
+        Object value = ((Gauge<?>) metric).getValue();
+        if (value instanceof Number) {
+          map.put(entry.getKey(), (Number) value);
+        }
+      } else if (metric instanceof Counter) {
+        map.put(entry.getKey(), ((Counter) metric).getCount());
+      }
+    }
+    return map;
+  }
+}
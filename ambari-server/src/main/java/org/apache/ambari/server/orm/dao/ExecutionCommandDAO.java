@@ -18,6 +18,7 @@
 
 package org.apache.ambari.server.orm.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -53,6 +54,20 @@ public class ExecutionCommandDAO {
     entityManagerProvider.get().persist(executionCommand);
   }
 
+  /**
+   * Persists the given execution commands in a single transaction.
+   *
+   * @param executionCommands
+   *          the execution commands to persist
+   */
+  @Transactional
+  public void createAll(Collection<ExecutionCommandEntity> executionCommands) {
+    EntityManager entityManager = entityManagerProvider.get();
+    for (ExecutionCommandEntity executionCommand : executionCommands) {
+      entityManager.persist(executionCommand);
+    }
+  }
+
   @Transactional
   public ExecutionCommandEntity merge(ExecutionCommandEntity executionCommand) {
     return entityManagerProvider.get().merge(executionCommand);
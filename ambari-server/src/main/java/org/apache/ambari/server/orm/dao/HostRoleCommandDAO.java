@@ -626,6 +626,36 @@ public class HostRoleCommandDAO {
     invalidateHostRoleCommandStatusSummaryCache(entity);
   }
 
+  /**
+   * Persists the given commands, invalidating the status summary cache once
+   * per request instead of once per command. The task IDs of the commands are
+   * assigned when this method returns.
+   *
+   * @param entities
+   *          the commands to persist
+   */
+  @Transactional
+  @TransactionalLock(lockArea = LockArea.HRC_STATUS_CACHE, lockType = LockType.WRITE)
+  public void createAll(Collection<HostRoleCommandEntity> entities) {
+    EntityManager entityManager = entityManagerProvider.get();
+    Set<Long> requestsToInvalidate = new LinkedHashSet<>();
+    for (HostRoleCommandEntity entity : entities) {
+      entityManager.persist(entity);
+
+      Long requestId = entity.getRequestId();
+      if (requestId == null) {
+        StageEntity stageEntity = entity.getStage();
+        if (stageEntity != null) {
+          requestId = stageEntity.getRequestId();
+        }
+      }
+
+      requestsToInvalidate.add(requestId);
+    }
+
+    invalidateHostRoleCommandStatusSummaryCache(requestsToInvalidate);
+  }
+
   @Transactional
   @TransactionalLock(lockArea = LockArea.HRC_STATUS_CACHE, lockType = LockType.WRITE)
   public HostRoleCommandEntity merge(HostRoleCommandEntity entity) {
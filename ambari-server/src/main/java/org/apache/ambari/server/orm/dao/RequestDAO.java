@@ -21,25 +21,42 @@ package org.apache.ambari.server.orm.dao;
 import java.text.MessageFormat;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.cleanup.TimeBasedCleanupPolicy;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.RequestsPurgedEvent;
+import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.orm.RequiresSession;
+import org.apache.ambari.server.orm.entities.ClusterEntity;
 import org.apache.ambari.server.orm.entities.RequestEntity;
 import org.apache.ambari.server.orm.entities.RequestResourceFilterEntity;
+import org.apache.ambari.server.topology.TopologyRequest;
 import org.eclipse.persistence.config.HintValues;
 import org.eclipse.persistence.config.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
 
 @Singleton
-public class RequestDAO {
+public class RequestDAO implements Cleanable {
+  private static final Logger LOG = LoggerFactory.getLogger(RequestDAO.class);
+
   /**
    * SQL template to retrieve all request IDs, sorted by the ID.
    */
@@ -56,6 +73,73 @@ public class RequestDAO {
   private final static String REQUESTS_WITH_NO_CLUSTER_SQL =
       "SELECT request.requestId FROM RequestEntity request WHERE request.clusterId = -1 OR request.clusterId IS NULL ORDER BY request.requestId %s";
 
+  /**
+   * Requests of a cluster which finished before a date and can be purged. The
+   * requests of upgrades and of cluster provisioning are kept, as upgrades and
+   * the replay of topology requests refer to them. So are the requests of the
+   * install and start tasks of a topology request, which run in requests of
+   * their own, as long as the logical tasks of another request refer to them;
+   * they can be purged once that logical request is purged.
+   */
+  private final static String PURGEABLE_REQUESTS_SQL =
+      "SELECT request.requestId FROM RequestEntity request WHERE request.clusterId = ?1 " +
+      "AND request.endTime > 0 AND request.endTime < ?2 " +
+      "AND NOT EXISTS (SELECT task.taskId FROM HostRoleCommandEntity task WHERE task.requestId = request.requestId AND task.status NOT IN ?3) " +
+      "AND request.requestId NOT IN (SELECT upgrade.requestId FROM UpgradeEntity upgrade) " +
+      "AND request.requestId NOT IN (SELECT logicalRequest.id FROM TopologyLogicalRequestEntity logicalRequest " +
+      "WHERE logicalRequest.topologyRequestEntity.action = ?4) " +
+      "AND NOT EXISTS (SELECT logicalTask.id FROM TopologyLogicalTaskEntity logicalTask " +
+      "WHERE logicalTask.hostRoleCommandEntity.requestId = request.requestId " +
+      "AND logicalTask.topologyHostTaskEntity.topologyHostRequestEntity.topologyLogicalRequestEntity.id <> request.requestId) " +
+      "ORDER BY request.requestId";
+
+  /**
+   * The topology requests whose logical requests are the given requests.
+   */
+  private final static String TOPOLOGY_REQUEST_IDS_SQL =
+      "SELECT logicalRequest.topologyRequestId FROM TopologyLogicalRequestEntity logicalRequest WHERE logicalRequest.id IN :requestIds";
+
+  /**
+   * [ table -> delete ] of the rows of the purged requests, in the order in
+   * which they are deleted. The deletes take either the ids of the requests
+   * or the ids of their topology requests.
+   */
+  private final static Map<String, String> PURGE_SQL = new LinkedHashMap<>();
+
+  static {
+    PURGE_SQL.put("topology_logical_task", "DELETE FROM TopologyLogicalTaskEntity logicalTask " +
+        "WHERE logicalTask.topologyHostTaskEntity.id IN (SELECT hostTask.id FROM TopologyHostTaskEntity hostTask " +
+        "WHERE hostTask.topologyHostRequestEntity.topologyLogicalRequestEntity.id IN :requestIds)");
+    PURGE_SQL.put("topology_host_task", "DELETE FROM TopologyHostTaskEntity hostTask " +
+        "WHERE hostTask.topologyHostRequestEntity.id IN (SELECT hostRequest.id FROM TopologyHostRequestEntity hostRequest " +
+        "WHERE hostRequest.topologyLogicalRequestEntity.id IN :requestIds)");
+    PURGE_SQL.put("topology_host_request", "DELETE FROM TopologyHostRequestEntity hostRequest " +
+        "WHERE hostRequest.topologyLogicalRequestEntity.id IN :requestIds");
+    PURGE_SQL.put("topology_logical_request", "DELETE FROM TopologyLogicalRequestEntity logicalRequest " +
+        "WHERE logicalRequest.id IN :requestIds");
+    PURGE_SQL.put("topology_host_info", "DELETE FROM TopologyHostInfoEntity hostInfo " +
+        "WHERE hostInfo.topologyHostGroupEntity.id IN (SELECT hostGroup.id FROM TopologyHostGroupEntity hostGroup " +
+        "WHERE hostGroup.topologyRequestEntity.id IN :topologyRequestIds)");
+    PURGE_SQL.put("topology_hostgroup", "DELETE FROM TopologyHostGroupEntity hostGroup " +
+        "WHERE hostGroup.topologyRequestEntity.id IN :topologyRequestIds");
+    PURGE_SQL.put("topology_request", "DELETE FROM TopologyRequestEntity topologyRequest " +
+        "WHERE topologyRequest.id IN :topologyRequestIds");
+    PURGE_SQL.put("execution_command", "DELETE FROM ExecutionCommandEntity command " +
+        "WHERE command.taskId IN (SELECT task.taskId FROM HostRoleCommandEntity task WHERE task.requestId IN :requestIds)");
+    PURGE_SQL.put("host_role_command", "DELETE FROM HostRoleCommandEntity task WHERE task.requestId IN :requestIds");
+    PURGE_SQL.put("role_success_criteria", "DELETE FROM RoleSuccessCriteriaEntity criteria WHERE criteria.requestId IN :requestIds");
+    PURGE_SQL.put("stage", "DELETE FROM StageEntity stage WHERE stage.requestId IN :requestIds");
+    PURGE_SQL.put("requestresourcefilter", "DELETE FROM RequestResourceFilterEntity filter WHERE filter.requestId IN :requestIds");
+    PURGE_SQL.put("requestoperationlevel", "DELETE FROM RequestOperationLevelEntity level WHERE level.requestId IN :requestIds");
+    PURGE_SQL.put("request", "DELETE FROM RequestEntity request WHERE request.requestId IN :requestIds");
+  }
+
+  /**
+   * The maximum number of requests purged per transaction, as the ids are
+   * passed in an IN clause.
+   */
+  private static final int MAX_BATCH_SIZE = 999;
+
 
 
   @Inject
@@ -64,6 +148,18 @@ public class RequestDAO {
   @Inject
   DaoUtils daoUtils;
 
+  @Inject
+  ClusterDAO clusterDAO;
+
+  @Inject
+  Configuration configuration;
+
+  @Inject
+  HostRoleCommandDAO hostRoleCommandDAO;
+
+  @Inject
+  AmbariEventPublisher ambariEventPublisher;
+
   @RequiresSession
   public RequestEntity findByPK(Long requestId) {
     return entityManagerProvider.get().find(RequestEntity.class, requestId);
@@ -189,4 +285,148 @@ public class RequestDAO {
 
     return daoUtils.selectList(query);
   }
+
+  /**
+   * Purges the finished requests for {@code ambari-server db-cleanup}, only if
+   * {@link Configuration#isCleanupRequestsDbCleanupEnabled()}.
+   *
+   * @param policy the policy with the cluster and the date
+   * @return the number of deleted rows
+   * @see #purge(TimeBasedCleanupPolicy)
+   */
+  @Override
+  public long cleanup(TimeBasedCleanupPolicy policy) {
+    if (!configuration.isCleanupRequestsDbCleanupEnabled()) {
+      LOG.info("Finished requests are not purged, set {} to true to purge them",
+          Configuration.CLEANUP_REQUESTS_DB_CLEANUP_ENABLED.getKey());
+      return 0;
+    }
+    return purge(policy);
+  }
+
+  /**
+   * Purges the requests of the cluster which finished before the date of the
+   * policy, along with their stages, tasks, execution commands and topology
+   * requests. The requests are purged in transactions of
+   * {@link Configuration#getCleanupRequestsBatchSize()} requests with a pause
+   * of {@link Configuration#getCleanupRequestsBatchPause()} between them, so
+   * that the purge can run while Ambari Server is running. Requests which are
+   * not finished, and the requests of upgrades and of cluster provisioning,
+   * are never purged. The purged requests are also removed from the caches,
+   * and a {@link RequestsPurgedEvent} is published for every transaction.
+   *
+   * @param policy the policy with the cluster and the date
+   * @return the number of deleted rows
+   */
+  public long purge(TimeBasedCleanupPolicy policy) {
+    ClusterEntity clusterEntity = clusterDAO.findByName(policy.getClusterName());
+    if (null == clusterEntity) {
+      LOG.error("Error while looking up cluster with name: {}", policy.getClusterName());
+      throw new IllegalStateException("Unable to find cluster " + policy.getClusterName());
+    }
+
+    List<Long> requestIds = findPurgeableRequestIds(clusterEntity.getClusterId(), policy.getToDateInMillis());
+    if (requestIds.isEmpty()) {
+      LOG.info("No requests of cluster {} finished before {} to purge", policy.getClusterName(),
+          policy.getToDateInMillis());
+      return 0;
+    }
+
+    int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, configuration.getCleanupRequestsBatchSize()));
+    long batchPause = configuration.getCleanupRequestsBatchPause();
+
+    LOG.info("Purging {} requests of cluster {} finished before {} in batches of {}", requestIds.size(),
+        policy.getClusterName(), policy.getToDateInMillis(), batchSize);
+
+    Map<String, Long> deletedRows = new LinkedHashMap<>();
+    long affectedRows = 0;
+    int purgedRequests = 0;
+    long start = System.currentTimeMillis();
+
+    List<List<Long>> batches = Lists.partition(requestIds, batchSize);
+    for (int i = 0; i < batches.size(); i++) {
+      List<Long> batch = batches.get(i);
+      affectedRows += purgeRequests(batch, deletedRows);
+      purgedRequests += batch.size();
+
+      Set<Long> purgedIds = new HashSet<>(batch);
+      hostRoleCommandDAO.invalidateHostRoleCommandStatusSummaryCache(purgedIds);
+      ambariEventPublisher.publish(new RequestsPurgedEvent(clusterEntity.getClusterId(), purgedIds));
+
+      LOG.info("Purged {} of {} requests ({} rows) in {} ms", purgedRequests, requestIds.size(), affectedRows,
+          System.currentTimeMillis() - start);
+
+      if (batchPause > 0 && i < batches.size() - 1) {
+        try {
+          TimeUnit.MILLISECONDS.sleep(batchPause);
+        } catch (InterruptedException e) {
+          LOG.warn("The purge of requests was interrupted after {} of {} requests", purgedRequests,
+              requestIds.size());
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+
+    LOG.info("Purged {} requests of cluster {} in {} ms, deleted rows: {}", purgedRequests,
+        policy.getClusterName(), System.currentTimeMillis() - start, deletedRows);
+
+    return affectedRows;
+  }
+
+  /**
+   * Finds the requests of a cluster which finished before a date and can be
+   * purged.
+   *
+   * @param clusterId the cluster
+   * @param beforeDateMillis the date in milliseconds
+   * @return the ids of the requests in ascending order
+   */
+  @RequiresSession
+  public List<Long> findPurgeableRequestIds(long clusterId, long beforeDateMillis) {
+    TypedQuery<Long> query = entityManagerProvider.get().createQuery(PURGEABLE_REQUESTS_SQL, Long.class);
+    return daoUtils.selectList(query, clusterId, beforeDateMillis, HostRoleStatus.getCompletedStates(),
+        TopologyRequest.Type.PROVISION.name());
+  }
+
+  /**
+   * Deletes requests along with the rows which refer to them in a single
+   * transaction.
+   *
+   * @param requestIds the requests
+   * @param deletedRows the number of deleted rows by table, which is updated
+   * @return the number of deleted rows
+   */
+  @Transactional
+  long purgeRequests(List<Long> requestIds, Map<String, Long> deletedRows) {
+    EntityManager entityManager = entityManagerProvider.get();
+
+    TypedQuery<Long> topologyQuery = entityManager.createQuery(TOPOLOGY_REQUEST_IDS_SQL, Long.class);
+    topologyQuery.setParameter("requestIds", requestIds);
+    List<Long> topologyRequestIds = daoUtils.selectList(topologyQuery);
+
+    long affectedRows = 0;
+    for (Map.Entry<String, String> entry : PURGE_SQL.entrySet()) {
+      String sql = entry.getValue();
+      Query query = entityManager.createQuery(sql);
+      if (sql.contains(":topologyRequestIds")) {
+        if (topologyRequestIds.isEmpty()) {
+          continue;
+        }
+        query.setParameter("topologyRequestIds", topologyRequestIds);
+      } else {
+        query.setParameter("requestIds", requestIds);
+      }
+
+      int rows = query.executeUpdate();
+      Long total = deletedRows.get(entry.getKey());
+      deletedRows.put(entry.getKey(), (null == total ? 0 : total) + rows);
+      affectedRows += rows;
+    }
+
+    entityManager.flush();
+    entityManager.clear();
+
+    return affectedRows;
+  }
 }
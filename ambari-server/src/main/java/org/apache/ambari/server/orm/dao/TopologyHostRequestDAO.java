@@ -17,13 +17,19 @@
  */
 package org.apache.ambari.server.orm.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.orm.RequiresSession;
 import org.apache.ambari.server.orm.entities.TopologyHostRequestEntity;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -37,11 +43,37 @@ public class TopologyHostRequestDAO {
   @Inject
   DaoUtils daoUtils;
 
+  @Inject
+  Configuration configuration;
+
   @RequiresSession
   public TopologyHostRequestEntity findById(Long id) {
     return entityManagerProvider.get().find(TopologyHostRequestEntity.class, id);
   }
 
+  /**
+   * Finds the entities with the given ids, querying at most
+   * {@link Configuration#getTaskIdListLimit()} ids at a time.
+   *
+   * @param ids the ids to look up
+   * @return the entities found, ids without an entity are skipped
+   */
+  @RequiresSession
+  public List<TopologyHostRequestEntity> findByIds(Collection<Long> ids) {
+    if (ids == null || ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    TypedQuery<TopologyHostRequestEntity> query = entityManagerProvider.get().createQuery(
+        "SELECT entity FROM TopologyHostRequestEntity entity WHERE entity.id IN ?1", TopologyHostRequestEntity.class);
+
+    List<TopologyHostRequestEntity> result = new ArrayList<TopologyHostRequestEntity>();
+    for (List<Long> list : Lists.partition(new ArrayList<Long>(ids), configuration.getTaskIdListLimit())) {
+      result.addAll(daoUtils.selectList(query, list));
+    }
+    return result;
+  }
+
   @RequiresSession
   public List<TopologyHostRequestEntity> findAll() {
     return daoUtils.selectAll(entityManagerProvider.get(), TopologyHostRequestEntity.class);
@@ -48,6 +48,14 @@ import org.apache.ambari.server.RoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.commons.lang.ArrayUtils;
 
+/**
+ * Models a single task of a stage.
+ * <p/>
+ * Large requests, such as upgrades of big clusters, create tens of thousands
+ * of tasks at once, so the {@link TableGenerator} hands out IDs in ranges of
+ * {@code allocationSize} to keep the number of queries to the sequence ID
+ * table low.
+ */
 @Entity
 @Table(name = "host_role_command"
        , indexes = {
@@ -58,6 +66,7 @@ import org.apache.commons.lang.ArrayUtils;
     table = "ambari_sequences", pkColumnName = "sequence_name", valueColumnName = "sequence_value"
     , pkColumnValue = "host_role_command_id_seq"
     , initialValue = 1
+    , allocationSize = 500
 )
 @NamedQueries({
     @NamedQuery(name = "HostRoleCommandEntity.findCountByCommandStatuses", query = "SELECT COUNT(command.taskId) FROM HostRoleCommandEntity command WHERE command.status IN :statuses"),
@@ -29,6 +29,7 @@ import org.apache.ambari.server.orm.entities.HostComponentDesiredStateEntity;
 import org.apache.ambari.server.orm.entities.HostComponentStateEntity;
 import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.state.State;
+import org.apache.ambari.server.state.WriteBehindStateFlusher;
 
 import com.google.inject.Inject;
 
@@ -50,6 +51,9 @@ public class HostComponentSummary {
   @Inject
   private static HostComponentDesiredStateDAO hostComponentDesiredStateDao;
 
+  @Inject
+  private static WriteBehindStateFlusher writeBehindStateFlusher;
+
   public HostComponentSummary(String serviceName, String componentName, Long hostId, State desiredState, State currentState) {
     this.serviceName = serviceName;
     this.componentName = componentName;
@@ -82,6 +86,10 @@ public class HostComponentSummary {
 
   public static List<HostComponentSummary> getHostComponentSummaries(String serviceName, String componentName) {
     List<HostComponentSummary> hostComponentSummaries = new ArrayList<HostComponentSummary>();
+
+    // the current state is read from the database, it must not lag behind the host components
+    writeBehindStateFlusher.flush();
+
     List<HostComponentStateEntity> hostComponentStates = hostComponentStateDao.findByServiceAndComponent(serviceName, componentName);
 
     if (hostComponentStates != null) {
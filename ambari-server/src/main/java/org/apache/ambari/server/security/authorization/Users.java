@@ -640,6 +640,7 @@ public class Users {
    * @param batchInfo DTO with batch information
    */
   public void processLdapSync(LdapBatchDto batchInfo) {
+    final long start = System.currentTimeMillis();
     final Map<String, UserEntity> allUsers = new HashMap<String, UserEntity>();
     final Map<String, GroupEntity> allGroups = new HashMap<String, GroupEntity>();
 
@@ -657,6 +658,7 @@ public class Users {
         .ensurePrincipalTypeCreated(PrincipalTypeEntity.USER_PRINCIPAL_TYPE);
     final PrincipalTypeEntity groupPrincipalType = principalTypeDAO
         .ensurePrincipalTypeCreated(PrincipalTypeEntity.GROUP_PRINCIPAL_TYPE);
+    final long prefetched = System.currentTimeMillis();
 
     // remove users
     final Set<UserEntity> usersToRemove = new HashSet<UserEntity>();
@@ -704,6 +706,7 @@ public class Users {
       groupsToBecomeLdap.add(groupEntity);
     }
     groupDAO.merge(groupsToBecomeLdap);
+    final long updated = System.currentTimeMillis();
 
     // prepare create principals
     final List<PrincipalEntity> principalsToCreate = new ArrayList<PrincipalEntity>();
@@ -745,6 +748,7 @@ public class Users {
     principalDAO.create(principalsToCreate);
     userDAO.create(usersToCreate);
     groupDAO.create(groupsToCreate);
+    final long created = System.currentTimeMillis();
 
     // create membership
     final Set<MemberEntity> membersToCreate = new HashSet<MemberEntity>();
@@ -761,19 +765,43 @@ public class Users {
     memberDAO.create(membersToCreate);
     groupDAO.merge(groupsToUpdate); // needed for Derby DB as it doesn't fetch newly added members automatically
 
-    // remove membership
+    // remove membership, the members of each group are looked up once rather than one query per membership
     final Set<MemberEntity> membersToRemove = new HashSet<MemberEntity>();
+    final Map<String, Map<String, MemberEntity>> groupMembers = new HashMap<String, Map<String, MemberEntity>>();
     for (LdapUserGroupMemberDto member : batchInfo.getMembershipToRemove()) {
-      MemberEntity memberEntity = memberDAO.findByUserAndGroup(member.getUserName(), member.getGroupName());
+      MemberEntity memberEntity;
+      final GroupEntity groupEntity = allGroups.get(member.getGroupName());
+      if (groupEntity == null) {
+        memberEntity = memberDAO.findByUserAndGroup(member.getUserName(), member.getGroupName());
+      } else {
+        Map<String, MemberEntity> members = groupMembers.get(groupEntity.getGroupName());
+        if (members == null) {
+          members = new HashMap<String, MemberEntity>();
+          for (MemberEntity groupMember : groupEntity.getMemberEntities()) {
+            if (groupMember.getUser() != null) {
+              members.put(groupMember.getUser().getUserName().toLowerCase(), groupMember);
+            }
+          }
+          groupMembers.put(groupEntity.getGroupName(), members);
+        }
+        memberEntity = members.get(member.getUserName().toLowerCase());
+      }
       if (memberEntity != null) {
         membersToRemove.add(memberEntity);
       }
     }
     memberDAO.remove(membersToRemove);
+    final long membershipUpdated = System.currentTimeMillis();
 
     // clear cached entities
     entityManagerProvider.get().getEntityManagerFactory().getCache().evictAll();
 
+    LOG.info("Processed LDAP sync in {} ms (prefetch: {} ms, removals and updates: {} ms, creations: {} ms, memberships: {} ms); "
+            + "{} users and {} groups created, {} memberships added and {} removed",
+        membershipUpdated - start, prefetched - start, updated - prefetched, created - updated,
+        membershipUpdated - created, usersToCreate.size(), groupsToCreate.size(), membersToCreate.size(),
+        membersToRemove.size());
+
     if (!usersToCreate.isEmpty()) {
       // entry point in the hook logic
       hookServiceProvider.get().execute(hookContextFactory.createBatchUserHookContext(getUsersToGroupMap(usersToCreate)));
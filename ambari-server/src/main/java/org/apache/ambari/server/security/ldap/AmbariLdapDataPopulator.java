@@ -17,10 +17,12 @@
  */
 package org.apache.ambari.server.security.ldap;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -28,9 +30,12 @@ import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.naming.InvalidNameException;
 import javax.naming.NamingException;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.SearchControls;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.configuration.Configuration;
@@ -94,10 +99,46 @@ public class AmbariLdapDataPopulator {
    */
   private List<String> baseOrganizationUnits = Lists.newArrayList();
 
+  /**
+   * The LDAP users resolved from member attribute values during the current sync. A null value
+   * marks a member attribute value known not to refer to a user.
+   */
+  private final Map<String, LdapUserDto> memberUsers = new HashMap<String, LdapUserDto>();
+
+  /**
+   * The LDAP groups resolved from member attribute values during the current sync. A null value
+   * marks a member attribute value known not to refer to a group.
+   */
+  private final Map<String, LdapGroupDto> memberGroups = new HashMap<String, LdapGroupDto>();
+
+  /**
+   * The member lookup statistics of the current sync
+   */
+  private final MemberLookupStatistics memberLookupStatistics = new MemberLookupStatistics();
+
+  /**
+   * The newest modifyTimestamp of the groups seen by the last committed sync of all groups, see
+   * {@link Configuration#isLdapSyncIncrementalEnabled()}
+   */
+  private String groupsHighWaterMark;
+
+  /**
+   * The newest modifyTimestamp of the groups seen by the current sync of all groups, it becomes the
+   * high-water mark once the sync is {@link #commitSyncHighWaterMark() committed}
+   */
+  private String pendingGroupsHighWaterMark;
+
+  /**
+   * The LDAP properties the high-water marks were collected with
+   */
+  private LdapServerProperties highWaterMarkProperties;
+
   // Constants
   private static final String UID_ATTRIBUTE          = "uid";
   private static final String OBJECT_CLASS_ATTRIBUTE = "objectClass";
   private static final int USERS_PAGE_SIZE = 500;
+  private static final int MEMBER_LOOKUP_BATCH_SIZE = 100;
+  private static final String MODIFY_TIMESTAMP_ATTRIBUTE = "modifyTimestamp";
 
   // REGEXP to check member attribute starts with "cn=" or "uid=" - case insensitive
   private static final String IS_MEMBER_DN_REGEXP = "^(?i)(uid|cn|%s|%s)=.*$";
@@ -186,20 +227,66 @@ public class AmbariLdapDataPopulator {
    */
   public LdapBatchDto synchronizeAllLdapGroups(LdapBatchDto batchInfo) throws AmbariException {
     LOG.trace("Synchronize All LDAP groups...");
-    Set<LdapGroupDto> externalLdapGroupInfo = getExternalLdapGroupInfo();
+    startMemberLookups();
+    try {
+      long start = System.currentTimeMillis();
+      Set<LdapGroupDto> externalLdapGroupInfo = getExternalLdapGroupInfo();
+      long groupsFetched = System.currentTimeMillis();
+
+      final Map<String, Group> internalGroupsMap = getInternalGroups();
+      final Map<String, User> internalUsersMap = getInternalUsers();
+
+      // the groups modified at, or after, the previous sync need to be refreshed
+      String highWaterMark = getGroupsHighWaterMark();
+      String newHighWaterMark = highWaterMark;
+      int unchangedGroups = 0;
+
+      // the members of a nested group are not covered by the modifyTimestamp of the group containing it
+      Set<String> groupIds = new HashSet<String>();
+      if (highWaterMark != null) {
+        for (LdapGroupDto groupDto : externalLdapGroupInfo) {
+          groupIds.add(groupDto.getGroupName());
+          if (groupDto.getDn() != null) {
+            groupIds.add(groupDto.getDn());
+          }
+        }
+      }
 
-    final Map<String, Group> internalGroupsMap = getInternalGroups();
-    final Map<String, User> internalUsersMap = getInternalUsers();
+      for (LdapGroupDto groupDto : externalLdapGroupInfo) {
+        String groupName = groupDto.getGroupName();
+        String modifyTimestamp = normalizeGeneralizedTime(groupDto.getModifyTimestamp());
+        Group internalGroup = internalGroupsMap.get(groupName);
 
-    for (LdapGroupDto groupDto : externalLdapGroupInfo) {
-      String groupName = groupDto.getGroupName();
-      addLdapGroup(batchInfo, internalGroupsMap, groupName);
-      refreshGroupMembers(batchInfo, groupDto, internalUsersMap, internalGroupsMap, null, false);
-    }
-    for (Entry<String, Group> internalGroup : internalGroupsMap.entrySet()) {
-      if (internalGroup.getValue().isLdapGroup()) {
-        batchInfo.getGroupsToBeRemoved().add(internalGroup.getValue().getGroupName());
+        if ((modifyTimestamp != null) && ((newHighWaterMark == null) || (modifyTimestamp.compareTo(newHighWaterMark) > 0))) {
+          newHighWaterMark = modifyTimestamp;
+        }
+
+        addLdapGroup(batchInfo, internalGroupsMap, groupName);
+
+        if ((highWaterMark != null) && (modifyTimestamp != null) && (modifyTimestamp.compareTo(highWaterMark) < 0)
+            && (internalGroup != null) && internalGroup.isLdapGroup()
+            && Collections.disjoint(groupDto.getMemberAttributes(), groupIds)) {
+          LOG.trace("Group '{}' has not been modified since the previous sync, skipping its members.", groupName);
+          unchangedGroups++;
+        } else {
+          refreshGroupMembers(batchInfo, groupDto, internalUsersMap, internalGroupsMap, null, false);
+        }
+      }
+      for (Entry<String, Group> internalGroup : internalGroupsMap.entrySet()) {
+        if (internalGroup.getValue().isLdapGroup()) {
+          batchInfo.getGroupsToBeRemoved().add(internalGroup.getValue().getGroupName());
+        }
       }
+
+      if (configuration.isLdapSyncIncrementalEnabled()) {
+        pendingGroupsHighWaterMark = newHighWaterMark;
+      }
+
+      LOG.info("Synchronized {} LDAP groups ({} unchanged) in {} ms, fetching the groups took {} ms, {}",
+          externalLdapGroupInfo.size(), unchangedGroups, System.currentTimeMillis() - start, groupsFetched - start,
+          memberLookupStatistics);
+    } finally {
+      finishMemberLookups();
     }
 
     return batchInfo;
@@ -263,10 +350,18 @@ public class AmbariLdapDataPopulator {
     final Map<String, Group> internalGroupsMap = getInternalGroups();
     final Map<String, User> internalUsersMap = getInternalUsers();
 
-    for (LdapGroupDto groupDto : specifiedGroups) {
-      String groupName = groupDto.getGroupName();
-      addLdapGroup(batchInfo, internalGroupsMap, groupName);
-      refreshGroupMembers(batchInfo, groupDto, internalUsersMap, internalGroupsMap, null, true);
+    startMemberLookups();
+    try {
+      long start = System.currentTimeMillis();
+      for (LdapGroupDto groupDto : specifiedGroups) {
+        String groupName = groupDto.getGroupName();
+        addLdapGroup(batchInfo, internalGroupsMap, groupName);
+        refreshGroupMembers(batchInfo, groupDto, internalUsersMap, internalGroupsMap, null, true);
+      }
+      LOG.info("Synchronized {} LDAP groups in {} ms, {}", specifiedGroups.size(),
+          System.currentTimeMillis() - start, memberLookupStatistics);
+    } finally {
+      finishMemberLookups();
     }
 
     return batchInfo;
@@ -325,16 +420,24 @@ public class AmbariLdapDataPopulator {
 
     final Set<Group> internalGroupSet = Sets.newHashSet(internalGroupsMap.values());
 
-    for (Group group : internalGroupSet) {
-      if (group.isLdapGroup()) {
-        Set<LdapGroupDto> groupDtos = getLdapGroups(group.getGroupName());
-        if (groupDtos.isEmpty()) {
-          batchInfo.getGroupsToBeRemoved().add(group.getGroupName());
-        } else {
-          LdapGroupDto groupDto = groupDtos.iterator().next();
-          refreshGroupMembers(batchInfo, groupDto, internalUsersMap, internalGroupsMap, null, true);
+    startMemberLookups();
+    try {
+      long start = System.currentTimeMillis();
+      for (Group group : internalGroupSet) {
+        if (group.isLdapGroup()) {
+          Set<LdapGroupDto> groupDtos = getLdapGroups(group.getGroupName());
+          if (groupDtos.isEmpty()) {
+            batchInfo.getGroupsToBeRemoved().add(group.getGroupName());
+          } else {
+            LdapGroupDto groupDto = groupDtos.iterator().next();
+            refreshGroupMembers(batchInfo, groupDto, internalUsersMap, internalGroupsMap, null, true);
+          }
         }
       }
+      LOG.info("Synchronized {} existing groups in {} ms, {}", internalGroupSet.size(),
+          System.currentTimeMillis() - start, memberLookupStatistics);
+    } finally {
+      finishMemberLookups();
     }
 
     return batchInfo;
@@ -380,6 +483,8 @@ public class AmbariLdapDataPopulator {
       groupMemberAttributes = new HashSet<String>();
     }
 
+    resolveMembers(group.getMemberAttributes(), recursive);
+
     for (String memberAttributeValue: group.getMemberAttributes()) {
       LdapUserDto groupMember = getLdapUserByMemberAttr(memberAttributeValue);
       if (groupMember != null) {
@@ -469,6 +574,13 @@ public class AmbariLdapDataPopulator {
    * @return the user for the given member attribute; null if not found
    */
   protected LdapUserDto getLdapUserByMemberAttr(String memberAttributeValue) {
+    if (memberUsers.containsKey(memberAttributeValue)) {
+      memberLookupStatistics.cacheHits++;
+      return memberUsers.get(memberAttributeValue);
+    }
+
+    long start = System.currentTimeMillis();
+    String originalMemberAttributeValue = memberAttributeValue;
     Set<LdapUserDto> filteredLdapUsers = new HashSet<LdapUserDto>();
 
     memberAttributeValue = getUniqueIdByMemberPattern(memberAttributeValue,
@@ -491,7 +603,11 @@ public class AmbariLdapDataPopulator {
         .and(new EqualsFilter(ldapServerProperties.getUsernameAttribute(), memberAttributeValue));
       filteredLdapUsers = getFilteredLdapUsers(ldapServerProperties.getBaseDN(), filter);
     }
-    return (filteredLdapUsers.isEmpty()) ? null : filteredLdapUsers.iterator().next();
+
+    LdapUserDto user = (filteredLdapUsers.isEmpty()) ? null : filteredLdapUsers.iterator().next();
+    memberUsers.put(originalMemberAttributeValue, user);
+    memberLookupStatistics.recordLookup(System.currentTimeMillis() - start);
+    return user;
   }
 
   /**
@@ -502,6 +618,13 @@ public class AmbariLdapDataPopulator {
    * @return the group for the given member attribute; null if not found
    */
   protected LdapGroupDto getLdapGroupByMemberAttr(String memberAttributeValue) {
+    if (memberGroups.containsKey(memberAttributeValue)) {
+      memberLookupStatistics.cacheHits++;
+      return memberGroups.get(memberAttributeValue);
+    }
+
+    long start = System.currentTimeMillis();
+    String originalMemberAttributeValue = memberAttributeValue;
     Set<LdapGroupDto> filteredLdapGroups = new HashSet<LdapGroupDto>();
 
     memberAttributeValue = getUniqueIdByMemberPattern(memberAttributeValue,
@@ -524,7 +647,268 @@ public class AmbariLdapDataPopulator {
         getMemberFilter(memberAttributeValue));
     }
 
-    return (filteredLdapGroups.isEmpty()) ? null : filteredLdapGroups.iterator().next();
+    LdapGroupDto group = (filteredLdapGroups.isEmpty()) ? null : filteredLdapGroups.iterator().next();
+    memberGroups.put(originalMemberAttributeValue, group);
+    memberLookupStatistics.recordLookup(System.currentTimeMillis() - start);
+    return group;
+  }
+
+  /**
+   * Looks up the users, and if requested the groups, referred to by the given member attribute
+   * values in bulk, with one search per batch of (up to 100) values, and caches them for the current
+   * sync. Values that can not be looked up in bulk are left to {@link #getLdapUserByMemberAttr(String)}
+   * and {@link #getLdapGroupByMemberAttr(String)}.
+   * <p/>
+   * Bulk lookups are not used when a custom member filter or replace pattern is configured.
+   *
+   * @param memberAttributeValues the member attribute values of a group
+   * @param includeGroups         true to also look up the values that are not users as groups
+   */
+  protected void resolveMembers(Collection<String> memberAttributeValues, boolean includeGroups) {
+    if (memberAttributeValues == null
+        || StringUtils.isNotEmpty(ldapServerProperties.getSyncUserMemberFilter())
+        || StringUtils.isNotEmpty(ldapServerProperties.getSyncUserMemberReplacePattern())) {
+      return;
+    }
+
+    List<String> unresolved = new ArrayList<String>();
+    for (String memberAttributeValue : memberAttributeValues) {
+      if (memberAttributeValue != null && !memberUsers.containsKey(memberAttributeValue)) {
+        unresolved.add(memberAttributeValue);
+      }
+    }
+
+    // a single value is looked up as fast on its own
+    if (unresolved.size() < 2) {
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+    try {
+      resolveMemberUsers(unresolved);
+
+      if (includeGroups
+          && StringUtils.isEmpty(ldapServerProperties.getSyncGroupMemberFilter())
+          && StringUtils.isEmpty(ldapServerProperties.getSyncGroupMemberReplacePattern())) {
+        List<String> groupDns = new ArrayList<String>();
+        for (String memberAttributeValue : unresolved) {
+          if (memberUsers.containsKey(memberAttributeValue) && memberUsers.get(memberAttributeValue) == null
+              && !memberGroups.containsKey(memberAttributeValue) && isMemberAttributeBaseDn(memberAttributeValue)) {
+            groupDns.add(memberAttributeValue);
+          }
+        }
+        resolveMemberGroups(groupDns);
+      }
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to look up {} group members in bulk, they will be looked up one by one: {}",
+          unresolved.size(), e.getMessage());
+      LOG.debug("Failed to look up group members in bulk", e);
+    } finally {
+      memberLookupStatistics.bulkMillis += System.currentTimeMillis() - start;
+    }
+  }
+
+  /**
+   * Looks up the users referred to by member attribute values in bulk. DNs are searched for under
+   * their parent entry by their RDN, other values by the username attribute.
+   */
+  private void resolveMemberUsers(List<String> memberAttributeValues) {
+    Map<String, Map<LdapName, String>> dnsByParent = new LinkedHashMap<String, Map<LdapName, String>>();
+    Map<String, String> names = new LinkedHashMap<String, String>();
+
+    for (String memberAttributeValue : memberAttributeValues) {
+      if (isMemberAttributeBaseDn(memberAttributeValue)) {
+        addToParent(dnsByParent, memberAttributeValue);
+      } else {
+        names.put(memberAttributeValue.toLowerCase(), memberAttributeValue);
+      }
+    }
+
+    Filter userObjectFilter = new EqualsFilter(OBJECT_CLASS_ATTRIBUTE, ldapServerProperties.getUserObjectClass());
+
+    for (Entry<String, Map<LdapName, String>> parent : dnsByParent.entrySet()) {
+      for (Map<LdapName, String> batch : partition(parent.getValue())) {
+        Set<LdapUserDto> found = getFilteredLdapUsers(parent.getKey(), userObjectFilter, createRdnFilter(batch.keySet()));
+        memberLookupStatistics.bulkQueries++;
+
+        for (LdapUserDto user : found) {
+          String memberAttributeValue = batch.get(parseDn(user.getDn()));
+          if (memberAttributeValue != null) {
+            memberUsers.put(memberAttributeValue, user);
+          }
+        }
+        for (String memberAttributeValue : batch.values()) {
+          if (!memberUsers.containsKey(memberAttributeValue)) {
+            memberUsers.put(memberAttributeValue, null);
+          }
+        }
+      }
+    }
+
+    String usernameAttribute = ldapServerProperties.getUsernameAttribute();
+    for (Map<String, String> batch : partition(names)) {
+      OrFilter nameFilter = new OrFilter();
+      for (String name : batch.values()) {
+        nameFilter.or(new EqualsFilter(usernameAttribute, name));
+      }
+
+      Set<LdapUserDto> found = getFilteredLdapUsers(ldapServerProperties.getBaseDN(), userObjectFilter, nameFilter);
+      memberLookupStatistics.bulkQueries++;
+
+      for (LdapUserDto user : found) {
+        String memberAttributeValue = (user.getUserName() == null) ? null : batch.get(user.getUserName().toLowerCase());
+        if (memberAttributeValue != null) {
+          memberUsers.put(memberAttributeValue, user);
+        }
+      }
+      for (String memberAttributeValue : batch.values()) {
+        if (!memberUsers.containsKey(memberAttributeValue)) {
+          memberUsers.put(memberAttributeValue, null);
+        }
+      }
+    }
+  }
+
+  /**
+   * Looks up the groups referred to by member attribute values, which must be DNs, in bulk.
+   */
+  private void resolveMemberGroups(List<String> memberAttributeValues) {
+    Map<String, Map<LdapName, String>> dnsByParent = new LinkedHashMap<String, Map<LdapName, String>>();
+    for (String memberAttributeValue : memberAttributeValues) {
+      addToParent(dnsByParent, memberAttributeValue);
+    }
+
+    Filter groupObjectFilter = new EqualsFilter(OBJECT_CLASS_ATTRIBUTE, ldapServerProperties.getGroupObjectClass());
+
+    for (Entry<String, Map<LdapName, String>> parent : dnsByParent.entrySet()) {
+      for (Map<LdapName, String> batch : partition(parent.getValue())) {
+        Set<LdapGroupDto> found = getFilteredLdapGroups(parent.getKey(), groupObjectFilter, createRdnFilter(batch.keySet()));
+        memberLookupStatistics.bulkQueries++;
+
+        for (LdapGroupDto group : found) {
+          String memberAttributeValue = batch.get(parseDn(group.getDn()));
+          if (memberAttributeValue != null) {
+            memberGroups.put(memberAttributeValue, group);
+          }
+        }
+        for (String memberAttributeValue : batch.values()) {
+          if (!memberGroups.containsKey(memberAttributeValue)) {
+            memberGroups.put(memberAttributeValue, null);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a DN member attribute value to the map of DNs by parent DN. Values that are not valid DNs,
+   * or have no parent, are skipped and so left to be looked up one by one.
+   */
+  private void addToParent(Map<String, Map<LdapName, String>> dnsByParent, String memberAttributeValue) {
+    LdapName dn = parseDn(memberAttributeValue);
+    if (dn == null || dn.size() < 2) {
+      return;
+    }
+
+    String parent = dn.getPrefix(dn.size() - 1).toString();
+    Map<LdapName, String> dns = dnsByParent.get(parent);
+    if (dns == null) {
+      dns = new LinkedHashMap<LdapName, String>();
+      dnsByParent.put(parent, dns);
+    }
+    dns.put(dn, memberAttributeValue);
+  }
+
+  private Filter createRdnFilter(Collection<LdapName> dns) {
+    OrFilter filter = new OrFilter();
+    for (LdapName dn : dns) {
+      Rdn rdn = dn.getRdn(dn.size() - 1);
+      filter.or(new EqualsFilter(rdn.getType(), rdn.getValue().toString()));
+    }
+    return filter;
+  }
+
+  private static <K, V> List<Map<K, V>> partition(Map<K, V> map) {
+    List<Map<K, V>> batches = new ArrayList<Map<K, V>>();
+    Map<K, V> batch = null;
+    for (Entry<K, V> entry : map.entrySet()) {
+      if (batch == null || batch.size() == MEMBER_LOOKUP_BATCH_SIZE) {
+        batch = new LinkedHashMap<K, V>();
+        batches.add(batch);
+      }
+      batch.put(entry.getKey(), entry.getValue());
+    }
+    return batches;
+  }
+
+  private static LdapName parseDn(String dn) {
+    if (dn == null) {
+      return null;
+    }
+    try {
+      return new LdapName(dn);
+    } catch (InvalidNameException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Clears the members cached by a previous sync and resets the member lookup statistics.
+   */
+  private void startMemberLookups() {
+    memberUsers.clear();
+    memberGroups.clear();
+    memberLookupStatistics.reset();
+  }
+
+  /**
+   * Releases the members cached by the current sync.
+   */
+  private void finishMemberLookups() {
+    memberUsers.clear();
+    memberGroups.clear();
+  }
+
+  /**
+   * Makes the newest modifyTimestamp seen by the last sync of all groups the high-water mark of the
+   * next incremental sync. This must only be called once the changes of the sync were persisted.
+   */
+  public void commitSyncHighWaterMark() {
+    if (pendingGroupsHighWaterMark != null) {
+      groupsHighWaterMark = pendingGroupsHighWaterMark;
+      highWaterMarkProperties = ldapServerProperties;
+      pendingGroupsHighWaterMark = null;
+    }
+  }
+
+  /**
+   * Gets the high-water mark to sync all groups incrementally with.
+   *
+   * @return the high-water mark; or null if all groups have to be refreshed
+   */
+  private String getGroupsHighWaterMark() {
+    pendingGroupsHighWaterMark = null;
+
+    if (!configuration.isLdapSyncIncrementalEnabled()
+        || highWaterMarkProperties == null || !highWaterMarkProperties.equals(ldapServerProperties)) {
+      return null;
+    }
+    return groupsHighWaterMark;
+  }
+
+  /**
+   * Normalizes an LDAP generalized time (e.g. 20161019032800.0Z) to its date and time digits
+   * (yyyyMMddHHmmss), so that timestamps can be compared as strings.
+   *
+   * @param generalizedTime the generalized time
+   * @return the normalized time; or null if it can not be normalized
+   */
+  static String normalizeGeneralizedTime(String generalizedTime) {
+    if (generalizedTime == null || generalizedTime.length() < 14) {
+      return null;
+    }
+    String dateTime = generalizedTime.substring(0, 14);
+    return StringUtils.isNumeric(dateTime) ? dateTime : null;
   }
 
   /**
@@ -635,8 +1019,18 @@ public class AmbariLdapDataPopulator {
     final Set<LdapGroupDto> groups = new HashSet<LdapGroupDto>();
     final LdapTemplate ldapTemplate = loadLdapTemplate();
     LOG.trace("LDAP Group Query - Base DN: '{}' ; Filter: '{}'", baseDn, filter.encode());
-    ldapTemplate.search(baseDn, filter.encode(),
-      new LdapGroupContextMapper(groups, ldapServerProperties));
+    if (configuration.isLdapSyncIncrementalEnabled()) {
+      // modifyTimestamp is an operational attribute, it is only returned when requested explicitly
+      SearchControls searchControls = new SearchControls();
+      searchControls.setReturningObjFlag(true);
+      searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+      searchControls.setReturningAttributes(new String[]{"*", MODIFY_TIMESTAMP_ATTRIBUTE});
+      ldapTemplate.search(baseDn, filter.encode(), searchControls,
+        new LdapGroupContextMapper(groups, ldapServerProperties));
+    } else {
+      ldapTemplate.search(baseDn, filter.encode(),
+        new LdapGroupContextMapper(groups, ldapServerProperties));
+    }
     return groups;
   }
 
@@ -674,7 +1068,7 @@ public class AmbariLdapDataPopulator {
       List dtos = configuration.getLdapServerProperties().isPaginationEnabled() ?
         ldapTemplate.search(baseDn, encodedFilter, searchControls, ldapUserContextMapper, processor) :
         ldapTemplate.search(baseDn, encodedFilter, searchControls, ldapUserContextMapper);
-      for (Object dto : dtos) {
+      for (Object dto : (dtos == null) ? Collections.emptyList() : dtos) {
         if (dto != null) {
           users.add((LdapUserDto)dto);
         }
@@ -801,6 +1195,36 @@ public class AmbariLdapDataPopulator {
     return new LdapTemplate(ldapContextSource);
   }
 
+  /**
+   * Counts the member lookups of a sync, to be logged once the sync is done
+   */
+  private static class MemberLookupStatistics {
+    private int bulkQueries;
+    private long bulkMillis;
+    private int individualQueries;
+    private long individualMillis;
+    private int cacheHits;
+
+    private void recordLookup(long millis) {
+      individualQueries++;
+      individualMillis += millis;
+    }
+
+    private void reset() {
+      bulkQueries = 0;
+      bulkMillis = 0;
+      individualQueries = 0;
+      individualMillis = 0;
+      cacheHits = 0;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("member lookups: %d bulk queries (%d ms), %d individual queries (%d ms), %d cache hits",
+          bulkQueries, bulkMillis, individualQueries, individualMillis, cacheHits);
+    }
+  }
+
   //
   // ContextMapper implementations
   //
@@ -827,6 +1251,8 @@ public class AmbariLdapDataPopulator {
       if (groupNameAttribute != null) {
         final LdapGroupDto group = new LdapGroupDto();
         group.setGroupName(groupNameAttribute.toLowerCase());
+        group.setDn(adapter.getNameInNamespace().toLowerCase());
+        group.setModifyTimestamp(adapter.getStringAttribute(MODIFY_TIMESTAMP_ATTRIBUTE));
         final String[] uniqueMembers = adapter.getStringAttributes(ldapServerProperties.getGroupMembershipAttr());
         if (uniqueMembers != null) {
           for (String uniqueMember: uniqueMembers) {
@@ -39,6 +39,16 @@ public class LdapGroupDto {
    */
   private boolean synced;
 
+  /**
+   * The DN of the group entry.
+   */
+  private String dn;
+
+  /**
+   * The value of the modifyTimestamp operational attribute of the group entry, if it was requested.
+   */
+  private String modifyTimestamp;
+
   /**
    * Get the group name.
    *
@@ -93,6 +103,42 @@ public class LdapGroupDto {
     this.synced = synced;
   }
 
+  /**
+   * Get the DN of the group entry.
+   *
+   * @return the DN
+   */
+  public String getDn() {
+    return dn;
+  }
+
+  /**
+   * Set the DN of the group entry.
+   *
+   * @param dn the DN
+   */
+  public void setDn(String dn) {
+    this.dn = dn;
+  }
+
+  /**
+   * Get the time the group entry was last modified, as an LDAP generalized time.
+   *
+   * @return the modify timestamp; null if unknown
+   */
+  public String getModifyTimestamp() {
+    return modifyTimestamp;
+  }
+
+  /**
+   * Set the time the group entry was last modified.
+   *
+   * @param modifyTimestamp the modify timestamp, as an LDAP generalized time
+   */
+  public void setModifyTimestamp(String modifyTimestamp) {
+    this.modifyTimestamp = modifyTimestamp;
+  }
+
   @Override
   public int hashCode() {
     int result = groupName != null ? groupName.hashCode() : 0;
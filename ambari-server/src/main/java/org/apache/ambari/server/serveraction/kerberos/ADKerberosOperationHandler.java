@@ -19,13 +19,21 @@
 package org.apache.ambari.server.serveraction.kerberos;
 
 
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.AuthenticationException;
 import javax.naming.CommunicationException;
@@ -45,6 +53,8 @@ import javax.naming.ldap.Control;
 import javax.naming.ldap.InitialLdapContext;
 import javax.naming.ldap.LdapContext;
 import javax.naming.ldap.LdapName;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
 import javax.naming.ldap.Rdn;
 
 import org.apache.ambari.server.security.credential.PrincipalKeyCredential;
@@ -60,9 +70,15 @@ import org.apache.velocity.exception.ResourceNotFoundException;
 
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import com.google.inject.Inject;
 
 /**
  * Implementation of <code>KerberosOperationHandler</code> to created principal in Active Directory
+ * <p/>
+ * When injected, authenticated LDAP contexts are taken from and returned to a shared
+ * {@link LdapContextPool} rather than being created and closed for every handler. Principals may be
+ * looked up in bulk using {@link #findExistingPrincipals(Collection)}, the results are cached for the
+ * lifetime of the opened handler.
  */
 public class ADKerberosOperationHandler extends KerberosOperationHandler {
 
@@ -70,6 +86,59 @@ public class ADKerberosOperationHandler extends KerberosOperationHandler {
 
   private static final String LDAP_CONTEXT_FACTORY_CLASS = "com.sun.jndi.ldap.LdapCtxFactory";
 
+  /**
+   * The default maximum number of principals looked up using a single search filter
+   */
+  private static final int DEFAULT_LOOKUP_BATCH_SIZE = 100;
+
+  /**
+   * The default number of entries requested per page when searching for principals in bulk
+   */
+  private static final int DEFAULT_SEARCH_PAGE_SIZE = 500;
+
+  /**
+   * The shared pool of idle LDAP contexts, this may be null if the handler was not injected
+   */
+  @Inject
+  private LdapContextPool ldapContextPool;
+
+  /**
+   * The key the LDAP context is pooled with, see {@link LdapContextPool#createKey(String, String, char[])}
+   */
+  private String ldapContextPoolKey = null;
+
+  /**
+   * Indicates whether the current LDAP context was taken from the pool
+   */
+  private boolean ldapContextReused = false;
+
+  /**
+   * Indicates whether the current LDAP context failed to communicate with the server and must not
+   * be returned to the pool
+   */
+  private boolean ldapContextBroken = false;
+
+  /**
+   * A cache of the principals (normalized and lowercased) looked up since this handler was opened,
+   * mapped to their DN or to null if the principal is known not to exist
+   */
+  private Map<String, String> principalDNs = null;
+
+  /**
+   * The latency statistics of the LDAP operations executed since this handler was opened, by operation
+   */
+  private Map<String, OperationStatistics> operationStatistics = null;
+
+  /**
+   * The maximum number of principals looked up using a single search filter
+   */
+  private int lookupBatchSize = DEFAULT_LOOKUP_BATCH_SIZE;
+
+  /**
+   * The number of entries requested per page when searching for principals in bulk
+   */
+  private int searchPageSize = DEFAULT_SEARCH_PAGE_SIZE;
+
   /**
    * A String containing the URL for the LDAP interface for the relevant Active Directory
    */
@@ -170,7 +239,9 @@ public class ADKerberosOperationHandler extends KerberosOperationHandler {
     setDefaultRealm(realm);
     setKeyEncryptionTypes(translateEncryptionTypes(kerberosConfiguration.get(KERBEROS_ENV_ENCRYPTION_TYPES), "\\s+"));
 
-    this.ldapContext = createLdapContext();
+    this.principalDNs = new HashMap<String, String>();
+    this.operationStatistics = new TreeMap<String, OperationStatistics>();
+    this.ldapContext = acquireLdapContext();
     this.searchControls = createSearchControls();
 
     this.createTemplate = kerberosConfiguration.get(KERBEROS_ENV_AD_CREATE_ATTRIBUTES_TEMPLATE);
@@ -191,13 +262,23 @@ public class ADKerberosOperationHandler extends KerberosOperationHandler {
 
     this.gson = null;
 
+    this.principalDNs = null;
+
+    logOperationStatistics();
+    this.operationStatistics = null;
+
     if (this.ldapContext != null) {
-      try {
-        this.ldapContext.close();
-      } catch (NamingException e) {
-        throw new KerberosOperationException("Unexpected error", e);
-      } finally {
+      if ((ldapContextPool != null) && !ldapContextBroken) {
+        ldapContextPool.release(ldapContextPoolKey, this.ldapContext);
         this.ldapContext = null;
+      } else {
+        try {
+          this.ldapContext.close();
+        } catch (NamingException e) {
+          throw new KerberosOperationException("Unexpected error", e);
+        } finally {
+          this.ldapContext = null;
+        }
       }
     }
 
@@ -326,9 +407,19 @@ public class ADKerberosOperationHandler extends KerberosOperationHandler {
 
     try {
       Rdn rdn = new Rdn("cn", cn);
-      LdapName name = new LdapName(principalContainerLdapName.getRdns());
+      final LdapName name = new LdapName(principalContainerLdapName.getRdns());
       name.add(name.size(), rdn);
-      ldapContext.createSubcontext(name, attributes);
+      final Attributes createAttributes = attributes;
+
+      executeOperation("create", new LdapOperation<Void>() {
+        @Override
+        public Void execute(LdapContext context) throws NamingException {
+          context.createSubcontext(name, createAttributes);
+          return null;
+        }
+      });
+
+      cachePrincipalDN(deconstructedPrincipal.getNormalizedPrincipal(), name.toString());
     } catch (NamingException ne) {
       throw new KerberosOperationException("Can not create principal : " + principal, ne);
     }
@@ -367,12 +458,18 @@ public class ADKerberosOperationHandler extends KerberosOperationHandler {
       String dn = findPrincipalDN(deconstructPrincipal.getNormalizedPrincipal());
 
       if (dn != null) {
-        ldapContext.modifyAttributes(
-            new LdapName(dn),
-            new ModificationItem[]{
-                new ModificationItem(DirContext.REPLACE_ATTRIBUTE, new BasicAttribute("unicodePwd", String.format("\"%s\"", password).getBytes("UTF-16LE")))
-            }
-        );
+        final LdapName name = new LdapName(dn);
+        final ModificationItem[] modificationItems = new ModificationItem[]{
+            new ModificationItem(DirContext.REPLACE_ATTRIBUTE, new BasicAttribute("unicodePwd", String.format("\"%s\"", password).getBytes("UTF-16LE")))
+        };
+
+        executeOperation("modify", new LdapOperation<Void>() {
+          @Override
+          public Void execute(LdapContext context) throws NamingException {
+            context.modifyAttributes(name, modificationItems);
+            return null;
+          }
+        });
       } else {
         throw new KerberosOperationException(String.format("Can not set password for principal %s: Not Found", principal));
       }
@@ -409,7 +506,17 @@ public class ADKerberosOperationHandler extends KerberosOperationHandler {
       String dn = findPrincipalDN(deconstructPrincipal.getNormalizedPrincipal());
 
       if (dn != null) {
-        ldapContext.destroySubcontext(new LdapName(dn));
+        final LdapName name = new LdapName(dn);
+
+        executeOperation("delete", new LdapOperation<Void>() {
+          @Override
+          public Void execute(LdapContext context) throws NamingException {
+            context.destroySubcontext(name);
+            return null;
+          }
+        });
+
+        cachePrincipalDN(deconstructPrincipal.getNormalizedPrincipal(), null);
       }
     } catch (NamingException e) {
       throw new KerberosOperationException(String.format("Can not remove principal %s: %s", principal, e.getMessage()), e);
@@ -418,6 +525,93 @@ public class ADKerberosOperationHandler extends KerberosOperationHandler {
     return true;
   }
 
+  /**
+   * Looks up the existing principals in the Active Directory in bulk, with a search filter per
+   * batch of (up to 100) principals and paged results.
+   * <p/>
+   * The results are cached so that later calls to {@link #principalExists(String)},
+   * {@link #setPrincipalPassword(String, String)} or {@link #removePrincipal(String)} do not need
+   * to search for the principals again.
+   *
+   * @param principals a Collection of principals to look up
+   * @return the Set of the given principals that exist
+   * @throws KerberosOperationException if the principals could not be looked up
+   */
+  public Set<String> findExistingPrincipals(Collection<String> principals) throws KerberosOperationException {
+    if (!isOpen()) {
+      throw new KerberosOperationException("This operation handler has not been opened");
+    }
+
+    Set<String> existingPrincipals = new HashSet<String>();
+
+    if (principals == null) {
+      return existingPrincipals;
+    }
+
+    // The principals not yet known, by lowercased normalized principal
+    Map<String, List<String>> lookups = new LinkedHashMap<String, List<String>>();
+    List<String> normalizedPrincipals = new ArrayList<String>();
+
+    for (String principal : principals) {
+      if (principal == null) {
+        continue;
+      }
+
+      String normalizedPrincipal = createDeconstructPrincipal(principal).getNormalizedPrincipal();
+      String cacheKey = normalizedPrincipal.toLowerCase();
+
+      if (principalDNs.containsKey(cacheKey)) {
+        if (principalDNs.get(cacheKey) != null) {
+          existingPrincipals.add(principal);
+        }
+      } else {
+        List<String> requested = lookups.get(cacheKey);
+        if (requested == null) {
+          requested = new ArrayList<String>();
+          lookups.put(cacheKey, requested);
+          normalizedPrincipals.add(normalizedPrincipal);
+        }
+        requested.add(principal);
+      }
+    }
+
+    int batchSize = (lookupBatchSize > 0) ? lookupBatchSize : DEFAULT_LOOKUP_BATCH_SIZE;
+
+    for (int i = 0; i < normalizedPrincipals.size(); i += batchSize) {
+      List<String> batch = normalizedPrincipals.subList(i, Math.min(i + batchSize, normalizedPrincipals.size()));
+      Map<String, String> dns;
+
+      try {
+        dns = findPrincipalDNs(batch);
+      } catch (NamingException e) {
+        throw new KerberosOperationException(String.format("Can not look up %d principals: %s", batch.size(), e.getMessage()), e);
+      }
+
+      for (String normalizedPrincipal : batch) {
+        String cacheKey = normalizedPrincipal.toLowerCase();
+        String dn = dns.get(cacheKey);
+        principalDNs.put(cacheKey, dn);
+
+        if (dn != null) {
+          existingPrincipals.addAll(lookups.get(cacheKey));
+        }
+      }
+    }
+
+    return existingPrincipals;
+  }
+
+  /**
+   * Looks up the given principals in bulk, see {@link #findExistingPrincipals(Collection)}.
+   *
+   * @param principals a Collection of principals that are about to be processed
+   * @throws KerberosOperationException if the principals could not be looked up
+   */
+  @Override
+  public void prefetchPrincipals(Collection<String> principals) throws KerberosOperationException {
+    findExistingPrincipals(principals);
+  }
+
   @Override
   public boolean testAdministratorCredentials() throws KerberosOperationException {
     if (!isOpen()) {
@@ -428,6 +622,103 @@ public class ADKerberosOperationHandler extends KerberosOperationHandler {
     return true;
   }
 
+  /**
+   * Takes an idle LDAP context from the pool or, if none is available, creates a new one.
+   *
+   * @return the relevant LdapContext
+   * @throws KerberosOperationException if a new context could not be created
+   * @see #createLdapContext()
+   */
+  private LdapContext acquireLdapContext() throws KerberosOperationException {
+    ldapContextReused = false;
+    ldapContextBroken = false;
+
+    if (ldapContextPool != null) {
+      PrincipalKeyCredential administratorCredential = getAdministratorCredential();
+      ldapContextPoolKey = LdapContextPool.createKey(ldapUrl, administratorCredential.getPrincipal(), administratorCredential.getKey());
+
+      LdapContext context = ldapContextPool.borrow(ldapContextPoolKey);
+      if (context != null) {
+        ldapContextReused = true;
+        return context;
+      }
+    }
+
+    long start = System.nanoTime();
+    try {
+      return createLdapContext();
+    } finally {
+      recordOperation("connect", System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Executes an operation using the current LDAP context, recording its latency.
+   * <p/>
+   * If the context was taken from the pool and fails to communicate with the server, which happens
+   * when the server dropped the idle connection, it is replaced by a new context and the operation
+   * is retried once.
+   *
+   * @param operationName the name to record the latency of the operation under
+   * @param operation     the operation to execute
+   * @return the result of the operation
+   * @throws NamingException            if the operation failed
+   * @throws KerberosOperationException if a new context could not be created
+   */
+  private <T> T executeOperation(String operationName, LdapOperation<T> operation)
+      throws NamingException, KerberosOperationException {
+    long start = System.nanoTime();
+
+    try {
+      try {
+        return operation.execute(ldapContext);
+      } catch (CommunicationException e) {
+        if (!ldapContextReused) {
+          ldapContextBroken = true;
+          throw e;
+        }
+
+        LOG.debug("A pooled LDAP context failed to communicate with the Active Directory, retrying with a new context", e);
+
+        try {
+          ldapContext.close();
+        } catch (NamingException ne) {
+          // ignore, the context is discarded anyway
+        }
+
+        ldapContext = null;
+        ldapContext = acquireNewLdapContext();
+
+        try {
+          return operation.execute(ldapContext);
+        } catch (CommunicationException ce) {
+          ldapContextBroken = true;
+          throw ce;
+        }
+      }
+    } finally {
+      recordOperation(operationName, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Creates a new LDAP context, bypassing the pool, to replace a context that failed.
+   *
+   * @return the relevant LdapContext
+   * @throws KerberosOperationException if the context could not be created
+   */
+  private LdapContext acquireNewLdapContext() throws KerberosOperationException {
+    ldapContextReused = false;
+    ldapContextBroken = false;
+
+    long start = System.nanoTime();
+    try {
+      return createLdapContext();
+    } finally {
+      recordOperation("connect", System.nanoTime() - start);
+    }
+  }
+
   /**
    * Helper method to create the LDAP context needed to interact with the Active Directory.
    *
@@ -569,30 +860,242 @@ public class ADKerberosOperationHandler extends KerberosOperationHandler {
     String dn = null;
 
     if (normalizedPrincipal != null) {
-      NamingEnumeration<SearchResult> results = null;
+      String cacheKey = normalizedPrincipal.toLowerCase();
 
-      try {
-        results = ldapContext.search(
-            principalContainerLdapName,
-            String.format("(userPrincipalName=%s)", normalizedPrincipal),
-            searchControls
-        );
-
-        if ((results != null) && results.hasMore()) {
-          SearchResult result = results.next();
-          dn = result.getNameInNamespace();
+      if ((principalDNs != null) && principalDNs.containsKey(cacheKey)) {
+        return principalDNs.get(cacheKey);
+      }
+
+      final String filter = String.format("(userPrincipalName=%s)", escapeFilterValue(normalizedPrincipal));
+
+      dn = executeOperation("search", new LdapOperation<String>() {
+        @Override
+        public String execute(LdapContext context) throws NamingException {
+          NamingEnumeration<SearchResult> results = null;
+
+          try {
+            results = context.search(principalContainerLdapName, filter, searchControls);
+
+            if ((results != null) && results.hasMore()) {
+              SearchResult result = results.next();
+              return result.getNameInNamespace();
+            }
+
+            return null;
+          } finally {
+            try {
+              if (results != null) {
+                results.close();
+              }
+            } catch (NamingException ne) {
+              // ignore, we can not do anything about it
+            }
+          }
         }
-      } finally {
+      });
+
+      cachePrincipalDN(normalizedPrincipal, dn);
+    }
+
+    return dn;
+  }
+
+  /**
+   * Searches for the DNs of the given principals using a single search filter and paged results.
+   *
+   * @param normalizedPrincipals a List of normalized principals
+   * @return a Map of the found principals, lowercased, to their DNs
+   * @throws NamingException            if the search failed
+   * @throws KerberosOperationException if a new context could not be created
+   */
+  private Map<String, String> findPrincipalDNs(List<String> normalizedPrincipals)
+      throws NamingException, KerberosOperationException {
+    StringBuilder filterBuilder = new StringBuilder("(|");
+    for (String normalizedPrincipal : normalizedPrincipals) {
+      filterBuilder.append("(userPrincipalName=").append(escapeFilterValue(normalizedPrincipal)).append(')');
+    }
+    filterBuilder.append(')');
+
+    final String filter = filterBuilder.toString();
+
+    final SearchControls batchSearchControls = new SearchControls();
+    batchSearchControls.setSearchScope(SearchControls.ONELEVEL_SCOPE);
+    batchSearchControls.setReturningAttributes(new String[]{"userPrincipalName"});
+
+    final int pageSize = (searchPageSize > 0) ? searchPageSize : DEFAULT_SEARCH_PAGE_SIZE;
+
+    return executeOperation("search_batch", new LdapOperation<Map<String, String>>() {
+      @Override
+      public Map<String, String> execute(LdapContext context) throws NamingException {
+        Map<String, String> dns = new HashMap<String, String>();
+        byte[] cookie = null;
+
         try {
-          if (results != null) {
-            results.close();
-          }
-        } catch (NamingException ne) {
-          // ignore, we can not do anything about it
+          do {
+            context.setRequestControls(new Control[]{new PagedResultsControl(pageSize, cookie, Control.NONCRITICAL)});
+
+            NamingEnumeration<SearchResult> results = context.search(principalContainerLdapName, filter, batchSearchControls);
+            try {
+              while (results.hasMore()) {
+                SearchResult result = results.next();
+                Attribute userPrincipalName = result.getAttributes().get("userPrincipalName");
+
+                if ((userPrincipalName != null) && (userPrincipalName.get() != null)) {
+                  dns.put(userPrincipalName.get().toString().toLowerCase(), result.getNameInNamespace());
+                }
+              }
+            } finally {
+              results.close();
+            }
+
+            cookie = null;
+
+            Control[] responseControls = context.getResponseControls();
+            if (responseControls != null) {
+              for (Control control : responseControls) {
+                if (control instanceof PagedResultsResponseControl) {
+                  cookie = ((PagedResultsResponseControl) control).getCookie();
+                }
+              }
+            }
+          } while ((cookie != null) && (cookie.length > 0));
+        } catch (IOException e) {
+          NamingException namingException = new NamingException("Failed to create the paged results control: " + e.getMessage());
+          namingException.setRootCause(e);
+          throw namingException;
+        } finally {
+          context.setRequestControls(null);
         }
+
+        return dns;
       }
+    });
+  }
+
+  /**
+   * Caches the DN of a principal, a null DN indicates that the principal does not exist.
+   *
+   * @param normalizedPrincipal the normalized principal
+   * @param dn                  the DN of the principal or null
+   */
+  private void cachePrincipalDN(String normalizedPrincipal, String dn) {
+    if ((principalDNs != null) && (normalizedPrincipal != null)) {
+      principalDNs.put(normalizedPrincipal.toLowerCase(), dn);
     }
+  }
 
-    return dn;
+  /**
+   * Escapes a value to be used in an LDAP search filter, see RFC 4515.
+   *
+   * @param value the value to escape
+   * @return the escaped value
+   */
+  static String escapeFilterValue(String value) {
+    StringBuilder builder = new StringBuilder(value.length());
+
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '\\':
+          builder.append("\\5c");
+          break;
+        case '*':
+          builder.append("\\2a");
+          break;
+        case '(':
+          builder.append("\\28");
+          break;
+        case ')':
+          builder.append("\\29");
+          break;
+        case '\u0000':
+          builder.append("\\00");
+          break;
+        default:
+          builder.append(c);
+      }
+    }
+
+    return builder.toString();
+  }
+
+  private void recordOperation(String operationName, long durationNanos) {
+    if (operationStatistics != null) {
+      OperationStatistics statistics = operationStatistics.get(operationName);
+      if (statistics == null) {
+        statistics = new OperationStatistics();
+        operationStatistics.put(operationName, statistics);
+      }
+      statistics.record(durationNanos);
+    }
+  }
+
+  private void logOperationStatistics() {
+    if ((operationStatistics != null) && !operationStatistics.isEmpty() && LOG.isInfoEnabled()) {
+      StringBuilder message = new StringBuilder();
+
+      for (Map.Entry<String, OperationStatistics> entry : operationStatistics.entrySet()) {
+        OperationStatistics statistics = entry.getValue();
+
+        if (message.length() > 0) {
+          message.append(", ");
+        }
+
+        message.append(String.format("%s: %d (avg %.1f ms, max %.1f ms)", entry.getKey(), statistics.count,
+            statistics.totalNanos / (double) statistics.count / TimeUnit.MILLISECONDS.toNanos(1),
+            statistics.maxNanos / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+      }
+
+      LOG.info(String.format("Active Directory operations on %s%s: %s", ldapUrl,
+          ldapContextReused ? " (pooled connection)" : "", message));
+    }
+  }
+
+  /**
+   * Sets the maximum number of principals looked up using a single search filter.
+   *
+   * @param lookupBatchSize the number of principals
+   */
+  void setLookupBatchSize(int lookupBatchSize) {
+    this.lookupBatchSize = lookupBatchSize;
+  }
+
+  /**
+   * Sets the number of entries requested per page when searching for principals in bulk.
+   *
+   * @param searchPageSize the page size
+   */
+  void setSearchPageSize(int searchPageSize) {
+    this.searchPageSize = searchPageSize;
+  }
+
+  /**
+   * Sets the pool to take LDAP contexts from and return them to.
+   *
+   * @param ldapContextPool the LdapContextPool
+   */
+  void setLdapContextPool(LdapContextPool ldapContextPool) {
+    this.ldapContextPool = ldapContextPool;
+  }
+
+  /**
+   * An operation on an LdapContext
+   */
+  private interface LdapOperation<T> {
+    T execute(LdapContext context) throws NamingException;
+  }
+
+  /**
+   * The number and latency of the executions of an LDAP operation
+   */
+  private static class OperationStatistics {
+    private int count;
+    private long totalNanos;
+    private long maxNanos;
+
+    private void record(long durationNanos) {
+      count++;
+      totalNanos += durationNanos;
+      maxNanos = Math.max(maxNanos, durationNanos);
+    }
   }
 }
@@ -20,10 +20,10 @@ package org.apache.ambari.server.serveraction.kerberos;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ambari.server.AmbariException;
@@ -86,7 +86,16 @@ public class CreateKeytabFilesServerAction extends KerberosServerAction {
    * A map of data used to track what has been processed in order to optimize the creation of keytabs
    * such as knowing when to create a cached keytab file or use a cached keytab file.
    */
-  Map<String, Set<String>> visitedIdentities = new HashMap<String, Set<String>>();
+  Map<String, Set<String>> visitedIdentities = new ConcurrentHashMap<String, Set<String>>();
+
+  /**
+   * Locks of the keytab files being written, keyed by their absolute paths.
+   * <p/>
+   * A keytab file holds the keys of every principal of a host that is stored in that file, and those
+   * principals may be processed by different threads.  Writing a keytab file reads, merges and rewrites
+   * it, so writes to the same file are serialized to keep them from losing each other's entries.
+   */
+  private final ConcurrentMap<String, Object> keytabFileLocks = new ConcurrentHashMap<String, Object>();
 
   /**
    * Called to execute this action.  Upon invocation, calls
@@ -108,6 +117,17 @@ public class CreateKeytabFilesServerAction extends KerberosServerAction {
   }
 
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The keytab files of different principals may be created concurrently, writes to a keytab file shared
+   * by several principals are serialized using {@link #createKeytabFile(KerberosOperationHandler, Keytab, File)}.
+   */
+  @Override
+  protected boolean supportsConcurrentProcessing() {
+    return true;
+  }
+
   /**
    * For each identity, create a keytab and append to a new or existing keytab file.
    * <p/>
@@ -235,7 +255,8 @@ public class CreateKeytabFilesServerAction extends KerberosServerAction {
                       commandReport = createCommandReport(1, HostRoleStatus.FAILED, "{}", actionLog.getStdOut(), actionLog.getStdErr());
                     } else {
                       try {
-                        operationHandler.createKeytabFile(new File(cachedKeytabPath), destinationKeytabFile);
+                        createKeytabFile(operationHandler, operationHandler.readKeytabFile(new File(cachedKeytabPath)),
+                            destinationKeytabFile);
                       } catch (KerberosOperationException e) {
                         message = String.format("Failed to create keytab file for %s - %s", evaluatedPrincipal, e.getMessage());
                         actionLog.writeStdErr(message);
@@ -251,8 +272,7 @@ public class CreateKeytabFilesServerAction extends KerberosServerAction {
 
                   if (keytab != null) {
                     try {
-                      if (operationHandler.createKeytabFile(keytab, destinationKeytabFile)) {
-                        ensureAmbariOnlyAccess(destinationKeytabFile);
+                      if (createKeytabFile(operationHandler, keytab, destinationKeytabFile)) {
 
                         message = String.format("Successfully created keytab file for %s at %s", evaluatedPrincipal, destinationKeytabFile.getAbsolutePath());
                         LOG.debug(message);
@@ -304,6 +324,38 @@ public class CreateKeytabFilesServerAction extends KerberosServerAction {
     return commandReport;
   }
 
+  /**
+   * Creates or appends to a keytab file, holding the lock of the keytab file so that concurrent writes
+   * for other principals stored in the same file are not lost.
+   *
+   * @param operationHandler      the KerberosOperationHandler for the relevant KDC
+   * @param keytab                the Keytab containing the data to add to the keytab file
+   * @param destinationKeytabFile the keytab file to create or append to
+   * @return true if the keytab file was successfully created; false otherwise
+   * @throws KerberosOperationException if the keytab file cannot be written
+   * @throws AmbariException if the access to the keytab file cannot be restricted to Ambari
+   */
+  boolean createKeytabFile(KerberosOperationHandler operationHandler, Keytab keytab, File destinationKeytabFile)
+      throws KerberosOperationException, AmbariException {
+    String path = destinationKeytabFile.getAbsolutePath();
+    Object lock = keytabFileLocks.get(path);
+    if (lock == null) {
+      Object newLock = new Object();
+      lock = keytabFileLocks.putIfAbsent(path, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+
+    synchronized (lock) {
+      if (operationHandler.createKeytabFile(keytab, destinationKeytabFile)) {
+        ensureAmbariOnlyAccess(destinationKeytabFile);
+        return true;
+      }
+      return false;
+    }
+  }
+
   /**
    * Creates the keytab or gets one from the cache for a principal.
    *
@@ -18,9 +18,10 @@
 
 package org.apache.ambari.server.serveraction.kerberos;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ambari.server.AmbariException;
@@ -71,7 +72,7 @@ public class CreatePrincipalsServerAction extends KerberosServerAction {
    * A set of visited principal names used to prevent unnecessary processing on already processed
    * principal names
    */
-  private Set<String> seenPrincipals = new HashSet<String>();
+  private Set<String> seenPrincipals = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
   /**
    * Called to execute this action.  Upon invocation, calls
@@ -93,6 +94,26 @@ public class CreatePrincipalsServerAction extends KerberosServerAction {
   }
 
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Principals are independent of each other, so they may be created concurrently.
+   */
+  @Override
+  protected boolean supportsConcurrentProcessing() {
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Each principal is looked up in the KDC before it is created.
+   */
+  @Override
+  protected boolean shouldPrefetchPrincipals() {
+    return true;
+  }
+
   /**
    * For each identity, generate a unique password create a new or update an existing principal in
    * an assume to be configured KDC.
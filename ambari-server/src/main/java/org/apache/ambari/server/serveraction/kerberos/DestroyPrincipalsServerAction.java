@@ -20,9 +20,10 @@ package org.apache.ambari.server.serveraction.kerberos;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ambari.server.AmbariException;
@@ -56,7 +57,7 @@ public class DestroyPrincipalsServerAction extends KerberosServerAction {
    * A set of visited principal names used to prevent unnecessary processing on already processed
    * principal names
    */
-  private Set<String> seenPrincipals = new HashSet<String>();
+  private Set<String> seenPrincipals = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
   /**
    * Called to execute this action.  Upon invocation, calls
@@ -78,6 +79,26 @@ public class DestroyPrincipalsServerAction extends KerberosServerAction {
   }
 
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Principals are independent of each other, so they may be removed concurrently.
+   */
+  @Override
+  protected boolean supportsConcurrentProcessing() {
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Each principal is looked up in the KDC before it is removed.
+   */
+  @Override
+  protected boolean shouldPrefetchPrincipals() {
+    return true;
+  }
+
   /**
    * For each identity, remove the principal from the configured KDC.
    *
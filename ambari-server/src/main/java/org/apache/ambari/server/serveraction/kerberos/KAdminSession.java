@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.serveraction.kerberos;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.ambari.server.utils.ShellCommandUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * KAdminSession is a long running, interactive kadmin (or kadmin.local) process.
+ * <p/>
+ * Queries are written to the process' STDIN and the response to a query is everything the process
+ * writes (to STDOUT or STDERR) until it shows its command prompt again. Password prompts are
+ * answered with the passwords given for the query.
+ * <p/>
+ * A session is not thread-safe; it is expected to be used by one thread at a time.
+ */
+class KAdminSession {
+
+  private final static Logger LOG = LoggerFactory.getLogger(KAdminSession.class);
+
+  /**
+   * A regular expression pattern matching the command prompt of kadmin and kadmin.local, at the
+   * end of the output read so far
+   */
+  private final static Pattern PATTERN_COMMAND_PROMPT = Pattern.compile("(?:^|\\n)kadmin(?:\\.local)?:\\s*$");
+
+  /**
+   * A regular expression pattern matching a whole password prompt line (e.g. "Password for admin/admin@EXAMPLE.COM: "
+   * or "Re-enter password for principal "user@EXAMPLE.COM": "), at the end of the output read so far.
+   * Other output mentioning passwords, like "Last password change: [never]", must not match even
+   * when only its beginning has been read.
+   */
+  private final static Pattern PATTERN_PASSWORD_PROMPT =
+      Pattern.compile("(?:^|\\n)(?:Password for|Enter password for principal|Re-enter password for principal) [^\\n]+:[ \\t]*$");
+
+  /**
+   * Errors which are the expected outcome of a query rather than its failure. kadmin reports them
+   * like any other error, but running the query with "kadmin -q" ends successfully and the callers
+   * interpret them from STDERR.
+   */
+  private final static List<String> EXPECTED_ERRORS = Arrays.asList(
+      "Principal does not exist",
+      "Principal or policy already exists");
+
+  /**
+   * A marker placed in the output queue when the process closed its output
+   */
+  private final static String END_OF_OUTPUT = new String("<EOF>");
+
+  private final List<String> command;
+  private final Process process;
+  private final Writer input;
+  private final BlockingQueue<String> output = new LinkedBlockingQueue<String>();
+  private final long timeoutMillis;
+  private boolean broken = false;
+
+  /**
+   * Starts a new kadmin process and waits for its first command prompt.
+   *
+   * @param command       the kadmin command, without a query
+   * @param adminPassword the administrator's password to answer the initial password prompt, or null
+   * @param timeoutMillis the time to wait for any response of the process
+   * @return a session ready to execute queries
+   * @throws IOException if the process cannot be started or does not show its command prompt
+   */
+  static KAdminSession start(List<String> command, String adminPassword, long timeoutMillis) throws IOException {
+    KAdminSession session = new KAdminSession(command, timeoutMillis);
+    try {
+      String response = session.readResponse(adminPassword, null);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Started kadmin session {}: {}", command, response);
+      }
+    } catch (IOException e) {
+      session.close();
+      throw e;
+    }
+    return session;
+  }
+
+  private KAdminSession(List<String> command, long timeoutMillis) throws IOException {
+    this.command = command;
+    this.timeoutMillis = timeoutMillis;
+
+    ProcessBuilder processBuilder = new ProcessBuilder(command);
+    processBuilder.redirectErrorStream(true);
+    process = processBuilder.start();
+    input = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+
+    Thread reader = new Thread(new OutputReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)),
+        "kadmin-session-reader");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * Executes a query in this session.
+   * <p/>
+   * As the output streams of the process are merged, the response is split by the prefix kadmin
+   * puts in front of its error messages: lines starting with the name of the request (e.g.
+   * "get_principal: "), with "kadmin: " or with "usage: " are returned as STDERR, the other lines
+   * as STDOUT. The exit code is 1 if an error other than one of the {@link #EXPECTED_ERRORS} was
+   * reported, in which case the session is not used anymore.
+   *
+   * @param query        the query to execute
+   * @param userPassword the password to answer password prompts of the query with, or null
+   * @return a ShellCommandUtil.Result with the response of kadmin
+   * @throws IOException if the session failed, in which case it must not be used anymore
+   */
+  ShellCommandUtil.Result execute(String query, String userPassword) throws IOException {
+    if (broken) {
+      throw new IOException("The kadmin session is not usable anymore");
+    }
+    try {
+      input.write(query);
+      input.write('\n');
+      input.flush();
+    } catch (IOException e) {
+      broken = true;
+      throw e;
+    }
+    String response = readResponse(userPassword, userPassword);
+
+    String request = query.trim().split("\\s+", 2)[0];
+    StringBuilder stdOut = new StringBuilder();
+    StringBuilder stdErr = new StringBuilder();
+    boolean failed = false;
+    for (String line : response.split("\\r?\\n")) {
+      if (isErrorLine(line, request)) {
+        stdErr.append(line).append('\n');
+        failed |= !isExpectedError(line);
+      } else if (!line.isEmpty()) {
+        stdOut.append(line).append('\n');
+      }
+    }
+
+    if (failed) {
+      // The failure may have been caused by the session itself, e.g. by its expired ticket
+      broken = true;
+    }
+    return new ShellCommandUtil.Result(failed ? 1 : 0, stdOut.toString(), stdErr.toString());
+  }
+
+  private static boolean isErrorLine(String line, String request) {
+    return line.startsWith(request + ": ") || line.startsWith("kadmin: ") || line.startsWith("kadmin.local: ")
+        || line.startsWith("usage: ");
+  }
+
+  private static boolean isExpectedError(String line) {
+    for (String error : EXPECTED_ERRORS) {
+      if (line.contains(error)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if the session can execute queries
+   */
+  boolean isUsable() {
+    if (broken) {
+      return false;
+    }
+    try {
+      process.exitValue();
+      return false;
+    } catch (IllegalThreadStateException e) {
+      return true;
+    }
+  }
+
+  /**
+   * Asks kadmin to quit and makes sure the process is gone.
+   */
+  void close() {
+    broken = true;
+    try {
+      input.write("quit\n");
+      input.flush();
+      input.close();
+    } catch (IOException e) {
+      // The process may have already exited
+    }
+    process.destroy();
+  }
+
+  /**
+   * Reads the output of the process until the command prompt is shown, answering password prompts
+   * on the way.
+   *
+   * @param firstPassword  the answer to the first password prompt
+   * @param otherPasswords the answer to all other password prompts
+   * @return the output without the command prompt
+   */
+  private String readResponse(String firstPassword, String otherPasswords) throws IOException {
+    StringBuilder response = new StringBuilder();
+    int passwordPrompts = 0;
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (true) {
+      String chunk;
+      try {
+        chunk = output.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        broken = true;
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for kadmin", e);
+      }
+      if (chunk == null) {
+        broken = true;
+        throw new IOException(String.format("Timed out waiting for kadmin %s, output so far: %s", command, response));
+      }
+      if (chunk == END_OF_OUTPUT) {
+        broken = true;
+        throw new IOException(String.format("kadmin %s exited unexpectedly, output: %s", command, response));
+      }
+      response.append(chunk);
+
+      if (PATTERN_COMMAND_PROMPT.matcher(response).find()) {
+        int promptStart = response.lastIndexOf("kadmin");
+        return response.substring(0, promptStart);
+      } else if (PATTERN_PASSWORD_PROMPT.matcher(response).find()) {
+        String password = (passwordPrompts++ == 0) ? firstPassword : otherPasswords;
+        if (password == null) {
+          broken = true;
+          throw new IOException("kadmin asked for a password but none is available");
+        }
+        input.write(password);
+        input.write('\n');
+        input.flush();
+        // Don't match the same prompt again
+        response.append('\n');
+      }
+    }
+  }
+
+  /**
+   * Moves the output of the process to the output queue
+   */
+  private class OutputReader implements Runnable {
+    private final Reader reader;
+
+    private OutputReader(Reader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public void run() {
+      char[] buffer = new char[4096];
+      try {
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+          output.offer(new String(buffer, 0, read));
+        }
+      } catch (IOException e) {
+        LOG.debug("Failed to read the output of kadmin", e);
+      } finally {
+        output.offer(END_OF_OUTPUT);
+      }
+    }
+  }
+}
@@ -24,6 +24,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -297,6 +298,19 @@ public abstract class KerberosOperationHandler {
   public abstract boolean removePrincipal(String principal)
       throws KerberosOperationException;
 
+  /**
+   * Hints that the specified principals are about to be operated on, one by one.
+   * <p/>
+   * Implementations able to look up many principals with a single request may do so here and
+   * remember the results to answer the following operations. The default implementation does nothing.
+   *
+   * @param principals a Collection of principals
+   * @throws KerberosOperationException if an unexpected error occurred
+   */
+  public void prefetchPrincipals(Collection<String> principals)
+      throws KerberosOperationException {
+  }
+
   /**
    * Tests to ensure the connection information and credentials allow for administrative
    * connectivity to the KDC
@@ -22,13 +22,28 @@ import static org.apache.ambari.server.serveraction.kerberos.KerberosIdentityDat
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.agent.CommandReport;
 import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.KerberosHelper;
 import org.apache.ambari.server.security.credential.PrincipalKeyCredential;
 import org.apache.ambari.server.serveraction.AbstractServerAction;
@@ -38,6 +53,8 @@ import org.apache.ambari.server.utils.StageUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
 import com.google.inject.Inject;
 
 /**
@@ -134,6 +151,28 @@ public abstract class KerberosServerAction extends AbstractServerAction {
 
   private static final Logger LOG = LoggerFactory.getLogger(KerberosServerAction.class);
 
+  /**
+   * The number of identity records that may be queued for a single worker thread while identities
+   * are processed concurrently
+   */
+  private static final int WORKER_QUEUE_SIZE = 100;
+
+  /**
+   * The maximum number of queued identity records a worker thread takes at once, and whose
+   * principals it looks up in bulk when the action {@link #shouldPrefetchPrincipals() prefetches}
+   */
+  private static final int WORKER_BATCH_SIZE = 50;
+
+  /**
+   * The number of processed identities after which the progress is written to the action log
+   */
+  private static final int PROGRESS_REPORT_INTERVAL = 100;
+
+  /**
+   * A marker record used to tell a worker thread that all identity records have been dispatched
+   */
+  private static final Map<String, String> END_OF_RECORDS = Collections.emptyMap();
+
   /**
    * The Cluster that this ServerAction implementation is executing on
    */
@@ -160,6 +199,13 @@ public abstract class KerberosServerAction extends AbstractServerAction {
   @Inject
   private KerberosHelper kerberosHelper;
 
+  /**
+   * Configuration used to get the number of identities that may be processed concurrently, if not
+   * available the identities are processed serially
+   */
+  @Inject(optional = true)
+  private Configuration configuration;
+
   /**
    * Given a (command parameter) Map and a property name, attempts to safely retrieve the requested
    * data.
@@ -242,7 +288,7 @@ public abstract class KerberosServerAction extends AbstractServerAction {
       Object map = requestSharedDataContext.get(PRINCIPAL_PASSWORD_MAP);
 
       if (map == null) {
-        map = new HashMap<String, String>();
+        map = new ConcurrentHashMap<String, String>();
         requestSharedDataContext.put(PRINCIPAL_PASSWORD_MAP, map);
       }
 
@@ -268,7 +314,7 @@ public abstract class KerberosServerAction extends AbstractServerAction {
       Object map = requestSharedDataContext.get(PRINCIPAL_KEY_NUMBER_MAP);
 
       if (map == null) {
-        map = new HashMap<String, String>();
+        map = new ConcurrentHashMap<String, Integer>();
         requestSharedDataContext.put(PRINCIPAL_KEY_NUMBER_MAP, map);
       }
 
@@ -339,6 +385,11 @@ public abstract class KerberosServerAction extends AbstractServerAction {
    * {@link KerberosIdentityDataFileReader} to parse
    * the relative identity.dat file and iterate through its "records".  Each "record" is process using
    * {@link #processRecord(Map, String, KerberosOperationHandler, Map, Map)}.
+   * <p/>
+   * If the implementation {@link #supportsConcurrentProcessing() supports it}, the records are
+   * processed by up to {@link Configuration#getKerberosOperationConcurrency()} threads, each using its
+   * own KerberosOperationHandler. All records of a given principal are processed, in order, by the
+   * same thread.
    *
    * @param requestSharedDataContext a Map to be used a shared data among all ServerActions related
    *                                 to a given request
@@ -349,6 +400,9 @@ public abstract class KerberosServerAction extends AbstractServerAction {
       throws AmbariException {
     CommandReport commandReport = null;
     Map<String, String> commandParameters = getCommandParameters();
+    AtomicInteger processedCount = new AtomicInteger();
+    int concurrency = 1;
+    long startTime = System.currentTimeMillis();
 
     actionLog.writeStdOut("Processing identities...");
     LOG.info("Processing identities...");
@@ -410,14 +464,22 @@ public abstract class KerberosServerAction extends AbstractServerAction {
             KerberosIdentityDataFileReader reader = null;
             try {
               reader = kerberosIdentityDataFileReaderFactory.createKerberosIdentityDataFileReader(identityDataFile);
-              for (Map<String, String> record : reader) {
-                // Process the current record
-                commandReport = processRecord(record, defaultRealm, handler, kerberosConfiguration, requestSharedDataContext);
-
-                // If the principal processor returns a CommandReport, than it is time to stop since
-                // an error condition has probably occurred, else all is assumed to be well.
-                if (commandReport != null) {
-                  break;
+              concurrency = getIdentityProcessingConcurrency();
+
+              if (concurrency > 1) {
+                commandReport = processRecordsConcurrently(reader, concurrency, defaultRealm, kdcType,
+                    administratorCredential, handler, kerberosConfiguration, requestSharedDataContext, processedCount, startTime);
+              } else {
+                for (Map<String, String> record : reader) {
+                  // Process the current record
+                  commandReport = processRecord(record, defaultRealm, handler, kerberosConfiguration, requestSharedDataContext);
+                  reportProgress(processedCount.incrementAndGet(), startTime);
+
+                  // If the principal processor returns a CommandReport, than it is time to stop since
+                  // an error condition has probably occurred, else all is assumed to be well.
+                  if (commandReport != null) {
+                    break;
+                  }
                 }
               }
             } catch (AmbariException e) {
@@ -454,14 +516,217 @@ public abstract class KerberosServerAction extends AbstractServerAction {
       }
     }
 
-    actionLog.writeStdOut("Processing identities completed.");
-    LOG.info("Processing identities completed.");
+    long duration = System.currentTimeMillis() - startTime;
+    String message = String.format("Processing identities completed. Processed %d identities in %d ms (%.1f per second) using %d concurrent KDC operations.",
+        processedCount.get(), duration, getRate(processedCount.get(), duration), concurrency);
+    actionLog.writeStdOut(message);
+    LOG.info(message);
 
     // If commandReport is null, we can assume this operation was a success, so return a successful
     // CommandReport; else return the previously created CommandReport.
-    return (commandReport == null)
-        ? createCommandReport(0, HostRoleStatus.COMPLETED, "{}", actionLog.getStdOut(), actionLog.getStdErr())
-        : commandReport;
+    if (commandReport == null) {
+      Map<String, Object> structuredOut = new LinkedHashMap<String, Object>();
+      structuredOut.put("processed_identities", processedCount.get());
+      structuredOut.put("duration_ms", duration);
+      structuredOut.put("concurrency", concurrency);
+
+      return createCommandReport(0, HostRoleStatus.COMPLETED, new Gson().toJson(structuredOut), actionLog.getStdOut(), actionLog.getStdErr());
+    } else {
+      return commandReport;
+    }
+  }
+
+  /**
+   * Indicates whether the identities handled by this action may be processed concurrently.
+   * <p/>
+   * Implementations returning true must tolerate {@link #processIdentity(Map, String, KerberosOperationHandler, Map, Map)}
+   * being called from several threads at once, though never concurrently for the same principal.
+   *
+   * @return true if identities may be processed concurrently; false otherwise
+   */
+  protected boolean supportsConcurrentProcessing() {
+    return false;
+  }
+
+  /**
+   * Indicates whether the principals of the identities queued for a worker thread should be
+   * looked up in bulk, using {@link KerberosOperationHandler#prefetchPrincipals(Collection)},
+   * before they are processed.
+   * <p/>
+   * This is only useful for implementations that test for the existence of each principal.
+   *
+   * @return true if principals should be prefetched; false otherwise
+   */
+  protected boolean shouldPrefetchPrincipals() {
+    return false;
+  }
+
+  /**
+   * Gets the number of threads to use to process the identities of this action.
+   *
+   * @return the number of identities to process concurrently, 1 to process them serially
+   */
+  protected int getIdentityProcessingConcurrency() {
+    if (!supportsConcurrentProcessing() || (configuration == null)) {
+      return 1;
+    }
+
+    return Math.max(1, configuration.getKerberosOperationConcurrency());
+  }
+
+  /**
+   * Dispatches the identity records from the reader to a bounded set of worker threads.
+   * <p/>
+   * Records are assigned to a worker using their evaluated principal so that all records for a
+   * principal are handled in order by one worker, which lets the implementations skip principals
+   * they have already processed.  Each worker uses its own, separately opened, KerberosOperationHandler
+   * so the number of workers is the number of concurrent operations against the KDC.  Once a
+   * record fails, no further records are processed.
+   *
+   * @param reader                   the reader to get the identity records from
+   * @param concurrency              the number of worker threads
+   * @param defaultRealm             a String declaring the default Kerberos realm
+   * @param kdcType                  the type of the relevant KDC
+   * @param administratorCredential  the KDC administrator credential
+   * @param handler                  an open KerberosOperationHandler, used by the first worker
+   * @param kerberosConfiguration    a Map of configuration properties from kerberos-env
+   * @param requestSharedDataContext a Map to be used a shared data among all ServerActions related
+   *                                 to a given request
+   * @param processedCount           the counter of processed records
+   * @param startTime                the time the processing started, used to report the progress
+   * @return a CommandReport, indicating an error condition; or null, indicating a success condition
+   * @throws AmbariException if an error occurs while processing the identity records
+   */
+  private CommandReport processRecordsConcurrently(KerberosIdentityDataFileReader reader, int concurrency,
+                                                   String defaultRealm, KDCType kdcType,
+                                                   PrincipalKeyCredential administratorCredential,
+                                                   KerberosOperationHandler handler,
+                                                   Map<String, String> kerberosConfiguration,
+                                                   Map<String, Object> requestSharedDataContext,
+                                                   AtomicInteger processedCount, long startTime)
+      throws AmbariException {
+
+    // Create the shared maps up front, so the workers do not race to create them
+    getPrincipalPasswordMap(requestSharedDataContext);
+    getPrincipalKeyNumberMap(requestSharedDataContext);
+
+    AtomicReference<CommandReport> failedReport = new AtomicReference<CommandReport>();
+    AtomicReference<Exception> failure = new AtomicReference<Exception>();
+    List<IdentityWorker> workers = new ArrayList<IdentityWorker>(concurrency);
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+        new ThreadFactoryBuilder().setNameFormat("kerberos-identity-worker-%d").setDaemon(true).build());
+
+    try {
+      for (int i = 0; i < concurrency; i++) {
+        KerberosOperationHandler workerHandler = (i == 0)
+            ? handler
+            : openKerberosOperationHandler(kdcType, administratorCredential, defaultRealm, kerberosConfiguration);
+
+        IdentityWorker worker = new IdentityWorker(workerHandler, defaultRealm, kerberosConfiguration,
+            requestSharedDataContext, processedCount, startTime, failedReport, failure);
+        workers.add(worker);
+        executor.execute(worker);
+      }
+
+      for (Map<String, String> record : reader) {
+        if ((failedReport.get() != null) || (failure.get() != null)) {
+          break;
+        }
+
+        String evaluatedPrincipal = evaluatePrincipal(record, defaultRealm);
+        int index = (evaluatedPrincipal == null) ? 0 : (evaluatedPrincipal.hashCode() & Integer.MAX_VALUE) % concurrency;
+        workers.get(index).add(record);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while processing the identities", e);
+    } finally {
+      for (IdentityWorker worker : workers) {
+        worker.finish();
+      }
+
+      executor.shutdown();
+      try {
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+          LOG.info("Waiting for the Kerberos identity workers to finish");
+        }
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+
+      // The first worker's handler is closed by the caller, close the others
+      for (int i = 1; i < workers.size(); i++) {
+        try {
+          workers.get(i).handler.close();
+        } catch (KerberosOperationException e) {
+          // Ignore this...
+        }
+      }
+    }
+
+    Exception exception = failure.get();
+    if (exception instanceof AmbariException) {
+      throw (AmbariException) exception;
+    } else if (exception != null) {
+      throw new AmbariException(String.format("Failed to process the identities - %s", exception.getMessage()), exception);
+    }
+
+    return failedReport.get();
+  }
+
+  /**
+   * Creates and opens an additional KerberosOperationHandler for the relevant KDC.
+   *
+   * @param kdcType                 the type of the relevant KDC
+   * @param administratorCredential the KDC administrator credential
+   * @param defaultRealm            a String declaring the default Kerberos realm
+   * @param kerberosConfiguration   a Map of configuration properties from kerberos-env
+   * @return an open KerberosOperationHandler
+   * @throws AmbariException if the handler cannot be created or opened
+   */
+  private KerberosOperationHandler openKerberosOperationHandler(KDCType kdcType, PrincipalKeyCredential administratorCredential,
+                                                                String defaultRealm, Map<String, String> kerberosConfiguration)
+      throws AmbariException {
+    KerberosOperationHandler handler = kerberosOperationHandlerFactory.getKerberosOperationHandler(kdcType);
+    if (handler == null) {
+      String message = String.format("Failed to process the identities, a KDC operation handler was not found for the KDC type of : %s",
+          kdcType.toString());
+      actionLog.writeStdErr(message);
+      LOG.error(message);
+      throw new AmbariException(message);
+    }
+
+    try {
+      handler.open(administratorCredential, defaultRealm, kerberosConfiguration);
+    } catch (KerberosOperationException e) {
+      String message = String.format("Failed to process the identities, could not properly open the KDC operation handler: %s",
+          e.getMessage());
+      actionLog.writeStdErr(message);
+      LOG.error(message);
+      throw new AmbariException(message, e);
+    }
+
+    return handler;
+  }
+
+  /**
+   * Writes the progress to the action log every {@link #PROGRESS_REPORT_INTERVAL} processed identities.
+   *
+   * @param processedCount the number of processed identities
+   * @param startTime      the time the processing started
+   */
+  private void reportProgress(int processedCount, long startTime) {
+    if ((processedCount % PROGRESS_REPORT_INTERVAL) == 0) {
+      long duration = System.currentTimeMillis() - startTime;
+      String message = String.format("Processed %d identities (%.1f per second)", processedCount, getRate(processedCount, duration));
+      actionLog.writeStdOut(message);
+      LOG.info(message);
+    }
+  }
+
+  private static double getRate(int count, long durationMillis) {
+    return (durationMillis > 0) ? (count * 1000.0 / durationMillis) : count;
   }
 
   /**
@@ -513,27 +778,166 @@ public abstract class KerberosServerAction extends AbstractServerAction {
                                       Map<String, String> kerberosConfiguration, Map<String, Object> requestSharedDataContext)
       throws AmbariException {
     CommandReport commandReport = null;
+    String evaluatedPrincipal = evaluatePrincipal(record, defaultRealm);
+
+    if (evaluatedPrincipal != null) {
+      commandReport = processIdentity(record, evaluatedPrincipal, operationHandler, kerberosConfiguration, requestSharedDataContext);
+    }
+
+    return commandReport;
+  }
+
+  /**
+   * Evaluates the principal "pattern" found in the record by replacing the _HOST and _REALM variables.
+   *
+   * @param record       a Map containing the data for the current identity record
+   * @param defaultRealm a String declaring the default Kerberos realm
+   * @return the evaluated principal; or null if the record does not declare a principal
+   */
+  private String evaluatePrincipal(Map<String, String> record, String defaultRealm) {
+    String principal = (record == null) ? null : record.get(KerberosIdentityDataFileReader.PRINCIPAL);
+
+    if (principal == null) {
+      return null;
+    }
 
-    if (record != null) {
-      String principal = record.get(KerberosIdentityDataFileReader.PRINCIPAL);
+    String hostname = record.get(KerberosIdentityDataFileReader.HOSTNAME);
 
-      if (principal != null) {
-        String hostname = record.get(KerberosIdentityDataFileReader.HOSTNAME);
+    if(KerberosHelper.AMBARI_SERVER_HOST_NAME.equals(hostname)) {
+      // Replace KerberosHelper.AMBARI_SERVER_HOST_NAME with the actual hostname where the Ambari
+      // server is... this host
+      hostname = StageUtils.getHostName();
+    }
+
+    return principal.replace("_HOST", hostname).replace("_REALM", defaultRealm);
+  }
+
+  /**
+   * IdentityWorker processes the identity records assigned to it, in order, using its own
+   * KerberosOperationHandler.
+   * <p/>
+   * After a failure the worker keeps taking records from its queue, without processing them, so the
+   * dispatching thread never blocks on a full queue.
+   */
+  private class IdentityWorker implements Runnable {
+    private final BlockingQueue<Map<String, String>> records = new ArrayBlockingQueue<Map<String, String>>(WORKER_QUEUE_SIZE);
+    private final KerberosOperationHandler handler;
+    private final String defaultRealm;
+    private final Map<String, String> kerberosConfiguration;
+    private final Map<String, Object> requestSharedDataContext;
+    private final AtomicInteger processedCount;
+    private final long startTime;
+    private final AtomicReference<CommandReport> failedReport;
+    private final AtomicReference<Exception> failure;
+
+    private IdentityWorker(KerberosOperationHandler handler, String defaultRealm,
+                           Map<String, String> kerberosConfiguration, Map<String, Object> requestSharedDataContext,
+                           AtomicInteger processedCount, long startTime,
+                           AtomicReference<CommandReport> failedReport, AtomicReference<Exception> failure) {
+      this.handler = handler;
+      this.defaultRealm = defaultRealm;
+      this.kerberosConfiguration = kerberosConfiguration;
+      this.requestSharedDataContext = requestSharedDataContext;
+      this.processedCount = processedCount;
+      this.startTime = startTime;
+      this.failedReport = failedReport;
+      this.failure = failure;
+    }
 
-        if(KerberosHelper.AMBARI_SERVER_HOST_NAME.equals(hostname)) {
-          // Replace KerberosHelper.AMBARI_SERVER_HOST_NAME with the actual hostname where the Ambari
-          // server is... this host
-          hostname = StageUtils.getHostName();
+    private void add(Map<String, String> record) throws InterruptedException {
+      records.put(record);
+    }
+
+    /**
+     * Tells the worker that no more records will be added, once the queued records are processed
+     * the worker stops.
+     */
+    private void finish() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          records.put(END_OF_RECORDS);
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
         }
+      }
+
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        List<Map<String, String>> batch = new ArrayList<Map<String, String>>(WORKER_BATCH_SIZE);
+        boolean finished = false;
+
+        while (!finished) {
+          batch.clear();
+          batch.add(records.take());
+          records.drainTo(batch, WORKER_BATCH_SIZE - 1);
+
+          int endIndex = batch.indexOf(END_OF_RECORDS);
+          if (endIndex >= 0) {
+            batch = batch.subList(0, endIndex);
+            finished = true;
+          }
 
-        // Evaluate the principal "pattern" found in the record to generate the "evaluated principal"
-        // by replacing the _HOST and _REALM variables.
-        String evaluatedPrincipal = principal.replace("_HOST", hostname).replace("_REALM", defaultRealm);
+          if ((failedReport.get() != null) || (failure.get() != null)) {
+            continue;
+          }
+
+          prefetchPrincipals(batch);
+
+          for (Map<String, String> record : batch) {
+            try {
+              CommandReport commandReport = processRecord(record, defaultRealm, handler, kerberosConfiguration, requestSharedDataContext);
+              reportProgress(processedCount.incrementAndGet(), startTime);
 
-        commandReport = processIdentity(record, evaluatedPrincipal, operationHandler, kerberosConfiguration, requestSharedDataContext);
+              if (commandReport != null) {
+                failedReport.compareAndSet(null, commandReport);
+                break;
+              }
+            } catch (Exception e) {
+              LOG.error("Failed to process a Kerberos identity", e);
+              failure.compareAndSet(null, e);
+              break;
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        failure.compareAndSet(null, e);
+        Thread.currentThread().interrupt();
       }
     }
 
-    return commandReport;
+    /**
+     * Looks up the principals of a batch of records in bulk. A failure is not fatal, the principals
+     * are then looked up one by one while being processed.
+     *
+     * @param batch the records about to be processed
+     */
+    private void prefetchPrincipals(List<Map<String, String>> batch) {
+      if (!shouldPrefetchPrincipals() || (batch.size() < 2)) {
+        return;
+      }
+
+      Set<String> principals = new LinkedHashSet<String>();
+      for (Map<String, String> record : batch) {
+        String evaluatedPrincipal = evaluatePrincipal(record, defaultRealm);
+        if (evaluatedPrincipal != null) {
+          principals.add(evaluatedPrincipal);
+        }
+      }
+
+      try {
+        handler.prefetchPrincipals(principals);
+      } catch (KerberosOperationException e) {
+        LOG.warn("Failed to look up {} principals in bulk, they will be looked up individually: {}",
+            principals.size(), e.getMessage());
+      }
+    }
   }
 }
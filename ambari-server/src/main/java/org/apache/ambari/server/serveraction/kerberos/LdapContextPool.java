@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.serveraction.kerberos;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingException;
+import javax.naming.ldap.LdapContext;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Singleton;
+
+/**
+ * LdapContextPool keeps authenticated LDAP contexts that are not in use so they can be reused by
+ * later KerberosOperationHandlers, for example by the different server actions of a request,
+ * instead of connecting and binding to the LDAP server again.
+ * <p/>
+ * Contexts are pooled by LDAP URL and administrator credential. A context idle for longer than
+ * {@link #DEFAULT_IDLE_TIMEOUT_MILLIS} is closed rather than reused.
+ */
+@Singleton
+public class LdapContextPool {
+  private final static Logger LOG = LoggerFactory.getLogger(LdapContextPool.class);
+
+  /**
+   * The maximum number of idle contexts kept for a given LDAP URL and credential
+   */
+  private final static int DEFAULT_MAX_IDLE = 8;
+
+  /**
+   * The time (in milliseconds) after which an idle context is closed
+   */
+  private final static long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final Map<String, Deque<IdleContext>> idleContexts = new HashMap<String, Deque<IdleContext>>();
+
+  private int maxIdle = DEFAULT_MAX_IDLE;
+
+  private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+  /**
+   * Creates the key to pool contexts with. The credential is only kept as a digest.
+   *
+   * @param ldapUrl    the URL of the LDAP server
+   * @param principal  the principal the context is bound with
+   * @param credential the credential the context is bound with
+   * @return a String to use as pool key
+   */
+  public static String createKey(String ldapUrl, String principal, char[] credential) {
+    return String.format("%s|%s|%s", ldapUrl, principal,
+        DigestUtils.sha256Hex((credential == null) ? "" : String.valueOf(credential)));
+  }
+
+  /**
+   * Takes an idle context from the pool.
+   *
+   * @param key the pool key, see {@link #createKey(String, String, char[])}
+   * @return an idle LdapContext or null if none is available
+   */
+  public LdapContext borrow(String key) {
+    long now = System.currentTimeMillis();
+
+    synchronized (idleContexts) {
+      closeExpired(now);
+
+      Deque<IdleContext> contexts = idleContexts.get(key);
+
+      // Use the most recently returned context, it is the least likely to have been dropped by the server
+      IdleContext idleContext = (contexts == null) ? null : contexts.pollLast();
+      return (idleContext == null) ? null : idleContext.context;
+    }
+  }
+
+  /**
+   * Returns a context to the pool, closing it if enough idle contexts are kept already.
+   *
+   * @param key     the pool key, see {@link #createKey(String, String, char[])}
+   * @param context the context to return
+   */
+  public void release(String key, LdapContext context) {
+    if (context == null) {
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+
+    synchronized (idleContexts) {
+      closeExpired(now);
+
+      Deque<IdleContext> contexts = idleContexts.get(key);
+
+      if (contexts == null) {
+        contexts = new ArrayDeque<IdleContext>();
+        idleContexts.put(key, contexts);
+      }
+
+      if (contexts.size() < maxIdle) {
+        contexts.addLast(new IdleContext(context, now));
+        return;
+      }
+    }
+
+    close(context);
+  }
+
+  /**
+   * Closes all idle contexts.
+   */
+  public void clear() {
+    synchronized (idleContexts) {
+      for (Deque<IdleContext> contexts : idleContexts.values()) {
+        for (IdleContext idleContext : contexts) {
+          close(idleContext.context);
+        }
+      }
+      idleContexts.clear();
+    }
+  }
+
+  /**
+   * Gets the number of idle contexts kept for the given key.
+   *
+   * @param key the pool key, see {@link #createKey(String, String, char[])}
+   * @return the number of idle contexts
+   */
+  public int getIdleCount(String key) {
+    synchronized (idleContexts) {
+      Deque<IdleContext> contexts = idleContexts.get(key);
+      return (contexts == null) ? 0 : contexts.size();
+    }
+  }
+
+  /**
+   * Sets the maximum number of idle contexts kept per key.
+   *
+   * @param maxIdle the maximum number of idle contexts
+   */
+  void setMaxIdle(int maxIdle) {
+    this.maxIdle = maxIdle;
+  }
+
+  /**
+   * Sets the time after which idle contexts are closed.
+   *
+   * @param idleTimeoutMillis the idle timeout in milliseconds
+   */
+  void setIdleTimeoutMillis(long idleTimeoutMillis) {
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  /**
+   * Closes the contexts, of all keys, that have been idle for too long. The caller must hold the
+   * lock on {@link #idleContexts}.
+   *
+   * @param now the current time in milliseconds
+   */
+  private void closeExpired(long now) {
+    Iterator<Deque<IdleContext>> keyIterator = idleContexts.values().iterator();
+    while (keyIterator.hasNext()) {
+      Deque<IdleContext> contexts = keyIterator.next();
+
+      // Contexts are added at the end, so the ones idle for the longest time are at the start
+      while (!contexts.isEmpty() && ((now - contexts.peekFirst().since) >= idleTimeoutMillis)) {
+        close(contexts.pollFirst().context);
+      }
+
+      if (contexts.isEmpty()) {
+        keyIterator.remove();
+      }
+    }
+  }
+
+  private static void close(LdapContext context) {
+    try {
+      context.close();
+    } catch (NamingException e) {
+      LOG.debug("Failed to close an idle LDAP context", e);
+    }
+  }
+
+  /**
+   * An idle context and the time it was returned to the pool
+   */
+  private static class IdleContext {
+    private final LdapContext context;
+    private final long since;
+
+    private IdleContext(LdapContext context, long since) {
+      this.context = context;
+      this.since = since;
+    }
+  }
+}
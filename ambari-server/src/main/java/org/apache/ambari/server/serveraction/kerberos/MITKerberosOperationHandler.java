@@ -18,6 +18,7 @@
 
 package org.apache.ambari.server.serveraction.kerberos;
 
+import java.io.IOException;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -25,6 +26,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -75,6 +79,32 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
    */
   private String executableKadminLocal = null;
 
+  /**
+   * The default time (in seconds) to wait for a response of an interactive kadmin session
+   */
+  private final static int DEFAULT_KADMIN_SESSION_TIMEOUT = 60;
+
+  /**
+   * A boolean value indicating whether queries are sent to interactive kadmin sessions. This is
+   * turned off for the rest of the life of this handler if a session cannot be started.
+   */
+  private volatile boolean kadminSessionEnabled = false;
+
+  /**
+   * The time (in milliseconds) to wait for a response of an interactive kadmin session
+   */
+  private long kadminSessionTimeout = TimeUnit.SECONDS.toMillis(DEFAULT_KADMIN_SESSION_TIMEOUT);
+
+  /**
+   * Permits for using interactive kadmin sessions, limiting the number of sessions open at a time
+   */
+  private Semaphore kadminSessionPermits = null;
+
+  /**
+   * The interactive kadmin sessions currently not in use
+   */
+  private Queue<KAdminSession> idleKadminSessions = null;
+
   /**
    * Prepares and creates resources to be used by this KerberosOperationHandler
    * <p/>
@@ -115,14 +145,29 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
     executableKadmin = getExecutable("kadmin");
     executableKadminLocal = getExecutable("kadmin.local");
 
+    kadminSessionEnabled = (configuration != null) && configuration.isKerberosKadminSessionEnabled();
+    if (kadminSessionEnabled) {
+      int sessionTimeout = configuration.getKerberosKadminSessionTimeout();
+      kadminSessionTimeout = TimeUnit.SECONDS.toMillis((sessionTimeout > 0) ? sessionTimeout : DEFAULT_KADMIN_SESSION_TIMEOUT);
+      kadminSessionPermits = new Semaphore(Math.max(1, configuration.getKerberosKadminSessions()));
+      idleKadminSessions = new ConcurrentLinkedQueue<KAdminSession>();
+    }
+
     setOpen(true);
   }
 
   @Override
   public void close() throws KerberosOperationException {
-    // There is nothing to do here.
     setOpen(false);
 
+    kadminSessionEnabled = false;
+    if (idleKadminSessions != null) {
+      KAdminSession session;
+      while ((session = idleKadminSessions.poll()) != null) {
+        session.close();
+      }
+    }
+
     executableKadmin = null;
     executableKadminLocal = null;
   }
@@ -378,6 +423,9 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
 
   /**
    * Invokes the kadmin shell command to issue queries
+   * <p/>
+   * If interactive kadmin sessions are enabled, the query is sent to an already running kadmin
+   * process; a new kadmin process is only executed for the query if no session is available.
    *
    * @param query        a String containing the query to send to the kdamin command
    * @param userPassword a String containing the user's password to set or update if necessary,
@@ -394,59 +442,20 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
       throw new KerberosOperationException("Missing kadmin query");
     }
 
-    ShellCommandUtil.Result result = null;
-    PrincipalKeyCredential administratorCredential = getAdministratorCredential();
-    String defaultRealm = getDefaultRealm();
-
-    List<String> command = new ArrayList<String>();
-
-    String adminPrincipal = (administratorCredential == null)
-        ? null
-        : administratorCredential.getPrincipal();
-
-    ShellCommandUtil.InteractiveHandler interactiveHandler = null;
-
-    if (StringUtils.isEmpty(adminPrincipal)) {
-      // Set the kdamin interface to be kadmin.local
-      if (StringUtils.isEmpty(executableKadminLocal)) {
-        throw new KerberosOperationException("No path for kadmin.local is available - this KerberosOperationHandler may not have been opened.");
-      }
-
-      command.add(executableKadminLocal);
-
-      if (userPassword != null) {
-        interactiveHandler = new InteractivePasswordHandler(null, userPassword);
-      }
-    } else {
-      if (StringUtils.isEmpty(executableKadmin)) {
-        throw new KerberosOperationException("No path for kadmin is available - this KerberosOperationHandler may not have been opened.");
-      }
-      char[] adminPassword = administratorCredential.getKey();
-
-      // Set the kdamin interface to be kadmin
-      command.add(executableKadmin);
-
-      // Add explicit KDC admin host, if available
-      if (!StringUtils.isEmpty(getAdminServerHost())) {
-        command.add("-s");
-        command.add(getAdminServerHost());
-      }
-
-      // Add the administrative principal
-      command.add("-p");
-      command.add(adminPrincipal);
-
-      if (!ArrayUtils.isEmpty(adminPassword)) {
-        interactiveHandler = new InteractivePasswordHandler(String.valueOf(adminPassword), userPassword);
-      } else if (userPassword != null) {
-        interactiveHandler = new InteractivePasswordHandler(null, userPassword);
+    if (kadminSessionEnabled) {
+      ShellCommandUtil.Result result = invokeKAdminSession(query, userPassword);
+      if (result != null) {
+        return result;
       }
     }
 
-    if (!StringUtils.isEmpty(defaultRealm)) {
-      // Add default realm clause
-      command.add("-r");
-      command.add(defaultRealm);
+    ShellCommandUtil.Result result = null;
+    List<String> command = createKAdminCommand();
+    String adminPassword = getAdminPassword();
+
+    ShellCommandUtil.InteractiveHandler interactiveHandler = null;
+    if ((adminPassword != null) || (userPassword != null)) {
+      interactiveHandler = new InteractivePasswordHandler(adminPassword, userPassword);
     }
 
     // Add kadmin query
@@ -518,6 +527,154 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
     return result;
   }
 
+  /**
+   * Executes a query using one of the interactive kadmin sessions of this handler, starting a new
+   * session if needed.
+   * <p/>
+   * If the session fails, or kadmin reports that the query failed, the session is discarded and null
+   * is returned so the caller can fall back to executing the query with a new kadmin process. If no session can be started at all, sessions
+   * are not used anymore by this handler.
+   *
+   * @param query        a String containing the query to send to kdamin
+   * @param userPassword a String containing the user's password to set or update if necessary,
+   *                     null if not needed
+   * @return a ShellCommandUtil.Result containing the result of the operation, or null if the query
+   * was not executed
+   * @throws KerberosOperationException if the KerberosOperationHandler is not configured properly
+   */
+  private ShellCommandUtil.Result invokeKAdminSession(String query, String userPassword)
+      throws KerberosOperationException {
+    Semaphore permits = kadminSessionPermits;
+    Queue<KAdminSession> idleSessions = idleKadminSessions;
+    try {
+      if (permits == null || idleSessions == null || !permits.tryAcquire(kadminSessionTimeout, TimeUnit.MILLISECONDS)) {
+        return null;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+
+    KAdminSession session = null;
+    try {
+      session = idleSessions.poll();
+      while ((session != null) && !session.isUsable()) {
+        session.close();
+        session = idleSessions.poll();
+      }
+
+      if (session == null) {
+        List<String> command = createKAdminCommand();
+        try {
+          session = KAdminSession.start(command, getAdminPassword(), kadminSessionTimeout);
+        } catch (IOException e) {
+          LOG.warn("Failed to start an interactive kadmin session, a new kadmin process will be used for each operation: {}",
+              e.getLocalizedMessage());
+          kadminSessionEnabled = false;
+          return null;
+        }
+      }
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("Executing in kadmin session: %s", query));
+      }
+
+      try {
+        ShellCommandUtil.Result result = session.execute(query, userPassword);
+        if (!result.isSuccessful()) {
+          // Let a new kadmin process report the failure with its exit code and retries, as without sessions
+          LOG.warn("The query failed in the interactive kadmin session, executing it with a new kadmin process: {}",
+              result.getStderr());
+          session.close();
+          session = null;
+          return null;
+        }
+        return result;
+      } catch (IOException e) {
+        LOG.warn("The interactive kadmin session failed, executing the query with a new kadmin process: {}",
+            e.getLocalizedMessage());
+        session.close();
+        session = null;
+        return null;
+      }
+    } finally {
+      if (session != null) {
+        if (isOpen() && session.isUsable()) {
+          idleSessions.offer(session);
+        } else {
+          session.close();
+        }
+      }
+      permits.release();
+    }
+  }
+
+  /**
+   * Creates the kadmin or kadmin.local command (without a query) to use with the configured
+   * administrator credential and realm.
+   *
+   * @return a list of Strings containing the command and its arguments
+   * @throws KerberosOperationException if the relevant kadmin executable is not available
+   */
+  private List<String> createKAdminCommand() throws KerberosOperationException {
+    PrincipalKeyCredential administratorCredential = getAdministratorCredential();
+    String defaultRealm = getDefaultRealm();
+
+    List<String> command = new ArrayList<String>();
+
+    String adminPrincipal = (administratorCredential == null)
+        ? null
+        : administratorCredential.getPrincipal();
+
+    if (StringUtils.isEmpty(adminPrincipal)) {
+      // Set the kdamin interface to be kadmin.local
+      if (StringUtils.isEmpty(executableKadminLocal)) {
+        throw new KerberosOperationException("No path for kadmin.local is available - this KerberosOperationHandler may not have been opened.");
+      }
+
+      command.add(executableKadminLocal);
+    } else {
+      if (StringUtils.isEmpty(executableKadmin)) {
+        throw new KerberosOperationException("No path for kadmin is available - this KerberosOperationHandler may not have been opened.");
+      }
+
+      // Set the kdamin interface to be kadmin
+      command.add(executableKadmin);
+
+      // Add explicit KDC admin host, if available
+      if (!StringUtils.isEmpty(getAdminServerHost())) {
+        command.add("-s");
+        command.add(getAdminServerHost());
+      }
+
+      // Add the administrative principal
+      command.add("-p");
+      command.add(adminPrincipal);
+    }
+
+    if (!StringUtils.isEmpty(defaultRealm)) {
+      // Add default realm clause
+      command.add("-r");
+      command.add(defaultRealm);
+    }
+
+    return command;
+  }
+
+  /**
+   * Gets the administrator's password to send to kadmin
+   *
+   * @return the administrator's password, or null if kadmin.local is used or there is no password
+   */
+  private String getAdminPassword() {
+    PrincipalKeyCredential administratorCredential = getAdministratorCredential();
+    if ((administratorCredential == null) || StringUtils.isEmpty(administratorCredential.getPrincipal())) {
+      return null;
+    }
+    char[] adminPassword = administratorCredential.getKey();
+    return ArrayUtils.isEmpty(adminPassword) ? null : String.valueOf(adminPassword);
+  }
+
   /**
    * InteractivePasswordHandler is a {@link org.apache.ambari.server.utils.ShellCommandUtil.InteractiveHandler}
    * implementation that answers queries from kadmin or kdamin.local command for the admin and/or user
@@ -22,12 +22,22 @@ import java.lang.reflect.Type;
 import java.net.MalformedURLException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.state.Cluster;
@@ -45,16 +55,39 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
 public class MasterHostResolver {
 
   private static Logger LOG = LoggerFactory.getLogger(MasterHostResolver.class);
 
+  /**
+   * The maximum number of JMX queries run at the same time by {@link #prefetch(Map)}.
+   */
+  private static final int PREFETCH_THREADS = 8;
+
   private Cluster m_cluster;
   private String m_version;
   private ConfigHelper m_configHelper;
 
+  /**
+   * {@code true} from {@link #prefetch(Map)} until {@link #clearCache()}, while
+   * resolved hosts and JMX values are cached.
+   */
+  private volatile boolean m_caching = false;
+
+  /**
+   * Resolved hosts by service and component, kept until {@link #clearCache()}
+   * is called. Callers are handed copies since they may change them.
+   */
+  private final Map<String, HostsType> m_hostsTypes = new ConcurrentHashMap<>();
+
+  /**
+   * JMX values by query, kept until {@link #clearCache()} is called.
+   */
+  private final ConcurrentMap<String, Future<String>> m_jmxValues = new ConcurrentHashMap<>();
+
   public enum Service {
     HDFS,
     HBASE,
@@ -118,6 +151,95 @@ public class MasterHostResolver {
       return null;
     }
 
+    if (!m_caching) {
+      return resolveMasterAndHosts(serviceName, componentName);
+    }
+
+    String key = serviceName + "/" + componentName;
+    HostsType hostsType = m_hostsTypes.get(key);
+    if (null == hostsType) {
+      hostsType = resolveMasterAndHosts(serviceName, componentName);
+      if (null == hostsType) {
+        return null;
+      }
+      m_hostsTypes.put(key, hostsType);
+    }
+
+    return copy(hostsType);
+  }
+
+  /**
+   * Runs the JMX queries needed to resolve the masters of the given components,
+   * up to {@link #PREFETCH_THREADS} of them at the same time, and returns once
+   * all of them are answered. From now until {@link #clearCache()} is called,
+   * the JMX values and the hosts resolved by
+   * {@link #getMasterAndHosts(String, String)} are cached, so creating a plan
+   * which involves several masters waits for the slowest of them rather than
+   * for all of them in turn, and only once.
+   *
+   * @param componentsByService
+   *          the component names by service name
+   */
+  public void prefetch(Map<String, ? extends Collection<String>> componentsByService) {
+    m_caching = true;
+
+    List<JmxQuery> queries = new ArrayList<>();
+    for (Map.Entry<String, ? extends Collection<String>> entry : componentsByService.entrySet()) {
+      for (String componentName : entry.getValue()) {
+        try {
+          queries.addAll(getJmxQueries(entry.getKey(), componentName));
+        } catch (Exception e) {
+          // !!! reported when the component is resolved
+          LOG.debug("Unable to prefetch master for Component {}", componentName, e);
+        }
+      }
+    }
+
+    if (queries.isEmpty()) {
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(queries.size(), PREFETCH_THREADS),
+        new ThreadFactoryBuilder().setNameFormat("master-host-resolver-%d").setDaemon(true).build());
+
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (JmxQuery query : queries) {
+        FutureTask<String> task = createJmxTask(query);
+        if (null == m_jmxValues.putIfAbsent(query.getKey(), task)) {
+          executor.execute(task);
+          futures.add(task);
+        }
+      }
+
+      for (Future<String> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // !!! reported when the component is resolved
+      LOG.debug("Unable to prefetch master", e);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Forgets the hosts and JMX values resolved so far and stops caching them.
+   */
+  public void clearCache() {
+    m_caching = false;
+    m_hostsTypes.clear();
+    m_jmxValues.clear();
+  }
+
+  /**
+   * Resolves the master and hosts of the given service and component, without
+   * consulting the cache.
+   */
+  private HostsType resolveMasterAndHosts(String serviceName, String componentName) {
     Set<String> componentHosts = m_cluster.getHosts(serviceName, componentName);
     if (0 == componentHosts.size()) {
       return null;
@@ -126,13 +248,7 @@ public class MasterHostResolver {
     HostsType hostsType = new HostsType();
     hostsType.hosts.addAll(componentHosts);
 
-    Service s = Service.OTHER;
-    try {
-      s = Service.valueOf(serviceName.toUpperCase());
-    } catch (Exception e) {
-      // !!! nothing to do
-    }
-
+    Service s = getService(serviceName);
     try {
       switch (s) {
         case HDFS:
@@ -179,6 +295,63 @@ public class MasterHostResolver {
     return hostsType;
   }
 
+  /**
+   * Gets the JMX queries needed to resolve the master of a component.
+   *
+   * @return the queries, empty if the component's master is not resolved using
+   *         JMX
+   */
+  private List<JmxQuery> getJmxQueries(String serviceName, String componentName) throws Exception {
+    List<JmxQuery> queries = new ArrayList<>();
+    Set<String> componentHosts = m_cluster.getHosts(serviceName, componentName);
+    if (componentHosts.isEmpty()) {
+      return queries;
+    }
+
+    switch (getService(serviceName)) {
+      case HDFS:
+        if (componentName.equalsIgnoreCase("NAMENODE") && componentHosts.size() == 2) {
+          Map<String, JmxQuery> nameNodeQueries = getNameNodeQueries();
+          if (null != nameNodeQueries) {
+            queries.addAll(nameNodeQueries.values());
+          }
+        }
+        break;
+      case YARN:
+        if (componentName.equalsIgnoreCase("RESOURCEMANAGER")) {
+          queries.addAll(getResourceManagerQueries(componentHosts).values());
+        }
+        break;
+      case HBASE:
+        if (componentName.equalsIgnoreCase("HBASE_MASTER")) {
+          queries.addAll(getHBaseMasterQueries(componentHosts).values());
+        }
+        break;
+      default:
+        break;
+    }
+
+    return queries;
+  }
+
+  private static Service getService(String serviceName) {
+    try {
+      return Service.valueOf(serviceName.toUpperCase());
+    } catch (Exception e) {
+      // !!! nothing to do
+      return Service.OTHER;
+    }
+  }
+
+  private static HostsType copy(HostsType hostsType) {
+    HostsType copy = new HostsType();
+    copy.master = hostsType.master;
+    copy.secondary = hostsType.secondary;
+    copy.hosts = new LinkedHashSet<>(hostsType.hosts);
+    copy.unhealthy = new ArrayList<>(hostsType.unhealthy);
+    return copy;
+  }
+
   /**
    * Filters the supplied list of hosts in the following ways:
    * <ul>
@@ -264,7 +437,37 @@ public class MasterHostResolver {
    * The hostnames are returned in lowercase.
    */
   private Map<Status, String> getNameNodePair() {
+    Map<String, JmxQuery> queries = getNameNodeQueries();
+    if (null == queries) {
+      return null;
+    }
+
     Map<Status, String> stateToHost = new HashMap<Status, String>();
+    for (Map.Entry<String, JmxQuery> entry : queries.entrySet()) {
+      JmxQuery query = entry.getValue();
+      String state = getJmxValue(query);
+
+      if (null != state && (state.equalsIgnoreCase(Status.ACTIVE.toString()) || state.equalsIgnoreCase(Status.STANDBY.toString()))) {
+        Status status = Status.valueOf(state.toUpperCase());
+        stateToHost.put(status, query.hostname.toLowerCase());
+      } else {
+        LOG.error(String.format("Could not retrieve state for NameNode %s from property %s by querying JMX.", query.hostname, entry.getKey()));
+      }
+    }
+
+    if (stateToHost.containsKey(Status.ACTIVE) && stateToHost.containsKey(Status.STANDBY) && !stateToHost.get(Status.ACTIVE).equalsIgnoreCase(stateToHost.get(Status.STANDBY))) {
+      return stateToHost;
+    }
+    return null;
+  }
+
+  /**
+   * Get the JMX queries for the state of the HDFS NameNodes.
+   * @return the queries by the property the NameNode address was read from, or null if
+   * NameNode HA is not configured.
+   */
+  private Map<String, JmxQuery> getNameNodeQueries() {
+    Map<String, JmxQuery> queries = new LinkedHashMap<>();
     Cluster cluster = getCluster();
 
     String nameService = m_configHelper.getValueFromDesiredConfigurations(cluster, ConfigHelper.HDFS_SITE, "dfs.internal.nameservices");
@@ -297,23 +500,13 @@ public class MasterHostResolver {
           throw new MalformedURLException("Could not parse host and port from " + value);
         }
 
-        String state = queryJmxBeanValue(hp.host, hp.port, "Hadoop:service=NameNode,name=NameNodeStatus", "State", true, encrypted);
-
-        if (null != state && (state.equalsIgnoreCase(Status.ACTIVE.toString()) || state.equalsIgnoreCase(Status.STANDBY.toString()))) {
-          Status status = Status.valueOf(state.toUpperCase());
-          stateToHost.put(status, hp.host.toLowerCase());
-        } else {
-          LOG.error(String.format("Could not retrieve state for NameNode %s from property %s by querying JMX.", hp.host, key));
-        }
+        queries.put(key, new JmxQuery(hp.host, hp.port, "Hadoop:service=NameNode,name=NameNodeStatus", "State", true, encrypted));
       } catch (MalformedURLException e) {
         LOG.error(e.getMessage());
       }
     }
 
-    if (stateToHost.containsKey(Status.ACTIVE) && stateToHost.containsKey(Status.STANDBY) && !stateToHost.get(Status.ACTIVE).equalsIgnoreCase(stateToHost.get(Status.STANDBY))) {
-      return stateToHost;
-    }
-    return null;
+    return queries;
   }
 
   /**
@@ -326,15 +519,10 @@ public class MasterHostResolver {
     LinkedHashSet<String> orderedHosts = new LinkedHashSet<String>(hostType.hosts);
 
     // IMPORTANT, for RM, only the master returns jmx
-    String rmWebAppAddress = m_configHelper.getValueFromDesiredConfigurations(cluster, ConfigHelper.YARN_SITE, "yarn.resourcemanager.webapp.address");
-    HostAndPort hp = HTTPUtils.getHostAndPortFromProperty(rmWebAppAddress);
-    if (hp == null) {
-      throw new MalformedURLException("Could not parse host and port from " + rmWebAppAddress);
-    }
+    Map<String, JmxQuery> queries = getResourceManagerQueries(hostType.hosts);
 
     for (String hostname : hostType.hosts) {
-      String value = queryJmxBeanValue(hostname, hp.port,
-          "Hadoop:service=ResourceManager,name=RMNMInfo", "modelerType", true);
+      String value = getJmxValue(queries.get(hostname));
 
       if (null != value) {
         if (null == hostType.master) {
@@ -350,6 +538,27 @@ public class MasterHostResolver {
     hostType.hosts = orderedHosts;
   }
 
+  /**
+   * Get the JMX queries that find the Resource Manager master.
+   * @param hosts the Resource Manager hosts
+   * @return the queries by host name
+   * @throws MalformedURLException
+   */
+  private Map<String, JmxQuery> getResourceManagerQueries(Collection<String> hosts) throws MalformedURLException {
+    String rmWebAppAddress = m_configHelper.getValueFromDesiredConfigurations(getCluster(), ConfigHelper.YARN_SITE, "yarn.resourcemanager.webapp.address");
+    HostAndPort hp = HTTPUtils.getHostAndPortFromProperty(rmWebAppAddress);
+    if (hp == null) {
+      throw new MalformedURLException("Could not parse host and port from " + rmWebAppAddress);
+    }
+
+    Map<String, JmxQuery> queries = new LinkedHashMap<>();
+    for (String hostname : hosts) {
+      queries.put(hostname, new JmxQuery(hostname, hp.port,
+          "Hadoop:service=ResourceManager,name=RMNMInfo", "modelerType", true, false));
+    }
+    return queries;
+  }
+
   /**
    * Resolve the HBASE master and convert the hostname to lowercase.
    * @param cluster Cluster
@@ -357,17 +566,10 @@ public class MasterHostResolver {
    * @throws AmbariException
    */
   private void resolveHBaseMasters(Cluster cluster, HostsType hostsType) throws AmbariException {
-    String hbaseMasterInfoPortProperty = "hbase.master.info.port";
-    String hbaseMasterInfoPortValue = m_configHelper.getValueFromDesiredConfigurations(cluster, ConfigHelper.HBASE_SITE, hbaseMasterInfoPortProperty);
+    Map<String, JmxQuery> queries = getHBaseMasterQueries(hostsType.hosts);
 
-    if (hbaseMasterInfoPortValue == null || hbaseMasterInfoPortValue.isEmpty()) {
-      throw new AmbariException("Could not find property " + hbaseMasterInfoPortProperty);
-    }
-
-    final int hbaseMasterInfoPort = Integer.parseInt(hbaseMasterInfoPortValue);
     for (String hostname : hostsType.hosts) {
-      String value = queryJmxBeanValue(hostname, hbaseMasterInfoPort,
-          "Hadoop:service=HBase,name=Master,sub=Server", "tag.isActiveMaster", false);
+      String value = getJmxValue(queries.get(hostname));
 
       if (null != value) {
         Boolean bool = Boolean.valueOf(value);
@@ -380,6 +582,72 @@ public class MasterHostResolver {
     }
   }
 
+  /**
+   * Get the JMX queries that find the active HBASE master.
+   * @param hosts the HBASE master hosts
+   * @return the queries by host name
+   * @throws AmbariException
+   */
+  private Map<String, JmxQuery> getHBaseMasterQueries(Collection<String> hosts) throws AmbariException {
+    String hbaseMasterInfoPortProperty = "hbase.master.info.port";
+    String hbaseMasterInfoPortValue = m_configHelper.getValueFromDesiredConfigurations(getCluster(), ConfigHelper.HBASE_SITE, hbaseMasterInfoPortProperty);
+
+    if (hbaseMasterInfoPortValue == null || hbaseMasterInfoPortValue.isEmpty()) {
+      throw new AmbariException("Could not find property " + hbaseMasterInfoPortProperty);
+    }
+
+    final int hbaseMasterInfoPort = Integer.parseInt(hbaseMasterInfoPortValue);
+    Map<String, JmxQuery> queries = new LinkedHashMap<>();
+    for (String hostname : hosts) {
+      queries.put(hostname, new JmxQuery(hostname, hbaseMasterInfoPort,
+          "Hadoop:service=HBase,name=Master,sub=Server", "tag.isActiveMaster", false, false));
+    }
+    return queries;
+  }
+
+  /**
+   * Gets the value of a JMX query, waiting for it if it was started by
+   * {@link #prefetch(Map)} or running it on the calling thread otherwise.
+   * @param query the query
+   * @return The jmx value.
+   */
+  private String getJmxValue(JmxQuery query) {
+    if (!m_caching) {
+      return queryJmxBeanValue(query.hostname, query.port, query.beanName, query.attributeName,
+          query.asQuery, query.encrypted);
+    }
+
+    Future<String> future = m_jmxValues.get(query.getKey());
+    if (null == future) {
+      FutureTask<String> task = createJmxTask(query);
+      future = m_jmxValues.putIfAbsent(query.getKey(), task);
+      if (null == future) {
+        task.run();
+        future = task;
+      }
+    }
+
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      LOG.debug("Could not load JMX from {}/{} from {}", query.beanName, query.attributeName, query.hostname, e);
+      return null;
+    }
+  }
+
+  private FutureTask<String> createJmxTask(final JmxQuery query) {
+    return new FutureTask<>(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        return queryJmxBeanValue(query.hostname, query.port, query.beanName, query.attributeName,
+            query.asQuery, query.encrypted);
+      }
+    });
+  }
+
   protected String queryJmxBeanValue(String hostname, int port, String beanName, String attributeName,
                                   boolean asQuery) {
     return queryJmxBeanValue(hostname, port, beanName, attributeName, asQuery, false);
@@ -426,4 +694,30 @@ public class MasterHostResolver {
 
     return null;
   }
+
+  /**
+   * A JMX attribute to query, see {@link #queryJmxBeanValue(String, int, String, String, boolean, boolean)}.
+   */
+  private static class JmxQuery {
+    private final String hostname;
+    private final int port;
+    private final String beanName;
+    private final String attributeName;
+    private final boolean asQuery;
+    private final boolean encrypted;
+
+    private JmxQuery(String hostname, int port, String beanName, String attributeName,
+        boolean asQuery, boolean encrypted) {
+      this.hostname = hostname;
+      this.port = port;
+      this.beanName = beanName;
+      this.attributeName = attributeName;
+      this.asQuery = asQuery;
+      this.encrypted = encrypted;
+    }
+
+    private String getKey() {
+      return String.format("%s:%s/%s::%s/%s/%s", hostname, port, beanName, attributeName, asQuery, encrypted);
+    }
+  }
 }
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.stageplanner;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.ambari.server.actionmanager.CommandExecutionType;
+import org.apache.ambari.server.actionmanager.HostRoleCommand;
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.actionmanager.Stage;
+import org.apache.ambari.server.metadata.RoleCommandOrder;
+
+/**
+ * The DAG of the roles of a {@link CommandExecutionType#DEPENDENCY_ORDERED}
+ * stage. The edges are the ones {@link RoleGraph} would use to split the
+ * commands into several stages, so the commands of a role are only scheduled
+ * once all commands of the roles it depends on are finished.
+ * <p/>
+ * The graph is built once per stage. The number of unfinished commands of each
+ * role is counted once per {@link #updateCounts(Stage)}, after which checking
+ * whether a command may be scheduled does not depend on the size of the stage.
+ */
+public class RoleDependencyGraph {
+
+  /**
+   * The roles of the stage, mapped to the roles which have to finish first.
+   */
+  private final Map<String, Set<String>> dependencies = new TreeMap<String, Set<String>>();
+
+  /**
+   * The number of unfinished commands of each role.
+   */
+  private final Map<String, Integer> unfinishedCounts = new HashMap<String, Integer>();
+
+  /**
+   * Constructor.
+   *
+   * @param stage
+   *          the stage whose commands are ordered
+   * @param roleCommandOrder
+   *          the dependencies between roles, or {@code null} if there are none
+   */
+  public RoleDependencyGraph(Stage stage, RoleCommandOrder roleCommandOrder) {
+    Map<String, RoleGraphNode> nodes = new TreeMap<String, RoleGraphNode>();
+    for (Map<String, HostRoleCommand> roleCommands : stage.getHostRoleCommands().values()) {
+      for (HostRoleCommand hostRoleCommand : roleCommands.values()) {
+        String role = hostRoleCommand.getRole().toString();
+        if (!nodes.containsKey(role)) {
+          nodes.put(role, new RoleGraphNode(hostRoleCommand.getRole(),
+              RoleGraph.getRoleCommand(hostRoleCommand)));
+          dependencies.put(role, new TreeSet<String>());
+        }
+      }
+    }
+
+    if (null != roleCommandOrder) {
+      for (RoleGraphNode nodeI : nodes.values()) {
+        for (RoleGraphNode nodeJ : nodes.values()) {
+          if (nodeI != nodeJ && roleCommandOrder.order(nodeI, nodeJ) == 1) {
+            dependencies.get(nodeI.getRole().toString()).add(nodeJ.getRole().toString());
+          }
+        }
+      }
+    }
+
+    updateCounts(stage);
+  }
+
+  /**
+   * Counts the unfinished commands of each role of the stage. Commands are
+   * unfinished as long as their status is one of
+   * {@link HostRoleStatus#IN_PROGRESS_STATUSES}.
+   *
+   * @param stage
+   *          the stage the graph was built for, with up to date statuses
+   */
+  public void updateCounts(Stage stage) {
+    unfinishedCounts.clear();
+    for (Map<String, HostRoleCommand> roleCommands : stage.getHostRoleCommands().values()) {
+      for (HostRoleCommand hostRoleCommand : roleCommands.values()) {
+        if (HostRoleStatus.IN_PROGRESS_STATUSES.contains(hostRoleCommand.getStatus())) {
+          String role = hostRoleCommand.getRole().toString();
+          Integer count = unfinishedCounts.get(role);
+          unfinishedCounts.put(role, (count == null) ? 1 : count + 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets whether all commands of the roles the given role depends on are
+   * finished.
+   *
+   * @param role
+   *          the role of the command to schedule
+   * @return {@code true} if the command may be scheduled
+   */
+  public boolean areDependenciesFinished(String role) {
+    Set<String> roleDependencies = dependencies.get(role);
+    if (null == roleDependencies) {
+      return true;
+    }
+
+    for (String dependency : roleDependencies) {
+      if (unfinishedCounts.containsKey(dependency)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Gets the roles of the stage which have to finish before the given role.
+   *
+   * @param role
+   *          the role
+   * @return the roles it depends on, never {@code null}
+   */
+  public Set<String> getDependencies(String role) {
+    Set<String> roleDependencies = dependencies.get(role);
+    return (null == roleDependencies) ? Collections.<String>emptySet()
+        : Collections.unmodifiableSet(roleDependencies);
+  }
+
+  /**
+   * Gets the roles of the stage.
+   *
+   * @return the roles, in alphabetical order
+   */
+  public Set<String> getRoles() {
+    return Collections.unmodifiableSet(dependencies.keySet());
+  }
+}
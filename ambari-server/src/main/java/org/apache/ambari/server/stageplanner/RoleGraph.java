@@ -119,7 +119,7 @@ public class RoleGraph {
    * only for RESTART name of CUSTOM COMMAND, but in future i think all other will be added too.
    * This method was implemented for fix in role_command_order.json, for RESTART commands.
    */
-  private RoleCommand getRoleCommand(HostRoleCommand hostRoleCommand) {
+  static RoleCommand getRoleCommand(HostRoleCommand hostRoleCommand) {
     if (hostRoleCommand.getRoleCommand().equals(RoleCommand.CUSTOM_COMMAND)) {
       return hostRoleCommand.getCustomCommandName().equals("RESTART") ? RoleCommand.RESTART : RoleCommand.CUSTOM_COMMAND;
     }
@@ -163,14 +163,26 @@ public class ServiceComponentImpl implements ServiceComponent {
 
     updateComponentInfo();
 
+    // the desired states of the host components of this component, by host,
+    // rather than one query per host component
+    Map<Long, HostComponentDesiredStateEntity> hostComponentDesiredStateEntities = new HashMap<>();
+    for (HostComponentDesiredStateEntity hostComponentDesiredStateEntity : serviceComponentDesiredStateEntity.getHostComponentDesiredStateEntities()) {
+      hostComponentDesiredStateEntities.put(hostComponentDesiredStateEntity.getHostId(),
+          hostComponentDesiredStateEntity);
+    }
+
     for (HostComponentStateEntity hostComponentStateEntity : serviceComponentDesiredStateEntity.getHostComponentStateEntities()) {
 
-      HostComponentDesiredStateEntity hostComponentDesiredStateEntity = hostComponentDesiredStateDAO.findByIndex(
-        hostComponentStateEntity.getClusterId(),
-        hostComponentStateEntity.getServiceName(),
-        hostComponentStateEntity.getComponentName(),
-        hostComponentStateEntity.getHostId()
-      );
+      HostComponentDesiredStateEntity hostComponentDesiredStateEntity = hostComponentDesiredStateEntities.get(
+          hostComponentStateEntity.getHostId());
+      if (null == hostComponentDesiredStateEntity) {
+        hostComponentDesiredStateEntity = hostComponentDesiredStateDAO.findByIndex(
+          hostComponentStateEntity.getClusterId(),
+          hostComponentStateEntity.getServiceName(),
+          hostComponentStateEntity.getComponentName(),
+          hostComponentStateEntity.getHostId()
+        );
+      }
 
       try {
         hostComponents.put(hostComponentStateEntity.getHostName(),
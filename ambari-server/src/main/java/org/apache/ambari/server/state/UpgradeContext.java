@@ -18,8 +18,10 @@
 package org.apache.ambari.server.state;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -38,6 +40,26 @@ import org.apache.ambari.server.state.stack.upgrade.UpgradeType;
  */
 public class UpgradeContext {
 
+  /**
+   * Planning phase resolving the hosts and masters of the upgraded components.
+   */
+  public static final String PLANNING_RESOLVE_HOSTS = "resolve_hosts";
+
+  /**
+   * Planning phase building the groups and stages of the upgrade pack.
+   */
+  public static final String PLANNING_BUILD_GROUPS = "build_groups";
+
+  /**
+   * Planning phase creating the commands of the stages.
+   */
+  public static final String PLANNING_CREATE_STAGES = "create_stages";
+
+  /**
+   * Planning phase persisting the request and the upgrade.
+   */
+  public static final String PLANNING_PERSIST = "persist";
+
   /**
    * The cluster that the upgrade is for.
    */
@@ -120,6 +142,11 @@ public class UpgradeContext {
 
   private UpgradeScope m_scope = UpgradeScope.ANY;
 
+  /**
+   * The time (in milliseconds) spent in each phase of creating the upgrade.
+   */
+  private final Map<String, Long> m_planningTimes = new LinkedHashMap<>();
+
   /**
    * Constructor.
    *
@@ -482,4 +509,28 @@ public class UpgradeContext {
   public boolean isScoped(UpgradeScope scope) {
     return m_scope.isScoped(scope);
   }
+
+  /**
+   * Records the time spent in a phase of creating the upgrade. The time of a
+   * phase recorded more than once is summed up.
+   *
+   * @param phase
+   *          the phase, such as {@link #PLANNING_RESOLVE_HOSTS}
+   * @param millis
+   *          the time spent, in milliseconds
+   */
+  public void addPlanningTime(String phase, long millis) {
+    Long previous = m_planningTimes.get(phase);
+    m_planningTimes.put(phase, (null == previous) ? millis : previous + millis);
+  }
+
+  /**
+   * Gets the time spent in each phase of creating the upgrade, in the order the
+   * phases were first recorded.
+   *
+   * @return the times in milliseconds by phase (never {@code null}).
+   */
+  public Map<String, Long> getPlanningTimes() {
+    return Collections.unmodifiableMap(m_planningTimes);
+  }
 }
@@ -21,6 +21,7 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -261,13 +262,19 @@ public class UpgradeHelper {
       UpgradeContext context) throws AmbariException {
 
     context.setAmbariMetaInfo(m_ambariMetaInfo.get());
-    Cluster cluster = context.getCluster();
     MasterHostResolver mhr = context.getResolver();
 
     // Note, only a Rolling Upgrade uses processing tasks.
     Map<String, Map<String, ProcessingComponent>> allTasks = upgradePack.getTasks();
     List<UpgradeGroupHolder> groups = new ArrayList<>();
 
+    long startTime = System.currentTimeMillis();
+
+    // !!! the groups to schedule and the components they touch, so the masters
+    // of all of them can be resolved up front and at the same time
+    List<Grouping> scheduledGroups = new ArrayList<>();
+    Map<String, Set<String>> components = new LinkedHashMap<>();
+
     for (Grouping group : upgradePack.getGroups(context.getDirection())) {
 
       // !!! grouping is not scoped to context
@@ -282,6 +289,77 @@ public class UpgradeHelper {
         continue;
       }
 
+      scheduledGroups.add(group);
+
+      for (UpgradePack.OrderService service : group.services) {
+        if (!context.isServiceSupported(service.serviceName)) {
+          continue;
+        }
+
+        Set<String> serviceComponents = components.get(service.serviceName);
+        if (null == serviceComponents) {
+          serviceComponents = new LinkedHashSet<>();
+          components.put(service.serviceName, serviceComponents);
+        }
+        serviceComponents.addAll(service.components);
+      }
+    }
+
+    try {
+      mhr.prefetch(components);
+
+      long resolvedTime = System.currentTimeMillis();
+      context.addPlanningTime(UpgradeContext.PLANNING_RESOLVE_HOSTS, resolvedTime - startTime);
+
+      groups = createGroups(upgradePack, context, scheduledGroups, allTasks);
+
+      context.addPlanningTime(UpgradeContext.PLANNING_BUILD_GROUPS, System.currentTimeMillis() - resolvedTime);
+    } finally {
+      mhr.clearCache();
+    }
+
+    if (LOG.isDebugEnabled()) {
+      for (UpgradeGroupHolder group : groups) {
+        LOG.debug(group.name);
+
+        int i = 0;
+        for (StageWrapper proxy : group.items) {
+          LOG.debug("  Stage {}", Integer.valueOf(i++));
+          int j = 0;
+
+          for (TaskWrapper task : proxy.getTasks()) {
+            LOG.debug("    Task {} {}", Integer.valueOf(j++), task);
+          }
+        }
+      }
+    }
+
+    return groups;
+  }
+
+  /**
+   * Builds the holders of the groups that are scheduled.
+   *
+   * @param upgradePack
+   *          the upgrade pack
+   * @param context
+   *          the context that wraps key fields required to perform an upgrade
+   * @param scheduledGroups
+   *          the groups that are in scope and whose condition is satisfied
+   * @param allTasks
+   *          the processing tasks of the upgrade pack
+   * @return the list of holders
+   */
+  private List<UpgradeGroupHolder> createGroups(UpgradePack upgradePack, UpgradeContext context,
+      List<Grouping> scheduledGroups, Map<String, Map<String, ProcessingComponent>> allTasks)
+      throws AmbariException {
+
+    Cluster cluster = context.getCluster();
+    MasterHostResolver mhr = context.getResolver();
+    List<UpgradeGroupHolder> groups = new ArrayList<>();
+
+    for (Grouping group : scheduledGroups) {
+
       UpgradeGroupHolder groupHolder = new UpgradeGroupHolder();
       groupHolder.name = group.name;
       groupHolder.title = group.title;
@@ -471,22 +549,6 @@ public class UpgradeHelper {
       }
     }
 
-    if (LOG.isDebugEnabled()) {
-      for (UpgradeGroupHolder group : groups) {
-        LOG.debug(group.name);
-
-        int i = 0;
-        for (StageWrapper proxy : group.items) {
-          LOG.debug("  Stage {}", Integer.valueOf(i++));
-          int j = 0;
-
-          for (TaskWrapper task : proxy.getTasks()) {
-            LOG.debug("    Task {} {}", Integer.valueOf(j++), task);
-          }
-        }
-      }
-    }
-
     return groups;
   }
 
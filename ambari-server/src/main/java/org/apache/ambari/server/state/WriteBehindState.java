@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state;
+
+import org.apache.ambari.annotations.Experimental;
+import org.apache.ambari.annotations.ExperimentalFeature;
+
+/**
+ * The {@link WriteBehindState} interface is implemented by business objects
+ * which hold the authoritative copy of their current state in memory and have
+ * it written to the database by the {@link WriteBehindStateFlusher}.
+ * <p/>
+ * Each change of the in-memory state increments the state version. Writing the
+ * state records the version which was written, so that the object is only
+ * written again once it has changed.
+ */
+@Experimental(feature = ExperimentalFeature.STATE_WRITE_BEHIND)
+public interface WriteBehindState {
+
+  /**
+   * Gets the version of the in-memory state, which is incremented on each
+   * change.
+   *
+   * @return the state version
+   */
+  long getStateVersion();
+
+  /**
+   * Gets the version of the state which was last written to the database.
+   *
+   * @return the persisted state version
+   */
+  long getPersistedStateVersion();
+
+  /**
+   * Copies the in-memory state to the entities of this object and merges them.
+   * This is invoked within the transaction of
+   * {@link WriteBehindStateFlusher#writeStates()}.
+   *
+   * @return the state version which was written
+   */
+  long writeState();
+
+  /**
+   * Invoked once the transaction which wrote the given version of the state
+   * was committed.
+   *
+   * @param version
+   *          the state version which was written
+   */
+  void setPersistedStateVersion(long version);
+}
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ambari.annotations.Experimental;
+import org.apache.ambari.annotations.ExperimentalFeature;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.state.services.WriteBehindStateFlushService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.MapMaker;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
+
+/**
+ * The {@link WriteBehindStateFlusher} keeps track of the {@link WriteBehindState}
+ * instances whose in-memory state has not been written to the database yet.
+ * Each instance is tracked once, no matter how often its state changed, so
+ * consecutive changes are written together. The
+ * {@link WriteBehindStateFlushService} periodically writes the tracked
+ * instances in batches. Code which reads the current state from the database
+ * instead of the business objects has to {@link #flush()} first.
+ * <p/>
+ * Writing happens in two steps, since the persisted versions may only be
+ * recorded once the transaction was committed: {@link #writeStates(int)}
+ * merges the entities and {@link #onStatesWritten(Map)} records what was
+ * written. Instances whose transaction was rolled back remain tracked and are
+ * written again later.
+ */
+@Singleton
+@Experimental(feature = ExperimentalFeature.STATE_WRITE_BEHIND)
+public class WriteBehindStateFlusher {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(WriteBehindStateFlusher.class);
+
+  /**
+   * The number of instances written per transaction by {@link #flush()}.
+   */
+  static final int BATCH_SIZE = 1000;
+
+  /**
+   * The instances with changes that still have to be written. Keys are
+   * compared by identity and weakly referenced, so that deleted business
+   * objects are not written or retained.
+   */
+  private final ConcurrentMap<WriteBehindState, Boolean> dirtyStates =
+      new MapMaker().weakKeys().makeMap();
+
+  /**
+   * Whether the state is written behind, which is read once since it is
+   * checked on every change of the state.
+   */
+  private final boolean enabled;
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          the configuration
+   */
+  @Inject
+  public WriteBehindStateFlusher(Configuration configuration) {
+    enabled = configuration.isStateWriteBehindEnabled();
+  }
+
+  /**
+   * Gets whether business objects should keep their current state in memory
+   * and have it written by this flusher.
+   *
+   * @return {@code true} if the state is written behind
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Tracks an instance whose state changed. This must be invoked after the
+   * state version of the instance was incremented.
+   *
+   * @param state
+   *          the changed instance (not {@code null}).
+   */
+  public void markDirty(WriteBehindState state) {
+    dirtyStates.put(state, Boolean.TRUE);
+  }
+
+  /**
+   * Gets the number of instances whose state still has to be written.
+   *
+   * @return the number of tracked instances
+   */
+  public int getDirtyCount() {
+    return dirtyStates.size();
+  }
+
+  /**
+   * Writes the state of all instances which changed, in batches of
+   * {@link #BATCH_SIZE} per transaction. Instances which change while they
+   * are written are left for the next invocation. This must not be invoked
+   * within a transaction, since the written versions are recorded once each
+   * batch is committed. Does nothing if the state is written through.
+   *
+   * @return the number of instances written
+   */
+  public synchronized int flush() {
+    if (!enabled) {
+      return 0;
+    }
+
+    long start = System.currentTimeMillis();
+    int remaining = getDirtyCount();
+    int count = 0;
+
+    while (remaining > 0) {
+      Map<WriteBehindState, Long> written = writeStates(BATCH_SIZE);
+      onStatesWritten(written);
+
+      if (written.isEmpty()) {
+        break;
+      }
+
+      count += written.size();
+      remaining -= written.size();
+    }
+
+    if (count > 0) {
+      LOG.debug("Wrote the state of {} hosts and host components in {}ms", count,
+          System.currentTimeMillis() - start);
+    }
+
+    return count;
+  }
+
+  /**
+   * Writes the state of up to {@code limit} changed instances in a single
+   * transaction.
+   *
+   * @param limit
+   *          the maximum number of instances to write
+   * @return the instances which were written, mapped to the state version
+   *         which was written
+   */
+  @Transactional
+  public Map<WriteBehindState, Long> writeStates(int limit) {
+    Map<WriteBehindState, Long> written = new IdentityHashMap<>();
+    for (WriteBehindState state : dirtyStates.keySet()) {
+      if (written.size() >= limit) {
+        break;
+      }
+
+      if (state.getStateVersion() > state.getPersistedStateVersion()) {
+        written.put(state, state.writeState());
+      }
+    }
+
+    return written;
+  }
+
+  /**
+   * Records the versions written by {@link #writeStates(int)} once its
+   * transaction was committed, and stops tracking the instances which did not
+   * change in the meantime.
+   *
+   * @param written
+   *          the instances which were written, mapped to the state version
+   *          which was written
+   */
+  public void onStatesWritten(Map<WriteBehindState, Long> written) {
+    for (Map.Entry<WriteBehindState, Long> entry : written.entrySet()) {
+      WriteBehindState state = entry.getKey();
+      state.setPersistedStateVersion(entry.getValue());
+      dirtyStates.remove(state);
+
+      // a change made while the state was written has to be written again
+      if (state.getStateVersion() > state.getPersistedStateVersion()) {
+        dirtyStates.put(state, Boolean.TRUE);
+      }
+    }
+  }
+}
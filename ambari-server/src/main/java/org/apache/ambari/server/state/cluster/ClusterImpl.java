@@ -207,6 +207,21 @@ public class ClusterImpl implements Cluster {
 
   private final ReadWriteLock clusterGlobalLock;
 
+  /**
+   * Guards the desired configurations and the service config versions of the
+   * cluster, so that writing configurations does not block the operations
+   * guarded by {@link #clusterGlobalLock}, such as processing the events of
+   * heartbeats. If both locks are needed, {@link #clusterGlobalLock} must be
+   * acquired first.
+   */
+  private final ReadWriteLock clusterConfigLock;
+
+  /**
+   * [ ServiceName -> lock ] serializing the creation of the service config
+   * versions of each service.
+   */
+  private final ConcurrentMap<String, Lock> serviceConfigVersionLocks = new ConcurrentHashMap<>();
+
   // This is a lock for operations that do not need to be cluster global
   private final Lock hostTransitionStateWriteLock;
 
@@ -324,6 +339,7 @@ public class ClusterImpl implements Cluster {
     injector.injectMembers(this);
 
     clusterGlobalLock = lockFactory.newReadWriteLock("clusterGlobalLock");
+    clusterConfigLock = lockFactory.newReadWriteLock("clusterConfigLock");
     hostTransitionStateWriteLock = lockFactory.newLock("hostTransitionStateLock");
 
     loadStackVersion();
@@ -1450,9 +1466,10 @@ public class ClusterImpl implements Cluster {
         HostEntity hostEntity = hostDAO.findByName(hostname);
 
         // During initial bootstrap, unhealthy hosts are ignored
-        // so we boostrap the CURRENT version anyway
+        // so we boostrap the CURRENT version anyway. The state is read from
+        // the host, since its entity may lag behind when it is written behind
         if (performingInitialBootstrap &&
-                hostEntity.getHostStateEntity().getCurrentState() != HostState.HEALTHY) {
+                hosts.get(hostname).getState() != HostState.HEALTHY) {
           continue;
         }
 
@@ -1849,50 +1866,38 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Map<String, Config> getConfigsByType(String configType) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)) {
-        return null;
-      }
-
-      return Collections.unmodifiableMap(allConfigs.get(configType));
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (null == configs) {
+      return null;
     }
+
+    return Collections.unmodifiableMap(configs);
   }
 
   @Override
   public Config getConfig(String configType, String versionTag) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)
-          || !allConfigs.get(configType).containsKey(versionTag)) {
-        return null;
-      }
-      return allConfigs.get(configType).get(versionTag);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (null == configs) {
+      return null;
     }
+
+    return configs.get(versionTag);
   }
 
   @Override
   public Config getConfigByVersion(String configType, Long configVersion) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)) {
-        return null;
-      }
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (null == configs) {
+      return null;
+    }
 
-      for (Map.Entry<String, Config> entry : allConfigs.get(configType).entrySet()) {
-        if (entry.getValue().getVersion().equals(configVersion)) {
-          return entry.getValue();
-        }
+    for (Config config : configs.values()) {
+      if (config.getVersion().equals(configVersion)) {
+        return config;
       }
-
-      return null;
-    } finally {
-      clusterGlobalLock.readLock().unlock();
     }
+
+    return null;
   }
 
   @Override
@@ -1901,32 +1906,27 @@ public class ClusterImpl implements Cluster {
       throw new IllegalArgumentException("Config type cannot be empty");
     }
 
-    clusterGlobalLock.writeLock().lock();
-    try {
-      if (!allConfigs.containsKey(config.getType())) {
-        allConfigs.put(config.getType(), new ConcurrentHashMap<String, Config>());
+    ConcurrentMap<String, Config> configs = allConfigs.get(config.getType());
+    if (null == configs) {
+      ConcurrentMap<String, Config> newConfigs = new ConcurrentHashMap<>();
+      configs = allConfigs.putIfAbsent(config.getType(), newConfigs);
+      if (null == configs) {
+        configs = newConfigs;
       }
-
-      allConfigs.get(config.getType()).put(config.getTag(), config);
-    } finally {
-      clusterGlobalLock.writeLock().unlock();
     }
+
+    configs.put(config.getTag(), config);
   }
 
   @Override
   public Collection<Config> getAllConfigs() {
-    clusterGlobalLock.readLock().lock();
-    try {
-      List<Config> list = new ArrayList<Config>();
-      for (Entry<String, ConcurrentMap<String, Config>> entry : allConfigs.entrySet()) {
-        for (Config config : entry.getValue().values()) {
-          list.add(config);
-        }
+    List<Config> list = new ArrayList<Config>();
+    for (Entry<String, ConcurrentMap<String, Config>> entry : allConfigs.entrySet()) {
+      for (Config config : entry.getValue().values()) {
+        list.add(config);
       }
-      return Collections.unmodifiableList(list);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
     }
+    return Collections.unmodifiableList(list);
   }
 
   @Override
@@ -1964,10 +1964,12 @@ public class ClusterImpl implements Cluster {
   @Transactional
   public void refresh() {
     clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       ClusterEntity clusterEntity = getClusterEntity();
       clusterDAO.refresh(clusterEntity);
     } finally {
+      clusterConfigLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
   }
@@ -2032,7 +2034,13 @@ public class ClusterImpl implements Cluster {
   private void deleteService(Service service) throws AmbariException {
     final String serviceName = service.getName();
 
-    service.delete();
+    // deleting the service deselects its configurations
+    clusterConfigLock.writeLock().lock();
+    try {
+      service.delete();
+    } finally {
+      clusterConfigLock.writeLock().unlock();
+    }
 
     serviceComponentHosts.remove(serviceName);
 
@@ -2099,7 +2107,7 @@ public class ClusterImpl implements Cluster {
       throw new NullPointerException("User must be specified.");
     }
 
-    clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       if (configs == null) {
         return null;
@@ -2127,7 +2135,7 @@ public class ClusterImpl implements Cluster {
 
       return serviceConfigVersionResponse;
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterConfigLock.writeLock().unlock();
     }
   }
 
@@ -2162,7 +2170,7 @@ public class ClusterImpl implements Cluster {
    * @return a map of type-to-configuration information.
    */
   private Map<String, Set<DesiredConfig>> getDesiredConfigs(boolean allVersions) {
-    clusterGlobalLock.readLock().lock();
+    clusterConfigLock.readLock().lock();
     try {
       Map<String, Set<DesiredConfig>> map = new HashMap<>();
       Collection<String> types = new HashSet<>();
@@ -2231,7 +2239,7 @@ public class ClusterImpl implements Cluster {
 
       return map;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      clusterConfigLock.readLock().unlock();
     }
   }
 
@@ -2244,7 +2252,10 @@ public class ClusterImpl implements Cluster {
     // Create next service config version
     ServiceConfigEntity serviceConfigEntity = new ServiceConfigEntity();
 
-    clusterGlobalLock.writeLock().lock();
+    // versions of different services may be created concurrently
+    Lock serviceConfigVersionLock = getServiceConfigVersionLock(serviceName);
+    clusterConfigLock.readLock().lock();
+    serviceConfigVersionLock.lock();
     try {
       ClusterEntity clusterEntity = getClusterEntity();
       // set config group
@@ -2281,7 +2292,8 @@ public class ClusterImpl implements Cluster {
         serviceConfigEntity = serviceConfigDAO.merge(serviceConfigEntity);
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceConfigVersionLock.unlock();
+      clusterConfigLock.readLock().unlock();
     }
 
     configChangeLog.info("Cluster '{}' changed by: '{}'; service_name='{}' config_group='{}' config_group_id='{}' " +
@@ -2339,19 +2351,19 @@ public class ClusterImpl implements Cluster {
       throw new NullPointerException("User must be specified.");
     }
 
-    clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyServiceConfigVersion(
           serviceName, version, user, note);
       return serviceConfigVersionResponse;
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterConfigLock.writeLock().unlock();
     }
   }
 
   @Override
   public Map<String, Collection<ServiceConfigVersionResponse>> getActiveServiceConfigVersions() {
-    clusterGlobalLock.readLock().lock();
+    clusterConfigLock.readLock().lock();
     try {
       Map<String, Collection<ServiceConfigVersionResponse>> map = new HashMap<String, Collection<ServiceConfigVersionResponse>>();
 
@@ -2365,13 +2377,13 @@ public class ClusterImpl implements Cluster {
       }
       return map;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      clusterConfigLock.readLock().unlock();
     }
   }
 
   @Override
   public List<ServiceConfigVersionResponse> getServiceConfigVersions() {
-    clusterGlobalLock.readLock().lock();
+    clusterConfigLock.readLock().lock();
     try {
       List<ServiceConfigVersionResponse> serviceConfigVersionResponses = new ArrayList<ServiceConfigVersionResponse>();
 
@@ -2424,7 +2436,7 @@ public class ClusterImpl implements Cluster {
 
       return serviceConfigVersionResponses;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      clusterConfigLock.readLock().unlock();
     }
   }
 
@@ -2456,7 +2468,7 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public List<ServiceConfigVersionResponse> getActiveServiceConfigVersionResponse(String serviceName) {
-    clusterGlobalLock.readLock().lock();
+    clusterConfigLock.readLock().lock();
     try {
       List<ServiceConfigEntity> activeServiceConfigVersionEntities = new ArrayList<ServiceConfigEntity>();
       List<ServiceConfigVersionResponse> activeServiceConfigVersionResponses = new ArrayList<ServiceConfigVersionResponse>();
@@ -2468,7 +2480,7 @@ public class ClusterImpl implements Cluster {
       }
       return activeServiceConfigVersionResponses;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      clusterConfigLock.readLock().unlock();
     }
   }
 
@@ -3078,6 +3090,7 @@ public class ClusterImpl implements Cluster {
   @Transactional
   public void applyLatestConfigurations(StackId stackId) {
     clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
 
     try {
       ClusterEntity clusterEntity = getClusterEntity();
@@ -3116,6 +3129,7 @@ public class ClusterImpl implements Cluster {
 
       cacheConfigurations();
     } finally {
+      clusterConfigLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
 
@@ -3287,38 +3301,63 @@ public class ClusterImpl implements Cluster {
   @Override
   public void removeConfigurations(StackId stackId) {
     clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       removeAllConfigsForStack(stackId);
       cacheConfigurations();
     } finally {
+      clusterConfigLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
   }
 
   /**
-   * Caches all of the {@link ClusterConfigEntity}s in {@link #allConfigs}.
+   * Caches all of the {@link ClusterConfigEntity}s in {@link #allConfigs}. The
+   * configurations of each type are replaced at once, so that the lock free
+   * readers of {@link #allConfigs} never see a partially loaded cache.
    */
   private void cacheConfigurations() {
-    clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       ClusterEntity clusterEntity = getClusterEntity();
-      allConfigs.clear();
-
-      if (!clusterEntity.getClusterConfigEntities().isEmpty()) {
-        for (ClusterConfigEntity entity : clusterEntity.getClusterConfigEntities()) {
+      Map<String, ConcurrentMap<String, Config>> configs = new HashMap<>();
 
-          if (!allConfigs.containsKey(entity.getType())) {
-            allConfigs.put(entity.getType(), new ConcurrentHashMap<String, Config>());
-          }
+      for (ClusterConfigEntity entity : clusterEntity.getClusterConfigEntities()) {
+        if (!configs.containsKey(entity.getType())) {
+          configs.put(entity.getType(), new ConcurrentHashMap<String, Config>());
+        }
 
-          Config config = configFactory.createExisting(this, entity);
+        Config config = configFactory.createExisting(this, entity);
 
-          allConfigs.get(entity.getType()).put(entity.getTag(), config);
-        }
+        configs.get(entity.getType()).put(entity.getTag(), config);
       }
+
+      allConfigs.putAll(configs);
+      allConfigs.keySet().retainAll(configs.keySet());
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterConfigLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the lock serializing the creation of the service config versions of
+   * the given service.
+   *
+   * @param serviceName
+   *          the name of the service
+   * @return the lock of the service, never {@code null}
+   */
+  private Lock getServiceConfigVersionLock(String serviceName) {
+    Lock lock = serviceConfigVersionLocks.get(serviceName);
+    if (null == lock) {
+      Lock newLock = lockFactory.newLock("serviceConfigVersionLock " + serviceName);
+      lock = serviceConfigVersionLocks.putIfAbsent(serviceName, newLock);
+      if (null == lock) {
+        lock = newLock;
+      }
     }
+
+    return lock;
   }
 
   private void loadStackVersion() {
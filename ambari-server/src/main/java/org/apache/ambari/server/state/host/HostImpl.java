@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -65,6 +66,8 @@ import org.apache.ambari.server.state.HostHealthStatus.HealthStatus;
 import org.apache.ambari.server.state.HostState;
 import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.StackId;
+import org.apache.ambari.server.state.WriteBehindState;
+import org.apache.ambari.server.state.WriteBehindStateFlusher;
 import org.apache.ambari.server.state.configgroup.ConfigGroup;
 import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
 import org.apache.ambari.server.state.fsm.SingleArcTransition;
@@ -81,7 +84,7 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.persist.Transactional;
 
-public class HostImpl implements Host {
+public class HostImpl implements Host, WriteBehindState {
 
   private static final Logger LOG = LoggerFactory.getLogger(HostImpl.class);
   private static final String HARDWAREISA = "hardware_isa";
@@ -170,6 +173,29 @@ public class HostImpl implements Host {
   @Inject
   private TopologyManager topologyManager;
 
+  /**
+   * Writes the state of this host to the database, if
+   * {@link WriteBehindStateFlusher#isEnabled()}.
+   */
+  @Inject
+  private WriteBehindStateFlusher writeBehindStateFlusher;
+
+  /**
+   * The state of the {@link HostStateEntity}, which is authoritative if it is
+   * written behind, and otherwise only updated along with the entity.
+   */
+  private volatile HostHealthStatus healthStatus;
+  private volatile AgentVersion agentVersion;
+  private volatile long availableMemBytes;
+  private volatile long timeInState;
+
+  /**
+   * The version of the in-memory state, and the version last written to the
+   * database.
+   */
+  private final AtomicLong stateVersion = new AtomicLong();
+  private volatile long persistedStateVersion;
+
   private static final StateMachineFactory
     <HostImpl, HostState, HostEventType, HostEvent>
       stateMachineFactory
@@ -275,6 +301,11 @@ public class HostImpl implements Host {
       stateMachine.setCurrentState(hostStateEntity.getCurrentState());
     }
 
+    healthStatus = gson.fromJson(hostStateEntity.getHealthStatus(), HostHealthStatus.class);
+    agentVersion = gson.fromJson(hostStateEntity.getAgentVersion(), AgentVersion.class);
+    availableMemBytes = hostStateEntity.getAvailableMem();
+    timeInState = hostStateEntity.getTimeInState();
+
     // persist the host
     if (null == hostEntity.getHostId()) {
       persistEntities(hostEntity);
@@ -555,11 +586,17 @@ public class HostImpl implements Host {
   @Override
   public void setState(HostState state) {
     stateMachine.setCurrentState(state);
+    timeInState = System.currentTimeMillis();
+    if (isStateWrittenBehind()) {
+      onStateChanged();
+      return;
+    }
+
     HostStateEntity hostStateEntity = getHostStateEntity();
 
     if (hostStateEntity != null) {
       hostStateEntity.setCurrentState(state);
-      hostStateEntity.setTimeInState(System.currentTimeMillis());
+      hostStateEntity.setTimeInState(timeInState);
       hostStateDAO.merge(hostStateEntity);
     }
   }
@@ -695,12 +732,22 @@ public class HostImpl implements Host {
 
   @Override
   public long getAvailableMemBytes() {
+    if (isStateWrittenBehind()) {
+      return availableMemBytes;
+    }
+
     HostStateEntity hostStateEntity = getHostStateEntity();
     return hostStateEntity != null ? hostStateEntity.getAvailableMem() : null;
   }
 
   @Override
   public void setAvailableMemBytes(long availableMemBytes) {
+    this.availableMemBytes = availableMemBytes;
+    if (isStateWrittenBehind()) {
+      onStateChanged();
+      return;
+    }
+
     HostStateEntity hostStateEntity = getHostStateEntity();
     if (hostStateEntity != null) {
       hostStateEntity.setAvailableMem(availableMemBytes);
@@ -773,6 +820,10 @@ public class HostImpl implements Host {
 
   @Override
   public HostHealthStatus getHealthStatus() {
+    if (isStateWrittenBehind()) {
+      return healthStatus;
+    }
+
     HostStateEntity hostStateEntity = getHostStateEntity();
     if (hostStateEntity != null) {
       return gson.fromJson(hostStateEntity.getHealthStatus(), HostHealthStatus.class);
@@ -783,6 +834,16 @@ public class HostImpl implements Host {
 
   @Override
   public void setHealthStatus(HostHealthStatus healthStatus) {
+    this.healthStatus = healthStatus;
+    if (isStateWrittenBehind()) {
+      if (healthStatus.getHealthStatus().equals(HealthStatus.UNKNOWN)) {
+        setStatus(HealthStatus.UNKNOWN.name());
+      }
+
+      onStateChanged();
+      return;
+    }
+
     HostStateEntity hostStateEntity = getHostStateEntity();
     if (hostStateEntity != null) {
       hostStateEntity.setHealthStatus(gson.toJson(healthStatus));
@@ -862,6 +923,10 @@ public class HostImpl implements Host {
 
   @Override
   public AgentVersion getAgentVersion() {
+    if (isStateWrittenBehind()) {
+      return agentVersion;
+    }
+
     HostStateEntity hostStateEntity = getHostStateEntity();
     if (hostStateEntity != null) {
       return gson.fromJson(hostStateEntity.getAgentVersion(), AgentVersion.class);
@@ -872,6 +937,12 @@ public class HostImpl implements Host {
 
   @Override
   public void setAgentVersion(AgentVersion agentVersion) {
+    this.agentVersion = agentVersion;
+    if (isStateWrittenBehind()) {
+      onStateChanged();
+      return;
+    }
+
     HostStateEntity hostStateEntity = getHostStateEntity();
     if (hostStateEntity != null) {
       hostStateEntity.setAgentVersion(gson.toJson(agentVersion));
@@ -881,12 +952,22 @@ public class HostImpl implements Host {
 
   @Override
   public long getTimeInState() {
+    if (isStateWrittenBehind()) {
+      return timeInState;
+    }
+
     HostStateEntity hostStateEntity = getHostStateEntity();
     return hostStateEntity != null ? hostStateEntity.getTimeInState() :  null;
   }
 
   @Override
   public void setTimeInState(long timeInState) {
+    this.timeInState = timeInState;
+    if (isStateWrittenBehind()) {
+      onStateChanged();
+      return;
+    }
+
     HostStateEntity hostStateEntity = getHostStateEntity();
     if (hostStateEntity != null) {
       hostStateEntity.setTimeInState(timeInState);
@@ -1144,6 +1225,72 @@ public class HostImpl implements Host {
     return hostVersionDAO.findByHost(getHostName());
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getStateVersion() {
+    return stateVersion.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getPersistedStateVersion() {
+    return persistedStateVersion;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes the current state, health status, agent version, available memory
+   * and time in state of this host. Maintenance state and the other host
+   * information are always written immediately.
+   */
+  @Override
+  public long writeState() {
+    long version = stateVersion.get();
+    HostStateEntity hostStateEntity = getHostStateEntity();
+
+    // the host was removed in the meantime
+    if (hostStateEntity == null) {
+      return version;
+    }
+
+    hostStateEntity.setCurrentState(getState());
+    hostStateEntity.setHealthStatus(gson.toJson(healthStatus));
+    hostStateEntity.setAgentVersion(gson.toJson(agentVersion));
+    hostStateEntity.setAvailableMem(availableMemBytes);
+    hostStateEntity.setTimeInState(timeInState);
+    hostStateDAO.merge(hostStateEntity);
+    return version;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setPersistedStateVersion(long version) {
+    persistedStateVersion = Math.max(persistedStateVersion, version);
+  }
+
+  /**
+   * Gets whether the in-memory state of this host is authoritative and written
+   * by the {@link WriteBehindStateFlusher}.
+   */
+  private boolean isStateWrittenBehind() {
+    return null != writeBehindStateFlusher && writeBehindStateFlusher.isEnabled();
+  }
+
+  /**
+   * Increments the state version and has the state written.
+   */
+  private void onStateChanged() {
+    stateVersion.incrementAndGet();
+    writeBehindStateFlusher.markDirty(this);
+  }
+
   // Get the cached host entity or load it fresh through the DAO.
   public HostEntity getHostEntity() {
     return hostDAO.findById(hostId);
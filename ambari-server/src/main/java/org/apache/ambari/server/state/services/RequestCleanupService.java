@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.cleanup.TimeBasedCleanupPolicy;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.ClusterDAO;
+import org.apache.ambari.server.orm.dao.RequestDAO;
+import org.apache.ambari.server.orm.entities.ClusterEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link RequestCleanupService} is used to periodically purge finished
+ * requests, along with their stages, tasks and topology requests, from the
+ * database while Ambari Server runs. This service is controlled by
+ * {@link Configuration#getCleanupRequestsRetentionDays()} and
+ * {@link Configuration#getCleanupRequestsInterval()}.
+ */
+@AmbariService
+public class RequestCleanupService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(RequestCleanupService.class);
+
+  /**
+   * Configuration.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * Used for finding the clusters.
+   */
+  @Inject
+  private ClusterDAO m_clusterDAO;
+
+  /**
+   * Used for purging the requests.
+   */
+  @Inject
+  private RequestDAO m_requestDAO;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Scheduler scheduler() {
+    int intervalInHours = m_configuration.getCleanupRequestsInterval();
+    return Scheduler.newFixedDelaySchedule(intervalInHours, intervalInHours, TimeUnit.HOURS);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Invokes {@link #stop()} if not enabled.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    if (m_configuration.getCleanupRequestsRetentionDays() <= 0) {
+      stopAsync();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Purges the requests of each cluster which finished before the retention
+   * period.
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    long beforeDate = System.currentTimeMillis()
+        - TimeUnit.DAYS.toMillis(m_configuration.getCleanupRequestsRetentionDays());
+
+    for (ClusterEntity clusterEntity : m_clusterDAO.findAll()) {
+      try {
+        long affectedRows = m_requestDAO.purge(
+            new TimeBasedCleanupPolicy(clusterEntity.getClusterName(), beforeDate));
+        LOG.info("Purged finished requests of cluster {}, number of deleted rows: {}",
+            clusterEntity.getClusterName(), affectedRows);
+      } catch (Exception exception) {
+        LOG.error("Unable to purge the finished requests of cluster {}", clusterEntity.getClusterName(),
+            exception);
+      }
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.annotations.Experimental;
+import org.apache.ambari.annotations.ExperimentalFeature;
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.state.WriteBehindStateFlusher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link WriteBehindStateFlushService} is used to periodically write the
+ * in-memory state of hosts and host components to the database. This service
+ * is controlled by {@link Configuration#isStateWriteBehindEnabled()} and
+ * {@link Configuration#getStateWriteBehindFlushInterval()}.
+ * <p/>
+ * Since the services are not stopped when the server shuts down, a JVM
+ * shutdown hook writes the remaining changes.
+ */
+@AmbariService
+@Experimental(feature = ExperimentalFeature.STATE_WRITE_BEHIND)
+public class WriteBehindStateFlushService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(WriteBehindStateFlushService.class);
+
+  /**
+   * Configuration.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * Tracks the instances whose state has to be written.
+   */
+  @Inject
+  private WriteBehindStateFlusher m_flusher;
+
+  /**
+   * Writes the remaining changes when the server shuts down, registered once
+   * the service started.
+   */
+  private Thread m_shutdownHook;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Scheduler scheduler() {
+    int flushIntervalInSeconds = m_configuration.getStateWriteBehindFlushInterval();
+    return Scheduler.newFixedDelaySchedule(flushIntervalInSeconds, flushIntervalInSeconds,
+        TimeUnit.SECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Invokes {@link #stop()} if not enabled.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    boolean enabled = m_configuration.isStateWriteBehindEnabled();
+    if (!enabled) {
+      stopAsync();
+      return;
+    }
+
+    m_shutdownHook = new Thread("write-behind-state-shutdown") {
+      @Override
+      public void run() {
+        stopAsync();
+        try {
+          flush();
+        } catch (RuntimeException exception) {
+          LOG.error("Unable to write the state of hosts and host components to the database on shutdown",
+              exception);
+        }
+      }
+    };
+    Runtime.getRuntime().addShutdownHook(m_shutdownHook);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes the changed state to the database.
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    try {
+      flush();
+    } catch (Exception exception) {
+      LOG.error("Unable to write the state of hosts and host components to the database",
+          exception);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes any remaining changes so that they are not lost when the service
+   * is stopped.
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    Thread hook = m_shutdownHook;
+    if (hook != null && hook != Thread.currentThread()) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(hook);
+      } catch (IllegalStateException exception) {
+        // already shutting down, the hook writes the changes as well
+      }
+    }
+
+    if (m_configuration.isStateWriteBehindEnabled()) {
+      flush();
+    }
+  }
+
+  /**
+   * Gets the hook which writes the remaining changes when the server shuts
+   * down.
+   *
+   * @return the shutdown hook, or {@code null} if the service did not start
+   */
+  Thread getShutdownHook() {
+    return m_shutdownHook;
+  }
+
+  /**
+   * Writes the state of all instances which changed.
+   *
+   * @return the number of instances written
+   * @see WriteBehindStateFlusher#flush()
+   */
+  public int flush() {
+    return m_flusher.flush();
+  }
+}
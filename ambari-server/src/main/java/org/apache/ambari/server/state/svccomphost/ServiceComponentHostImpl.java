@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -70,6 +71,8 @@ import org.apache.ambari.server.state.StackId;
 import org.apache.ambari.server.state.StackInfo;
 import org.apache.ambari.server.state.State;
 import org.apache.ambari.server.state.UpgradeState;
+import org.apache.ambari.server.state.WriteBehindState;
+import org.apache.ambari.server.state.WriteBehindStateFlusher;
 import org.apache.ambari.server.state.alert.AlertDefinitionHash;
 import org.apache.ambari.server.state.configgroup.ConfigGroup;
 import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
@@ -87,7 +90,7 @@ import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import com.google.inject.persist.Transactional;
 
-public class ServiceComponentHostImpl implements ServiceComponentHost {
+public class ServiceComponentHostImpl implements ServiceComponentHost, WriteBehindState {
 
   private static final Logger LOG =
       LoggerFactory.getLogger(ServiceComponentHostImpl.class);
@@ -160,6 +163,28 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
    */
   private final String hostName;
 
+  /**
+   * Writes the current state of this host component to the database, if
+   * {@link WriteBehindStateFlusher#isEnabled()}.
+   */
+  @Inject
+  private WriteBehindStateFlusher writeBehindStateFlusher;
+
+  /**
+   * The security state and stack reported by the agent, which are
+   * authoritative if the current state is written behind. The current state
+   * itself is held by the state machine.
+   */
+  private volatile SecurityState securityState;
+  private volatile StackId currentStackId;
+
+  /**
+   * The version of the in-memory state, and the version last written to the
+   * database.
+   */
+  private final AtomicLong stateVersion = new AtomicLong();
+  private volatile long persistedStateVersion;
+
   private static final StateMachineFactory
   <ServiceComponentHostImpl, State,
   ServiceComponentHostEventType, ServiceComponentHostEvent>
@@ -800,6 +825,9 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
     persistEntities(hostEntity, stateEntity, desiredStateEntity);
 
+    securityState = stateEntity.getSecurityState();
+    currentStackId = new StackId(stackId.getStackName(), stackId.getStackVersion());
+
     // publish the service component installed event
     ServiceComponentInstalledEvent event = new ServiceComponentInstalledEvent(getClusterId(),
         stackId.getStackName(), stackId.getStackVersion(), getServiceName(),
@@ -844,6 +872,9 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
       stateMachine = daemonStateMachineFactory.make(this);
     }
     stateMachine.setCurrentState(stateEntity.getCurrentState());
+    securityState = stateEntity.getSecurityState();
+    currentStackId = (null == stateEntity.getCurrentStack()) ? new StackId()
+        : new StackId(stateEntity.getCurrentStack());
 
     try {
       host = clusters.getHost(stateEntity.getHostName());
@@ -863,7 +894,15 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   @Override
   public void setState(State state) {
+    State previousState = stateMachine.getCurrentState();
     stateMachine.setCurrentState(state);
+    if (isStateWrittenBehind()) {
+      if (previousState != state) {
+        onStateChanged();
+      }
+      return;
+    }
+
     HostComponentStateEntity stateEntity = getStateEntity();
     if (stateEntity != null) {
       stateEntity.setCurrentState(state);
@@ -904,6 +943,10 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   @Override
   public SecurityState getSecurityState() {
+    if (isStateWrittenBehind()) {
+      return securityState;
+    }
+
     HostComponentStateEntity stateEntity = getStateEntity();
     if (stateEntity != null) {
       return stateEntity.getSecurityState();
@@ -918,6 +961,15 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   @Override
   public void setSecurityState(SecurityState securityState) {
+    SecurityState previousSecurityState = this.securityState;
+    this.securityState = securityState;
+    if (isStateWrittenBehind()) {
+      if (previousSecurityState != securityState) {
+        onStateChanged();
+      }
+      return;
+    }
+
     HostComponentStateEntity stateEntity = getStateEntity();
     if (stateEntity != null) {
       stateEntity.setSecurityState(securityState);
@@ -1121,6 +1173,11 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   @Override
   public StackId getStackVersion() {
+    if (isStateWrittenBehind()) {
+      StackId stackId = currentStackId;
+      return new StackId(stackId.getStackName(), stackId.getStackVersion());
+    }
+
     HostComponentStateEntity schStateEntity = getStateEntity();
     if (schStateEntity == null) {
       return new StackId();
@@ -1132,6 +1189,15 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   @Override
   public void setStackVersion(StackId stackId) {
+    StackId previousStackId = currentStackId;
+    currentStackId = new StackId(stackId.getStackName(), stackId.getStackVersion());
+    if (isStateWrittenBehind()) {
+      if (!currentStackId.equals(previousStackId)) {
+        onStateChanged();
+      }
+      return;
+    }
+
     StackEntity stackEntity = stackDAO.find(stackId.getStackName(), stackId.getStackVersion());
 
     HostComponentStateEntity stateEntity = getStateEntity();
@@ -1572,6 +1638,71 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     return repositoryVersion;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getStateVersion() {
+    return stateVersion.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getPersistedStateVersion() {
+    return persistedStateVersion;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes the current state, security state and stack reported by the agent.
+   * The version, upgrade state and all desired state are always written
+   * immediately, since they are also queried from the database directly.
+   */
+  @Override
+  public long writeState() {
+    long version = stateVersion.get();
+    HostComponentStateEntity stateEntity = getStateEntity();
+
+    // the host component was removed in the meantime
+    if (stateEntity == null) {
+      return version;
+    }
+
+    StackId stackId = currentStackId;
+    stateEntity.setCurrentState(stateMachine.getCurrentState());
+    stateEntity.setSecurityState(securityState);
+    stateEntity.setCurrentStack(stackDAO.find(stackId.getStackName(), stackId.getStackVersion()));
+    hostComponentStateDAO.merge(stateEntity);
+    return version;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setPersistedStateVersion(long version) {
+    persistedStateVersion = Math.max(persistedStateVersion, version);
+  }
+
+  /**
+   * Gets whether the current state of this host component is authoritative in
+   * memory and written by the {@link WriteBehindStateFlusher}.
+   */
+  private boolean isStateWrittenBehind() {
+    return null != writeBehindStateFlusher && writeBehindStateFlusher.isEnabled();
+  }
+
+  /**
+   * Increments the state version and has the state written.
+   */
+  private void onStateChanged() {
+    stateVersion.incrementAndGet();
+    writeBehindStateFlusher.markDirty(this);
+  }
+
   /**
    * Gets the desired state entity for this {@link ServiceComponentHost}.
    *
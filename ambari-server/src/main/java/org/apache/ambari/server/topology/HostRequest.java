@@ -278,7 +278,8 @@ public class HostRequest implements Comparable<HostRequest> {
         logicalTasks.put(logicalTaskId, task);
         Long physicalTaskId = logicalTaskEntity.getPhysicalTaskId();
         if (physicalTaskId != null) {
-          registerPhysicalTaskId(logicalTaskId, physicalTaskId);
+          // already persisted, only track it
+          physicalTasks.put(logicalTaskId, physicalTaskId);
         }
 
         //assumes only one task per type
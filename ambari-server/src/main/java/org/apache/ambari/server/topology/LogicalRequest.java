@@ -118,11 +118,21 @@ public class LogicalRequest extends Request {
     // not explicitly reserved, at least not in this request, so attempt to match to outstanding host requests
     boolean predicateRejected = false;
     synchronized (outstandingHostRequests) {
+      // the host requests of a host group share its predicate, so the host only has to be matched
+      // against the predicate of each host group once
+      Set<String> rejectingHostGroups = new HashSet<String>();
+
       //todo: prioritization of master host requests
       Iterator<HostRequest> hostRequestIterator = outstandingHostRequests.iterator();
       while (hostRequestIterator.hasNext()) {
-        LOG.info("LogicalRequest.offer: attempting to match a request to a request for a non-reserved host to hostname = {}", host.getHostName());
-        HostOfferResponse response = hostRequestIterator.next().offer(host);
+        HostRequest hostRequest = hostRequestIterator.next();
+        boolean matchedByPredicate = hostRequest.getHostName() == null;
+        if (matchedByPredicate && rejectingHostGroups.contains(hostRequest.getHostgroupName())) {
+          continue;
+        }
+
+        LOG.debug("LogicalRequest.offer: attempting to match a request to a request for a non-reserved host to hostname = {}", host.getHostName());
+        HostOfferResponse response = hostRequest.offer(host);
         switch (response.getAnswer()) {
           case ACCEPTED:
             hostRequestIterator.remove();
@@ -134,8 +144,11 @@ public class LogicalRequest extends Request {
             LOG.info("LogicalRequest.offer: host request returned DECLINED_DONE for hostname = {}, host request has been removed from list", host.getHostName());
             break;
           case DECLINED_PREDICATE:
-            LOG.info("LogicalRequest.offer: host request returned DECLINED_PREDICATE for hostname = {}", host.getHostName());
+            LOG.debug("LogicalRequest.offer: host request returned DECLINED_PREDICATE for hostname = {}", host.getHostName());
             predicateRejected = true;
+            if (matchedByPredicate) {
+              rejectingHostGroups.add(hostRequest.getHostgroupName());
+            }
             break;
         }
       }
@@ -22,8 +22,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
 
@@ -53,10 +60,19 @@ import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
 import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
 
 /**
  * Implementation which uses Ambari Database DAO and Entity objects for persistence
  * of topology related information.
+ * <p/>
+ * Physical task and host name registrations arrive one at a time for every host of a
+ * provisioning request. They are staged in memory and written in bulk, once
+ * {@link #FLUSH_BATCH_SIZE} registrations are staged or {@link #FLUSH_DELAY_MS} after the
+ * first of them was staged, whichever comes first. The topology manager keeps its own
+ * in-memory view of these registrations, so it never reads them back before they are written;
+ * requests read from the database are only replayed after the staged registrations are flushed.
+ * The staged registrations are also flushed by {@link #stop()}, which runs when the server shuts down.
  */
 @Singleton
 public class PersistedStateImpl implements PersistedState {
@@ -81,9 +97,6 @@ public class PersistedStateImpl implements PersistedState {
   @Inject
   private TopologyLogicalTaskDAO topologyLogicalTaskDAO;
 
-  @Inject
-  private HostRoleCommandDAO hostRoleCommandDAO;
-
   @Inject
   private HostRoleCommandDAO physicalTaskDAO;
 
@@ -98,6 +111,50 @@ public class PersistedStateImpl implements PersistedState {
 
   private static Gson jsonSerializer = new Gson();
 
+  /**
+   * The number of staged registrations which causes them to be flushed right away
+   */
+  static final int FLUSH_BATCH_SIZE = 500;
+
+  /**
+   * The maximum time (in milliseconds) a registration is staged before it is flushed
+   */
+  static final long FLUSH_DELAY_MS = 1000L;
+
+  /**
+   * Physical task ids, by logical task id, which are not written yet
+   */
+  private final Map<Long, Long> stagedPhysicalTasks = new LinkedHashMap<Long, Long>();
+
+  /**
+   * Host names, by host request id, which are not written yet
+   */
+  private final Map<Long, String> stagedHostNames = new LinkedHashMap<Long, String>();
+
+  /**
+   * Guards the staged registrations and {@link #flushScheduled}
+   */
+  private final Object stagingLock = new Object();
+
+  /**
+   * Serializes flushes, so a later registration of a task is never overwritten by an earlier one
+   */
+  private final Object flushLock = new Object();
+
+  private boolean flushScheduled = false;
+
+  /**
+   * Set once {@link #stop()} was called, registrations are written right away afterwards
+   */
+  private boolean stopped = false;
+
+  private ScheduledExecutorService flushExecutor;
+
+  /**
+   * Calls {@link #stop()} when the server shuts down, registered along with the {@link #flushExecutor}
+   */
+  private Thread shutdownHook;
+
 
   @Override
   public  PersistedTopologyRequest persistTopologyRequest(BaseClusterRequest request) {
@@ -109,7 +166,20 @@ public class PersistedStateImpl implements PersistedState {
   @Override
   public void persistLogicalRequest(LogicalRequest logicalRequest, long topologyRequestId) {
     TopologyRequestEntity topologyRequestEntity = topologyRequestDAO.findById(topologyRequestId);
-    TopologyLogicalRequestEntity entity = toEntity(logicalRequest, topologyRequestEntity);
+
+    // look up the host groups and any physical tasks once for all host requests
+    Map<String, TopologyHostGroupEntity> hostGroupEntities = new HashMap<String, TopologyHostGroupEntity>();
+    for (TopologyHostGroupEntity hostGroupEntity : topologyRequestEntity.getTopologyHostGroupEntities()) {
+      hostGroupEntities.put(hostGroupEntity.getName(), hostGroupEntity);
+    }
+
+    Set<Long> physicalTaskIds = new HashSet<Long>();
+    for (HostRequest hostRequest : logicalRequest.getHostRequests()) {
+      physicalTaskIds.addAll(hostRequest.getPhysicalTaskMapping().values());
+    }
+
+    TopologyLogicalRequestEntity entity = toEntity(logicalRequest, topologyRequestEntity,
+        hostGroupEntities, findPhysicalTasks(physicalTaskIds));
     topologyRequestEntity.setTopologyLogicalRequestEntity(entity);
     //todo: how to handle missing topology request entity?
 
@@ -120,22 +190,195 @@ public class PersistedStateImpl implements PersistedState {
 
   @Override
   public void registerPhysicalTask(long logicalTaskId, long physicalTaskId) {
-    TopologyLogicalTaskEntity entity = topologyLogicalTaskDAO.findById(logicalTaskId);
-    HostRoleCommandEntity physicalEntity = hostRoleCommandDAO.findByPK(physicalTaskId);
-    entity.setHostRoleCommandEntity(physicalEntity);
+    boolean flushNow;
+    synchronized (stagingLock) {
+      stagedPhysicalTasks.put(logicalTaskId, physicalTaskId);
+      flushNow = stageRegistration();
+    }
 
-    topologyLogicalTaskDAO.merge(entity);
+    if (flushNow) {
+      flush();
+    }
   }
 
   @Override
   public void registerHostName(long hostRequestId, String hostName) {
-    TopologyHostRequestEntity entity = hostRequestDAO.findById(hostRequestId);
-    if (entity.getHostName() == null) {
-      entity.setHostName(hostName);
-      hostRequestDAO.merge(entity);
+    boolean flushNow;
+    synchronized (stagingLock) {
+      // the first registered host name is kept, as it was when writing it right away
+      if (stagedHostNames.containsKey(hostRequestId)) {
+        return;
+      }
+      stagedHostNames.put(hostRequestId, hostName);
+      flushNow = stageRegistration();
+    }
+
+    if (flushNow) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes all staged physical task and host name registrations.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      Map<Long, Long> physicalTasks;
+      Map<Long, String> hostNames;
+      synchronized (stagingLock) {
+        if (stagedPhysicalTasks.isEmpty() && stagedHostNames.isEmpty()) {
+          return;
+        }
+        physicalTasks = new LinkedHashMap<Long, Long>(stagedPhysicalTasks);
+        hostNames = new LinkedHashMap<Long, String>(stagedHostNames);
+        stagedPhysicalTasks.clear();
+        stagedHostNames.clear();
+      }
+
+      try {
+        writeRegistrations(physicalTasks, hostNames);
+      } catch (RuntimeException e) {
+        // stage them again so they are written by the next flush, unless registered again meanwhile
+        synchronized (stagingLock) {
+          for (Map.Entry<Long, Long> entry : physicalTasks.entrySet()) {
+            if (!stagedPhysicalTasks.containsKey(entry.getKey())) {
+              stagedPhysicalTasks.put(entry.getKey(), entry.getValue());
+            }
+          }
+          for (Map.Entry<Long, String> entry : hostNames.entrySet()) {
+            if (!stagedHostNames.containsKey(entry.getKey())) {
+              stagedHostNames.put(entry.getKey(), entry.getValue());
+            }
+          }
+          stageRegistration();
+        }
+        throw e;
+      }
     }
   }
 
+  /**
+   * Writes the given registrations in a single transaction, looking up the affected entities in
+   * bulk rather than one at a time.
+   *
+   * @param physicalTasks  physical task ids by logical task id
+   * @param hostNames      host names by host request id
+   */
+  @Transactional
+  void writeRegistrations(Map<Long, Long> physicalTasks, Map<Long, String> hostNames) {
+    if (!hostNames.isEmpty()) {
+      for (TopologyHostRequestEntity entity : hostRequestDAO.findByIds(hostNames.keySet())) {
+        if (entity.getHostName() == null) {
+          entity.setHostName(hostNames.get(entity.getId()));
+          hostRequestDAO.merge(entity);
+        }
+      }
+    }
+
+    if (!physicalTasks.isEmpty()) {
+      Map<Long, HostRoleCommandEntity> physicalEntities = findPhysicalTasks(physicalTasks.values());
+      for (TopologyLogicalTaskEntity entity : topologyLogicalTaskDAO.findByIds(physicalTasks.keySet())) {
+        entity.setHostRoleCommandEntity(physicalEntities.get(physicalTasks.get(entity.getId())));
+        topologyLogicalTaskDAO.merge(entity);
+      }
+    }
+
+    LOG.debug("Wrote {} physical task and {} host name registrations", physicalTasks.size(), hostNames.size());
+  }
+
+  /**
+   * Accounts for a registration which was just staged. The caller must hold {@link #stagingLock}.
+   *
+   * @return true if the staged registrations should be flushed right away
+   */
+  private boolean stageRegistration() {
+    if (stopped || stagedPhysicalTasks.size() + stagedHostNames.size() >= FLUSH_BATCH_SIZE) {
+      return true;
+    }
+
+    if (!flushScheduled) {
+      flushScheduled = true;
+      getFlushExecutor().schedule(new Runnable() {
+        @Override
+        public void run() {
+          synchronized (stagingLock) {
+            flushScheduled = false;
+          }
+          try {
+            flush();
+          } catch (RuntimeException e) {
+            LOG.error("Failed to write staged topology registrations, they will be retried: " + e, e);
+          }
+        }
+      }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+    return false;
+  }
+
+  private synchronized ScheduledExecutorService getFlushExecutor() {
+    if (flushExecutor == null) {
+      flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "topology-persisted-state-flush");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      shutdownHook = new Thread("topology-persisted-state-shutdown") {
+        @Override
+        public void run() {
+          try {
+            PersistedStateImpl.this.stop();
+          } catch (RuntimeException e) {
+            LOG.error("Failed to write staged topology registrations on shutdown: " + e, e);
+          }
+        }
+      };
+      Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+    return flushExecutor;
+  }
+
+  /**
+   * Stops the scheduled flushes and writes the staged registrations, so that none are lost when
+   * the server stops. Registrations made afterwards are written right away.
+   */
+  public void stop() {
+    synchronized (stagingLock) {
+      stopped = true;
+    }
+
+    ScheduledExecutorService executor;
+    Thread hook;
+    synchronized (this) {
+      executor = flushExecutor;
+      hook = shutdownHook;
+      flushExecutor = null;
+      shutdownHook = null;
+    }
+    if (executor != null) {
+      executor.shutdown();
+    }
+    if (hook != null && hook != Thread.currentThread()) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(hook);
+      } catch (IllegalStateException e) {
+        // already shutting down
+      }
+    }
+
+    flush();
+  }
+
+  private Map<Long, HostRoleCommandEntity> findPhysicalTasks(Collection<Long> physicalTaskIds) {
+    Map<Long, HostRoleCommandEntity> physicalEntities = new HashMap<Long, HostRoleCommandEntity>();
+    for (HostRoleCommandEntity physicalEntity : physicalTaskDAO.findByPKs(physicalTaskIds)) {
+      physicalEntities.put(physicalEntity.getTaskId(), physicalEntity);
+    }
+    return physicalEntities;
+  }
+
   @Override
   public void registerInTopologyHostInfo(Host host) {
     TopologyHostInfoEntity entity = topologyHostInfoDAO.findByHostname(host.getHostName());
@@ -147,6 +390,7 @@ public class PersistedStateImpl implements PersistedState {
 
   @Override
   public LogicalRequest getProvisionRequest(long clusterId) {
+    flush();
     Collection<TopologyRequestEntity> entities = topologyRequestDAO.findByClusterId(clusterId);
     for (TopologyRequestEntity entity : entities) {
       if(TopologyRequest.Type.PROVISION == TopologyRequest.Type.valueOf(entity.getAction())) {
@@ -171,6 +415,7 @@ public class PersistedStateImpl implements PersistedState {
   public Map<ClusterTopology, List<LogicalRequest>> getAllRequests() {
     //todo: we only currently support a single request per ambari instance so there should only
     //todo: be a single cluster topology
+    flush();
     Map<ClusterTopology, List<LogicalRequest>> allRequests = new HashMap<ClusterTopology, List<LogicalRequest>>();
     Collection<TopologyRequestEntity> entities = topologyRequestDAO.findAll();
 
@@ -247,7 +492,9 @@ public class PersistedStateImpl implements PersistedState {
     return entity;
   }
 
-  private TopologyLogicalRequestEntity toEntity(LogicalRequest request, TopologyRequestEntity topologyRequestEntity) {
+  private TopologyLogicalRequestEntity toEntity(LogicalRequest request, TopologyRequestEntity topologyRequestEntity,
+                                                Map<String, TopologyHostGroupEntity> hostGroupEntities,
+                                                Map<Long, HostRoleCommandEntity> physicalEntities) {
     TopologyLogicalRequestEntity entity = new TopologyLogicalRequestEntity();
 
     entity.setDescription(request.getRequestContext());
@@ -259,20 +506,26 @@ public class PersistedStateImpl implements PersistedState {
     Collection<TopologyHostRequestEntity> hostRequests = new ArrayList<TopologyHostRequestEntity>();
     entity.setTopologyHostRequestEntities(hostRequests);
     for (HostRequest hostRequest : request.getHostRequests()) {
-      hostRequests.add(toEntity(hostRequest, entity));
+      hostRequests.add(toEntity(hostRequest, entity, hostGroupEntities, physicalEntities));
     }
     return entity;
   }
 
-  private TopologyHostRequestEntity toEntity(HostRequest request, TopologyLogicalRequestEntity logicalRequestEntity) {
+  private TopologyHostRequestEntity toEntity(HostRequest request, TopologyLogicalRequestEntity logicalRequestEntity,
+                                             Map<String, TopologyHostGroupEntity> hostGroupEntities,
+                                             Map<Long, HostRoleCommandEntity> physicalEntities) {
     TopologyHostRequestEntity entity = new TopologyHostRequestEntity();
     entity.setHostName(request.getHostName());
     entity.setId(request.getId());
     entity.setStageId(request.getStageId());
 
     entity.setTopologyLogicalRequestEntity(logicalRequestEntity);
-    entity.setTopologyHostGroupEntity(hostGroupDAO.findByRequestIdAndName(
-        logicalRequestEntity.getTopologyRequestId(), request.getHostgroupName()));
+    TopologyHostGroupEntity hostGroupEntity = hostGroupEntities.get(request.getHostgroupName());
+    if (hostGroupEntity == null) {
+      hostGroupEntity = hostGroupDAO.findByRequestIdAndName(
+          logicalRequestEntity.getTopologyRequestId(), request.getHostgroupName());
+    }
+    entity.setTopologyHostGroupEntity(hostGroupEntity);
 
     // logical tasks
     Collection<TopologyHostTaskEntity> hostRequestTaskEntities = new ArrayList<TopologyHostTaskEntity>();
@@ -295,7 +548,7 @@ public class PersistedStateImpl implements PersistedState {
           logicalTaskEntity.setTopologyHostTaskEntity(topologyTaskEntity);
           Long physicalId = request.getPhysicalTaskId(logicalTaskId);
           if (physicalId != null) {
-            logicalTaskEntity.setHostRoleCommandEntity(physicalTaskDAO.findByPK(physicalId));
+            logicalTaskEntity.setHostRoleCommandEntity(physicalEntities.get(physicalId));
           }
           logicalTaskEntity.setTopologyHostTaskEntity(topologyTaskEntity);
         }
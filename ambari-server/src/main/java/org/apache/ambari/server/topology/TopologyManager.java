@@ -24,14 +24,18 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
@@ -61,6 +65,7 @@ import org.apache.ambari.server.events.AmbariEvent;
 import org.apache.ambari.server.events.ClusterConfigFinishedEvent;
 import org.apache.ambari.server.events.HostRemovedEvent;
 import org.apache.ambari.server.events.RequestFinishedEvent;
+import org.apache.ambari.server.events.RequestsPurgedEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.orm.dao.HostRoleCommandStatusSummaryDTO;
 import org.apache.ambari.server.orm.entities.StageEntity;
@@ -93,11 +98,24 @@ public class TopologyManager {
   private final Executor taskExecutor; // executes TopologyTasks
   private final boolean parallelTaskCreationEnabled;
   private Collection<String> hostsToIgnore = new HashSet<String>();
-  private final List<HostImpl> availableHosts = new LinkedList<HostImpl>();
-  private final Map<String, LogicalRequest> reservedHosts = new HashMap<String, LogicalRequest>();
-  private final Map<Long, LogicalRequest> allRequests = new HashMap<Long, LogicalRequest>();
+  /**
+   * Registered hosts which haven't been accepted by any request, by host name in registration order.
+   * The map is only locked for single operations on it; a host is claimed, before it is offered to a
+   * request, by removing it from the map.
+   */
+  private final Map<String, HostImpl> availableHosts = new LinkedHashMap<String, HostImpl>();
+  /**
+   * Requests by the name of the host they reserved. A reservation is claimed by removing it.
+   */
+  private final ConcurrentMap<String, LogicalRequest> reservedHosts = new ConcurrentHashMap<String, LogicalRequest>();
+  private final Map<Long, LogicalRequest> allRequests = new ConcurrentHashMap<Long, LogicalRequest>();
   // priority is given to oldest outstanding requests
-  private final Collection<LogicalRequest> outstandingRequests = new ArrayList<LogicalRequest>();
+  private final Collection<LogicalRequest> outstandingRequests = new CopyOnWriteArrayList<LogicalRequest>();
+  /**
+   * Incremented whenever a request is added to the outstanding requests, so a registering host which
+   * wasn't matched can tell whether a request was added while it was being offered.
+   */
+  private final AtomicLong outstandingRequestsVersion = new AtomicLong();
   //todo: currently only support a single cluster
   private Map<Long, ClusterTopology> clusterTopologyMap = new HashMap<Long, ClusterTopology>();
 
@@ -437,68 +455,121 @@ public class TopologyManager {
       return;
     }
 
-    boolean matchedToRequest = false;
     String hostName = host.getHostName();
-    // The lock ordering in this method must always be the same ordering as TopologyManager.processRequest
-    // TODO: Locking strategies for TopologyManager should be reviewed and possibly rewritten in a future release
-    synchronized (availableHosts) {
-      synchronized (reservedHosts) {
-        if (reservedHosts.containsKey(hostName)) {
-          LogicalRequest request = reservedHosts.remove(hostName);
-          HostOfferResponse response = request.offer(host);
-          if (response.getAnswer() != HostOfferResponse.Answer.ACCEPTED) {
-            throw new RuntimeException("LogicalRequest declined host offer of explicitly requested host: " + hostName);
-          }
+    while (true) {
+      long version = outstandingRequestsVersion.get();
+      if (offerRegisteredHost(host)) {
+        return;
+      }
 
-          LOG.info("TopologyManager.onHostRegistered: processing accepted host offer for reserved host = {}", hostName);
-          processAcceptedHostOffer(getClusterTopology(request.getClusterId()), response, host);
-          matchedToRequest = true;
-        }
+      if (!addAvailableHost(host)) {
+        LOG.info("Host {} re-registered, will not be added to the available hosts list", hostName);
+        return;
       }
+      LOG.info("TopologyManager: Queueing available host {}", hostName);
 
-      // can be true if host was reserved
-      if (!matchedToRequest) {
-        synchronized (outstandingRequests) {
-          Iterator<LogicalRequest> outstandingRequestIterator = outstandingRequests.iterator();
-          while (!matchedToRequest && outstandingRequestIterator.hasNext()) {
-            LogicalRequest request = outstandingRequestIterator.next();
-            HostOfferResponse hostOfferResponse = request.offer(host);
-            switch (hostOfferResponse.getAnswer()) {
-              case ACCEPTED:
-                matchedToRequest = true;
-                LOG.info("TopologyManager.onHostRegistered: processing accepted host offer for matched host = {}", hostName);
-                processAcceptedHostOffer(getClusterTopology(request.getClusterId()), hostOfferResponse, host);
-                break;
-              case DECLINED_DONE:
-                LOG.info("TopologyManager.onHostRegistered: DECLINED_DONE received for host = {}", hostName);
-                outstandingRequestIterator.remove();
-                break;
-              case DECLINED_PREDICATE:
-                LOG.info("TopologyManager.onHostRegistered: DECLINED_PREDICATE received for host = {}", hostName);
-                break;
-            }
-          }
-        }
+      // a request added while the host was being offered may not have seen it in the available hosts,
+      // so offer it again unless a request has claimed it in the meantime
+      if (outstandingRequestsVersion.get() == version || !claimAvailableHost(host)) {
+        return;
       }
+      LOG.info("TopologyManager.onHostRegistered: a request was added while processing host = {}, offering it again", hostName);
+    }
+  }
 
-      if (!matchedToRequest) {
-        boolean addToAvailableList = true;
-        for (HostImpl registered : availableHosts) {
-          if (registered.getHostId() == host.getHostId()) {
-            LOG.info("Host {} re-registered, will not be added to the available hosts list", hostName);
-            addToAvailableList = false;
-            break;
-          }
-        }
+  /**
+   * Offers a registered host to the request which reserved it, or else to the outstanding requests.
+   * Host requests claim a host atomically, so this doesn't need to be synchronized.
+   *
+   * @param host  the registered host
+   * @return true if a request accepted the host
+   */
+  private boolean offerRegisteredHost(HostImpl host) {
+    String hostName = host.getHostName();
 
-        if (addToAvailableList) {
-          LOG.info("TopologyManager: Queueing available host {}", hostName);
-          availableHosts.add(host);
-        }
+    LogicalRequest reservingRequest = reservedHosts.remove(hostName);
+    if (reservingRequest != null) {
+      HostOfferResponse response = reservingRequest.offer(host);
+      if (response.getAnswer() != HostOfferResponse.Answer.ACCEPTED) {
+        throw new RuntimeException("LogicalRequest declined host offer of explicitly requested host: " + hostName);
+      }
+
+      LOG.info("TopologyManager.onHostRegistered: processing accepted host offer for reserved host = {}", hostName);
+      processAcceptedHostOffer(getClusterTopology(reservingRequest.getClusterId()), response, host);
+      return true;
+    }
+
+    for (LogicalRequest request : outstandingRequests) {
+      HostOfferResponse hostOfferResponse = request.offer(host);
+      switch (hostOfferResponse.getAnswer()) {
+        case ACCEPTED:
+          LOG.info("TopologyManager.onHostRegistered: processing accepted host offer for matched host = {}", hostName);
+          processAcceptedHostOffer(getClusterTopology(request.getClusterId()), hostOfferResponse, host);
+          return true;
+        case DECLINED_DONE:
+          LOG.info("TopologyManager.onHostRegistered: DECLINED_DONE received for host = {}", hostName);
+          outstandingRequests.remove(request);
+          break;
+        case DECLINED_PREDICATE:
+          LOG.info("TopologyManager.onHostRegistered: DECLINED_PREDICATE received for host = {}", hostName);
+          break;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds a host to the available hosts, unless it is available already.
+   *
+   * @param host  the host
+   * @return true if the host was added
+   */
+  private boolean addAvailableHost(HostImpl host) {
+    synchronized (availableHosts) {
+      if (availableHosts.containsKey(host.getHostName())) {
+        return false;
+      }
+      availableHosts.put(host.getHostName(), host);
+      return true;
+    }
+  }
+
+  /**
+   * Claims an available host, so it can be offered to a request.
+   *
+   * @param host  the host
+   * @return true if the host was available and has been claimed by the caller
+   */
+  private boolean claimAvailableHost(HostImpl host) {
+    synchronized (availableHosts) {
+      return availableHosts.remove(host.getHostName()) != null;
+    }
+  }
+
+  /**
+   * Returns a claimed host which a request declined to the available hosts. A request added while the
+   * host was claimed may not have seen it in the available hosts, so in that case the host is offered
+   * to the outstanding requests again, as it is when a host registers.
+   *
+   * @param host     the declined host
+   * @param version  the version of the outstanding requests when the host was claimed
+   */
+  private void releaseDeclinedHost(HostImpl host, long version) {
+    while (addAvailableHost(host) && outstandingRequestsVersion.get() != version && claimAvailableHost(host)) {
+      LOG.info("TopologyManager: a request was added while host = {} was claimed, offering it again", host.getHostName());
+      version = outstandingRequestsVersion.get();
+      if (offerRegisteredHost(host)) {
+        return;
       }
     }
   }
 
+  private Collection<HostImpl> getAvailableHosts() {
+    synchronized (availableHosts) {
+      return new ArrayList<HostImpl>(availableHosts.values());
+    }
+  }
+
   /**
    * Through this method {@see TopologyManager} gets notified when a connection to a host in the cluster is lost.
    * The passed host will be excluded from scheduling any tasks onto it as it can't be reached.
@@ -511,7 +582,7 @@ public class TopologyManager {
     ensureInitialized();
     synchronized (availableHosts) {
       LOG.info("Hearbeat for host {} lost thus removing it from available hosts.", host.getHostName());
-      availableHosts.remove(host);
+      availableHosts.remove(host.getHostName());
     }
   }
 
@@ -644,68 +715,72 @@ public class TopologyManager {
     finalizeTopology(request.getRequest(), topology);
     LogicalRequest logicalRequest = createLogicalRequest(request, topology, requestId);
 
+    // The request is made outstanding before the available hosts are offered to it, so that a host
+    // registering meanwhile is either offered to the request or found in the available hosts
+    outstandingRequests.add(logicalRequest);
+    outstandingRequestsVersion.incrementAndGet();
+
     boolean requestHostComplete = false;
-    //todo: overall synchronization. Currently we have nested synchronization here
+    Iterator<HostImpl> hostIterator = getAvailableHosts().iterator();
+    while (!requestHostComplete && hostIterator.hasNext()) {
+      HostImpl host = hostIterator.next();
+      String hostname = host.getHostName();
+      LogicalRequest reservingRequest = reservedHosts.get(hostname);
+      if (reservingRequest != null && !logicalRequest.equals(reservingRequest)) {
+        // host is registered with another request, don't offer
+        //todo: clean up logic
+        LOG.info("TopologyManager.processRequest: host name = {} is registered with another request, and will not be offered to LogicalRequest ID = {}",
+            hostname, logicalRequest.getRequestId());
+        continue;
+      }
 
-    // The lock ordering in this method must always be the same ordering as TopologyManager.onHostRegistered
-    // TODO: Locking strategies for TopologyManager should be reviewed and possibly rewritten in a future release
-    synchronized (availableHosts) {
-      Iterator<HostImpl> hostIterator = availableHosts.iterator();
-      while (!requestHostComplete && hostIterator.hasNext()) {
-        HostImpl host = hostIterator.next();
-        synchronized (reservedHosts) {
-          String hostname = host.getHostName();
-          if (reservedHosts.containsKey(hostname)) {
-            if (logicalRequest.equals(reservedHosts.get(hostname))) {
-              // host is registered to this request, remove it from reserved map
-              LOG.info("TopologyManager.processRequest: host name = {} is mapped to LogicalRequest ID = {} and will be removed from the reserved hosts.",
-                  hostname, logicalRequest.getRequestId());
-              reservedHosts.remove(hostname);
-            } else {
-              // host is registered with another request, don't offer
-              //todo: clean up logic
-              LOG.info("TopologyManager.processRequest: host name = {} is registered with another request, and will not be offered to LogicalRequest ID = {}",
-                  hostname, logicalRequest.getRequestId());
-              continue;
-            }
-          }
-        }
+      long version = outstandingRequestsVersion.get();
+      if (!claimAvailableHost(host)) {
+        // accepted by another request in the meantime
+        continue;
+      }
 
-        LOG.info("TopologyManager.processRequest: offering host name = {} to LogicalRequest ID = {}",
-            host.getHostName(), logicalRequest.getRequestId());
-        HostOfferResponse response = logicalRequest.offer(host);
-        switch (response.getAnswer()) {
-          case ACCEPTED:
-            //todo: when host matches last host it returns ACCEPTED so we don't know that logical request is no
-            //todo: longer outstanding until we call offer again.  This is really only an issue if we need to
-            //todo: deal specifically with outstanding hosts other than calling offer.  Also, failure handling
-            //todo: may affect this behavior??
-            hostIterator.remove();
-            LOG.info("TopologyManager.processRequest: host name = {} was ACCEPTED by LogicalRequest ID = {} , host has been removed from available hosts.",
-                host.getHostName(), logicalRequest.getRequestId());
-            processAcceptedHostOffer(getClusterTopology(logicalRequest.getClusterId()), response, host);
-            break;
-          case DECLINED_DONE:
-            requestHostComplete = true;
-            LOG.info("TopologyManager.processRequest: host name = {} was DECLINED_DONE by LogicalRequest ID = {}",
-                host.getHostName(), logicalRequest.getRequestId());
-            break;
-          case DECLINED_PREDICATE:
-            LOG.info("TopologyManager.processRequest: host name = {} was DECLINED_PREDICATE by LogicalRequest ID = {}",
-                host.getHostName(), logicalRequest.getRequestId());
-            break;
-        }
+      if (reservingRequest != null) {
+        // host is registered to this request, remove it from reserved map
+        LOG.info("TopologyManager.processRequest: host name = {} is mapped to LogicalRequest ID = {} and will be removed from the reserved hosts.",
+            hostname, logicalRequest.getRequestId());
+        reservedHosts.remove(hostname, logicalRequest);
       }
 
-      if (!requestHostComplete) {
-        // not all required hosts have been matched (see earlier comment regarding outstanding logical requests)
-        LOG.info("TopologyManager.processRequest: not all required hosts have been matched, so adding LogicalRequest ID = {} to outstanding requests",
-            logicalRequest.getRequestId());
-        synchronized (outstandingRequests) {
-          outstandingRequests.add(logicalRequest);
-        }
+      LOG.info("TopologyManager.processRequest: offering host name = {} to LogicalRequest ID = {}",
+          hostname, logicalRequest.getRequestId());
+      HostOfferResponse response = logicalRequest.offer(host);
+      switch (response.getAnswer()) {
+        case ACCEPTED:
+          //todo: when host matches last host it returns ACCEPTED so we don't know that logical request is no
+          //todo: longer outstanding until we call offer again.  This is really only an issue if we need to
+          //todo: deal specifically with outstanding hosts other than calling offer.  Also, failure handling
+          //todo: may affect this behavior??
+          LOG.info("TopologyManager.processRequest: host name = {} was ACCEPTED by LogicalRequest ID = {} , host has been removed from available hosts.",
+              hostname, logicalRequest.getRequestId());
+          processAcceptedHostOffer(getClusterTopology(logicalRequest.getClusterId()), response, host);
+          break;
+        case DECLINED_DONE:
+          requestHostComplete = true;
+          releaseDeclinedHost(host, version);
+          LOG.info("TopologyManager.processRequest: host name = {} was DECLINED_DONE by LogicalRequest ID = {}",
+              hostname, logicalRequest.getRequestId());
+          break;
+        case DECLINED_PREDICATE:
+          releaseDeclinedHost(host, version);
+          LOG.info("TopologyManager.processRequest: host name = {} was DECLINED_PREDICATE by LogicalRequest ID = {}",
+              hostname, logicalRequest.getRequestId());
+          break;
       }
     }
+
+    if (requestHostComplete) {
+      outstandingRequests.remove(logicalRequest);
+    } else {
+      // not all required hosts have been matched (see earlier comment regarding outstanding logical requests)
+      LOG.info("TopologyManager.processRequest: not all required hosts have been matched, so LogicalRequest ID = {} remains in outstanding requests",
+          logicalRequest.getRequestId());
+    }
     return logicalRequest;
   }
 
@@ -726,10 +801,8 @@ public class TopologyManager {
     allRequests.put(logicalRequest.getRequestId(), logicalRequest);
     LOG.info("TopologyManager.createLogicalRequest: created LogicalRequest with ID = {} and completed persistence of this request.",
         logicalRequest.getRequestId());
-    synchronized (reservedHosts) {
-      for (String host : logicalRequest.getReservedHosts()) {
-        reservedHosts.put(host, logicalRequest);
-      }
+    for (String host : logicalRequest.getReservedHosts()) {
+      reservedHosts.put(host, logicalRequest);
     }
     return logicalRequest;
   }
@@ -1017,6 +1090,25 @@ public class TopologyManager {
     }
   }
 
+  /**
+   * Removes the requests purged from the database.
+   * @param event the event containing the ids of the purged requests
+   */
+  @Subscribe
+  public void onRequestsPurged(RequestsPurgedEvent event) {
+    Collection<Long> requestIds = event.getRequestIds();
+    int removed = 0;
+    for (Long requestId : requestIds) {
+      LogicalRequest request = allRequests.remove(requestId);
+      if (request != null) {
+        removed++;
+        outstandingRequests.remove(request);
+        reservedHosts.values().removeAll(Collections.singleton(request));
+      }
+    }
+    LOG.debug("Removed {} of {} purged requests of cluster {}", removed, requestIds.size(), event.getClusterId());
+  }
+
   /**
    *
    * Removes a host from the available hosts when the host gets deleted.
@@ -1035,15 +1127,9 @@ public class TopologyManager {
 
     // synchronization is required here as the list may be modified concurrently. See comments in this whole class.
     synchronized (availableHosts) {
-      for (HostImpl hostImpl : availableHosts) {
-        if (hostRemovedEvent.getHostName().equals(hostImpl.getHostName())) {
-          toBeRemoved = hostImpl;
-          break;
-        }
-      }
+      toBeRemoved = availableHosts.remove(hostRemovedEvent.getHostName());
 
       if (null != toBeRemoved) {
-        availableHosts.remove(toBeRemoved);
         LOG.info("Removed host: [{}] from available hosts", toBeRemoved.getHostName());
       } else {
         LOG.debug("Host [{}] not found in available hosts", hostRemovedEvent.getHostName());
@@ -17,6 +17,9 @@
  */
 package org.apache.ambari.server.view.configuration;
 
+import java.util.Collections;
+import java.util.List;
+
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
@@ -33,6 +36,12 @@ public class EntityConfig {
   @XmlElement(name="id-property")
   private String idProperty;
 
+  /**
+   * The properties to index.
+   */
+  @XmlElement(name="index-property")
+  private List<String> indexProperties;
+
   public String getClassName() {
     return className;
   }
@@ -40,4 +49,13 @@ public class EntityConfig {
   public String getIdProperty() {
     return idProperty;
   }
+
+  /**
+   * Get the names of the properties to index.
+   *
+   * @return the index properties
+   */
+  public List<String> getIndexProperties() {
+    return indexProperties == null ? Collections.<String>emptyList() : indexProperties;
+  }
 }
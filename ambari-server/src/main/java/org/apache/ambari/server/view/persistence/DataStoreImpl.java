@@ -25,13 +25,21 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.StringTokenizer;
 
@@ -41,8 +49,12 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Query;
 
+import org.apache.ambari.server.orm.entities.ViewEntity;
 import org.apache.ambari.server.orm.entities.ViewEntityEntity;
 import org.apache.ambari.server.orm.entities.ViewInstanceEntity;
+import org.apache.ambari.server.view.configuration.EntityConfig;
+import org.apache.ambari.server.view.configuration.PersistenceConfig;
+import org.apache.ambari.server.view.configuration.ViewConfig;
 import org.apache.ambari.view.DataStore;
 import org.apache.ambari.view.PersistenceException;
 import org.eclipse.persistence.dynamic.DynamicClassLoader;
@@ -56,6 +68,8 @@ import org.eclipse.persistence.jpa.dynamic.JPADynamicTypeBuilder;
 import org.eclipse.persistence.mappings.DirectToFieldMapping;
 import org.eclipse.persistence.sequencing.TableSequence;
 import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.tools.schemaframework.IndexDefinition;
+import org.eclipse.persistence.tools.schemaframework.SchemaManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -136,6 +150,16 @@ public class DataStoreImpl implements DataStore {
    */
   private static final String NAME_PREFIX = "DS_";
 
+  /**
+   * Index name prefix.
+   */
+  private static final String INDEX_NAME_PREFIX = "IDX_";
+
+  /**
+   * Name of the query parameter holding the id of the last entity of the previous page.
+   */
+  private static final String LAST_ID_PARAMETER = "lastId";
+
 
   // ----- DataStore ---------------------------------------------------------
 
@@ -238,7 +262,7 @@ public class DataStoreImpl implements DataStore {
 
       if (type != null) {
         try {
-          Query query = em.createQuery(getSelectStatement(clazz, whereClause));
+          Query query = em.createQuery(getSelectStatement(clazz, whereClause, null, false));
 
           List dynamicEntities = query.getResultList();
 
@@ -257,6 +281,61 @@ public class DataStoreImpl implements DataStore {
   }
 
 
+  @Override
+  public <T> List<T> findAll(Class<T> clazz, String whereClause, String orderBy, int offset, int limit)
+      throws PersistenceException {
+    checkInitialize();
+
+    EntityManager em = getEntityManager();
+    try {
+      List<T>     resources = new ArrayList<T>();
+      DynamicType type      = getDynamicEntityType(clazz);
+
+      if (type != null) {
+        try {
+          if (orderBy == null) {
+            orderBy = getIdFieldName(clazz);
+          }
+          Query query = em.createQuery(getSelectStatement(clazz, whereClause, orderBy, false));
+          query.setFirstResult(offset);
+          if (limit > 0) {
+            query.setMaxResults(limit);
+          }
+
+          for (Object dynamicEntity : query.getResultList()) {
+            resources.add(toEntity(clazz, type, (DynamicEntity) dynamicEntity));
+          }
+        } catch (Exception e) {
+          throwPersistenceException("Caught exception trying to find " +
+              clazz.getName() + " where " + whereClause + " order by " + orderBy, e);
+        }
+      }
+      return resources;
+    } finally {
+      em.close();
+    }
+  }
+
+  @Override
+  public <T> Iterator<T> iterate(Class<T> clazz, String whereClause, int pageSize) throws PersistenceException {
+    checkInitialize();
+
+    DynamicType type = getDynamicEntityType(clazz);
+    if (type == null) {
+      return Collections.<T>emptyList().iterator();
+    }
+
+    PageIterator<T> iterator = new PageIterator<T>(clazz, type, whereClause, Math.max(1, pageSize));
+    try {
+      iterator.readPage();
+    } catch (Exception e) {
+      throwPersistenceException("Caught exception trying to iterate over " +
+          clazz.getName() + " where " + whereClause, e);
+    }
+    return iterator;
+  }
+
+
   // ----- helper methods ----------------------------------------------------
 
   // lazy initialize the data store
@@ -397,7 +476,99 @@ public class DataStoreImpl implements DataStore {
     helper.addTypes(true, true, types);
 
     // extend the tables if needed (i.e. attribute added to the view entity)
-    schemaManagerFactory.getSchemaManager(helper.getSession()).extendDefaultTables(true);
+    SchemaManager schemaManager = schemaManagerFactory.getSchemaManager(helper.getSession());
+    schemaManager.extendDefaultTables(true);
+
+    // create the indexes declared for the view entities
+    for (Class<?> clazz : entityClassMap.keySet()) {
+      ViewEntityEntity viewEntityEntity = entityMap.get(entityClassMap.get(clazz));
+      List<String>     indexProperties  = getIndexProperties(viewEntityEntity);
+
+      if (!indexProperties.isEmpty()) {
+        createIndexes(schemaManager, clazz, getTableName(viewEntityEntity), indexProperties);
+      }
+    }
+  }
+
+  // create the indexes on the given properties of a view entity which don't exist yet
+  private void createIndexes(SchemaManager schemaManager, Class<?> clazz, String tableName,
+                             List<String> indexProperties) throws IntrospectionException, PersistenceException {
+
+    Map<String, PropertyDescriptor> descriptorMap = getDescriptorMap(clazz);
+    Set<String>                     indexNames    = getIndexNames(tableName);
+
+    for (String fieldName : indexProperties) {
+      PropertyDescriptor descriptor = descriptorMap.get(fieldName);
+
+      if (descriptor == null || !isDirectMappingType(descriptor.getPropertyType())) {
+        LOG.warn("Can't index the {} property of the {} entity.  Only simple properties can be indexed.",
+            fieldName, clazz.getSimpleName());
+        continue;
+      }
+
+      String attributeName = getAttributeName(fieldName);
+      String indexName     = getIndexName(tableName, attributeName);
+
+      if (!indexNames.contains(indexName)) {
+        IndexDefinition indexDefinition = new IndexDefinition();
+        indexDefinition.setName(indexName);
+        indexDefinition.setTargetTable(tableName);
+        indexDefinition.addField(attributeName);
+
+        LOG.info("Creating index {} on {}.{}", indexName, tableName, attributeName);
+        schemaManager.createObject(indexDefinition);
+      }
+    }
+  }
+
+  // get the upper case names of the existing indexes of the given table
+  private Set<String> getIndexNames(String tableName) throws PersistenceException {
+    Set<String>   indexNames = new HashSet<String>();
+    EntityManager em         = getEntityManager();
+    try {
+      em.getTransaction().begin();
+      try {
+        DatabaseMetaData metaData = em.unwrap(Connection.class).getMetaData();
+
+        // the table name may be stored in upper or lower case depending on the database
+        for (String name : new HashSet<String>(Arrays.asList(tableName, tableName.toLowerCase()))) {
+          ResultSet resultSet = metaData.getIndexInfo(null, null, name, false, true);
+          try {
+            while (resultSet.next()) {
+              String indexName = resultSet.getString("INDEX_NAME");
+              if (indexName != null) {
+                indexNames.add(indexName.toUpperCase());
+              }
+            }
+          } finally {
+            resultSet.close();
+          }
+        }
+      } finally {
+        rollbackTransaction(em.getTransaction());
+      }
+    } catch (SQLException e) {
+      throwPersistenceException("Caught exception trying to read the indexes of " + tableName, e);
+    } finally {
+      em.close();
+    }
+    return indexNames;
+  }
+
+  // get the properties declared to be indexed for the given view entity
+  private List<String> getIndexProperties(ViewEntityEntity viewEntityEntity) {
+    ViewEntity        viewEntity        = viewInstanceEntity.getViewEntity();
+    ViewConfig        viewConfig        = viewEntity == null ? null : viewEntity.getConfiguration();
+    PersistenceConfig persistenceConfig = viewConfig == null ? null : viewConfig.getPersistence();
+
+    if (persistenceConfig != null) {
+      for (EntityConfig entityConfig : persistenceConfig.getEntities()) {
+        if (viewEntityEntity.getClassName().equals(entityConfig.getClassName())) {
+          return entityConfig.getIndexProperties();
+        }
+      }
+    }
+    return Collections.emptyList();
   }
 
   // persist the given view entity to the entity manager and
@@ -496,33 +667,56 @@ public class DataStoreImpl implements DataStore {
     return resource;
   }
 
-  // build a JPA select statement from the given view entity class and where clause
-  private <T> String getSelectStatement(Class<T> clazz, String whereClause)
-      throws IntrospectionException {
+  // build a JPA select statement from the given view entity class, where clause and order by clause;
+  // restrict the statement to the entities following the id given as the lastId parameter if keyed
+  private <T> String getSelectStatement(Class<T> clazz, String whereClause, String orderBy, boolean keyed)
+      throws IntrospectionException, PersistenceException {
     StringBuilder stringBuilder = new StringBuilder();
     String        entityName    = entityClassMap.get(clazz);
+    Set<String>   propertyNames = getPropertyNames(clazz);
 
     stringBuilder.append("SELECT e FROM ").append(entityName).append(" e");
-    if (whereClause != null) {
+    if (whereClause != null || keyed) {
       stringBuilder.append(" WHERE");
 
-      Set<String>     propertyNames = getPropertyNames(clazz);
-      StringTokenizer tokenizer     = new StringTokenizer(whereClause, " \t\n\r\f+-*/=><()\"", true);
-      boolean         quoted        = false;
+      if (whereClause != null) {
+        if (keyed) {
+          stringBuilder.append(" (");
+        }
+        appendClause(stringBuilder, propertyNames, whereClause);
+        if (keyed) {
+          stringBuilder.append(") AND");
+        }
+      }
+      if (keyed) {
+        stringBuilder.append(" e.").append(getAttributeName(getIdFieldName(clazz)))
+            .append(" > :").append(LAST_ID_PARAMETER);
+      }
+    }
+    if (orderBy != null) {
+      stringBuilder.append(" ORDER BY");
+      appendClause(stringBuilder, propertyNames, orderBy);
+    }
+    return stringBuilder.toString();
+  }
 
-      while (tokenizer.hasMoreElements()) {
-        String token = tokenizer.nextToken();
+  // append the given clause to the given JPA statement, replacing the view entity property names with
+  // the attribute names of the dynamic entity
+  private void appendClause(StringBuilder stringBuilder, Set<String> propertyNames, String clause) {
+    StringTokenizer tokenizer = new StringTokenizer(clause, " \t\n\r\f+-*/=><()\",", true);
+    boolean         quoted    = false;
 
-        quoted = quoted ^ token.equals("\"");
+    while (tokenizer.hasMoreElements()) {
+      String token = tokenizer.nextToken();
 
-        if (propertyNames.contains(token) && !quoted) {
-          stringBuilder.append(" e.").append(getAttributeName(token));
-        } else {
-          stringBuilder.append(token);
-        }
+      quoted = quoted ^ token.equals("\"");
+
+      if (propertyNames.contains(token) && !quoted) {
+        stringBuilder.append(" e.").append(getAttributeName(token));
+      } else {
+        stringBuilder.append(token);
       }
     }
-    return stringBuilder.toString();
   }
 
   // get a map of properties from the given view entity
@@ -681,6 +875,11 @@ public class DataStoreImpl implements DataStore {
     return alterNames() ? (NAME_PREFIX + fieldName) : fieldName;
   }
 
+  // get an index name for the given table and column; the column name is hashed to keep the name short
+  private static String getIndexName(String tableName, String columnName) {
+    return (INDEX_NAME_PREFIX + tableName + "_" + Integer.toHexString(columnName.hashCode())).toUpperCase();
+  }
+
   // get a dynamic entity name for the given view entity
   private String getEntityName(ViewEntityEntity entity) {
     String   className     = entity.getClassName();
@@ -703,4 +902,103 @@ public class DataStoreImpl implements DataStore {
   private boolean alterNames() {
     return viewInstanceEntity.alterNames();
   }
+
+
+  // ----- inner class : PageIterator ----------------------------------------
+
+  /**
+   * Iterator over the view entities for a where clause which reads the entities
+   * one page at a time in the order of their ids.  Each page is read with its own
+   * entity manager, so no database resources are held between pages.
+   */
+  private class PageIterator<T> implements Iterator<T> {
+    private final Class<T>    clazz;
+    private final DynamicType type;
+    private final String      whereClause;
+    private final int         pageSize;
+    private final String      idAttributeName;
+
+    /**
+     * The entities of the current page.
+     */
+    private List<T> page = Collections.emptyList();
+
+    /**
+     * The position of the next entity in the current page.
+     */
+    private int position = 0;
+
+    /**
+     * The id of the last entity read; null before the first page is read.
+     */
+    private Object lastId = null;
+
+    /**
+     * Indicates whether or not the last page has been read.
+     */
+    private boolean lastPage = false;
+
+    private PageIterator(Class<T> clazz, DynamicType type, String whereClause, int pageSize)
+        throws PersistenceException {
+      this.clazz           = clazz;
+      this.type            = type;
+      this.whereClause     = whereClause;
+      this.pageSize        = pageSize;
+      this.idAttributeName = getAttributeName(getIdFieldName(clazz));
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (position == page.size() && !lastPage) {
+        try {
+          readPage();
+        } catch (Exception e) {
+          String msg = "Caught exception trying to iterate over " + clazz.getName() + " where " + whereClause;
+          LOG.error(msg, e);
+          throw new IllegalStateException(msg, e);
+        }
+      }
+      return position < page.size();
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return page.get(position++);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Entities can't be removed through the iterator.");
+    }
+
+    // read the page of entities following the last entity read
+    private void readPage() throws Exception {
+      EntityManager em = getEntityManager();
+      try {
+        Query query = em.createQuery(getSelectStatement(clazz, whereClause,
+            getIdFieldName(clazz), lastId != null));
+        if (lastId != null) {
+          query.setParameter(LAST_ID_PARAMETER, lastId);
+        }
+        query.setMaxResults(pageSize);
+
+        List<?> dynamicEntities = query.getResultList();
+        List<T> resources       = new ArrayList<T>(dynamicEntities.size());
+
+        for (Object dynamicEntity : dynamicEntities) {
+          resources.add(toEntity(clazz, type, (DynamicEntity) dynamicEntity));
+          lastId = ((DynamicEntity) dynamicEntity).get(idAttributeName);
+        }
+
+        page     = resources;
+        position = 0;
+        lastPage = resources.size() < pageSize;
+      } finally {
+        em.close();
+      }
+    }
+  }
 }
@@ -24,7 +24,9 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NamedQuery;
@@ -77,6 +79,9 @@ public class TestActionDBAccessorImpl {
   private String clusterName = "cluster1";
   private String actionName = "validate_kerberos";
 
+  private static final int BULK_HOST_COUNT = 100;
+  private static final int BULK_STAGE_COUNT = 100;
+
   private String serverHostName = StageUtils.getHostName(); // "_localhost_";
   private String serverActionName = MockServerAction.class.getName();
 
@@ -633,6 +638,57 @@ public class TestActionDBAccessorImpl {
     }
   }
 
+  /**
+   * Submits a synthetic request of {@code BULK_STAGE_COUNT} stages with a task
+   * on each of {@code BULK_HOST_COUNT} hosts, as a large upgrade would, and
+   * checks that every task is written with its own ID and log paths.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testPersistActionsInBulk() throws Exception {
+    for (int i = 0; i < BULK_HOST_COUNT; i++) {
+      clusters.addHost("bulk-" + i);
+    }
+
+    List<Stage> stages = new ArrayList<Stage>();
+    for (int i = 0; i < BULK_STAGE_COUNT; i++) {
+      Stage s = stageFactory.createNew(requestId, "/a/b", "cluster1", 1L, "action db accessor test",
+        "clusterHostInfo", "commandParamsStage", "hostParamsStage");
+      s.setStageId(stageId + i);
+      for (int j = 0; j < BULK_HOST_COUNT; j++) {
+        s.addHostRoleExecutionCommand("bulk-" + j, Role.DATANODE, RoleCommand.RESTART, null,
+          "cluster1", "HDFS", false, false);
+      }
+      stages.add(s);
+    }
+
+    Request request = new Request(stages, clusters);
+
+    long start = System.currentTimeMillis();
+    db.persistActions(request);
+    log.info("Persisted {} tasks in {} ms", BULK_STAGE_COUNT * BULK_HOST_COUNT,
+      System.currentTimeMillis() - start);
+
+    List<HostRoleCommandEntity> entities = hostRoleCommandDAO.findByRequest(requestId);
+    assertEquals(BULK_STAGE_COUNT * BULK_HOST_COUNT, entities.size());
+
+    Set<Long> taskIds = new HashSet<Long>();
+    for (HostRoleCommandEntity entity : entities) {
+      assertTrue(taskIds.add(entity.getTaskId()));
+      assertEquals("output-" + entity.getTaskId() + ".txt", entity.getOutputLog());
+    }
+
+    for (Stage stage : stages) {
+      for (HostRoleCommand command : stage.getOrderedHostRoleCommands()) {
+        assertTrue(taskIds.contains(command.getTaskId()));
+      }
+    }
+
+    HostRoleCommandEntity last = entities.get(entities.size() - 1);
+    assertNotNull(executionCommandDAO.findByPK(last.getTaskId()));
+  }
+
   private static class TestActionDBAccessorModule extends AbstractModule {
     @Override
     protected void configure() {
@@ -0,0 +1,271 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import static org.apache.ambari.server.agent.DummyHeartbeatConstants.DATANODE;
+import static org.apache.ambari.server.agent.DummyHeartbeatConstants.DummyCluster;
+import static org.apache.ambari.server.agent.DummyHeartbeatConstants.DummyHostStatus;
+import static org.apache.ambari.server.agent.DummyHeartbeatConstants.DummyStackId;
+import static org.apache.ambari.server.agent.DummyHeartbeatConstants.HDFS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+import org.apache.ambari.server.actionmanager.ActionManager;
+import org.apache.ambari.server.audit.AuditLogger;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.orm.dao.ClusterDAO;
+import org.apache.ambari.server.orm.dao.HostComponentStateDAO;
+import org.apache.ambari.server.orm.dao.ServiceComponentDesiredStateDAO;
+import org.apache.ambari.server.orm.entities.ClusterEntity;
+import org.apache.ambari.server.orm.entities.HostComponentDesiredStateEntity;
+import org.apache.ambari.server.orm.entities.HostComponentStateEntity;
+import org.apache.ambari.server.orm.entities.HostEntity;
+import org.apache.ambari.server.orm.entities.HostStateEntity;
+import org.apache.ambari.server.orm.entities.ServiceComponentDesiredStateEntity;
+import org.apache.ambari.server.orm.entities.StackEntity;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.HostComponentAdminState;
+import org.apache.ambari.server.state.HostHealthStatus;
+import org.apache.ambari.server.state.HostHealthStatus.HealthStatus;
+import org.apache.ambari.server.state.HostState;
+import org.apache.ambari.server.state.SecurityState;
+import org.apache.ambari.server.state.ServiceComponent;
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.StackId;
+import org.apache.ambari.server.state.State;
+import org.apache.ambari.server.state.WriteBehindStateFlusher;
+import org.apache.ambari.server.state.cluster.ClustersImpl;
+import org.apache.ambari.server.state.services.WriteBehindStateFlushService;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+
+/**
+ * Measures how many heartbeats of a large cluster are processed per second,
+ * with the current state of hosts and host components written to the database
+ * on every change and written behind by the {@link WriteBehindStateFlusher}.
+ * This is a benchmark, which is only run by the {@code PerformanceTests}
+ * profile. The number of hosts can be set with the
+ * {@code heartbeat.throughput.hosts} system property.
+ */
+@Category({ category.PerformanceTest.class})
+public class HeartbeatThroughputTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HeartbeatThroughputTest.class);
+
+  private static final int HOST_COUNT = Integer.getInteger("heartbeat.throughput.hosts", 5000);
+  private static final int ROUNDS = 3;
+
+  private Injector injector;
+
+  @After
+  public void teardown() {
+    if (null != injector) {
+      injector.getInstance(PersistService.class).stop();
+      injector = null;
+    }
+  }
+
+  @Test
+  public void testHeartbeatThroughput() throws Exception {
+    long writeThroughMillis = processHeartbeats(false);
+    teardown();
+    long writeBehindMillis = processHeartbeats(true);
+
+    int heartbeats = HOST_COUNT * ROUNDS;
+    LOG.info("Processed {} heartbeats of {} hosts in {}ms ({}/s) writing through and in {}ms ({}/s) writing behind",
+        heartbeats, HOST_COUNT, writeThroughMillis, heartbeats * 1000L / Math.max(1, writeThroughMillis),
+        writeBehindMillis, heartbeats * 1000L / Math.max(1, writeBehindMillis));
+  }
+
+  /**
+   * Creates a cluster of {@link #HOST_COUNT} hosts with a DataNode each and
+   * processes {@link #ROUNDS} heartbeats of every host, which report the
+   * DataNode as started and secured.
+   *
+   * @return the time it took to process the heartbeats
+   */
+  private long processHeartbeats(boolean writeBehind) throws Exception {
+    InMemoryDefaultTestModule module = HeartbeatTestHelper.getTestModule();
+    module.getProperties().put(Configuration.STATE_WRITE_BEHIND_ENABLED.getKey(),
+        Boolean.toString(writeBehind));
+
+    injector = Guice.createInjector(module);
+    injector.getInstance(GuiceJpaInitializer.class);
+    EasyMock.replay(injector.getInstance(AuditLogger.class));
+
+    Set<String> hostNames = new LinkedHashSet<String>();
+    for (int i = 0; i < HOST_COUNT; i++) {
+      hostNames.add(String.format("c%04d.ambari.apache.org", i));
+    }
+
+    Cluster cluster = injector.getInstance(HeartbeatTestHelper.class).getDummyCluster(DummyCluster,
+        DummyStackId, new HashMap<String, String>(), Collections.<String>emptySet());
+    cluster.addService(HDFS).addServiceComponent(DATANODE);
+    createHosts(cluster, hostNames);
+
+    Clusters clusters = injector.getInstance(Clusters.class);
+    ServiceComponent datanode = clusters.getCluster(DummyCluster).getService(HDFS).getServiceComponent(
+        DATANODE);
+    assertEquals(HOST_COUNT, datanode.getServiceComponentHosts().size());
+
+    List<HeartBeat> heartbeats = new ArrayList<HeartBeat>();
+    String stackVersion = new Gson().toJson(new StackId(DummyStackId));
+    for (String hostName : hostNames) {
+      ComponentStatus componentStatus = new ComponentStatus();
+      componentStatus.setClusterName(DummyCluster);
+      componentStatus.setServiceName(HDFS);
+      componentStatus.setComponentName(DATANODE);
+      componentStatus.setMessage(DummyHostStatus);
+      componentStatus.setStatus(State.STARTED.name());
+      componentStatus.setSecurityState(SecurityState.SECURED_KERBEROS.name());
+      componentStatus.setStackVersion(stackVersion);
+
+      HeartBeat heartbeat = new HeartBeat();
+      heartbeat.setHostname(hostName);
+      heartbeat.setNodeStatus(new HostStatus(HostStatus.Status.HEALTHY, DummyHostStatus));
+      heartbeat.setReports(new ArrayList<CommandReport>());
+      heartbeat.setComponentStatus(Collections.singletonList(componentStatus));
+      heartbeats.add(heartbeat);
+    }
+
+    HeartbeatProcessor heartbeatProcessor = new HeartBeatHandler(clusters, new ActionQueue(),
+        injector.getInstance(ActionManager.class), injector).getHeartbeatProcessor();
+
+    long start = System.currentTimeMillis();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (HeartBeat heartbeat : heartbeats) {
+        heartbeat.setTimestamp(System.currentTimeMillis());
+        heartbeatProcessor.processHeartbeat(heartbeat);
+      }
+    }
+    long duration = System.currentTimeMillis() - start;
+
+    for (String hostName : hostNames) {
+      ServiceComponentHost sch = datanode.getServiceComponentHost(hostName);
+      assertEquals(State.STARTED, sch.getState());
+      assertEquals(SecurityState.SECURED_KERBEROS, sch.getSecurityState());
+    }
+
+    HostComponentStateDAO hostComponentStateDAO = injector.getInstance(HostComponentStateDAO.class);
+    if (writeBehind) {
+      // nothing was written yet, and each host component is written once
+      for (HostComponentStateEntity entity : hostComponentStateDAO.findAll()) {
+        assertFalse(State.STARTED == entity.getCurrentState());
+      }
+
+      WriteBehindStateFlushService flushService =
+          injector.getInstance(WriteBehindStateFlushService.class);
+      assertEquals(HOST_COUNT, flushService.flush());
+      assertEquals(0, injector.getInstance(WriteBehindStateFlusher.class).getDirtyCount());
+    }
+
+    List<HostComponentStateEntity> entities = hostComponentStateDAO.findAll();
+    assertEquals(HOST_COUNT, entities.size());
+    for (HostComponentStateEntity entity : entities) {
+      assertEquals(State.STARTED, entity.getCurrentState());
+      assertEquals(SecurityState.SECURED_KERBEROS, entity.getSecurityState());
+    }
+
+    return duration;
+  }
+
+  /**
+   * Creates the hosts with an installed DataNode each in a single transaction,
+   * since mapping hosts to the cluster one by one takes quadratic time, and
+   * reloads the business objects.
+   */
+  private void createHosts(Cluster cluster, Set<String> hostNames) throws Exception {
+    Gson gson = new Gson();
+    Map<String, String> hostAttributes = new HashMap<String, String>();
+    hostAttributes.put("os_family", "redhat");
+    hostAttributes.put("os_release_version", "6.3");
+
+    ClusterEntity clusterEntity = injector.getInstance(ClusterDAO.class).findById(
+        cluster.getClusterId());
+    ServiceComponentDesiredStateEntity componentEntity = injector.getInstance(
+        ServiceComponentDesiredStateDAO.class).findByName(cluster.getClusterId(), HDFS, DATANODE);
+    StackEntity stackEntity = clusterEntity.getDesiredStack();
+
+    EntityManager entityManager = injector.getProvider(EntityManager.class).get();
+    entityManager.getTransaction().begin();
+    for (String hostName : hostNames) {
+      HostEntity hostEntity = new HostEntity();
+      hostEntity.setHostName(hostName);
+      hostEntity.setHostAttributes(gson.toJson(hostAttributes));
+      hostEntity.setClusterEntities(Collections.singletonList(clusterEntity));
+
+      HostStateEntity hostStateEntity = new HostStateEntity();
+      hostStateEntity.setHostEntity(hostEntity);
+      hostStateEntity.setCurrentState(HostState.HEALTHY);
+      hostStateEntity.setHealthStatus(gson.toJson(
+          new HostHealthStatus(HealthStatus.HEALTHY, DummyHostStatus)));
+      hostEntity.setHostStateEntity(hostStateEntity);
+      entityManager.persist(hostEntity);
+
+      HostComponentStateEntity stateEntity = new HostComponentStateEntity();
+      stateEntity.setClusterId(cluster.getClusterId());
+      stateEntity.setServiceName(HDFS);
+      stateEntity.setComponentName(DATANODE);
+      stateEntity.setHostEntity(hostEntity);
+      stateEntity.setServiceComponentDesiredStateEntity(componentEntity);
+      stateEntity.setCurrentState(State.INSTALLED);
+      stateEntity.setCurrentStack(stackEntity);
+      entityManager.persist(stateEntity);
+
+      HostComponentDesiredStateEntity desiredStateEntity = new HostComponentDesiredStateEntity();
+      desiredStateEntity.setClusterId(cluster.getClusterId());
+      desiredStateEntity.setServiceName(HDFS);
+      desiredStateEntity.setComponentName(DATANODE);
+      desiredStateEntity.setHostEntity(hostEntity);
+      desiredStateEntity.setServiceComponentDesiredStateEntity(componentEntity);
+      desiredStateEntity.setDesiredState(State.STARTED);
+      desiredStateEntity.setDesiredStack(stackEntity);
+      desiredStateEntity.setAdminState(HostComponentAdminState.INSERVICE);
+      entityManager.persist(desiredStateEntity);
+    }
+    entityManager.getTransaction().commit();
+    entityManager.getEntityManagerFactory().getCache().evictAll();
+
+    Method method = ClustersImpl.class.getDeclaredMethod("loadClustersAndHosts");
+    method.setAccessible(true);
+    method.invoke(injector.getInstance(Clusters.class));
+  }
+}
@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.audit.event.AuditEvent;
+import org.apache.ambari.server.audit.event.LogoutAuditEvent;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metrics.system.impl.AuditLoggerMetricsSource;
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncAuditLoggerTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @After
+  public void teardown() {
+    release.countDown();
+  }
+
+  @Test
+  public void testEventsAreWrittenInOrder() throws Exception {
+    RecordingAuditLogger inner = new RecordingAuditLogger(false);
+    AsyncAuditLogger logger = createLogger(inner, 100, "block");
+
+    List<AuditEvent> events = new ArrayList<AuditEvent>();
+    for (int i = 0; i < 1000; i++) {
+      AuditEvent event = createEvent("user" + i);
+      events.add(event);
+      logger.log(event);
+    }
+
+    waitForLoggedEvents(logger, 1000);
+    assertEquals(events, inner.getEvents());
+    assertEquals(0, logger.getDroppedEvents());
+  }
+
+  @Test
+  public void testDropPolicy() throws Exception {
+    RecordingAuditLogger inner = new RecordingAuditLogger(true);
+    AsyncAuditLogger logger = createLogger(inner, 2, "drop");
+
+    // the writer blocks on the first event, the next two fill the queue
+    logger.log(createEvent("user0"));
+    assertTrue(inner.writing.await(10, TimeUnit.SECONDS));
+    logger.log(createEvent("user1"));
+    logger.log(createEvent("user2"));
+    assertEquals(2, logger.getQueueSize());
+
+    long start = System.currentTimeMillis();
+    for (int i = 3; i < 10; i++) {
+      logger.log(createEvent("user" + i));
+    }
+    assertTrue(System.currentTimeMillis() - start < 1000L);
+    assertEquals(7, logger.getDroppedEvents());
+
+    Map<String, Number> metrics = new AuditLoggerMetricsSource().getMetrics();
+    assertEquals(7L, metrics.get("auditlog.events.dropped"));
+    assertEquals(2, metrics.get("auditlog.queue.size"));
+
+    release.countDown();
+    waitForLoggedEvents(logger, 3);
+    assertEquals(3, inner.getEvents().size());
+    assertEquals(0, logger.getQueueSize());
+  }
+
+  @Test
+  public void testBlockPolicy() throws Exception {
+    RecordingAuditLogger inner = new RecordingAuditLogger(true);
+    AsyncAuditLogger logger = createLogger(inner, 1, "block");
+
+    logger.log(createEvent("user0"));
+    assertTrue(inner.writing.await(10, TimeUnit.SECONDS));
+    logger.log(createEvent("user1"));
+
+    // waits for the timeout before writing the event in the calling thread
+    long start = System.currentTimeMillis();
+    AuditEvent event = createEvent("user2");
+    logger.log(event);
+    assertTrue(System.currentTimeMillis() - start >= 100L);
+    assertEquals(Collections.singletonList(event), inner.getEvents());
+    assertEquals(1, logger.getCallerWrittenEvents());
+    assertEquals(0, logger.getDroppedEvents());
+
+    release.countDown();
+    logger.log(createEvent("user3"));
+    waitForLoggedEvents(logger, 4);
+    assertEquals(4, inner.getEvents().size());
+    assertEquals(0, logger.getDroppedEvents());
+  }
+
+  @Test
+  public void testQueuedEventsAreWrittenAsOneBatch() throws Exception {
+    RecordingAuditLogger inner = new RecordingAuditLogger(true);
+    AsyncAuditLogger logger = createLogger(inner, 10, "block");
+
+    logger.log(createEvent("user0"));
+    assertTrue(inner.writing.await(10, TimeUnit.SECONDS));
+    for (int i = 1; i < 6; i++) {
+      logger.log(createEvent("user" + i));
+    }
+
+    release.countDown();
+    waitForLoggedEvents(logger, 6);
+    assertEquals(Arrays.asList(1, 5), inner.getBatchSizes());
+  }
+
+  @Test
+  public void testSpillPolicy() throws Exception {
+    RecordingAuditLogger inner = new RecordingAuditLogger(true);
+    AsyncAuditLogger logger = createLogger(inner, 1, "spill");
+
+    logger.log(createEvent("user0"));
+    assertTrue(inner.writing.await(10, TimeUnit.SECONDS));
+    logger.log(createEvent("user1"));
+    logger.log(createEvent("user2"));
+    assertEquals(1, logger.getSpilledEvents());
+    assertEquals(0, logger.getDroppedEvents());
+
+    release.countDown();
+    waitForLoggedEvents(logger, 2);
+  }
+
+  private AsyncAuditLogger createLogger(AuditLogger inner, int capacity, String policy) {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.AUDIT_LOGGER_CAPACITY.getKey(), Integer.toString(capacity));
+    properties.setProperty(Configuration.AUDIT_LOGGER_OVERFLOW_POLICY.getKey(), policy);
+    properties.setProperty(Configuration.AUDIT_LOGGER_OVERFLOW_TIMEOUT.getKey(), "100");
+    return new AsyncAuditLogger(inner, new Configuration(properties));
+  }
+
+  private AuditEvent createEvent(String userName) {
+    return LogoutAuditEvent.builder()
+      .withTimestamp(System.currentTimeMillis())
+      .withRemoteIp("127.0.0.1")
+      .withUserName(userName)
+      .build();
+  }
+
+  private void waitForLoggedEvents(AsyncAuditLogger logger, long count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000L;
+    while (logger.getLoggedEvents() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, logger.getLoggedEvents());
+  }
+
+  /**
+   * Records the events it writes, optionally blocking the writer thread on
+   * the first batch until the test releases it.
+   */
+  private class RecordingAuditLogger implements AuditLogger {
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final boolean block;
+    private final List<AuditEvent> events = Collections.synchronizedList(new ArrayList<AuditEvent>());
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private RecordingAuditLogger(boolean block) {
+      this.block = block;
+    }
+
+    @Override
+    public void log(AuditEvent event) {
+      events.add(event);
+    }
+
+    @Override
+    public void log(List<AuditEvent> events) {
+      writing.countDown();
+      if (block) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      batchSizes.add(events.size());
+      this.events.addAll(events);
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return true;
+    }
+
+    private List<AuditEvent> getEvents() {
+      synchronized (events) {
+        return new ArrayList<AuditEvent>(events);
+      }
+    }
+
+    private List<Integer> getBatchSizes() {
+      synchronized (batchSizes) {
+        return new ArrayList<Integer>(batchSizes);
+      }
+    }
+  }
+}
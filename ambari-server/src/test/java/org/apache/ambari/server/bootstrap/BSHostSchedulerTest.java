@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.bootstrap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link BSHostScheduler} with shell commands standing in for the
+ * bootstrap of a host over ssh.
+ */
+public class BSHostSchedulerTest {
+
+  /**
+   * Reports the host as bootstrapped, the way bootstrap.py does.
+   */
+  private static final String SUCCESS = "echo \"bootstrapped $1\" > \"$2/$1.log\"; echo 0 > \"$2/$1.done\"";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File requestDir;
+
+  @Before
+  public void setUp() throws Exception {
+    Assume.assumeTrue(!System.getProperty("os.name").contains("Windows"));
+    requestDir = temp.newFolder("1");
+  }
+
+  @Test
+  public void testHostsAreBootstrappedInParallel() throws Exception {
+    final int parallelism = 5;
+    List<String> hosts = createHosts(20);
+
+    final AtomicInteger started = new AtomicInteger();
+    final AtomicInteger finished = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+
+    BSHostScheduler scheduler = new BSHostScheduler(requestDir, hosts, parallelism, 0, 60000L,
+        new BSHostScheduler.HostCommandFactory() {
+          @Override
+          public ProcessBuilder create(String host) {
+            int running = started.incrementAndGet() - finished.get();
+            synchronized (maxRunning) {
+              maxRunning.set(Math.max(maxRunning.get(), running));
+            }
+            return createCommand("sleep 0.2; " + SUCCESS, host);
+          }
+        },
+        new BSHostScheduler.StatusListener() {
+          @Override
+          public void statusChanged(List<BSHostStatus> hostStatus) {
+            int done = 0;
+            for (BSHostStatus status : hostStatus) {
+              if (!"RUNNING".equals(status.getStatus())) {
+                done++;
+              }
+            }
+            finished.set(done);
+          }
+        });
+
+    List<BSHostStatus> hostStatus = scheduler.run();
+
+    Assert.assertEquals(hosts.size(), hostStatus.size());
+    for (int i = 0; i < hosts.size(); i++) {
+      BSHostStatus status = hostStatus.get(i);
+      Assert.assertEquals(hosts.get(i), status.getHostName());
+      Assert.assertEquals("DONE", status.getStatus());
+      Assert.assertEquals("0", status.getStatusCode());
+      Assert.assertEquals("bootstrapped " + hosts.get(i), status.getLog());
+    }
+
+    Assert.assertEquals(hosts.size(), started.get());
+    Assert.assertTrue(maxRunning.get() > 1);
+    Assert.assertTrue(maxRunning.get() <= parallelism);
+  }
+
+  @Test
+  public void testFailedHostIsRetried() throws Exception {
+    // fails the first time with the status of an ssh connection failure
+    String command = "if [ ! -f \"$2/$1.attempted\" ]; then touch \"$2/$1.attempted\"; "
+        + "echo \"ssh: connect to host $1 port 22: Connection refused\" > \"$2/$1.log\"; "
+        + "echo 255 > \"$2/$1.done\"; else " + SUCCESS + "; fi";
+
+    List<BSHostStatus> hostStatus = run(command, 0);
+    Assert.assertEquals("FAILED", hostStatus.get(0).getStatus());
+    Assert.assertEquals("255", hostStatus.get(0).getStatusCode());
+    Assert.assertTrue(hostStatus.get(0).getLog().contains("Connection refused"));
+
+    hostStatus = run(command, 1);
+    Assert.assertEquals("DONE", hostStatus.get(0).getStatus());
+    Assert.assertEquals("bootstrapped host0", hostStatus.get(0).getLog());
+  }
+
+  @Test
+  public void testHostWithoutStatusFails() throws Exception {
+    List<BSHostStatus> hostStatus = run("echo \"no route to $1\"; exit 3", 2);
+
+    Assert.assertEquals("FAILED", hostStatus.get(0).getStatus());
+    Assert.assertEquals("3", hostStatus.get(0).getStatusCode());
+    Assert.assertTrue(hostStatus.get(0).getLog().contains("no route to host0"));
+  }
+
+  @Test
+  public void testTimedOutHostFails() throws Exception {
+    BSHostScheduler scheduler = new BSHostScheduler(requestDir, Collections.singletonList("host0"),
+        1, 0, 200L, new BSHostScheduler.HostCommandFactory() {
+          @Override
+          public ProcessBuilder create(String host) {
+            return createCommand("sleep 30; " + SUCCESS, host);
+          }
+        }, new NoOpListener());
+
+    long start = System.currentTimeMillis();
+    List<BSHostStatus> hostStatus = scheduler.run();
+
+    Assert.assertTrue(System.currentTimeMillis() - start < 30000L);
+    Assert.assertEquals("FAILED", hostStatus.get(0).getStatus());
+    Assert.assertEquals(BSHostScheduler.ERROR_STATUS_CODE, hostStatus.get(0).getStatusCode());
+    Assert.assertTrue(hostStatus.get(0).getLog().contains("timed out"));
+  }
+
+  private List<BSHostStatus> run(final String command, int retries) throws Exception {
+    BSHostScheduler scheduler = new BSHostScheduler(requestDir, Collections.singletonList("host0"),
+        1, retries, 60000L, new BSHostScheduler.HostCommandFactory() {
+          @Override
+          public ProcessBuilder create(String host) {
+            return createCommand(command, host);
+          }
+        }, new NoOpListener());
+
+    return scheduler.run();
+  }
+
+  /**
+   * Runs the shell command with the host as {@code $1} and the request
+   * directory as {@code $2}.
+   */
+  private ProcessBuilder createCommand(String command, String host) {
+    return new ProcessBuilder("sh", "-c", command, "sh", host, requestDir.getPath());
+  }
+
+  private static List<String> createHosts(int count) {
+    List<String> hosts = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      hosts.add("host" + i);
+    }
+    return hosts;
+  }
+
+  private static class NoOpListener implements BSHostScheduler.StatusListener {
+    @Override
+    public void statusChanged(List<BSHostStatus> hostStatus) {
+    }
+  }
+}
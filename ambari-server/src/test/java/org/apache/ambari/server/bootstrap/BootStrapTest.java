@@ -203,6 +203,74 @@ public class BootStrapTest extends TestCase {
   }
 
 
+  @Test
+  public void testRunPerHost() throws Exception {
+    if (System.getProperty("os.name").contains("Windows")) {
+      return;
+    }
+
+    Properties properties = new Properties();
+    String bootdir = temp.newFolder("bootdir").toString();
+    String metadetadir = temp.newFolder("metadetadir").toString();
+    String serverVersionFilePath = temp.newFolder("serverVersionFilePath").toString();
+
+    /* a script bootstrapping the host given to it, host2 fails the first time */
+    File script = temp.newFile("bootstrap.sh");
+    FileUtils.writeStringToFile(script, "#!/bin/sh\n"
+        + "if [ \"$1\" = host2 ] && [ ! -f \"$2/$1.attempted\" ]; then\n"
+        + "  touch \"$2/$1.attempted\"\n"
+        + "  echo \"ssh: connect to host $1 port 22: Connection refused\" > \"$2/$1.log\"\n"
+        + "  echo 255 > \"$2/$1.done\"\n"
+        + "else\n"
+        + "  echo \"bootstrapped $1\" > \"$2/$1.log\"\n"
+        + "  echo 0 > \"$2/$1.done\"\n"
+        + "fi\n");
+    Assert.assertTrue(script.setExecutable(true));
+
+    properties.setProperty(Configuration.BOOTSTRAP_DIRECTORY.getKey(), bootdir);
+    properties.setProperty(Configuration.BOOTSTRAP_SCRIPT.getKey(), script.getPath());
+    properties.setProperty(Configuration.BOOTSTRAP_HOST_PARALLELISM.getKey(), "2");
+    properties.setProperty(Configuration.BOOTSTRAP_HOST_RETRIES.getKey(), "1");
+    properties.setProperty(Configuration.SRVR_KSTR_DIR.getKey(), "target" + File.separator + "classes");
+    properties.setProperty(Configuration.METADATA_DIR_PATH.getKey(), metadetadir);
+    properties.setProperty(Configuration.SERVER_VERSION_FILE.getKey(), serverVersionFilePath);
+    properties.setProperty(Configuration.SHARED_RESOURCES_DIR.getKey(), "src/test/resources/");
+    Configuration conf = new Configuration(properties);
+    AmbariMetaInfo ambariMetaInfo = new AmbariMetaInfo(conf);
+    BootStrapImpl impl = new BootStrapImpl(conf, ambariMetaInfo);
+    impl.init();
+    SshHostInfo info = new SshHostInfo();
+    info.setSshKey("xyz");
+    ArrayList<String> hosts = new ArrayList<String>();
+    hosts.add("host1");
+    hosts.add("host2");
+    info.setHosts(hosts);
+    info.setUser("user");
+    info.setUserRunAs("root");
+    info.setPassword("passwd");
+    BSResponse response = impl.runBootStrap(info);
+    BootStrapStatus status = impl.getStatus(response.getRequestId());
+    int num = 0;
+    while ((status.getStatus() == BSStat.RUNNING) && (num < 500)) {
+      Thread.sleep(100);
+      status = impl.getStatus(response.getRequestId());
+      num++;
+    }
+    LOG.info("Status: log " + status.getLog() + " status=" + status.getStatus());
+
+    Assert.assertEquals(BSStat.SUCCESS, status.getStatus());
+    Assert.assertEquals(2, status.getHostsStatus().size());
+    Assert.assertEquals("host1", status.getHostsStatus().get(0).getHostName());
+    Assert.assertEquals("DONE", status.getHostsStatus().get(0).getStatus());
+    Assert.assertEquals("host2", status.getHostsStatus().get(1).getHostName());
+    Assert.assertEquals("DONE", status.getHostsStatus().get(1).getStatus());
+    Assert.assertEquals("bootstrapped host2", status.getHostsStatus().get(1).getLog());
+
+    File requestDir = new File(bootdir, Long.toString(response.getRequestId()));
+    Assert.assertFalse(new File(requestDir, "sshKey").exists());
+    Assert.assertFalse(new File(requestDir, "host_pass").exists());
+  }
+
   @Test
   public void testPolling() throws Exception {
     File tmpFolder = temp.newFolder("bootstrap");
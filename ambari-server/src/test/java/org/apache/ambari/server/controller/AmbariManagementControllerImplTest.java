@@ -2171,6 +2171,9 @@ public class AmbariManagementControllerImplTest {
     users.processLdapSync(capture(ldapBatchDtoCapture));
     expectLastCall().anyTimes();
 
+    ldapDataPopulator.commitSyncHighWaterMark();
+    expectLastCall().times(3);
+
     //replay
     replay(ldapDataPopulator, clusters, actionDBAccessor, ambariMetaInfo, users, ldapBatchDto);
 
@@ -8073,6 +8073,64 @@ public class BlueprintConfigurationProcessorTest {
     return new Configuration(stackDefaultProps, stackDefaultAttributes);
   }
 
+  @Test
+  public void testDoUpdateForClusterCreate_LargeTopology() throws Exception {
+    Map<String, Map<String, String>> properties = new HashMap<String, Map<String, String>>();
+    Map<String, String> coreSiteProps = new HashMap<String, String>();
+    coreSiteProps.put("fs.defaultFS", "%HOSTGROUP::master%:8020");
+    properties.put("core-site", coreSiteProps);
+    Map<String, String> hbaseSiteProps = new HashMap<String, String>();
+    hbaseSiteProps.put("hbase.zookeeper.quorum", "localhost");
+    properties.put("hbase-site", hbaseSiteProps);
+    Map<String, String> yarnSiteProps = new HashMap<String, String>();
+    yarnSiteProps.put("yarn.resourcemanager.hostname", "localhost");
+    properties.put("yarn-site", yarnSiteProps);
+
+    Configuration clusterConfig = new Configuration(properties,
+        Collections.<String, Map<String, Map<String, String>>>emptyMap());
+
+    Collection<TestHostGroup> hostGroups = new HashSet<TestHostGroup>();
+    hostGroups.add(new TestHostGroup("master", ImmutableSet.of("NAMENODE", "SECONDARY_NAMENODE", "RESOURCEMANAGER"),
+        Collections.singleton("masterhost")));
+
+    Collection<Configuration> workerConfigs = new ArrayList<Configuration>();
+    for (int group = 0; group < 10; group++) {
+      Set<String> hosts = new HashSet<String>();
+      for (int host = 0; host < 100; host++) {
+        hosts.add(String.format("worker%d-%d", group, host));
+      }
+
+      // each worker host group overrides a property, and inherits the others from the cluster config
+      Map<String, Map<String, String>> workerProperties = new HashMap<String, Map<String, String>>();
+      Map<String, String> workerYarnSiteProps = new HashMap<String, String>();
+      workerYarnSiteProps.put("yarn.resourcemanager.resource-tracker.address", "%HOSTGROUP::master%:8025");
+      workerProperties.put("yarn-site", workerYarnSiteProps);
+      Configuration workerConfig = new Configuration(workerProperties,
+          Collections.<String, Map<String, Map<String, String>>>emptyMap(), clusterConfig);
+      workerConfigs.add(workerConfig);
+
+      hostGroups.add(new TestHostGroup("worker" + group, ImmutableSet.of("DATANODE", "ZOOKEEPER_SERVER"),
+          hosts, workerConfig));
+    }
+
+    ClusterTopology topology = createClusterTopology(bp, clusterConfig, hostGroups);
+    BlueprintConfigurationProcessor updater = new BlueprintConfigurationProcessor(topology);
+
+    Set<String> configTypesUpdated = updater.doUpdateForClusterCreate();
+
+    assertTrue(configTypesUpdated.containsAll(Arrays.asList("core-site", "hbase-site", "yarn-site")));
+    assertEquals("masterhost:8020", clusterConfig.getPropertyValue("core-site", "fs.defaultFS"));
+    assertEquals("masterhost", clusterConfig.getPropertyValue("yarn-site", "yarn.resourcemanager.hostname"));
+    assertEquals(1000, new HashSet<String>(Arrays.asList(
+        clusterConfig.getPropertyValue("hbase-site", "hbase.zookeeper.quorum").split(","))).size());
+
+    for (Configuration workerConfig : workerConfigs) {
+      assertEquals("masterhost:8025",
+          workerConfig.getProperties().get("yarn-site").get("yarn.resourcemanager.resource-tracker.address"));
+      assertEquals("masterhost:8020", workerConfig.getPropertyValue("core-site", "fs.defaultFS"));
+    }
+  }
+
   private ClusterTopology createClusterTopology(Blueprint blueprint, Configuration configuration,
                                                 Collection<TestHostGroup> hostGroups)
       throws InvalidTopologyException {
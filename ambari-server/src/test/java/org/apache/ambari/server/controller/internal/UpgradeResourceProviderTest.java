@@ -31,6 +31,7 @@ import static org.junit.Assert.assertTrue;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -95,6 +96,7 @@ import org.apache.ambari.server.state.Service;
 import org.apache.ambari.server.state.ServiceComponent;
 import org.apache.ambari.server.state.ServiceComponentHost;
 import org.apache.ambari.server.state.StackId;
+import org.apache.ambari.server.state.UpgradeContext;
 import org.apache.ambari.server.state.stack.UpgradePack;
 import org.apache.ambari.server.state.stack.upgrade.Direction;
 import org.apache.ambari.server.state.stack.upgrade.UpgradeType;
@@ -472,6 +474,10 @@ public class UpgradeResourceProviderTest {
     assertEquals(false, res.getPropertyValue(UpgradeResourceProvider.UPGRADE_SKIP_FAILURES));
     assertEquals(false, res.getPropertyValue(UpgradeResourceProvider.UPGRADE_SKIP_SC_FAILURES));
     assertEquals(UpgradeType.ROLLING, res.getPropertyValue(UpgradeResourceProvider.UPGRADE_TYPE));
+    for (String phase : Arrays.asList(UpgradeContext.PLANNING_RESOLVE_HOSTS, UpgradeContext.PLANNING_BUILD_GROUPS,
+        UpgradeContext.PLANNING_CREATE_STAGES, UpgradeContext.PLANNING_PERSIST)) {
+      assertNotNull(res.getPropertyValue(UpgradeResourceProvider.UPGRADE_PLANNING_TIMES + "/" + phase));
+    }
 
     // upgrade groups
     propertyIds.clear();
@@ -20,6 +20,7 @@ package org.apache.ambari.server.logging;
 import static org.easymock.EasyMock.expect;
 
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -155,4 +156,79 @@ public class ProfiledReentrantReadWriteLockTest extends EasyMockSupport {
     verifyAll();
   }
 
+  @Test
+  public void contendedReadLockIsCounted() throws Exception {
+    ReentrantReadWriteLock delegate = new ReentrantReadWriteLock();
+    ProfiledReentrantReadWriteLock lock = new ProfiledReentrantReadWriteLock(delegate, Ticker.systemTicker(), LABEL);
+    contendedLockIsCounted(lock.writeLock(), lock.readLock());
+  }
+
+  @Test
+  public void contendedWriteLockIsCounted() throws Exception {
+    ReentrantReadWriteLock delegate = new ReentrantReadWriteLock();
+    ProfiledReentrantReadWriteLock lock = new ProfiledReentrantReadWriteLock(delegate, Ticker.systemTicker(), LABEL);
+    contendedLockIsCounted(lock.readLock(), lock.writeLock());
+  }
+
+  @Test
+  public void contendedLockIsCounted() throws Exception {
+    ProfiledLock lock = new ProfiledReentrantLock(new ReentrantLock(), Ticker.systemTicker(), LABEL);
+    contendedLockIsCounted(lock, lock);
+  }
+
+  private void contendedLockIsCounted(final ProfiledLock holder, ProfiledLock testSubject) throws Exception {
+    testSubject.lock();
+    testSubject.unlock();
+    Assert.assertEquals(Collections.emptyMap(), testSubject.getContendedLockCount());
+
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        holder.lock();
+        try {
+          locked.countDown();
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          holder.unlock();
+        }
+      }
+    };
+    thread.start();
+    locked.await();
+
+    Assert.assertFalse(testSubject.tryLock());
+    release.countDown();
+    thread.join();
+
+    Assert.assertEquals(Collections.singletonMap(Thread.currentThread().getName(), 1), testSubject.getContendedLockCount());
+  }
+
+  @Test
+  public void longestTimeLockedIsRecorded() {
+    Ticker ticker = createMock(Ticker.class);
+    ProfiledLock testSubject = new ProfiledReentrantLock(new ReentrantLock(), ticker, LABEL);
+    expect(ticker.read()).andReturn(TimeUnit.MILLISECONDS.toNanos(0L));
+    expect(ticker.read()).andReturn(TimeUnit.MILLISECONDS.toNanos(0L));
+    expect(ticker.read()).andReturn(TimeUnit.MILLISECONDS.toNanos(2L));
+    expect(ticker.read()).andReturn(TimeUnit.MILLISECONDS.toNanos(10L));
+    expect(ticker.read()).andReturn(TimeUnit.MILLISECONDS.toNanos(20L));
+    expect(ticker.read()).andReturn(TimeUnit.MILLISECONDS.toNanos(20L));
+    expect(ticker.read()).andReturn(TimeUnit.MILLISECONDS.toNanos(21L));
+    expect(ticker.read()).andReturn(TimeUnit.MILLISECONDS.toNanos(24L));
+    replayAll();
+
+    testSubject.lock();
+    testSubject.unlock();
+    testSubject.lock();
+    testSubject.unlock();
+
+    Assert.assertEquals(Collections.singletonMap(Thread.currentThread().getName(), 10L - 2L), testSubject.getLongestTimeLocked());
+    Assert.assertEquals(Collections.singletonMap(Thread.currentThread().getName(), 10L - 2L + 24L - 21L), testSubject.getTimeSpentLocked());
+    verifyAll();
+  }
+
 }
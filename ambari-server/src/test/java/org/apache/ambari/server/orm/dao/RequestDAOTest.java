@@ -18,34 +18,50 @@
 package org.apache.ambari.server.orm.dao;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.Role;
 import org.apache.ambari.server.RoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.cleanup.TimeBasedCleanupPolicy;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.CalculatedStatus;
+import org.apache.ambari.server.events.RequestsPurgedEvent;
+import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
 import org.apache.ambari.server.orm.OrmTestHelper;
 import org.apache.ambari.server.orm.entities.ClusterEntity;
+import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
 import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.apache.ambari.server.orm.entities.RequestEntity;
 import org.apache.ambari.server.orm.entities.ResourceEntity;
 import org.apache.ambari.server.orm.entities.ResourceTypeEntity;
 import org.apache.ambari.server.orm.entities.StageEntity;
+import org.apache.ambari.server.orm.entities.TopologyHostGroupEntity;
+import org.apache.ambari.server.orm.entities.TopologyHostRequestEntity;
+import org.apache.ambari.server.orm.entities.TopologyHostTaskEntity;
+import org.apache.ambari.server.orm.entities.TopologyLogicalRequestEntity;
+import org.apache.ambari.server.orm.entities.TopologyLogicalTaskEntity;
+import org.apache.ambari.server.orm.entities.TopologyRequestEntity;
 import org.apache.ambari.server.security.authorization.ResourceType;
+import org.apache.ambari.server.topology.TopologyRequest;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.eventbus.Subscribe;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.persist.PersistService;
@@ -135,6 +151,162 @@ public class RequestDAOTest {
     Assert.assertEquals(calc3.getStatus(), calc4.getStatus());
   }
 
+  @Test
+  public void testCleanup() throws Exception {
+    OrmTestHelper helper = injector.getInstance(OrmTestHelper.class);
+    helper.createDefaultData();
+
+    Configuration configuration = injector.getInstance(Configuration.class);
+    configuration.setProperty(Configuration.CLEANUP_REQUESTS_BATCH_SIZE.getKey(), "1");
+    configuration.setProperty(Configuration.CLEANUP_REQUESTS_BATCH_PAUSE.getKey(), "0");
+
+    // finished before the date, 200 added hosts with a topology request whose
+    // install task ran in request 205, like the tasks of AmbariContext do
+    createRequest(205L, 1000L, HostRoleStatus.COMPLETED);
+    createLogicalRequest(200L, 1000L, TopologyRequest.Type.SCALE, 205L);
+    createRequest(201L, 1000L, HostRoleStatus.FAILED);
+
+    // the request which provisioned the cluster is kept, and so is request 206
+    // which ran its install task
+    createRequest(206L, 1000L, HostRoleStatus.COMPLETED);
+    createLogicalRequest(202L, 1000L, TopologyRequest.Type.PROVISION, 206L);
+
+    // finished after the date
+    createRequest(203L, 10000L, HostRoleStatus.COMPLETED);
+
+    // not finished
+    createRequest(204L, 1000L, HostRoleStatus.IN_PROGRESS);
+
+    ClusterEntity clusterEntity = clusterDAO.findByName("test_cluster1");
+    Assert.assertEquals(Arrays.asList(200L, 201L),
+        requestDAO.findPurgeableRequestIds(clusterEntity.getClusterId(), 5000L));
+
+    // db-cleanup purges requests only when enabled
+    Assert.assertEquals(0L, requestDAO.cleanup(new TimeBasedCleanupPolicy("test_cluster1", 5000L)));
+    Assert.assertNotNull(requestDAO.findByPK(200L));
+    configuration.setProperty(Configuration.CLEANUP_REQUESTS_DB_CLEANUP_ENABLED.getKey(), "true");
+
+    final List<Long> purgedRequestIds = Collections.synchronizedList(new ArrayList<Long>());
+    final CountDownLatch purgedEvents = new CountDownLatch(2);
+    injector.getInstance(AmbariEventPublisher.class).register(new Object() {
+      @Subscribe
+      public void onRequestsPurged(RequestsPurgedEvent event) {
+        purgedRequestIds.addAll(event.getRequestIds());
+        purgedEvents.countDown();
+      }
+    });
+
+    long affectedRows = requestDAO.cleanup(new TimeBasedCleanupPolicy("test_cluster1", 5000L));
+
+    // 2 requests, 2 stages, 2 tasks, 1 execution command and 6 topology rows
+    Assert.assertEquals(13L, affectedRows);
+    Assert.assertEquals(Arrays.asList(202L, 203L, 204L, 205L, 206L), requestDAO.findAllRequestIds(10, true));
+    Assert.assertNull(requestDAO.findByPK(200L));
+    Assert.assertTrue(stageDAO.findByRequestId(201L).isEmpty());
+    Assert.assertTrue(hostRoleCommandDAO.findByRequest(201L).isEmpty());
+    Assert.assertTrue(injector.getInstance(ExecutionCommandDAO.class).findAll().isEmpty());
+    Assert.assertEquals(2, hostRoleCommandDAO.findByRequest(204L).size());
+
+    List<TopologyRequestEntity> topologyRequests = injector.getInstance(TopologyRequestDAO.class).findAll();
+    Assert.assertEquals(1, topologyRequests.size());
+    Assert.assertEquals(TopologyRequest.Type.PROVISION.name(), topologyRequests.get(0).getAction());
+
+    // one event per batch, so that the purged requests are removed from memory
+    Assert.assertTrue(purgedEvents.await(10, TimeUnit.SECONDS));
+    Collections.sort(purgedRequestIds);
+    Assert.assertEquals(Arrays.asList(200L, 201L), purgedRequestIds);
+
+    // the install request of the purged scale request is no longer referred to,
+    // the one of the provisioning request still is
+    Assert.assertEquals(Collections.singletonList(205L),
+        requestDAO.findPurgeableRequestIds(clusterEntity.getClusterId(), 5000L));
+
+    // 1 request, 2 stages and 2 tasks
+    Assert.assertEquals(5L, requestDAO.cleanup(new TimeBasedCleanupPolicy("test_cluster1", 5000L)));
+    Assert.assertEquals(Arrays.asList(202L, 203L, 204L, 206L), requestDAO.findAllRequestIds(10, true));
+    Assert.assertEquals(2, hostRoleCommandDAO.findByRequest(206L).size());
+
+    Assert.assertEquals(0L, requestDAO.cleanup(new TimeBasedCleanupPolicy("test_cluster1", 5000L)));
+  }
+
+  private void createRequest(long requestId, long endTime, HostRoleStatus status) {
+    RequestEntity requestEntity = createRequestEntity(requestId, endTime, status);
+
+    HostEntity host = hostDAO.findByName("test_host1");
+    host.setHostRoleCommandEntities(new ArrayList<HostRoleCommandEntity>());
+
+    createStages(1L, 1, host, requestEntity, HostRoleStatus.COMPLETED, false);
+    createStages(2L, 1, host, requestEntity, status, false);
+    requestDAO.merge(requestEntity);
+
+    if (requestId == 201L) {
+      ExecutionCommandEntity executionCommand = new ExecutionCommandEntity();
+      executionCommand.setTaskId(hostRoleCommandDAO.findByRequest(requestId).get(0).getTaskId());
+      executionCommand.setCommand("{}".getBytes());
+      injector.getInstance(ExecutionCommandDAO.class).create(executionCommand);
+    }
+  }
+
+  private RequestEntity createRequestEntity(long requestId, long endTime, HostRoleStatus status) {
+    RequestEntity requestEntity = new RequestEntity();
+    requestEntity.setRequestId(requestId);
+    requestEntity.setClusterId(clusterDAO.findByName("test_cluster1").getClusterId());
+    requestEntity.setStartTime(endTime - 100L);
+    requestEntity.setEndTime(HostRoleStatus.IN_PROGRESS == status ? -1L : endTime);
+    requestEntity.setStages(new ArrayList<StageEntity>());
+    requestDAO.create(requestEntity);
+    return requestEntity;
+  }
+
+  /**
+   * Creates the request of a topology request, which has no stages itself: its
+   * logical task refers to a task of the given physical request.
+   */
+  private void createLogicalRequest(long requestId, long endTime, TopologyRequest.Type type,
+      long physicalRequestId) {
+    createRequestEntity(requestId, endTime, HostRoleStatus.COMPLETED);
+    HostRoleCommandEntity task = hostRoleCommandDAO.findByRequest(physicalRequestId).get(0);
+
+    TopologyRequestEntity topologyRequest = new TopologyRequestEntity();
+    topologyRequest.setAction(type.name());
+    topologyRequest.setBlueprintName("bp1");
+    topologyRequest.setClusterId(clusterDAO.findByName("test_cluster1").getClusterId());
+    topologyRequest.setDescription("description");
+
+    TopologyHostGroupEntity hostGroup = new TopologyHostGroupEntity();
+    hostGroup.setName("hg1");
+    hostGroup.setTopologyRequestEntity(topologyRequest);
+    topologyRequest.setTopologyHostGroupEntities(Collections.singletonList(hostGroup));
+
+    TopologyLogicalRequestEntity logicalRequest = new TopologyLogicalRequestEntity();
+    logicalRequest.setId(requestId);
+    logicalRequest.setDescription("description");
+    logicalRequest.setTopologyRequestEntity(topologyRequest);
+    topologyRequest.setTopologyLogicalRequestEntity(logicalRequest);
+
+    TopologyHostRequestEntity hostRequest = new TopologyHostRequestEntity();
+    hostRequest.setId(requestId);
+    hostRequest.setHostName("test_host1");
+    hostRequest.setStageId(task.getStageId());
+    hostRequest.setTopologyLogicalRequestEntity(logicalRequest);
+    hostRequest.setTopologyHostGroupEntity(hostGroup);
+    logicalRequest.setTopologyHostRequestEntities(Collections.singletonList(hostRequest));
+    hostGroup.setTopologyHostRequestEntities(Collections.singletonList(hostRequest));
+
+    TopologyHostTaskEntity hostTask = new TopologyHostTaskEntity();
+    hostTask.setType("INSTALL");
+    hostTask.setTopologyHostRequestEntity(hostRequest);
+    hostRequest.setTopologyHostTaskEntities(Collections.singletonList(hostTask));
+
+    TopologyLogicalTaskEntity logicalTask = new TopologyLogicalTaskEntity();
+    logicalTask.setComponentName("DATANODE");
+    logicalTask.setHostRoleCommandEntity(task);
+    logicalTask.setTopologyHostTaskEntity(hostTask);
+    hostTask.setTopologyLogicalTaskEntities(Collections.singletonList(logicalTask));
+
+    injector.getInstance(TopologyRequestDAO.class).create(topologyRequest);
+  }
+
   private void createGraph() {
     OrmTestHelper helper = injector.getInstance(OrmTestHelper.class);
     helper.createDefaultData();
@@ -1712,6 +1712,155 @@ public class AmbariLdapDataPopulatorTest {
     verify(ldapTemplate, ldapServerProperties, users, configuration, processor, cookie);
   }
 
+  @Test
+  public void testResolveMembersInBulk() throws Exception {
+
+    Configuration configuration = createNiceMock(Configuration.class);
+    Users users = createNiceMock(Users.class);
+    LdapTemplate ldapTemplate = createNiceMock(LdapTemplate.class);
+    LdapServerProperties ldapServerProperties = createNiceMock(LdapServerProperties.class);
+    PagedResultsDirContextProcessor processor = createNiceMock(PagedResultsDirContextProcessor.class);
+
+    LdapUserDto user1 = new LdapUserDto();
+    user1.setUserName("user1");
+    user1.setDn("uid=user1,ou=people,dc=apache,dc=org");
+    LdapUserDto user2 = new LdapUserDto();
+    user2.setUserName("user2");
+    user2.setDn("uid=user2,ou=people,dc=apache,dc=org");
+    LdapUserDto user4 = new LdapUserDto();
+    user4.setUserName("user4");
+
+    expect(configuration.getLdapServerProperties()).andReturn(ldapServerProperties).anyTimes();
+    expect(ldapServerProperties.isPaginationEnabled()).andReturn(false).anyTimes();
+    expect(ldapServerProperties.getUserObjectClass()).andReturn("person").anyTimes();
+    expect(ldapServerProperties.getUsernameAttribute()).andReturn("uid").anyTimes();
+    expect(ldapServerProperties.getGroupNamingAttr()).andReturn("cn").anyTimes();
+    expect(ldapServerProperties.getBaseDN()).andReturn("dc=apache,dc=org").anyTimes();
+
+    expect(ldapTemplate.search(eq("ou=people,dc=apache,dc=org"), eq("(&(objectClass=person)(|(uid=user1)(UID=user2)(uid=user3)))"),
+        anyObject(SearchControls.class), anyObject(ContextMapper.class))).andReturn(Arrays.asList(user1, user2)).once();
+    expect(ldapTemplate.search(eq("dc=apache,dc=org"), eq("(&(objectClass=person)(|(uid=user4)(uid=user5)))"),
+        anyObject(SearchControls.class), anyObject(ContextMapper.class))).andReturn(Arrays.asList(user4)).once();
+
+    replay(ldapTemplate, ldapServerProperties, users, configuration, processor);
+
+    AmbariLdapDataPopulatorTestInstance populator = new AmbariLdapDataPopulatorTestInstance(configuration, users);
+
+    populator.setLdapTemplate(ldapTemplate);
+    populator.setProcessor(processor);
+
+    populator.resolveMembers(Arrays.asList(
+        "uid=user1,ou=people,dc=apache,dc=org",
+        "UID=user2,ou=people,dc=apache,dc=org",
+        "uid=user3,ou=people,dc=apache,dc=org",
+        "user4",
+        "user5"), false);
+
+    verify(ldapTemplate, ldapServerProperties, users, configuration, processor);
+
+    // answered from the members looked up in bulk, without further searches
+    assertEquals(user1, populator.getLdapUserByMemberAttr("uid=user1,ou=people,dc=apache,dc=org"));
+    assertEquals(user2, populator.getLdapUserByMemberAttr("UID=user2,ou=people,dc=apache,dc=org"));
+    assertNull(populator.getLdapUserByMemberAttr("uid=user3,ou=people,dc=apache,dc=org"));
+    assertEquals(user4, populator.getLdapUserByMemberAttr("user4"));
+    assertNull(populator.getLdapUserByMemberAttr("user5"));
+  }
+
+  @Test
+  public void testResolveMembersWithCustomMemberFilter() throws Exception {
+
+    Configuration configuration = createNiceMock(Configuration.class);
+    Users users = createNiceMock(Users.class);
+    LdapTemplate ldapTemplate = createMockBuilder(LdapTemplate.class).createMock();
+    LdapServerProperties ldapServerProperties = createNiceMock(LdapServerProperties.class);
+
+    expect(configuration.getLdapServerProperties()).andReturn(ldapServerProperties).anyTimes();
+    expect(ldapServerProperties.getSyncUserMemberFilter()).andReturn("(memberof={member})").anyTimes();
+
+    replay(ldapTemplate, ldapServerProperties, users, configuration);
+
+    AmbariLdapDataPopulatorTestInstance populator = new AmbariLdapDataPopulatorTestInstance(configuration, users);
+    populator.setLdapTemplate(ldapTemplate);
+
+    // members are left to be looked up one by one
+    populator.resolveMembers(Arrays.asList("user1", "user2"), true);
+
+    verify(ldapTemplate, ldapServerProperties, users, configuration);
+  }
+
+  @Test
+  public void testSynchronizeAllLdapGroupsIncrementally() throws Exception {
+
+    Group parentGroup = createNiceMock(Group.class);
+    Group childGroup = createNiceMock(Group.class);
+    Group plainGroup = createNiceMock(Group.class);
+    expect(parentGroup.getGroupName()).andReturn("parent").anyTimes();
+    expect(childGroup.getGroupName()).andReturn("child").anyTimes();
+    expect(plainGroup.getGroupName()).andReturn("plain").anyTimes();
+    for (Group group : Arrays.asList(parentGroup, childGroup, plainGroup)) {
+      expect(group.isLdapGroup()).andReturn(true).anyTimes();
+    }
+
+    Configuration configuration = createNiceMock(Configuration.class);
+    Users users = createNiceMock(Users.class);
+    LdapServerProperties ldapServerProperties = createNiceMock(LdapServerProperties.class);
+    expect(configuration.isLdapSyncIncrementalEnabled()).andReturn(true).anyTimes();
+    expect(users.getAllGroups()).andReturn(Arrays.asList(parentGroup, childGroup, plainGroup)).anyTimes();
+    expect(users.getAllUsers()).andReturn(Collections.<User>emptyList()).anyTimes();
+    replay(parentGroup, childGroup, plainGroup, configuration, users, ldapServerProperties);
+
+    final LdapGroupDto parent = createLdapGroup("parent", "20161231000000Z",
+        "cn=child,ou=groups,dc=apache,dc=org", "uid=user1,ou=people,dc=apache,dc=org");
+    final LdapGroupDto child = createLdapGroup("child", "20170101000000Z", "uid=user2,ou=people,dc=apache,dc=org");
+    final LdapGroupDto plain = createLdapGroup("plain", "20161231000000Z", "uid=user3,ou=people,dc=apache,dc=org");
+    final List<String> refreshedGroups = new ArrayList<String>();
+
+    AmbariLdapDataPopulatorTestInstance populator = new AmbariLdapDataPopulatorTestInstance(configuration, users) {
+      @Override
+      protected Set<LdapGroupDto> getExternalLdapGroupInfo() {
+        return createSet(parent, child, plain);
+      }
+
+      @Override
+      protected void refreshGroupMembers(LdapBatchDto batchInfo, LdapGroupDto group, Map<String, User> internalUsers,
+                                         Map<String, Group> internalGroupsMap, Set<String> groupMemberAttributes,
+                                         boolean recursive) throws AmbariException {
+        refreshedGroups.add(group.getGroupName());
+      }
+    };
+    populator.setLdapServerProperties(ldapServerProperties);
+
+    populator.synchronizeAllLdapGroups(new LdapBatchDto());
+    populator.commitSyncHighWaterMark();
+    assertEquals(3, refreshedGroups.size());
+
+    // only the nested group was modified since
+    refreshedGroups.clear();
+    child.setModifyTimestamp("20170102000000Z");
+    populator.synchronizeAllLdapGroups(new LdapBatchDto());
+
+    assertEquals(2, refreshedGroups.size());
+    assertTrue(refreshedGroups.contains("child"));
+    assertTrue(refreshedGroups.contains("parent"));
+  }
+
+  private static LdapGroupDto createLdapGroup(String name, String modifyTimestamp, String... members) {
+    LdapGroupDto group = new LdapGroupDto();
+    group.setGroupName(name);
+    group.setDn("cn=" + name + ",ou=groups,dc=apache,dc=org");
+    group.setModifyTimestamp(modifyTimestamp);
+    group.getMemberAttributes().addAll(Arrays.asList(members));
+    return group;
+  }
+
+  @Test
+  public void testNormalizeGeneralizedTime() {
+    assertEquals("20170102030405", AmbariLdapDataPopulator.normalizeGeneralizedTime("20170102030405Z"));
+    assertEquals("20170102030405", AmbariLdapDataPopulator.normalizeGeneralizedTime("20170102030405.0Z"));
+    assertNull(AmbariLdapDataPopulator.normalizeGeneralizedTime("2017"));
+    assertNull(AmbariLdapDataPopulator.normalizeGeneralizedTime(null));
+  }
+
   @Test
   public void testLdapUserContextMapper_uidIsNull() throws Exception {
     LdapServerProperties ldapServerProperties = createNiceMock(LdapServerProperties.class);
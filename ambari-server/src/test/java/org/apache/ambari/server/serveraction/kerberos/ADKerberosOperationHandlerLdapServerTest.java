@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.serveraction.kerberos;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+
+import org.apache.ambari.server.security.credential.PrincipalKeyCredential;
+import org.apache.directory.server.annotations.CreateLdapServer;
+import org.apache.directory.server.annotations.CreateTransport;
+import org.apache.directory.server.core.annotations.ApplyLdifs;
+import org.apache.directory.server.core.annotations.ContextEntry;
+import org.apache.directory.server.core.annotations.CreateDS;
+import org.apache.directory.server.core.annotations.CreatePartition;
+import org.apache.directory.server.core.integ.AbstractLdapTestUnit;
+import org.apache.directory.server.core.integ.FrameworkRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import junit.framework.Assert;
+
+/**
+ * Tests ADKerberosOperationHandler against an embedded LDAP server, using a stub of the Active
+ * Directory schema.
+ */
+@RunWith(FrameworkRunner.class)
+@CreateDS(name = "ADKerberosOperationHandlerLdapServerTest",
+    partitions = {
+        @CreatePartition(name = "Root",
+            suffix = "dc=hdp01,dc=local",
+            contextEntry = @ContextEntry(
+                entryLdif =
+                    "dn: dc=hdp01,dc=local\n" +
+                        "dc: hdp01\n" +
+                        "objectClass: top\n" +
+                        "objectClass: domain\n\n"))
+    })
+@CreateLdapServer(transports = {@CreateTransport(protocol = "LDAP")})
+@ApplyLdifs({
+    "dn: cn=ad,ou=schema",
+    "objectClass: metaSchema",
+    "objectClass: top",
+    "cn: ad",
+    "m-dependencies: core",
+    "",
+    "dn: ou=attributeTypes,cn=ad,ou=schema",
+    "objectClass: organizationalUnit",
+    "objectClass: top",
+    "ou: attributeTypes",
+    "",
+    "dn: m-oid=1.2.840.113556.1.4.656,ou=attributeTypes,cn=ad,ou=schema",
+    "objectClass: metaAttributeType",
+    "objectClass: metaTop",
+    "objectClass: top",
+    "m-oid: 1.2.840.113556.1.4.656",
+    "m-name: userPrincipalName",
+    "m-equality: caseIgnoreMatch",
+    "m-syntax: 1.3.6.1.4.1.1466.115.121.1.15",
+    "m-singleValue: TRUE",
+    "",
+    "dn: m-oid=1.2.840.113556.1.4.90,ou=attributeTypes,cn=ad,ou=schema",
+    "objectClass: metaAttributeType",
+    "objectClass: metaTop",
+    "objectClass: top",
+    "m-oid: 1.2.840.113556.1.4.90",
+    "m-name: unicodePwd",
+    "m-equality: octetStringMatch",
+    "m-syntax: 1.3.6.1.4.1.1466.115.121.1.40",
+    "m-singleValue: TRUE",
+    "",
+    "dn: ou=objectClasses,cn=ad,ou=schema",
+    "objectClass: organizationalUnit",
+    "objectClass: top",
+    "ou: objectClasses",
+    "",
+    "dn: m-oid=1.2.840.113556.1.5.9,ou=objectClasses,cn=ad,ou=schema",
+    "objectClass: metaObjectClass",
+    "objectClass: metaTop",
+    "objectClass: top",
+    "m-oid: 1.2.840.113556.1.5.9",
+    "m-name: user",
+    "m-supObjectClass: organizationalPerson",
+    "m-typeObjectClass: STRUCTURAL",
+    "m-may: userPrincipalName",
+    "m-may: unicodePwd",
+    "",
+    "dn: ou=HDP,dc=hdp01,dc=local",
+    "objectClass: organizationalUnit",
+    "objectClass: top",
+    "ou: HDP"
+})
+public class ADKerberosOperationHandlerLdapServerTest extends AbstractLdapTestUnit {
+  private static final String DEFAULT_REALM = "HDP01.LOCAL";
+
+  private static final String CREATE_TEMPLATE = "{" +
+      "\"objectClass\": [\"top\", \"person\", \"organizationalPerson\", \"user\"]," +
+      "\"cn\": \"$principal_name\"," +
+      "\"sn\": \"$principal_primary\"," +
+      "\"userPrincipalName\": \"$normalized_principal\"," +
+      "\"unicodePwd\": \"$password\"" +
+      "}";
+
+  private static final PrincipalKeyCredential ADMINISTRATOR_CREDENTIAL =
+      new PrincipalKeyCredential("uid=admin,ou=system", "secret");
+
+  @Test
+  public void testFindExistingPrincipals() throws Exception {
+    TestADKerberosOperationHandler handler = new TestADKerberosOperationHandler();
+    handler.setLookupBatchSize(3);
+    handler.setSearchPageSize(2);
+    handler.open(ADMINISTRATOR_CREDENTIAL, DEFAULT_REALM, createKerberosEnv());
+
+    try {
+      for (int i = 0; i < 7; i++) {
+        handler.createPrincipal(String.format("service%d/c6501.ambari.apache.org", i), "secret", true);
+      }
+    } finally {
+      handler.close();
+    }
+
+    // A new handler so the lookups are not answered from the cache
+    handler = new TestADKerberosOperationHandler();
+    handler.setLookupBatchSize(3);
+    handler.setSearchPageSize(2);
+    handler.open(ADMINISTRATOR_CREDENTIAL, DEFAULT_REALM, createKerberosEnv());
+
+    try {
+      Assert.assertEquals(
+          new HashSet<String>(Arrays.asList(
+              "service0/c6501.ambari.apache.org@HDP01.LOCAL",
+              "service2/c6501.ambari.apache.org",
+              "SERVICE4/c6501.ambari.apache.org@HDP01.LOCAL",
+              "service6/c6501.ambari.apache.org@HDP01.LOCAL")),
+          handler.findExistingPrincipals(Arrays.asList(
+              "service0/c6501.ambari.apache.org@HDP01.LOCAL",
+              "service2/c6501.ambari.apache.org",
+              "SERVICE4/c6501.ambari.apache.org@HDP01.LOCAL",
+              "service6/c6501.ambari.apache.org@HDP01.LOCAL",
+              "missing/c6501.ambari.apache.org@HDP01.LOCAL",
+              "service(*)/c6501.ambari.apache.org@HDP01.LOCAL")));
+
+      // Answered from the cache
+      Assert.assertTrue(handler.principalExists("service6/c6501.ambari.apache.org@HDP01.LOCAL"));
+      Assert.assertFalse(handler.principalExists("missing/c6501.ambari.apache.org@HDP01.LOCAL"));
+
+      // Not looked up in bulk
+      Assert.assertTrue(handler.principalExists("service5/c6501.ambari.apache.org@HDP01.LOCAL"));
+    } finally {
+      handler.close();
+    }
+  }
+
+  @Test
+  public void testSetPasswordAndRemovePrincipal() throws Exception {
+    TestADKerberosOperationHandler handler = new TestADKerberosOperationHandler();
+    handler.open(ADMINISTRATOR_CREDENTIAL, DEFAULT_REALM, createKerberosEnv());
+
+    try {
+      String principal = "hdfs@" + DEFAULT_REALM;
+
+      handler.prefetchPrincipals(Arrays.asList(principal, "hbase@" + DEFAULT_REALM));
+      Assert.assertFalse(handler.principalExists(principal));
+
+      handler.createPrincipal(principal, "secret", false);
+      Assert.assertTrue(handler.principalExists(principal));
+
+      Assert.assertEquals(Integer.valueOf(0), handler.setPrincipalPassword(principal, "changed"));
+
+      Assert.assertTrue(handler.removePrincipal(principal));
+      Assert.assertFalse(handler.principalExists(principal));
+      Assert.assertTrue(handler.findExistingPrincipals(Arrays.asList(principal)).isEmpty());
+    } finally {
+      handler.close();
+    }
+  }
+
+  @Test
+  public void testPooledLdapContext() throws Exception {
+    LdapContextPool pool = new LdapContextPool();
+    String key = LdapContextPool.createKey("ldaps://localhost:" + getLdapServer().getPort(),
+        ADMINISTRATOR_CREDENTIAL.getPrincipal(), ADMINISTRATOR_CREDENTIAL.getKey());
+
+    TestADKerberosOperationHandler handler = new TestADKerberosOperationHandler();
+    handler.setLdapContextPool(pool);
+    handler.open(ADMINISTRATOR_CREDENTIAL, DEFAULT_REALM, createKerberosEnv());
+    handler.createPrincipal("zookeeper/c6501.ambari.apache.org", "secret", true);
+    handler.close();
+
+    Assert.assertEquals(1, handler.createdContexts);
+    Assert.assertEquals(1, pool.getIdleCount(key));
+
+    TestADKerberosOperationHandler otherHandler = new TestADKerberosOperationHandler();
+    otherHandler.setLdapContextPool(pool);
+    otherHandler.open(ADMINISTRATOR_CREDENTIAL, DEFAULT_REALM, createKerberosEnv());
+    Assert.assertEquals(0, pool.getIdleCount(key));
+    Assert.assertTrue(otherHandler.principalExists("zookeeper/c6501.ambari.apache.org"));
+    otherHandler.close();
+
+    Assert.assertEquals(0, otherHandler.createdContexts);
+    Assert.assertEquals(1, pool.getIdleCount(key));
+
+    // A context idle for too long is closed rather than reused
+    pool.setIdleTimeoutMillis(0);
+    otherHandler.open(ADMINISTRATOR_CREDENTIAL, DEFAULT_REALM, createKerberosEnv());
+    otherHandler.close();
+    Assert.assertEquals(1, otherHandler.createdContexts);
+
+    pool.clear();
+    Assert.assertEquals(0, pool.getIdleCount(key));
+  }
+
+  private Map<String, String> createKerberosEnv() {
+    Map<String, String> kerberosEnv = new HashMap<String, String>();
+    kerberosEnv.put(ADKerberosOperationHandler.KERBEROS_ENV_LDAP_URL, "ldaps://localhost:" + getLdapServer().getPort());
+    kerberosEnv.put(ADKerberosOperationHandler.KERBEROS_ENV_PRINCIPAL_CONTAINER_DN, "ou=HDP,dc=hdp01,dc=local");
+    kerberosEnv.put(ADKerberosOperationHandler.KERBEROS_ENV_AD_CREATE_ATTRIBUTES_TEMPLATE, CREATE_TEMPLATE);
+    return kerberosEnv;
+  }
+
+  /**
+   * The embedded LDAP server does not use SSL, so connect to it over plain LDAP.
+   */
+  private static class TestADKerberosOperationHandler extends ADKerberosOperationHandler {
+    private int createdContexts = 0;
+
+    @Override
+    protected LdapContext createInitialLdapContext(Properties properties, Control[] controls) throws NamingException {
+      properties.put(Context.PROVIDER_URL, properties.getProperty(Context.PROVIDER_URL).replaceFirst("^ldaps://", "ldap://"));
+      properties.remove("java.naming.ldap.factory.socket");
+      createdContexts++;
+      return super.createInitialLdapContext(properties, controls);
+    }
+  }
+}
@@ -23,9 +23,23 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.ambari.server.utils.ShellCommandUtil;
+import org.apache.directory.server.kerberos.shared.keytab.Keytab;
+import org.apache.directory.server.kerberos.shared.keytab.KeytabEntry;
+import org.apache.directory.shared.kerberos.KerberosTime;
+import org.apache.directory.shared.kerberos.codec.types.EncryptionType;
+import org.apache.directory.shared.kerberos.components.EncryptionKey;
 import org.junit.Assume;
 import org.junit.Rule;
 import org.junit.Test;
@@ -93,4 +107,53 @@ public class CreateKeytabFilesServerActionTest {
     Assert.assertFalse(permissions.contains(PosixFilePermission.OTHERS_WRITE));
     Assert.assertFalse(permissions.contains(PosixFilePermission.OTHERS_EXECUTE));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testConcurrentWritesToSharedKeytabFile() throws Exception {
+    final CreateKeytabFilesServerAction action = new CreateKeytabFilesServerAction();
+    final KerberosOperationHandler handler = new MITKerberosOperationHandler();
+    final File keytabFile = new File(testFolder.newFolder(), "shared.keytab");
+    final int principalCount = 16;
+    final CountDownLatch start = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(principalCount);
+    try {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (int i = 0; i < principalCount; i++) {
+        final Keytab keytab = createKeytab("principal" + i + "@REALM.COM");
+        results.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            start.await();
+            return action.createKeytabFile(handler, keytab, keytabFile);
+          }
+        }));
+      }
+
+      start.countDown();
+      for (Future<Boolean> result : results) {
+        Assert.assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Every principal sharing the keytab file is expected to have its entry in it
+    Set<String> principals = new HashSet<String>();
+    for (KeytabEntry entry : Keytab.read(keytabFile).getEntries()) {
+      principals.add(entry.getPrincipalName());
+    }
+
+    Assert.assertEquals(principalCount, principals.size());
+    for (int i = 0; i < principalCount; i++) {
+      Assert.assertTrue(principals.contains("principal" + i + "@REALM.COM"));
+    }
+  }
+
+  private Keytab createKeytab(String principal) {
+    EncryptionKey key = new EncryptionKey(EncryptionType.AES128_CTS_HMAC_SHA1_96, new byte[16]);
+    Keytab keytab = new Keytab();
+    keytab.setEntries(Collections.singletonList(new KeytabEntry(principal, 1, new KerberosTime(), (byte) 1, key)));
+    return keytab;
+  }
+}
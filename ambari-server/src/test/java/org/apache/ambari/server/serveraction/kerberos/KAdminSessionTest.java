@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.serveraction.kerberos;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ambari.server.utils.ShellCommandUtil;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class KAdminSessionTest {
+
+  static final String FAKE_KADMIN = new File("src/test/resources/fake_kadmin.sh").getAbsolutePath();
+
+  private static final List<String> COMMAND = Arrays.asList(FAKE_KADMIN, "-p", "admin/admin", "-r", "EXAMPLE.COM");
+
+  @Test
+  public void testQueriesShareOneProcess() throws Exception {
+    KAdminSession session = KAdminSession.start(COMMAND, "hadoop", 5000);
+    try {
+      ShellCommandUtil.Result result = session.execute("add_principal user@EXAMPLE.COM", "password");
+      Assert.assertTrue(result.isSuccessful());
+      Assert.assertTrue(result.getStdout().contains("Principal \"user@EXAMPLE.COM\" created."));
+
+      result = session.execute("change_password user@EXAMPLE.COM", "new_password");
+      Assert.assertTrue(result.getStdout().contains("Password for \"user@EXAMPLE.COM\" changed."));
+
+      result = session.execute("get_principal user@EXAMPLE.COM", null);
+      Assert.assertTrue(result.getStdout().contains("Key: vno 2"));
+
+      result = session.execute("delete_principal -force user@EXAMPLE.COM", null);
+      Assert.assertTrue(result.getStdout().contains("Principal \"user@EXAMPLE.COM\" deleted."));
+
+      result = session.execute("get_principal user@EXAMPLE.COM", null);
+      Assert.assertTrue(result.isSuccessful());
+      Assert.assertTrue(result.getStderr().contains("Principal does not exist"));
+      Assert.assertFalse(result.getStdout().contains("Principal does not exist"));
+      Assert.assertTrue(session.isUsable());
+    } finally {
+      session.close();
+    }
+    Assert.assertFalse(session.isUsable());
+  }
+
+  @Test
+  public void testOutputMentioningPasswordIsNotAPrompt() throws Exception {
+    KAdminSession session = KAdminSession.start(COMMAND, "hadoop", 5000);
+    try {
+      session.execute("add_principal user@EXAMPLE.COM", "password");
+
+      // The output is read up to "Last password change: " before the rest of the line arrives
+      ShellCommandUtil.Result result = session.execute("get_principal user@EXAMPLE.COM", null);
+      Assert.assertTrue(result.isSuccessful());
+      Assert.assertTrue(result.getStdout().contains("Last password change: [never]"));
+      Assert.assertTrue(result.getStdout().contains("Key: vno 1"));
+      Assert.assertTrue(session.isUsable());
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test
+  public void testFailedQuery() throws Exception {
+    KAdminSession session = KAdminSession.start(COMMAND, "hadoop", 5000);
+    try {
+      ShellCommandUtil.Result result = session.execute("add_principal user@EXAMPLE.COM", "password");
+      Assert.assertTrue(result.isSuccessful());
+      Assert.assertEquals("", result.getStderr());
+
+      result = session.execute("add_principal user@EXAMPLE.COM", "password");
+      Assert.assertTrue(result.isSuccessful());
+      Assert.assertTrue(result.getStderr().contains("Principal or policy already exists"));
+
+      result = session.execute("unknown_request user@EXAMPLE.COM", null);
+      Assert.assertFalse(result.isSuccessful());
+      Assert.assertTrue(result.getStderr().contains("Unknown request \"unknown_request\""));
+      Assert.assertEquals("", result.getStdout());
+
+      // A session which failed a query is not used anymore
+      Assert.assertFalse(session.isUsable());
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testIncorrectAdminPassword() throws Exception {
+    KAdminSession.start(COMMAND, "wrong", 5000);
+  }
+}
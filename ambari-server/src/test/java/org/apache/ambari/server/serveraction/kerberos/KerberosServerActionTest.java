@@ -27,8 +27,10 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -60,6 +62,8 @@ public class KerberosServerActionTest {
   File temporaryDirectory;
   private Injector injector;
   private KerberosServerAction action;
+  private ExecutionCommand mockExecutionCommand;
+  private HostRoleCommand mockHostRoleCommand;
 
   @Before
   public void setUp() throws Exception {
@@ -68,8 +72,8 @@ public class KerberosServerActionTest {
     final Clusters clusters = mock(Clusters.class);
     when(clusters.getCluster(anyString())).thenReturn(cluster);
 
-    final ExecutionCommand mockExecutionCommand = mock(ExecutionCommand.class);
-    final HostRoleCommand mockHostRoleCommand = mock(HostRoleCommand.class);
+    mockExecutionCommand = mock(ExecutionCommand.class);
+    mockHostRoleCommand = mock(HostRoleCommand.class);
 
     injector = Guice.createInjector(new AbstractModule() {
 
@@ -227,4 +231,96 @@ public class KerberosServerActionTest {
 
     verify(kerberosHelper);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testProcessIdentitiesConcurrently() throws Exception {
+    KerberosHelper kerberosHelper = injector.getInstance(KerberosHelper.class);
+    expect(kerberosHelper.getKDCAdministratorCredentials(EasyMock.anyObject(String.class)))
+        .andReturn(new PrincipalKeyCredential("principal", "password"))
+        .anyTimes();
+
+    replay(kerberosHelper);
+
+    final Set<KerberosOperationHandler> handlers = Collections.newSetFromMap(new ConcurrentHashMap<KerberosOperationHandler, Boolean>());
+    KerberosServerAction concurrentAction = createConcurrentAction(handlers);
+
+    ConcurrentMap<String, Object> sharedMap = new ConcurrentHashMap<String, Object>();
+    CommandReport report = concurrentAction.processIdentities(sharedMap);
+    Assert.assertNotNull(report);
+    Assert.assertEquals(HostRoleStatus.COMPLETED.toString(), report.getStatus());
+    Assert.assertTrue(report.getStructuredOut().contains("\"processed_identities\":10"));
+    Assert.assertTrue(report.getStructuredOut().contains("\"concurrency\":4"));
+
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals("principal|hostName|REALM.COM" + i, sharedMap.get("principal|_HOST|_REALM" + i));
+    }
+
+    // Each worker uses its own KerberosOperationHandler
+    Assert.assertTrue(handlers.size() > 1);
+
+    verify(kerberosHelper);
+  }
+
+  @Test
+  public void testProcessIdentitiesConcurrentlyFail() throws Exception {
+    KerberosHelper kerberosHelper = injector.getInstance(KerberosHelper.class);
+    expect(kerberosHelper.getKDCAdministratorCredentials(EasyMock.anyObject(String.class)))
+        .andReturn(new PrincipalKeyCredential("principal", "password"))
+        .anyTimes();
+
+    replay(kerberosHelper);
+
+    KerberosServerAction concurrentAction = createConcurrentAction(
+        Collections.newSetFromMap(new ConcurrentHashMap<KerberosOperationHandler, Boolean>()));
+
+    ConcurrentMap<String, Object> sharedMap = new ConcurrentHashMap<String, Object>();
+    sharedMap.put("FAIL", "true");
+
+    CommandReport report = concurrentAction.processIdentities(sharedMap);
+    Assert.assertNotNull(report);
+    Assert.assertEquals(HostRoleStatus.FAILED.toString(), report.getStatus());
+
+    verify(kerberosHelper);
+  }
+
+  private KerberosServerAction createConcurrentAction(final Set<KerberosOperationHandler> handlers) {
+    KerberosServerAction concurrentAction = new KerberosServerAction() {
+      @Override
+      protected boolean supportsConcurrentProcessing() {
+        return true;
+      }
+
+      @Override
+      protected int getIdentityProcessingConcurrency() {
+        return 4;
+      }
+
+      @Override
+      protected CommandReport processIdentity(Map<String, String> identityRecord, String evaluatedPrincipal,
+                                              KerberosOperationHandler operationHandler,
+                                              Map<String, String> kerberosConfiguration,
+                                              Map<String, Object> requestSharedDataContext)
+          throws AmbariException {
+        handlers.add(operationHandler);
+
+        if (requestSharedDataContext.get("FAIL") != null) {
+          return createCommandReport(1, HostRoleStatus.FAILED, "{}", "ERROR", "ERROR");
+        } else {
+          requestSharedDataContext.put(identityRecord.get(KerberosIdentityDataFileReader.PRINCIPAL), evaluatedPrincipal);
+          return null;
+        }
+      }
+
+      @Override
+      public CommandReport execute(ConcurrentMap<String, Object> requestSharedDataContext)
+          throws AmbariException, InterruptedException {
+        return processIdentities(requestSharedDataContext);
+      }
+    };
+
+    injector.injectMembers(concurrentAction);
+    concurrentAction.setExecutionCommand(mockExecutionCommand);
+    concurrentAction.setHostRoleCommand(mockHostRoleCommand);
+    return concurrentAction;
+  }
+}
@@ -26,7 +26,9 @@ import static org.easymock.EasyMock.newCapture;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
+import java.io.File;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -41,7 +43,9 @@ import org.easymock.IAnswer;
 import org.easymock.IMockBuilder;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -57,8 +61,13 @@ public class MITKerberosOperationHandlerTest extends KerberosOperationHandlerTes
 
   private static Injector injector;
 
+  private static Injector sessionInjector;
+
   private static Method methodExecuteCommand;
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private static final Map<String, String> KERBEROS_ENV_MAP = new HashMap<String, String>() {
     {
       put(MITKerberosOperationHandler.KERBEROS_ENV_ENCRYPTION_TYPES, null);
@@ -85,6 +94,23 @@ public class MITKerberosOperationHandlerTest extends KerberosOperationHandlerTes
       }
     });
 
+    sessionInjector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        Configuration configuration = EasyMock.createNiceMock(Configuration.class);
+        expect(configuration.getServerOsFamily()).andReturn("redhat6").anyTimes();
+        expect(configuration.getKerberosOperationRetryTimeout()).andReturn(1).anyTimes();
+        expect(configuration.isKerberosKadminSessionEnabled()).andReturn(true).anyTimes();
+        expect(configuration.getKerberosKadminSessions()).andReturn(1).anyTimes();
+        expect(configuration.getKerberosKadminSessionTimeout()).andReturn(5).anyTimes();
+        replay(configuration);
+
+        bind(Clusters.class).toInstance(EasyMock.createNiceMock(Clusters.class));
+        bind(Configuration.class).toInstance(configuration);
+        bind(OsFamily.class).toInstance(EasyMock.createNiceMock(OsFamily.class));
+      }
+    });
+
     methodExecuteCommand = KerberosOperationHandler.class.getDeclaredMethod(
         "executeCommand",
         String[].class,
@@ -554,6 +580,54 @@ public class MITKerberosOperationHandlerTest extends KerberosOperationHandlerTes
     handler.close();
   }
 
+  @Test
+  public void testKAdminSession() throws Exception {
+    MITKerberosOperationHandler handler = createMockBuilder(MITKerberosOperationHandler.class)
+        .addMockedMethod(methodExecuteCommand)
+        .createStrictMock();
+    sessionInjector.injectMembers(handler);
+
+    // No kadmin process is expected to be executed per query
+    replayAll();
+
+    handler.open(new PrincipalKeyCredential(DEFAULT_ADMIN_PRINCIPAL, DEFAULT_ADMIN_PASSWORD), DEFAULT_REALM, createFakeKAdminEnvironment());
+    Assert.assertFalse(handler.principalExists("user@EXAMPLE.COM"));
+    Assert.assertEquals(1, handler.createPrincipal("user@EXAMPLE.COM", "password", false).intValue());
+    Assert.assertTrue(handler.principalExists("user@EXAMPLE.COM"));
+    Assert.assertEquals(2, handler.setPrincipalPassword("user@EXAMPLE.COM", "new_password").intValue());
+    Assert.assertTrue(handler.removePrincipal("user@EXAMPLE.COM"));
+    Assert.assertFalse(handler.principalExists("user@EXAMPLE.COM"));
+    handler.close();
+
+    verifyAll();
+  }
+
+  @Test
+  public void testKAdminSessionFallback() throws Exception {
+    MITKerberosOperationHandler handler = createMockBuilder(MITKerberosOperationHandler.class)
+        .addMockedMethod(methodExecuteCommand)
+        .createStrictMock();
+    sessionInjector.injectMembers(handler);
+
+    ShellCommandUtil.Result result = createNiceMock(ShellCommandUtil.Result.class);
+    expect(result.isSuccessful()).andReturn(true).anyTimes();
+    expect(result.getStdout()).andReturn("Principal: user@EXAMPLE.COM").anyTimes();
+    expect(result.getStderr()).andReturn("").anyTimes();
+
+    // The session cannot authenticate, so the queries are executed with a new kadmin process each
+    expect(handler.executeCommand(anyObject(String[].class), EasyMock.<Map<String, String>>anyObject(), anyObject(MITKerberosOperationHandler.InteractivePasswordHandler.class)))
+        .andReturn(result).times(2);
+
+    replayAll();
+
+    handler.open(new PrincipalKeyCredential(DEFAULT_ADMIN_PRINCIPAL, "wrong"), DEFAULT_REALM, createFakeKAdminEnvironment());
+    Assert.assertTrue(handler.principalExists("user@EXAMPLE.COM"));
+    Assert.assertTrue(handler.principalExists("user@EXAMPLE.COM"));
+    handler.close();
+
+    verifyAll();
+  }
+
   @Test
   public void testInteractivePasswordHandler() {
     MITKerberosOperationHandler.InteractivePasswordHandler handler = new MITKerberosOperationHandler.InteractivePasswordHandler("admin_password", "user_password");
@@ -576,6 +650,20 @@ public class MITKerberosOperationHandlerTest extends KerberosOperationHandlerTes
     Assert.assertTrue(handler.done());
   }
 
+  /**
+   * Creates a kerberos-env map whose executable search path contains a kadmin that runs
+   * src/test/resources/fake_kadmin.sh
+   */
+  private Map<String, String> createFakeKAdminEnvironment() throws Exception {
+    File kadmin = new File(temporaryFolder.getRoot(), "kadmin");
+    Files.createSymbolicLink(kadmin.toPath(), new File(KAdminSessionTest.FAKE_KADMIN).toPath());
+
+    Map<String, String> kerberosEnvMap = new HashMap<String, String>(KERBEROS_ENV_MAP);
+    kerberosEnvMap.put(MITKerberosOperationHandler.KERBEROS_ENV_EXECUTABLE_SEARCH_PATHS, temporaryFolder.getRoot().getAbsolutePath());
+    kerberosEnvMap.remove(MITKerberosOperationHandler.KERBEROS_ENV_ADMIN_SERVER_HOST);
+    return kerberosEnvMap;
+  }
+
   private MITKerberosOperationHandler createMock(){
     return createMock(false);
   }
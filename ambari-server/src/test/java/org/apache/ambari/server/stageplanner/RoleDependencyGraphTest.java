@@ -0,0 +1,257 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.stageplanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.ambari.server.Role;
+import org.apache.ambari.server.RoleCommand;
+import org.apache.ambari.server.actionmanager.CommandExecutionType;
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.actionmanager.Stage;
+import org.apache.ambari.server.actionmanager.StageFactory;
+import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metadata.RoleCommandOrder;
+import org.apache.ambari.server.metadata.RoleCommandPair;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.state.StackId;
+import org.apache.ambari.server.state.StackInfo;
+import org.apache.ambari.server.state.cluster.ClusterImpl;
+import org.apache.ambari.server.state.svccomphost.ServiceComponentHostStartEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+
+/**
+ * Tests {@link RoleDependencyGraph} against the role command orders of the HDP
+ * stacks in {@code src/main/resources/stacks}.
+ */
+public class RoleDependencyGraphTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RoleDependencyGraphTest.class);
+
+  private static final String HOST = "c6401.ambari.apache.org";
+
+  private Injector injector;
+  private StageFactory stageFactory;
+  private RoleGraphFactory roleGraphFactory;
+
+  @Before
+  public void before() throws Exception {
+    // ensure that we use the real stacks
+    InMemoryDefaultTestModule testModule = new InMemoryDefaultTestModule();
+    testModule.getProperties().put(Configuration.METADATA_DIR_PATH.getKey(),
+        "src/main/resources/stacks");
+
+    injector = Guice.createInjector(testModule);
+    injector.getInstance(GuiceJpaInitializer.class);
+
+    stageFactory = injector.getInstance(StageFactory.class);
+    roleGraphFactory = injector.getInstance(RoleGraphFactory.class);
+  }
+
+  @After
+  public void teardown() {
+    injector.getInstance(PersistService.class).stop();
+  }
+
+  @Test
+  public void testCommandsWaitForTheirDependencies() throws Exception {
+    RoleCommandOrder rco = getRoleCommandOrder(new StackId("HDP-2.0.6"));
+
+    Stage stage = createStage(1);
+    addStart(stage, Role.ZOOKEEPER_SERVER);
+    addStart(stage, Role.NAMENODE);
+    addStart(stage, Role.HBASE_MASTER);
+
+    RoleDependencyGraph graph = new RoleDependencyGraph(stage, rco);
+    assertTrue(graph.getDependencies("HBASE_MASTER").contains("ZOOKEEPER_SERVER"));
+    assertTrue(graph.getDependencies("HBASE_MASTER").contains("NAMENODE"));
+
+    assertTrue(graph.areDependenciesFinished("ZOOKEEPER_SERVER"));
+    assertTrue(graph.areDependenciesFinished("NAMENODE"));
+    assertFalse(graph.areDependenciesFinished("HBASE_MASTER"));
+
+    stage.setHostRoleStatus(HOST, "ZOOKEEPER_SERVER", HostRoleStatus.COMPLETED);
+    graph.updateCounts(stage);
+    assertFalse(graph.areDependenciesFinished("HBASE_MASTER"));
+
+    // failed commands are finished as well, as in the stage based execution
+    stage.setHostRoleStatus(HOST, "NAMENODE", HostRoleStatus.FAILED);
+    graph.updateCounts(stage);
+    assertTrue(graph.areDependenciesFinished("HBASE_MASTER"));
+  }
+
+  /**
+   * Simulates starting every component of each HDP stack on a single host, and
+   * compares the time it takes when each stage waits for all commands of the
+   * previous stage with the time it takes when commands are scheduled as soon
+   * as their dependencies are finished.
+   */
+  @Test
+  public void testMakespanOfHdpStacks() throws Exception {
+    AmbariMetaInfo ambariMetaInfo = injector.getInstance(AmbariMetaInfo.class);
+
+    int stacks = 0;
+    for (StackInfo stackInfo : ambariMetaInfo.getStacks("HDP")) {
+      StackId stackId = new StackId(stackInfo);
+      RoleCommandOrder rco = getRoleCommandOrder(stackId);
+
+      Set<String> roles = new TreeSet<String>();
+      for (Map.Entry<RoleCommandPair, Set<RoleCommandPair>> entry : rco.getDependencies().entrySet()) {
+        if (entry.getKey().getCmd() == RoleCommand.START) {
+          roles.add(entry.getKey().getRole().toString());
+        }
+        for (RoleCommandPair blocker : entry.getValue()) {
+          if (blocker.getCmd() == RoleCommand.START) {
+            roles.add(blocker.getRole().toString());
+          }
+        }
+      }
+
+      if (roles.isEmpty()) {
+        continue;
+      }
+
+      Stage stage = createStage(1);
+      for (String role : roles) {
+        addStart(stage, Role.valueOf(role));
+      }
+
+      // stage based execution, each stage takes as long as its slowest command
+      RoleGraph rg = roleGraphFactory.createNew(rco);
+      rg.build(stage);
+      List<Stage> stages = rg.getStages();
+      int stageCount = stages.size();
+      long stageMakespan = 0;
+      for (Stage s : stages) {
+        long slowest = 0;
+        for (String role : s.getHostRoleCommands().get(HOST).keySet()) {
+          slowest = Math.max(slowest, getDuration(role));
+        }
+        stageMakespan += slowest;
+      }
+
+      // dependency ordered execution of a single stage
+      rg = roleGraphFactory.createNew(rco);
+      rg.setCommandExecutionType(CommandExecutionType.DEPENDENCY_ORDERED);
+      rg.build(stage);
+      stages = rg.getStages();
+      assertEquals(1, stages.size());
+      long dependencyOrderedMakespan = simulate(stages.get(0), rco);
+
+      LOG.info("{}: {} roles, {} stages, makespan {} (STAGE) vs {} (DEPENDENCY_ORDERED)", stackId,
+          roles.size(), stageCount, stageMakespan, dependencyOrderedMakespan);
+
+      assertTrue(stackId + " took longer with DEPENDENCY_ORDERED execution",
+          dependencyOrderedMakespan <= stageMakespan);
+
+      stacks++;
+    }
+
+    assertTrue(stacks > 0);
+  }
+
+  /**
+   * Runs the commands of the stage, scheduling each pending command once the
+   * graph reports its dependencies as finished.
+   *
+   * @return the time at which the last command finished
+   */
+  private long simulate(Stage stage, RoleCommandOrder rco) {
+    RoleDependencyGraph graph = new RoleDependencyGraph(stage, rco);
+    Map<String, Long> running = new HashMap<String, Long>();
+    Set<String> pending = new TreeSet<String>(stage.getHostRoleCommands().get(HOST).keySet());
+
+    long now = 0;
+    while (!pending.isEmpty() || !running.isEmpty()) {
+      graph.updateCounts(stage);
+      for (String role : new TreeSet<String>(pending)) {
+        if (graph.areDependenciesFinished(role)) {
+          stage.setHostRoleStatus(HOST, role, HostRoleStatus.IN_PROGRESS);
+          running.put(role, now + getDuration(role));
+          pending.remove(role);
+        }
+      }
+
+      assertFalse("No command could be scheduled", running.isEmpty());
+
+      now = Long.MAX_VALUE;
+      for (long finish : running.values()) {
+        now = Math.min(now, finish);
+      }
+
+      for (String role : new TreeSet<String>(running.keySet())) {
+        if (running.get(role) == now) {
+          stage.setHostRoleStatus(HOST, role, HostRoleStatus.COMPLETED);
+          running.remove(role);
+        }
+      }
+    }
+
+    return now;
+  }
+
+  /**
+   * Gets how long the command of a role takes in the simulation, between 1 and
+   * 5 units, derived from the name of the role so that runs are repeatable.
+   */
+  private static long getDuration(String role) {
+    return 1 + (role.length() % 5);
+  }
+
+  private RoleCommandOrder getRoleCommandOrder(StackId stackId) {
+    ClusterImpl cluster = mock(ClusterImpl.class);
+    when(cluster.getCurrentStackVersion()).thenReturn(stackId);
+
+    RoleCommandOrder rco = injector.getInstance(RoleCommandOrder.class);
+    rco.initialize(cluster);
+    return rco;
+  }
+
+  private Stage createStage(long stageId) {
+    Stage stage = stageFactory.createNew(1, "/tmp", "cluster1", 1L, "role dependency graph test",
+        "clusterHostInfo", "commandParamsStage", "hostParamsStage");
+    stage.setStageId(stageId);
+    return stage;
+  }
+
+  private void addStart(Stage stage, Role role) {
+    stage.addHostRoleExecutionCommand(HOST, role, RoleCommand.START,
+        new ServiceComponentHostStartEvent(role.toString(), HOST, System.currentTimeMillis()),
+        "cluster1", "SERVICE", false, false);
+  }
+}
@@ -25,6 +25,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -34,6 +35,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -146,6 +148,10 @@ public class UpgradeHelperTest {
     stackManagerMock = (StackManagerMock) ambariMetaInfo.getStackManager();
     m_upgradeHelper = injector.getInstance(UpgradeHelper.class);
     m_masterHostResolver = EasyMock.createMock(MasterHostResolver.class);
+    m_masterHostResolver.prefetch(EasyMock.<Map<String, Set<String>>>anyObject());
+    EasyMock.expectLastCall().anyTimes();
+    m_masterHostResolver.clearCache();
+    EasyMock.expectLastCall().anyTimes();
     m_managementController = injector.getInstance(AmbariManagementController.class);
 
     // Set the authenticated user
@@ -205,6 +211,8 @@ public class UpgradeHelperTest {
     List<UpgradeGroupHolder> groups = m_upgradeHelper.createSequence(upgrade, context);
 
     assertEquals(7, groups.size());
+    assertEquals(Arrays.asList(UpgradeContext.PLANNING_RESOLVE_HOSTS, UpgradeContext.PLANNING_BUILD_GROUPS),
+        new ArrayList<>(context.getPlanningTimes().keySet()));
 
     assertEquals("PRE_CLUSTER", groups.get(0).name);
     assertEquals("ZOOKEEPER", groups.get(1).name);
@@ -1662,6 +1670,87 @@ public class UpgradeHelperTest {
     assertTrue(ht.hosts.contains("h1"));
   }
 
+  /**
+   * Test that MasterHostResolver queries JMX only once per NameNode until its cache is cleared.
+   * @throws Exception
+   */
+  @Test
+  public void testResolverCachesUntilCleared() throws Exception {
+    Clusters clusters = injector.getInstance(Clusters.class);
+    ServiceFactory serviceFactory = injector.getInstance(ServiceFactory.class);
+
+    String clusterName = "c1";
+    String version = "2.1.1.0-1234";
+
+    StackId stackId = new StackId("HDP-2.1.1");
+    clusters.addCluster(clusterName, stackId);
+    Cluster c = clusters.getCluster(clusterName);
+
+    helper.getOrCreateRepositoryVersion(stackId,
+        c.getDesiredStackVersion().getStackVersion());
+
+    c.createClusterVersion(stackId,
+        c.getDesiredStackVersion().getStackVersion(), "admin",
+        RepositoryVersionState.INSTALLING);
+
+    for (int i = 0; i < 2; i++) {
+      String hostName = "h" + (i+1);
+      clusters.addHost(hostName);
+      Host host = clusters.getHost(hostName);
+
+      Map<String, String> hostAttributes = new HashMap<String, String>();
+      hostAttributes.put("os_family", "redhat");
+      hostAttributes.put("os_release_version", "6");
+
+      host.setHostAttributes(hostAttributes);
+
+      clusters.mapHostToCluster(hostName, clusterName);
+    }
+
+    c.addService(serviceFactory.createNew(c, "HDFS"));
+
+    Service s = c.getService("HDFS");
+    ServiceComponent sc = s.addServiceComponent("NAMENODE");
+    sc.addServiceComponentHost("h1");
+    sc.addServiceComponentHost("h2");
+
+    setConfigMocks();
+    expect(m_configHelper.getValueFromDesiredConfigurations(c, "hdfs-site", "dfs.internal.nameservices")).andReturn("ha").anyTimes();
+    expect(m_configHelper.getValueFromDesiredConfigurations(c, "hdfs-site", "dfs.ha.namenodes.ha")).andReturn("nn1,nn2").anyTimes();
+    expect(m_configHelper.getValueFromDesiredConfigurations(c, "hdfs-site", "dfs.http.policy")).andReturn("HTTP_ONLY").anyTimes();
+    expect(m_configHelper.getValueFromDesiredConfigurations(c, "hdfs-site", "dfs.namenode.http-address.ha.nn1")).andReturn("H1:50070").anyTimes();
+    expect(m_configHelper.getValueFromDesiredConfigurations(c, "hdfs-site", "dfs.namenode.http-address.ha.nn2")).andReturn("H2:50070").anyTimes();
+    replay(m_configHelper);
+
+    final AtomicInteger queries = new AtomicInteger();
+    MasterHostResolver mhr = new MockMasterHostResolver(m_configHelper, c, version) {
+      @Override
+      public String queryJmxBeanValue(String hostname, int port, String beanName, String attributeName,
+                                      boolean asQuery, boolean encrypted) {
+        queries.incrementAndGet();
+        return super.queryJmxBeanValue(hostname, port, beanName, attributeName, asQuery, encrypted);
+      }
+    };
+
+    mhr.prefetch(Collections.singletonMap("HDFS", Collections.singleton("NAMENODE")));
+
+    HostsType ht = mhr.getMasterAndHosts("HDFS", "NAMENODE");
+    assertEquals("h1", ht.master);
+    assertEquals("h2", ht.secondary);
+    assertEquals(2, queries.get());
+
+    // callers get their own copy
+    ht.hosts.clear();
+    ht = mhr.getMasterAndHosts("HDFS", "NAMENODE");
+    assertEquals(2, ht.hosts.size());
+    assertEquals(2, queries.get());
+
+    mhr.clearCache();
+    ht = mhr.getMasterAndHosts("HDFS", "NAMENODE");
+    assertEquals("h1", ht.master);
+    assertEquals(4, queries.get());
+  }
+
   @Test
   public void testResolverBadJmx() throws Exception {
     Clusters clusters = injector.getInstance(Clusters.class);
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Properties;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.junit.Test;
+
+/**
+ * Tests {@link WriteBehindStateFlusher}.
+ */
+public class WriteBehindStateFlusherTest {
+
+  @Test
+  public void testFlushWritesAllChangedStates() throws Exception {
+    WriteBehindStateFlusher flusher = createFlusher(true);
+    TestState[] states = new TestState[WriteBehindStateFlusher.BATCH_SIZE + 1];
+    for (int i = 0; i < states.length; i++) {
+      states[i] = new TestState();
+      states[i].change(flusher);
+    }
+    states[0].change(flusher);
+
+    assertEquals(states.length, flusher.flush());
+    assertEquals(0, flusher.getDirtyCount());
+    for (TestState state : states) {
+      assertEquals(state.version, state.persistedVersion);
+    }
+    assertEquals(1, states[0].writes);
+
+    assertEquals(0, flusher.flush());
+  }
+
+  @Test
+  public void testFlushDoesNothingWhenWritingThrough() throws Exception {
+    WriteBehindStateFlusher flusher = createFlusher(false);
+    TestState state = new TestState();
+    state.change(flusher);
+
+    assertEquals(0, flusher.flush());
+    assertEquals(0, state.writes);
+  }
+
+  private WriteBehindStateFlusher createFlusher(boolean enabled) {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.STATE_WRITE_BEHIND_ENABLED.getKey(), Boolean.toString(enabled));
+    return new WriteBehindStateFlusher(new Configuration(properties));
+  }
+
+  private static class TestState implements WriteBehindState {
+    private long version;
+    private long persistedVersion;
+    private int writes;
+
+    private void change(WriteBehindStateFlusher flusher) {
+      version++;
+      flusher.markDirty(this);
+    }
+
+    @Override
+    public long getStateVersion() {
+      return version;
+    }
+
+    @Override
+    public long getPersistedStateVersion() {
+      return persistedVersion;
+    }
+
+    @Override
+    public long writeState() {
+      writes++;
+      return version;
+    }
+
+    @Override
+    public void setPersistedStateVersion(long version) {
+      persistedVersion = version;
+    }
+  }
+}
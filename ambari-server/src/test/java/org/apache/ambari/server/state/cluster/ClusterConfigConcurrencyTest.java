@@ -0,0 +1,290 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.cluster;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.listeners.upgrade.HostVersionOutOfSyncListener;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.orm.OrmTestHelper;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.Config;
+import org.apache.ambari.server.state.ConfigFactory;
+import org.apache.ambari.server.state.DesiredConfig;
+import org.apache.ambari.server.state.RepositoryVersionState;
+import org.apache.ambari.server.state.ServiceComponentHostEvent;
+import org.apache.ambari.server.state.ServiceFactory;
+import org.apache.ambari.server.state.StackId;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Sets;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.persist.PersistService;
+import com.google.inject.util.Modules;
+
+/**
+ * Tests that writing the desired configurations of a cluster does not block
+ * the reads of its configurations and services, nor the processing of host
+ * component events.
+ */
+public class ClusterConfigConcurrencyTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ClusterConfigConcurrencyTest.class);
+
+  private static final int NUMBER_OF_CONFIG_WRITES = 50;
+  private static final int NUMBER_OF_READERS = 4;
+
+  @Inject
+  private Injector injector;
+
+  @Inject
+  private Clusters clusters;
+
+  @Inject
+  private ServiceFactory serviceFactory;
+
+  @Inject
+  private ConfigFactory configFactory;
+
+  @Inject
+  private OrmTestHelper helper;
+
+  private StackId stackId = new StackId("HDP-0.1");
+
+  private Cluster cluster;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setup() throws Exception {
+    InMemoryDefaultTestModule testModule = new InMemoryDefaultTestModule();
+    testModule.getProperties().put(Configuration.SERVER_LOCKS_PROFILING.getKey(), "true");
+
+    injector = Guice.createInjector(Modules.override(testModule).with(new MockModule()));
+    injector.getInstance(GuiceJpaInitializer.class);
+    injector.injectMembers(this);
+
+    clusters.addCluster("c1", stackId);
+    cluster = clusters.getCluster("c1");
+    helper.getOrCreateRepositoryVersion(stackId, stackId.getStackVersion());
+    cluster.createClusterVersion(stackId, stackId.getStackVersion(), "admin",
+        RepositoryVersionState.INSTALLING);
+
+    cluster.addService(serviceFactory.createNew(cluster, "HDFS"));
+
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void teardown() {
+    executor.shutdownNow();
+    injector.getInstance(PersistService.class).stop();
+  }
+
+  /**
+   * Tests that the configurations, the services and the processing of events
+   * are available while a desired configuration is being written, and that the
+   * desired configurations are not.
+   */
+  @Test
+  public void testReadsDuringConfigWrite() throws Exception {
+    final Config config = createConfig("hdfs-site", "version1");
+
+    // a configuration which stops the write after the lock has been taken
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicBoolean blocked = new AtomicBoolean();
+    Config blockingConfig = mock(Config.class);
+    when(blockingConfig.getType()).thenAnswer(new Answer<String>() {
+      @Override
+      public String answer(InvocationOnMock invocation) throws Throwable {
+        if (blocked.compareAndSet(false, true)) {
+          writing.countDown();
+          release.await();
+        }
+        return config.getType();
+      }
+    });
+    when(blockingConfig.getTag()).thenReturn(config.getTag());
+
+    final Config desiredConfig = blockingConfig;
+    Future<?> write = executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        cluster.addDesiredConfig("admin", Sets.newHashSet(desiredConfig));
+        return null;
+      }
+    });
+
+    Assert.assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+    Future<Boolean> reads = executor.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        Assert.assertNotNull(cluster.getConfigsByType("hdfs-site"));
+        Assert.assertNotNull(cluster.getConfig("hdfs-site", "version1"));
+        Assert.assertFalse(cluster.getAllConfigs().isEmpty());
+        Assert.assertTrue(cluster.getServices().containsKey("HDFS"));
+        Assert.assertTrue(cluster.processServiceComponentHostEvents(
+            ArrayListMultimap.<String, ServiceComponentHostEvent>create()).isEmpty());
+        return cluster.canBeRemoved();
+      }
+    });
+
+    Future<Map<String, DesiredConfig>> desiredConfigs = executor.submit(
+        new Callable<Map<String, DesiredConfig>>() {
+          @Override
+          public Map<String, DesiredConfig> call() throws Exception {
+            return new HashMap<>(cluster.getDesiredConfigs());
+          }
+        });
+
+    Assert.assertTrue(reads.get(10, TimeUnit.SECONDS));
+
+    try {
+      desiredConfigs.get(500, TimeUnit.MILLISECONDS);
+      Assert.fail("The desired configurations should be read after the write");
+    } catch (TimeoutException expected) {
+    }
+
+    release.countDown();
+    write.get(10, TimeUnit.SECONDS);
+
+    Assert.assertEquals("version1", desiredConfigs.get(10, TimeUnit.SECONDS).get("hdfs-site").getTag());
+  }
+
+  /**
+   * Measures how long it takes to read the configurations and services of the
+   * cluster and to process host component events while configurations are
+   * written continuously.
+   */
+  @Test
+  public void testReadLatencyDuringConfigWrites() throws Exception {
+    final AtomicBoolean done = new AtomicBoolean();
+    Future<Long> write = executor.submit(new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        long start = System.nanoTime();
+        try {
+          for (int i = 0; i < NUMBER_OF_CONFIG_WRITES; i++) {
+            Config config = createConfig("hdfs-site", "version" + i);
+            cluster.addDesiredConfig("admin", Collections.singleton(config));
+          }
+        } finally {
+          done.set(true);
+        }
+        return System.nanoTime() - start;
+      }
+    });
+
+    List<Future<long[]>> readers = new ArrayList<>();
+    for (int i = 0; i < NUMBER_OF_READERS; i++) {
+      readers.add(executor.submit(new Callable<long[]>() {
+        @Override
+        public long[] call() throws Exception {
+          long count = 0;
+          long total = 0;
+          long max = 0;
+          while (!done.get()) {
+            long start = System.nanoTime();
+            cluster.getConfigsByType("hdfs-site");
+            cluster.getServices();
+            cluster.processServiceComponentHostEvents(
+                ArrayListMultimap.<String, ServiceComponentHostEvent>create());
+            long elapsed = System.nanoTime() - start;
+
+            count++;
+            total += elapsed;
+            max = Math.max(max, elapsed);
+          }
+          return new long[] { count, total, max };
+        }
+      }));
+    }
+
+    long writeTime = write.get(300, TimeUnit.SECONDS);
+
+    long count = 0;
+    long total = 0;
+    long max = 0;
+    for (Future<long[]> reader : readers) {
+      long[] result = reader.get(10, TimeUnit.SECONDS);
+      count += result[0];
+      total += result[1];
+      max = Math.max(max, result[2]);
+    }
+
+    Assert.assertTrue(count > 0);
+    Assert.assertEquals("version" + (NUMBER_OF_CONFIG_WRITES - 1),
+        cluster.getDesiredConfigByType("hdfs-site").getTag());
+
+    StringBuilder sb = new StringBuilder();
+    cluster.debugDump(sb);
+
+    LOG.info("Wrote {} configurations in {} ms while {} readers read {} times, "
+        + "average read {} us, longest read {} us. {}", NUMBER_OF_CONFIG_WRITES,
+        TimeUnit.NANOSECONDS.toMillis(writeTime), NUMBER_OF_READERS, count,
+        TimeUnit.NANOSECONDS.toMicros(total / count), TimeUnit.NANOSECONDS.toMicros(max), sb);
+  }
+
+  private Config createConfig(String type, String tag) {
+    Map<String, String> properties = new HashMap<String, String>();
+    properties.put("dfs.replication", tag);
+    return configFactory.createNew(cluster, type, tag, properties,
+        new HashMap<String, Map<String, String>>());
+  }
+
+  private class MockModule implements Module {
+    @Override
+    public void configure(Binder binder) {
+      binder.bind(HostVersionOutOfSyncListener.class).toInstance(
+          EasyMock.createNiceMock(HostVersionOutOfSyncListener.class));
+    }
+  }
+}
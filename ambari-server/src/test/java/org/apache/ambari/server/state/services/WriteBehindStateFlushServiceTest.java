@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.state.WriteBehindState;
+import org.apache.ambari.server.state.WriteBehindStateFlusher;
+import org.apache.ambari.server.state.stack.OsFamily;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Tests {@link WriteBehindStateFlushService}.
+ */
+public class WriteBehindStateFlushServiceTest {
+
+  private WriteBehindStateFlushService m_service;
+
+  @After
+  public void teardown() throws Exception {
+    if (m_service != null && m_service.isRunning()) {
+      m_service.stopAsync().awaitTerminated(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testStopWritesDirtyStates() throws Exception {
+    WriteBehindStateFlusher flusher = createService(true);
+    m_service.startAsync().awaitRunning(10, TimeUnit.SECONDS);
+    assertNotNull(m_service.getShutdownHook());
+
+    TestState state = new TestState();
+    state.change(flusher);
+
+    m_service.stopAsync().awaitTerminated(10, TimeUnit.SECONDS);
+    assertEquals(1L, state.persistedVersion);
+    assertEquals(0, flusher.getDirtyCount());
+  }
+
+  @Test
+  public void testShutdownHookWritesDirtyStates() throws Exception {
+    WriteBehindStateFlusher flusher = createService(true);
+    m_service.startAsync().awaitRunning(10, TimeUnit.SECONDS);
+
+    TestState state = new TestState();
+    state.change(flusher);
+
+    // the server does not stop the services, the hook runs on the JVM shutdown
+    m_service.getShutdownHook().run();
+    assertEquals(1L, state.persistedVersion);
+    assertEquals(0, flusher.getDirtyCount());
+
+    m_service.awaitTerminated(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testServiceIsDisabled() throws Exception {
+    createService(false);
+    m_service.startAsync();
+    m_service.awaitTerminated(10, TimeUnit.SECONDS);
+
+    assertEquals(Service.State.TERMINATED, m_service.state());
+    assertFalse(m_service.isRunning());
+    assertNull(m_service.getShutdownHook());
+  }
+
+  private WriteBehindStateFlusher createService(boolean enabled) {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.STATE_WRITE_BEHIND_ENABLED.getKey(), Boolean.toString(enabled));
+    properties.setProperty(Configuration.STATE_WRITE_BEHIND_FLUSH_INTERVAL.getKey(), "3600");
+    final Configuration configuration = new Configuration(properties);
+    final WriteBehindStateFlusher flusher = new WriteBehindStateFlusher(configuration);
+
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Configuration.class).toInstance(configuration);
+        bind(WriteBehindStateFlusher.class).toInstance(flusher);
+        bind(OsFamily.class).toInstance(EasyMock.createNiceMock(OsFamily.class));
+      }
+    });
+    m_service = new WriteBehindStateFlushService();
+    injector.injectMembers(m_service);
+    return flusher;
+  }
+
+  private static class TestState implements WriteBehindState {
+    private long version;
+    private long persistedVersion;
+
+    private void change(WriteBehindStateFlusher flusher) {
+      version++;
+      flusher.markDirty(this);
+    }
+
+    @Override
+    public long getStateVersion() {
+      return version;
+    }
+
+    @Override
+    public long getPersistedStateVersion() {
+      return persistedVersion;
+    }
+
+    @Override
+    public long writeState() {
+      return version;
+    }
+
+    @Override
+    public void setPersistedStateVersion(long version) {
+      persistedVersion = version;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.topology;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.dao.TopologyHostRequestDAO;
+import org.apache.ambari.server.orm.dao.TopologyLogicalTaskDAO;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
+import org.apache.ambari.server.orm.entities.TopologyHostRequestEntity;
+import org.apache.ambari.server.orm.entities.TopologyLogicalTaskEntity;
+import org.easymock.EasyMock;
+import org.easymock.EasyMockRule;
+import org.easymock.EasyMockSupport;
+import org.easymock.IAnswer;
+import org.easymock.Mock;
+import org.easymock.MockType;
+import org.easymock.TestSubject;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class PersistedStateImplTest extends EasyMockSupport {
+
+  private static final int HOST_COUNT = 2000;
+  private static final int TASKS_PER_HOST = 10;
+
+  @Rule
+  public EasyMockRule mocks = new EasyMockRule(this);
+
+  @Mock(type = MockType.NICE)
+  private TopologyLogicalTaskDAO topologyLogicalTaskDAO;
+
+  @Mock(type = MockType.NICE)
+  private TopologyHostRequestDAO hostRequestDAO;
+
+  @Mock(type = MockType.NICE)
+  private HostRoleCommandDAO physicalTaskDAO;
+
+  @TestSubject
+  private PersistedStateImpl persistedState = new PersistedStateImpl();
+
+  private final Map<Long, TopologyLogicalTaskEntity> logicalTasks = new HashMap<Long, TopologyLogicalTaskEntity>();
+  private final Map<Long, TopologyHostRequestEntity> hostRequests = new HashMap<Long, TopologyHostRequestEntity>();
+  private final AtomicInteger lookups = new AtomicInteger();
+
+  @After
+  public void tearDown() throws Exception {
+    persistedState.stop();
+  }
+
+  @Test
+  public void testRegistrationsWrittenInBatches() throws Exception {
+    expectLookups();
+    replayAll();
+
+    // a provisioning request of 2,000 hosts with 10 logical tasks each
+    long start = System.currentTimeMillis();
+    for (long hostRequestId = 0; hostRequestId < HOST_COUNT; hostRequestId++) {
+      persistedState.registerHostName(hostRequestId, "host" + hostRequestId);
+      for (long task = 0; task < TASKS_PER_HOST; task++) {
+        long logicalTaskId = hostRequestId * TASKS_PER_HOST + task;
+        persistedState.registerPhysicalTask(logicalTaskId, logicalTaskId + 100000);
+      }
+    }
+    persistedState.flush();
+    long duration = System.currentTimeMillis() - start;
+
+    // registering a host name twice keeps the first one
+    persistedState.registerHostName(0, "other");
+    persistedState.flush();
+
+    assertEquals(HOST_COUNT * TASKS_PER_HOST, logicalTasks.size());
+    for (TopologyLogicalTaskEntity entity : logicalTasks.values()) {
+      assertEquals(Long.valueOf(entity.getId() + 100000), entity.getPhysicalTaskId());
+    }
+    assertEquals(HOST_COUNT, hostRequests.size());
+    for (TopologyHostRequestEntity entity : hostRequests.values()) {
+      assertEquals("host" + entity.getId(), entity.getHostName());
+    }
+
+    // one lookup of each kind per batch rather than per registration
+    int registrations = HOST_COUNT * TASKS_PER_HOST + HOST_COUNT;
+    assertTrue("Unexpected number of lookups: " + lookups.get() + " in " + duration + " ms",
+        lookups.get() <= 3 * (registrations / PersistedStateImpl.FLUSH_BATCH_SIZE + 2));
+
+    verifyAll();
+  }
+
+  @Test
+  public void testFailedFlushIsRetried() throws Exception {
+    expect(topologyLogicalTaskDAO.findByIds(EasyMock.<Collection<Long>>anyObject()))
+        .andThrow(new RuntimeException("Database unavailable")).once();
+    expectLookups();
+    replayAll();
+
+    persistedState.registerPhysicalTask(1L, 101L);
+
+    try {
+      persistedState.flush();
+      fail("Expected the write to fail");
+    } catch (RuntimeException e) {
+      // expected
+    }
+    assertTrue(logicalTasks.isEmpty());
+
+    // the failed registration is written again, but not over a newer one
+    persistedState.registerPhysicalTask(2L, 102L);
+    persistedState.flush();
+
+    assertEquals(Long.valueOf(101L), logicalTasks.get(1L).getPhysicalTaskId());
+    assertEquals(Long.valueOf(102L), logicalTasks.get(2L).getPhysicalTaskId());
+
+    // nothing is left to write
+    int lookupCount = lookups.get();
+    persistedState.flush();
+    assertEquals(lookupCount, lookups.get());
+
+    verifyAll();
+  }
+
+  @Test
+  public void testStopWritesStagedRegistrations() throws Exception {
+    expectLookups();
+    replayAll();
+
+    persistedState.registerPhysicalTask(1L, 101L);
+    persistedState.registerHostName(1L, "host1");
+    assertTrue(logicalTasks.isEmpty());
+
+    persistedState.stop();
+    assertEquals(Long.valueOf(101L), logicalTasks.get(1L).getPhysicalTaskId());
+    assertEquals("host1", hostRequests.get(1L).getHostName());
+
+    // written right away once stopped
+    persistedState.registerPhysicalTask(2L, 102L);
+    assertEquals(Long.valueOf(102L), logicalTasks.get(2L).getPhysicalTaskId());
+
+    verifyAll();
+  }
+
+  private void expectLookups() {
+    expect(topologyLogicalTaskDAO.findByIds(EasyMock.<Collection<Long>>anyObject())).andAnswer(
+        new IAnswer<List<TopologyLogicalTaskEntity>>() {
+          @Override
+          public List<TopologyLogicalTaskEntity> answer() throws Throwable {
+            lookups.incrementAndGet();
+            List<TopologyLogicalTaskEntity> entities = new ArrayList<TopologyLogicalTaskEntity>();
+            for (Long id : (Collection<Long>) EasyMock.getCurrentArguments()[0]) {
+              synchronized (logicalTasks) {
+                TopologyLogicalTaskEntity entity = logicalTasks.get(id);
+                if (entity == null) {
+                  entity = new TopologyLogicalTaskEntity();
+                  entity.setId(id);
+                  logicalTasks.put(id, entity);
+                }
+                entities.add(entity);
+              }
+            }
+            return entities;
+          }
+        }).anyTimes();
+
+    expect(hostRequestDAO.findByIds(EasyMock.<Collection<Long>>anyObject())).andAnswer(
+        new IAnswer<List<TopologyHostRequestEntity>>() {
+          @Override
+          public List<TopologyHostRequestEntity> answer() throws Throwable {
+            lookups.incrementAndGet();
+            List<TopologyHostRequestEntity> entities = new ArrayList<TopologyHostRequestEntity>();
+            for (Long id : (Collection<Long>) EasyMock.getCurrentArguments()[0]) {
+              synchronized (hostRequests) {
+                TopologyHostRequestEntity entity = hostRequests.get(id);
+                if (entity == null) {
+                  entity = new TopologyHostRequestEntity();
+                  entity.setId(id);
+                  hostRequests.put(id, entity);
+                }
+                entities.add(entity);
+              }
+            }
+            return entities;
+          }
+        }).anyTimes();
+
+    expect(physicalTaskDAO.findByPKs(EasyMock.<Collection<Long>>anyObject())).andAnswer(
+        new IAnswer<List<HostRoleCommandEntity>>() {
+          @Override
+          public List<HostRoleCommandEntity> answer() throws Throwable {
+            lookups.incrementAndGet();
+            List<HostRoleCommandEntity> entities = new ArrayList<HostRoleCommandEntity>();
+            for (Long id : (Collection<Long>) EasyMock.getCurrentArguments()[0]) {
+              HostRoleCommandEntity entity = new HostRoleCommandEntity();
+              entity.setTaskId(id);
+              entities.add(entity);
+            }
+            return entities;
+          }
+        }).anyTimes();
+
+    expect(topologyLogicalTaskDAO.merge(anyObject(TopologyLogicalTaskEntity.class))).andReturn(null).anyTimes();
+    expect(hostRequestDAO.merge(anyObject(TopologyHostRequestEntity.class))).andReturn(null).anyTimes();
+  }
+}
@@ -41,7 +41,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
@@ -60,10 +63,12 @@ import org.apache.ambari.server.events.RequestFinishedEvent;
 import org.apache.ambari.server.security.encryption.CredentialStoreService;
 import org.apache.ambari.server.stack.NoSuchStackException;
 import org.apache.ambari.server.state.SecurityType;
+import org.apache.ambari.server.state.host.HostImpl;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.easymock.EasyMockRule;
 import org.easymock.EasyMockSupport;
+import org.easymock.IAnswer;
 import org.easymock.Mock;
 import org.easymock.MockType;
 import org.easymock.TestSubject;
@@ -484,6 +489,114 @@ public class TopologyManagerTest {
             mockFuture, requestStatusResponse, logicalRequest);
   }
 
+  @Test
+  public void testOnHostRegistered__concurrentHosts() throws Exception {
+    final int requestedHosts = 1000;
+    final int registeringHosts = 2000;
+
+    // the request accepts the first hosts offered to it, and declines all others once done
+    final AtomicInteger offers = new AtomicInteger();
+    expect(logicalRequest.offer(anyObject(HostImpl.class))).andAnswer(new IAnswer<HostOfferResponse>() {
+      @Override
+      public HostOfferResponse answer() throws Throwable {
+        int offer = offers.incrementAndGet();
+        return offer <= requestedHosts ?
+            HostOfferResponse.createAcceptedResponse(offer, "group2", Collections.<TopologyTask>emptyList()) :
+            HostOfferResponse.DECLINED_DUE_TO_DONE;
+      }
+    }).anyTimes();
+    expect(persistedState.getAllRequests()).andReturn(Collections.<ClusterTopology,
+        List<LogicalRequest>>emptyMap()).anyTimes();
+    replayAll();
+
+    topologyManager.provisionCluster(request);
+
+    final List<HostImpl> hosts = new ArrayList<HostImpl>();
+    for (int i = 0; i < registeringHosts; i++) {
+      HostImpl host = EasyMock.createNiceMock(HostImpl.class);
+      expect(host.getHostName()).andReturn("worker" + i).anyTimes();
+      expect(host.getHostId()).andReturn((long) i).anyTimes();
+      replay(host);
+      hosts.add(host);
+    }
+
+    ExecutorService registrationExecutor = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<?>> registrations = new ArrayList<Future<?>>();
+      for (final HostImpl host : hosts) {
+        registrations.add(registrationExecutor.submit(new Runnable() {
+          @Override
+          public void run() {
+            topologyManager.onHostRegistered(host, false);
+          }
+        }));
+      }
+      for (Future<?> registration : registrations) {
+        registration.get();
+      }
+    } finally {
+      registrationExecutor.shutdownNow();
+    }
+
+    // each host was either accepted by the request, or is available for later requests
+    Assert.assertEquals(requestedHosts, group2Info.getHostNames().size());
+
+    Field availableHostsField = TopologyManager.class.getDeclaredField("availableHosts");
+    availableHostsField.setAccessible(true);
+    Map<?, ?> availableHosts = (Map<?, ?>) availableHostsField.get(topologyManager);
+    Assert.assertEquals(registeringHosts - requestedHosts, availableHosts.size());
+    for (String hostName : group2Info.getHostNames()) {
+      Assert.assertFalse(availableHosts.containsKey(hostName));
+    }
+  }
+
+  @Test
+  public void testProcessRequest__declinedHostOfferedToRequestAddedMeanwhile() throws Exception {
+    final LogicalRequest otherRequest = EasyMock.createMock(LogicalRequest.class);
+    expect(otherRequest.getRequestId()).andReturn(2L).anyTimes();
+    expect(otherRequest.getClusterId()).andReturn(CLUSTER_ID).anyTimes();
+    expect(otherRequest.offer(anyObject(HostImpl.class))).andReturn(
+        HostOfferResponse.createAcceptedResponse(1L, "group2", Collections.<TopologyTask>emptyList())).once();
+    replay(otherRequest);
+
+    // while the host is claimed by the request, another request is added which doesn't see the host
+    expect(logicalRequest.offer(anyObject(HostImpl.class))).andAnswer(new IAnswer<HostOfferResponse>() {
+      @Override
+      public HostOfferResponse answer() throws Throwable {
+        addOutstandingRequest(otherRequest);
+        return HostOfferResponse.DECLINED_DUE_TO_PREDICATE;
+      }
+    }).once();
+    expect(logicalRequest.offer(anyObject(HostImpl.class))).andReturn(HostOfferResponse.DECLINED_DUE_TO_PREDICATE).anyTimes();
+    expect(persistedState.getAllRequests()).andReturn(Collections.<ClusterTopology,
+        List<LogicalRequest>>emptyMap()).anyTimes();
+    replayAll();
+
+    HostImpl host = EasyMock.createNiceMock(HostImpl.class);
+    expect(host.getHostName()).andReturn("worker0").anyTimes();
+    replay(host);
+    topologyManager.onHostRegistered(host, false);
+
+    topologyManager.provisionCluster(request);
+
+    verify(otherRequest);
+    Assert.assertTrue(group2Info.getHostNames().contains("worker0"));
+    Field availableHostsField = TopologyManager.class.getDeclaredField("availableHosts");
+    availableHostsField.setAccessible(true);
+    Assert.assertFalse(((Map<?, ?>) availableHostsField.get(topologyManager)).containsKey("worker0"));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void addOutstandingRequest(LogicalRequest logicalRequest) throws Exception {
+    Field outstandingRequestsField = TopologyManager.class.getDeclaredField("outstandingRequests");
+    outstandingRequestsField.setAccessible(true);
+    ((Collection<LogicalRequest>) outstandingRequestsField.get(topologyManager)).add(logicalRequest);
+
+    Field versionField = TopologyManager.class.getDeclaredField("outstandingRequestsVersion");
+    versionField.setAccessible(true);
+    ((AtomicLong) versionField.get(topologyManager)).incrementAndGet();
+  }
+
   @Test(expected = InvalidTopologyException.class)
   public void testScaleHosts__alreadyExistingHost() throws InvalidTopologyTemplateException, InvalidTopologyException, AmbariException, NoSuchStackException {
     HashSet<Map<String, Object>> propertySet = new HashSet<>();
@@ -18,6 +18,7 @@
 
 package org.apache.ambari.server.view.configuration;
 
+import java.util.Arrays;
 import java.util.List;
 
 import javax.xml.bind.JAXBException;
@@ -41,6 +42,8 @@ public class EntityConfigTest {
       "      <entity>\n" +
       "        <class>org.apache.ambari.server.view.TestEntity1</class>\n" +
       "        <id-property>id</id-property>\n" +
+      "        <index-property>name</index-property>\n" +
+      "        <index-property>owner</index-property>\n" +
       "      </entity>\n" +
       "      <entity>\n" +
       "        <class>org.apache.ambari.server.view.TestEntity2</class>\n" +
@@ -70,6 +73,16 @@ public class EntityConfigTest {
     Assert.assertEquals("name", entities.get(1).getIdProperty());
   }
 
+  @Test
+  public void testGetIndexProperties() throws Exception {
+    List<EntityConfig> entities = getEntityConfigs();
+
+    Assert.assertEquals(2, entities.size());
+
+    Assert.assertEquals(Arrays.asList("name", "owner"), entities.get(0).getIndexProperties());
+    Assert.assertTrue(entities.get(1).getIndexProperties().isEmpty());
+  }
+
   public static List<EntityConfig> getEntityConfigs() throws JAXBException {
     ViewConfig config = ViewConfigTest.getConfig(xml);
 
@@ -26,9 +26,14 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -60,6 +65,7 @@ import org.eclipse.persistence.sequencing.Sequence;
 import org.eclipse.persistence.sessions.DatabaseLogin;
 import org.eclipse.persistence.sessions.DatabaseSession;
 import org.eclipse.persistence.sessions.server.ServerSession;
+import org.eclipse.persistence.tools.schemaframework.IndexDefinition;
 import org.eclipse.persistence.tools.schemaframework.SchemaManager;
 import org.junit.Assert;
 import org.junit.Test;
@@ -98,6 +104,27 @@ public class DataStoreImplTest {
     "    </persistence>" +
     "</view>";
 
+  private final static String xml_index = "<view>\n" +
+    "    <name>MY_VIEW</name>\n" +
+    "    <label>My View!</label>\n" +
+    "    <version>1.0.0</version>\n" +
+    "    <instance>\n" +
+    "        <name>INSTANCE1</name>\n" +
+    "    </instance>\n" +
+    "    <persistence>\n" +
+    "      <entity>\n" +
+    "        <class>org.apache.ambari.server.view.persistence.DataStoreImplTest$TestEntity</class>\n" +
+    "        <id-property>id</id-property>\n" +
+    "        <index-property>name</index-property>\n" +
+    "        <index-property>subEntity</index-property>\n" +
+    "      </entity>\n" +
+    "      <entity>\n" +
+    "        <class>org.apache.ambari.server.view.persistence.DataStoreImplTest$TestSubEntity</class>\n" +
+    "        <id-property>id</id-property>\n" +
+    "      </entity>\n" +
+    "    </persistence>" +
+    "</view>";
+
   @Test
   public void testStore_create() throws Exception {
     DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
@@ -663,11 +690,235 @@ public class DataStoreImplTest {
       dynamicEntity1, dynamicEntity2, dynamicEntity3, query, schemaManager, jpaEntityManager, session, databaseLogin);
   }
 
+  @Test
+  public void testFindAll_paged() throws Exception {
+    DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
+
+    // create mocks
+    JpaEntityManager jpaEntityManager = createMock(JpaEntityManager.class);
+    ServerSession session = createMock(ServerSession.class);
+    DatabaseLogin databaseLogin = createMock(DatabaseLogin.class);
+    EntityManagerFactory entityManagerFactory = createMock(EntityManagerFactory.class);
+    EntityManager entityManager = createMock(EntityManager.class);
+    JPADynamicHelper jpaDynamicHelper = createNiceMock(JPADynamicHelper.class);
+    SchemaManager schemaManager = createNiceMock(SchemaManager.class);
+    DynamicEntity dynamicEntity1 = createMock(DynamicEntity.class);
+    DynamicEntity dynamicEntity2 = createMock(DynamicEntity.class);
+    Query query = createMock(Query.class);
+
+    // set expectations
+    PowerMock.mockStatic(JpaHelper.class);
+    expect(JpaHelper.getEntityManager(entityManager)).andReturn(jpaEntityManager).anyTimes();
+    PowerMock.replay(JpaHelper.class);
+    expect(jpaEntityManager.getServerSession()).andReturn(session).anyTimes();
+    expect(session.getLogin()).andReturn(databaseLogin).anyTimes();
+    Capture<Sequence> sequenceCapture = EasyMock.newCapture();
+    databaseLogin.addSequence(capture(sequenceCapture));
+    EasyMock.expectLastCall().anyTimes();
+    Capture<DynamicType> typeCapture = EasyMock.newCapture();
+    Capture<DynamicType> typeCapture2 = EasyMock.newCapture();
+    jpaDynamicHelper.addTypes(eq(true), eq(true), capture(typeCapture), capture(typeCapture2));
+
+    expect(entityManagerFactory.createEntityManager()).andReturn(entityManager).anyTimes();
+    expect(entityManager.createQuery(
+      "SELECT e FROM DS_DataStoreImplTest$TestEntity_1 e WHERE e.DS_name='foo' ORDER BY e.DS_id DESC")).andReturn(query);
+    entityManager.close();
+
+    expect(query.setFirstResult(10)).andReturn(query);
+    expect(query.setMaxResults(2)).andReturn(query);
+    expect(query.getResultList()).andReturn(Arrays.asList(dynamicEntity1, dynamicEntity2));
+
+    expect(dynamicEntity1.get("DS_id")).andReturn(100);
+    expect(dynamicEntity1.get("DS_name")).andReturn("foo");
+    expect(dynamicEntity1.get("DS_subEntity")).andReturn(null);
+
+    expect(dynamicEntity2.get("DS_id")).andReturn(99);
+    expect(dynamicEntity2.get("DS_name")).andReturn("foo");
+    expect(dynamicEntity2.get("DS_subEntity")).andReturn(null);
+
+    // replay mocks
+    replay(entityManagerFactory, entityManager, jpaDynamicHelper,
+      dynamicEntity1, dynamicEntity2, query, schemaManager, jpaEntityManager, session, databaseLogin);
+
+    DataStoreImpl dataStore = getDataStore(entityManagerFactory, jpaDynamicHelper, classLoader, schemaManager);
+
+    List<TestEntity> entities = dataStore.findAll(TestEntity.class, "name='foo'", "id DESC", 10, 2);
+
+    Assert.assertEquals(2, entities.size());
+    Assert.assertEquals(100, (int) entities.get(0).getId());
+    Assert.assertEquals(99, (int) entities.get(1).getId());
+
+    // verify mocks
+    verify(entityManagerFactory, entityManager, jpaDynamicHelper,
+      dynamicEntity1, dynamicEntity2, query, schemaManager, jpaEntityManager, session, databaseLogin);
+  }
+
+  @Test
+  public void testIterate() throws Exception {
+    DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
+
+    // create mocks
+    JpaEntityManager jpaEntityManager = createMock(JpaEntityManager.class);
+    ServerSession session = createMock(ServerSession.class);
+    DatabaseLogin databaseLogin = createMock(DatabaseLogin.class);
+    EntityManagerFactory entityManagerFactory = createMock(EntityManagerFactory.class);
+    EntityManager entityManager = createMock(EntityManager.class);
+    JPADynamicHelper jpaDynamicHelper = createNiceMock(JPADynamicHelper.class);
+    SchemaManager schemaManager = createNiceMock(SchemaManager.class);
+    DynamicEntity dynamicEntity1 = createMock(DynamicEntity.class);
+    DynamicEntity dynamicEntity2 = createMock(DynamicEntity.class);
+    DynamicEntity dynamicEntity3 = createMock(DynamicEntity.class);
+    Query query1 = createMock(Query.class);
+    Query query2 = createMock(Query.class);
+
+    // set expectations
+    PowerMock.mockStatic(JpaHelper.class);
+    expect(JpaHelper.getEntityManager(entityManager)).andReturn(jpaEntityManager).anyTimes();
+    PowerMock.replay(JpaHelper.class);
+    expect(jpaEntityManager.getServerSession()).andReturn(session).anyTimes();
+    expect(session.getLogin()).andReturn(databaseLogin).anyTimes();
+    Capture<Sequence> sequenceCapture = EasyMock.newCapture();
+    databaseLogin.addSequence(capture(sequenceCapture));
+    EasyMock.expectLastCall().anyTimes();
+    Capture<DynamicType> typeCapture = EasyMock.newCapture();
+    Capture<DynamicType> typeCapture2 = EasyMock.newCapture();
+    jpaDynamicHelper.addTypes(eq(true), eq(true), capture(typeCapture), capture(typeCapture2));
+
+    expect(entityManagerFactory.createEntityManager()).andReturn(entityManager).anyTimes();
+    // the first page
+    expect(entityManager.createQuery(
+      "SELECT e FROM DS_DataStoreImplTest$TestEntity_1 e WHERE e.DS_name='foo' ORDER BY e.DS_id")).andReturn(query1);
+    expect(query1.setMaxResults(2)).andReturn(query1);
+    expect(query1.getResultList()).andReturn(Arrays.asList(dynamicEntity1, dynamicEntity2));
+    // the second page follows the last entity of the first page
+    expect(entityManager.createQuery(
+      "SELECT e FROM DS_DataStoreImplTest$TestEntity_1 e WHERE ( e.DS_name='foo') AND e.DS_id > :lastId ORDER BY e.DS_id")).andReturn(query2);
+    expect(query2.setParameter("lastId", 100)).andReturn(query2);
+    expect(query2.setMaxResults(2)).andReturn(query2);
+    expect(query2.getResultList()).andReturn(Collections.singletonList(dynamicEntity3));
+    entityManager.close();
+    EasyMock.expectLastCall().times(2);
+
+    expect(dynamicEntity1.get("DS_id")).andReturn(99).anyTimes();
+    expect(dynamicEntity1.get("DS_name")).andReturn("foo");
+    expect(dynamicEntity1.get("DS_subEntity")).andReturn(null);
+
+    expect(dynamicEntity2.get("DS_id")).andReturn(100).anyTimes();
+    expect(dynamicEntity2.get("DS_name")).andReturn("foo");
+    expect(dynamicEntity2.get("DS_subEntity")).andReturn(null);
+
+    expect(dynamicEntity3.get("DS_id")).andReturn(101).anyTimes();
+    expect(dynamicEntity3.get("DS_name")).andReturn("foo");
+    expect(dynamicEntity3.get("DS_subEntity")).andReturn(null);
+
+    // replay mocks
+    replay(entityManagerFactory, entityManager, jpaDynamicHelper, dynamicEntity1, dynamicEntity2, dynamicEntity3,
+      query1, query2, schemaManager, jpaEntityManager, session, databaseLogin);
+
+    DataStoreImpl dataStore = getDataStore(entityManagerFactory, jpaDynamicHelper, classLoader, schemaManager);
+
+    Iterator<TestEntity> iterator = dataStore.iterate(TestEntity.class, "name='foo'", 2);
+
+    List<Integer> ids = new LinkedList<Integer>();
+    while (iterator.hasNext()) {
+      ids.add(iterator.next().getId());
+    }
+    Assert.assertEquals(Arrays.asList(99, 100, 101), ids);
+
+    // verify mocks
+    verify(entityManagerFactory, entityManager, jpaDynamicHelper, dynamicEntity1, dynamicEntity2, dynamicEntity3,
+      query1, query2, schemaManager, jpaEntityManager, session, databaseLogin);
+  }
+
+  @Test
+  public void testIndexes() throws Exception {
+    DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
+
+    // create mocks
+    JpaEntityManager jpaEntityManager = createMock(JpaEntityManager.class);
+    ServerSession session = createMock(ServerSession.class);
+    DatabaseLogin databaseLogin = createMock(DatabaseLogin.class);
+    EntityManagerFactory entityManagerFactory = createMock(EntityManagerFactory.class);
+    EntityManager entityManager = createMock(EntityManager.class);
+    EntityTransaction transaction = createMock(EntityTransaction.class);
+    JPADynamicHelper jpaDynamicHelper = createNiceMock(JPADynamicHelper.class);
+    SchemaManager schemaManager = createNiceMock(SchemaManager.class);
+    Connection connection = createMock(Connection.class);
+    DatabaseMetaData metaData = createMock(DatabaseMetaData.class);
+    ResultSet upperCaseResultSet = createMock(ResultSet.class);
+    ResultSet lowerCaseResultSet = createMock(ResultSet.class);
+
+    // set expectations
+    PowerMock.mockStatic(JpaHelper.class);
+    expect(JpaHelper.getEntityManager(entityManager)).andReturn(jpaEntityManager).anyTimes();
+    PowerMock.replay(JpaHelper.class);
+    expect(jpaEntityManager.getServerSession()).andReturn(session).anyTimes();
+    expect(session.getLogin()).andReturn(databaseLogin).anyTimes();
+    Capture<Sequence> sequenceCapture = EasyMock.newCapture();
+    databaseLogin.addSequence(capture(sequenceCapture));
+    EasyMock.expectLastCall().anyTimes();
+
+    expect(entityManagerFactory.createEntityManager()).andReturn(entityManager).anyTimes();
+    expect(entityManager.getTransaction()).andReturn(transaction).anyTimes();
+    transaction.begin();
+    expect(transaction.isActive()).andReturn(true);
+    transaction.rollback();
+    expect(entityManager.unwrap(Connection.class)).andReturn(connection);
+    expect(connection.getMetaData()).andReturn(metaData);
+
+    // the name index exists in lower case, the id property is not indexed
+    String tableName = "DS_DATASTOREIMPLTEST$TESTENTITY_1";
+    String nameIndex = "IDX_" + tableName + "_" + Integer.toHexString("DS_name".hashCode()).toUpperCase();
+    expect(metaData.getIndexInfo(null, null, tableName, false, true)).andReturn(upperCaseResultSet);
+    expect(upperCaseResultSet.next()).andReturn(true);
+    expect(upperCaseResultSet.getString("INDEX_NAME")).andReturn("PK_" + tableName);
+    expect(upperCaseResultSet.next()).andReturn(false);
+    upperCaseResultSet.close();
+    expect(metaData.getIndexInfo(null, null, tableName.toLowerCase(), false, true)).andReturn(lowerCaseResultSet);
+    expect(lowerCaseResultSet.next()).andReturn(false);
+    lowerCaseResultSet.close();
+
+    Capture<IndexDefinition> indexCapture = EasyMock.newCapture();
+    schemaManager.createObject(capture(indexCapture));
+
+    expect(entityManager.find(EasyMock.anyObject(Class.class), eq(99))).andReturn(null);
+    entityManager.close();
+    EasyMock.expectLastCall().times(2);
+
+    // replay mocks
+    replay(entityManagerFactory, entityManager, transaction, jpaDynamicHelper, schemaManager, jpaEntityManager,
+      session, databaseLogin, connection, metaData, upperCaseResultSet, lowerCaseResultSet);
+
+    DataStoreImpl dataStore = getDataStore(xml_index, entityManagerFactory, jpaDynamicHelper, classLoader,
+      schemaManager);
+
+    Assert.assertNull(dataStore.find(TestEntity.class, 99));
+
+    // the sub entity relationship can't be indexed
+    IndexDefinition indexDefinition = indexCapture.getValue();
+    Assert.assertEquals(nameIndex, indexDefinition.getName());
+    Assert.assertEquals(tableName, indexDefinition.getTargetTable());
+    Assert.assertEquals(Collections.singletonList("DS_name"), indexDefinition.getFields());
+
+    // verify mocks
+    verify(entityManagerFactory, entityManager, transaction, jpaDynamicHelper, schemaManager, jpaEntityManager,
+      session, databaseLogin, connection, metaData, upperCaseResultSet, lowerCaseResultSet);
+  }
+
   private DataStoreImpl getDataStore(EntityManagerFactory entityManagerFactory,
                                      JPADynamicHelper jpaDynamicHelper,
                                      DynamicClassLoader classLoader,
                                      SchemaManager schemaManager)
     throws Exception {
+    return getDataStore(xml, entityManagerFactory, jpaDynamicHelper, classLoader, schemaManager);
+  }
+
+  private DataStoreImpl getDataStore(String xml,
+                                     EntityManagerFactory entityManagerFactory,
+                                     JPADynamicHelper jpaDynamicHelper,
+                                     DynamicClassLoader classLoader,
+                                     SchemaManager schemaManager)
+    throws Exception {
     ViewConfig viewConfig = ViewConfigTest.getConfig(xml);
     ViewEntity viewDefinition = ViewEntityTest.getViewEntity(viewConfig);
 
@@ -0,0 +1,111 @@
+#!/usr/bin/env bash
+# Licensed to the Apache Software Foundation (ASF) under one or more
+# contributor license agreements.  See the NOTICE file distributed with
+# this work for additional information regarding copyright ownership.
+# The ASF licenses this file to You under the Apache License, Version 2.0
+# (the "License"); you may not use this file except in compliance with
+# the License.  You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+# Emulates the interactive mode of kadmin for tests. Principals are kept in memory.
+# The administrator password is "hadoop". Every started process is recorded in the file named by
+# the FAKE_KADMIN_LOG environment variable, if set.
+
+declare -A principals
+admin=""
+
+while [ $# -gt 0 ]; do
+  case "$1" in
+    -p) admin="$2"; shift 2;;
+    -s|-r) shift 2;;
+    -q) echo "kadmin: this emulation supports the interactive mode only" >&2; exit 1;;
+    *) shift;;
+  esac
+done
+
+if [ -n "$FAKE_KADMIN_LOG" ]; then
+  echo "started" >> "$FAKE_KADMIN_LOG"
+fi
+
+if [ -n "$admin" ]; then
+  echo "Authenticating as principal $admin with password."
+  echo -n "Password for $admin: "
+  read -r password
+  if [ "$password" != "hadoop" ]; then
+    echo "kadmin: Incorrect password while initializing kadmin interface" >&2
+    exit 1
+  fi
+fi
+
+read_password() {
+  echo -n "Enter password for principal \"$1\": "
+  read -r password1
+  echo -n "Re-enter password for principal \"$1\": "
+  read -r password2
+  [ "$password1" == "$password2" ]
+}
+
+while true; do
+  echo -n "kadmin:  "
+  read -r request arguments || exit 0
+  name="${arguments##* }"
+  case "$request" in
+    get_principal|getprinc)
+      if [ -n "${principals[$name]}" ]; then
+        echo "Principal: $name"
+        echo "Expiration date: [never]"
+        # kadmin's output may be read in chunks ending anywhere, e.g. in a line mentioning passwords
+        echo -n "Last password change: "
+        sleep 0.2
+        echo "[never]"
+        echo "Number of keys: 1"
+        echo "Key: vno ${principals[$name]}, aes256-cts-hmac-sha1-96"
+      else
+        echo "get_principal: Principal does not exist while retrieving \"$name\"." >&2
+      fi
+      ;;
+    add_principal|addprinc)
+      if [ -n "${principals[$name]}" ]; then
+        echo "add_principal: Principal or policy already exists while creating \"$name\"." >&2
+      elif read_password "$name"; then
+        principals[$name]=1
+        echo "Principal \"$name\" created."
+      else
+        echo "add_principal: Password mismatch while reading password for \"$name\"." >&2
+      fi
+      ;;
+    change_password|cpw)
+      if [ -z "${principals[$name]}" ]; then
+        echo "change_password: Principal does not exist while changing password for \"$name\"." >&2
+      elif read_password "$name"; then
+        principals[$name]=$((principals[$name] + 1))
+        echo "Password for \"$name\" changed."
+      else
+        echo "change_password: Password mismatch while reading password for \"$name\"." >&2
+      fi
+      ;;
+    delete_principal|delprinc)
+      if [ -n "${principals[$name]}" ]; then
+        unset principals[$name]
+        echo "Principal \"$name\" deleted."
+      else
+        echo "delete_principal: Principal does not exist while deleting principal \"$name\"" >&2
+      fi
+      ;;
+    quit|exit|q)
+      exit 0
+      ;;
+    "")
+      ;;
+    *)
+      echo "kadmin: Unknown request \"$request\".  Type \"?\" for a request list." >&2
+      ;;
+  esac
+done
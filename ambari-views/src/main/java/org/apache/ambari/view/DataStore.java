@@ -19,6 +19,8 @@
 package org.apache.ambari.view;
 
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * View data store.
@@ -72,4 +74,43 @@ public interface DataStore {
    * @throws PersistenceException
    */
   public <T> Collection<T> findAll(Class<T> clazz, String whereClause) throws PersistenceException;
+
+  /**
+   * Find a page of the entities for the given where clause, sorted by the given
+   * order by clause.  Specifying null for the where clause should include all entities
+   * of the given class type.  Specifying null for the order by clause should sort the
+   * entities by their id property, so that consecutive pages do not overlap.
+   *
+   * @param clazz        the entity class
+   * @param whereClause  the where clause; may be null
+   * @param orderBy      the order by clause (e.g. "dateSubmitted DESC"); may be null
+   * @param offset       the number of entities to skip
+   * @param limit        the maximum number of entities to return; 0 for no limit
+   * @param <T>          the entity type
+   *
+   * @return the entities of the page in the given order; empty list if no
+   *         entities can be found
+   *
+   * @throws PersistenceException thrown if an error occurs trying to find the entities
+   */
+  public <T> List<T> findAll(Class<T> clazz, String whereClause, String orderBy, int offset, int limit)
+      throws PersistenceException;
+
+  /**
+   * Iterate over all the entities for the given where clause in the order of their
+   * id property without loading all of them into memory.  The entities are read in
+   * pages of the given size as the iteration proceeds.  Specifying null for the where
+   * clause should iterate over all entities of the given class type.
+   *
+   * @param clazz        the entity class
+   * @param whereClause  the where clause; may be null
+   * @param pageSize     the number of entities to read at a time
+   * @param <T>          the entity type
+   *
+   * @return an iterator over the entities; the iterator throws an
+   *         {@link IllegalStateException} if a page after the first one can not be read
+   *
+   * @throws PersistenceException thrown if an error occurs trying to read the first page
+   */
+  public <T> Iterator<T> iterate(Class<T> clazz, String whereClause, int pageSize) throws PersistenceException;
 }
@@ -0,0 +1,272 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.commons.hdfs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.ambari.view.utils.hdfs.HdfsApi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server side state of a file uploaded in chunks. The chunks are written to a staging directory
+ * next to the target file in any order, possibly over parallel connections, and are concatenated
+ * into the target file when the upload is completed. The chunks already written are found by listing
+ * the staging directory, so an interrupted upload is resumed by sending the missing chunks.
+ *
+ * The sessions are kept in memory only, so an upload can not be resumed after a restart of the
+ * server. Sessions idle for longer than {@link #SESSION_TIMEOUT} are removed together with their
+ * staging directories by a sweep which runs every {@link #SWEEP_INTERVAL}.
+ */
+public class ChunkedUploadSession {
+  private static final Logger LOG = LoggerFactory.getLogger(ChunkedUploadSession.class);
+
+  public static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+  public static final long MAX_CHUNK_SIZE = 256 * 1024 * 1024;
+  public static final int MAX_CHUNK_COUNT = 100000;
+
+  /**
+   * Time after which an idle session is discarded
+   */
+  public static final long SESSION_TIMEOUT = 24 * 60 * 60 * 1000;
+
+  /**
+   * Time between the sweeps for idle sessions
+   */
+  public static final long SWEEP_INTERVAL = 60 * 60 * 1000;
+
+  static final String CHUNK_PREFIX = "chunk-";
+  static final String STAGING_PREFIX = ".upload-";
+
+  private static final Map<String, ChunkedUploadSession> sessions = new ConcurrentHashMap<String, ChunkedUploadSession>();
+  private static ScheduledExecutorService sweeper;
+
+  private final String id;
+  private final String instanceName;
+  private final String username;
+  private final HdfsApi api;
+  private final String filePath;
+  private final String stagingPath;
+  private final long size;
+  private final long chunkSize;
+  private final boolean overwrite;
+  private final AtomicBoolean finishing = new AtomicBoolean(false);
+  private volatile long lastAccessTime;
+
+  /**
+   * Constructor
+   * @param api hdfs api of the user, used to delete the staging directory of an expired session
+   */
+  public ChunkedUploadSession(String id, String instanceName, String username, HdfsApi api, String filePath,
+                              String stagingPath, long size, long chunkSize, boolean overwrite) {
+    this.id = id;
+    this.instanceName = instanceName;
+    this.username = username;
+    this.api = api;
+    this.filePath = filePath;
+    this.stagingPath = stagingPath;
+    this.size = size;
+    this.chunkSize = chunkSize;
+    this.overwrite = overwrite;
+    this.lastAccessTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Register session
+   * @param session upload session
+   */
+  public static void register(ChunkedUploadSession session) {
+    sessions.put(key(session.instanceName, session.id), session);
+    startSweeper();
+  }
+
+  /**
+   * Get session of the user and renew its timer
+   * @param instanceName view instance
+   * @param username user who started the upload
+   * @param id upload id
+   * @return session or null if not found
+   */
+  public static ChunkedUploadSession get(String instanceName, String username, String id) {
+    ChunkedUploadSession session = sessions.get(key(instanceName, id));
+    if (session == null || !session.username.equals(username)) {
+      return null;
+    }
+    session.lastAccessTime = System.currentTimeMillis();
+    return session;
+  }
+
+  /**
+   * @param instanceName view instance
+   * @param id upload id
+   * @return true if the upload is in progress
+   */
+  public static boolean exists(String instanceName, String id) {
+    return sessions.containsKey(key(instanceName, id));
+  }
+
+  /**
+   * Unregister session
+   * @param session upload session
+   */
+  public static void remove(ChunkedUploadSession session) {
+    sessions.remove(key(session.instanceName, session.id));
+  }
+
+  /**
+   * Unregister the sessions which were idle longer than {@link #SESSION_TIMEOUT} and delete their
+   * staging directories. Sessions which are being completed or aborted are left alone.
+   * @param now current time
+   * @return removed sessions
+   */
+  static List<ChunkedUploadSession> removeExpired(long now) {
+    List<ChunkedUploadSession> expired = new ArrayList<ChunkedUploadSession>();
+    for (ChunkedUploadSession session : sessions.values()) {
+      if (now - session.lastAccessTime > SESSION_TIMEOUT && session.startFinishing()) {
+        remove(session);
+        session.deleteStagingDirectory();
+        expired.add(session);
+      }
+    }
+    return expired;
+  }
+
+  private static synchronized void startSweeper() {
+    if (sweeper != null) {
+      return;
+    }
+    sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "chunked-upload-sweeper");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    sweeper.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          for (ChunkedUploadSession session : removeExpired(System.currentTimeMillis())) {
+            LOG.info("Removed chunked upload {} of {} to {} after it was idle", session.id, session.username,
+                session.filePath);
+          }
+        } catch (RuntimeException ex) {
+          LOG.error("Can't remove idle chunked uploads", ex);
+        }
+      }
+    }, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  private static String key(String instanceName, String id) {
+    return instanceName + "/" + id;
+  }
+
+  /**
+   * @param size file size
+   * @param chunkSize chunk size
+   * @return number of chunks of the file
+   */
+  public static long getChunkCount(long size, long chunkSize) {
+    return size / chunkSize + (size % chunkSize == 0 ? 0 : 1);
+  }
+
+  /**
+   * Marks the session as being completed or aborted. Only one of them can run at a time, and no
+   * chunks are accepted meanwhile.
+   * @return false if the session is already being completed or aborted
+   */
+  public boolean startFinishing() {
+    return finishing.compareAndSet(false, true);
+  }
+
+  /**
+   * Accepts chunks again after completing the upload failed
+   */
+  public void cancelFinishing() {
+    finishing.set(false);
+  }
+
+  public boolean isFinishing() {
+    return finishing.get();
+  }
+
+  /**
+   * Delete the staging directory with the received chunks
+   */
+  public void deleteStagingDirectory() {
+    try {
+      api.delete(stagingPath, true);
+    } catch (Exception ex) {
+      LOG.error("Can't delete staging directory of upload {}: {}", id, stagingPath, ex);
+    }
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getFilePath() {
+    return filePath;
+  }
+
+  public String getStagingPath() {
+    return stagingPath;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public long getChunkSize() {
+    return chunkSize;
+  }
+
+  public boolean isOverwrite() {
+    return overwrite;
+  }
+
+  public int getChunkCount() {
+    return (int) getChunkCount(size, chunkSize);
+  }
+
+  /**
+   * @param index chunk index
+   * @return expected size of the chunk, only the last chunk can be smaller than the chunk size
+   */
+  public long getChunkSize(int index) {
+    return index < getChunkCount() - 1 ? chunkSize : size - chunkSize * index;
+  }
+
+  public String getChunkPath(int index) {
+    return stagingPath + "/" + CHUNK_PREFIX + index;
+  }
+
+  long getLastAccessTime() {
+    return lastAccessTime;
+  }
+}
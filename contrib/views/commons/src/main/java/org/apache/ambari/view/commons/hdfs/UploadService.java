@@ -20,18 +20,31 @@ package org.apache.ambari.view.commons.hdfs;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.ambari.view.ViewContext;
+import org.apache.ambari.view.commons.exceptions.NotFoundFormattedException;
 import org.apache.ambari.view.commons.exceptions.ServiceFormattedException;
 import org.apache.ambari.view.commons.hdfs.HdfsService;
 import org.apache.ambari.view.utils.hdfs.HdfsApi;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.io.MD5Hash;
+import org.json.simple.JSONObject;
 
 import com.sun.jersey.core.header.FormDataContentDisposition;
 import com.sun.jersey.multipart.FormDataParam;
@@ -49,6 +62,8 @@ public class UploadService extends HdfsService {
     super(context);
   }
 
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
   private void uploadFile(final String filePath, InputStream uploadedInputStream)
       throws IOException, InterruptedException {
     int read;
@@ -135,4 +150,335 @@ public class UploadService extends HdfsService {
     }
   }
 
+  /**
+   * Start upload of a file in chunks. The chunks are sent with {@link #uploadChunk}, in any order and
+   * over parallel connections, and assembled with {@link #completeChunkedUpload}.
+   * @param request chunked upload request
+   * @return upload status with the upload id
+   */
+  @POST
+  @Path("/chunked")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response startChunkedUpload(final ChunkedUploadRequest request) {
+    try {
+      if (request.path == null || request.fileName == null || request.fileName.contains("/") || request.size < 0) {
+        throw new ServiceFormattedException("path, fileName and size of the file are required", null, 400);
+      }
+      long chunkSize = request.chunkSize > 0 ? request.chunkSize : ChunkedUploadSession.DEFAULT_CHUNK_SIZE;
+      if (chunkSize > ChunkedUploadSession.MAX_CHUNK_SIZE) {
+        throw new ServiceFormattedException("Chunk size can not exceed " + ChunkedUploadSession.MAX_CHUNK_SIZE, null, 400);
+      }
+      if (ChunkedUploadSession.getChunkCount(request.size, chunkSize) > ChunkedUploadSession.MAX_CHUNK_COUNT) {
+        throw new ServiceFormattedException("Upload can not have more than " + ChunkedUploadSession.MAX_CHUNK_COUNT +
+            " chunks, use a larger chunk size", null, 400);
+      }
+      String path = request.path.endsWith("/") ? request.path : request.path + "/";
+      String filePath = path + request.fileName;
+      HdfsApi api = getApi(context);
+      if (!request.overwrite && api.exists(filePath)) {
+        throw new ServiceFormattedException("File " + filePath + " already exists", null, 409);
+      }
+
+      deleteOrphanedStagingDirectories(api, path);
+
+      String id = UUID.randomUUID().toString().replaceAll("-", "");
+      ChunkedUploadSession session = new ChunkedUploadSession(id, context.getInstanceName(), context.getUsername(),
+          api, filePath, path + ChunkedUploadSession.STAGING_PREFIX + id, request.size, chunkSize, request.overwrite);
+      if (!api.mkdir(session.getStagingPath())) {
+        throw new ServiceFormattedException("Can't create dir '" + session.getStagingPath() + "'", null);
+      }
+      ChunkedUploadSession.register(session);
+      return Response.ok(getUploadStatus(api, session)).build();
+    } catch (WebApplicationException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new ServiceFormattedException(ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Upload chunk of a file. A chunk sent again replaces the one sent before.
+   * @param uploadId upload id
+   * @param index chunk index, starting from 0
+   * @param md5 optional hex MD5 checksum of the chunk
+   * @param uploadedInputStream chunk content
+   * @return chunk size and checksum
+   */
+  @PUT
+  @Path("/chunked/{uploadId}/{index}")
+  @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response uploadChunk(@PathParam("uploadId") String uploadId, @PathParam("index") int index,
+                              @QueryParam("md5") String md5, InputStream uploadedInputStream) {
+    try {
+      ChunkedUploadSession session = getSession(uploadId);
+      if (index < 0 || index >= session.getChunkCount()) {
+        throw new ServiceFormattedException("Chunk index " + index + " is out of range", null, 400);
+      }
+      checkNotFinishing(session);
+      HdfsApi api = getApi(context);
+      String chunkPath = session.getChunkPath(index);
+      // parallel retries of the same chunk do not write to the same file
+      String tmpPath = session.getStagingPath() + "/." + UUID.randomUUID().toString() + ".tmp";
+
+      MessageDigest digest = getMD5Digest();
+      long written = 0;
+      int read;
+      byte[] chunk = new byte[COPY_BUFFER_SIZE];
+      FSDataOutputStream out = api.create(tmpPath, true);
+      try {
+        while ((read = uploadedInputStream.read(chunk)) != -1) {
+          out.write(chunk, 0, read);
+          digest.update(chunk, 0, read);
+          written += read;
+        }
+      } finally {
+        out.close();
+      }
+
+      String checksum = new MD5Hash(digest.digest()).toString();
+      if (written != session.getChunkSize(index)) {
+        api.delete(tmpPath, false);
+        throw new ServiceFormattedException("Chunk " + index + " has " + written + " bytes, expected " +
+            session.getChunkSize(index), null, 400);
+      }
+      if (md5 != null && !md5.equalsIgnoreCase(checksum)) {
+        api.delete(tmpPath, false);
+        throw new ServiceFormattedException("Checksum of chunk " + index + " does not match", null, 400);
+      }
+      if (session.isFinishing()) {
+        api.delete(tmpPath, false);
+        checkNotFinishing(session);
+      }
+      if (api.exists(chunkPath)) {
+        api.delete(chunkPath, false);
+      }
+      if (!api.rename(tmpPath, chunkPath)) {
+        api.delete(tmpPath, false);
+        throw new ServiceFormattedException("Can't rename '" + tmpPath + "' to '" + chunkPath + "'", null);
+      }
+
+      JSONObject json = new JSONObject();
+      json.put("index", index);
+      json.put("size", written);
+      json.put("md5", checksum);
+      return Response.ok(json).build();
+    } catch (WebApplicationException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new ServiceFormattedException(ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Status of chunked upload, used to resume it by sending the chunks which were not received
+   * @param uploadId upload id
+   * @return upload status with the received chunks
+   */
+  @GET
+  @Path("/chunked/{uploadId}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getChunkedUpload(@PathParam("uploadId") String uploadId) {
+    try {
+      ChunkedUploadSession session = getSession(uploadId);
+      return Response.ok(getUploadStatus(getApi(context), session)).build();
+    } catch (WebApplicationException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new ServiceFormattedException(ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Complete chunked upload. The chunks are concatenated in order into the file.
+   * @param uploadId upload id
+   * @param md5 optional hex MD5 checksum of the whole file
+   * @return file status
+   */
+  @POST
+  @Path("/chunked/{uploadId}/complete")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response completeChunkedUpload(@PathParam("uploadId") String uploadId, @QueryParam("md5") String md5) {
+    try {
+      ChunkedUploadSession session = getSession(uploadId);
+      if (!session.startFinishing()) {
+        checkNotFinishing(session);
+      }
+      try {
+        return completeChunkedUpload(session, md5);
+      } catch (Exception ex) {
+        session.cancelFinishing();
+        throw ex;
+      }
+    } catch (WebApplicationException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new ServiceFormattedException(ex.getMessage(), ex);
+    }
+  }
+
+  private Response completeChunkedUpload(ChunkedUploadSession session, String md5) throws Exception {
+    HdfsApi api = getApi(context);
+    List<Integer> missing = getMissingChunks(getReceivedChunks(api, session), session);
+    if (!missing.isEmpty()) {
+      throw new ServiceFormattedException("Chunks " + missing + " were not received", null, 409);
+    }
+
+    String assembledPath = session.getStagingPath() + "/.assembled";
+    MessageDigest digest = getMD5Digest();
+    int read;
+    byte[] chunk = new byte[COPY_BUFFER_SIZE];
+    FSDataOutputStream out = api.create(assembledPath, true);
+    try {
+      for (int index = 0; index < session.getChunkCount(); index++) {
+        FSDataInputStream in = api.open(session.getChunkPath(index));
+        try {
+          while ((read = in.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+            digest.update(chunk, 0, read);
+          }
+        } finally {
+          in.close();
+        }
+      }
+    } finally {
+      out.close();
+    }
+
+    if (md5 != null && !md5.equalsIgnoreCase(new MD5Hash(digest.digest()).toString())) {
+      api.delete(assembledPath, false);
+      throw new ServiceFormattedException("Checksum of file " + session.getFilePath() + " does not match", null, 400);
+    }
+    if (api.exists(session.getFilePath())) {
+      if (!session.isOverwrite()) {
+        throw new ServiceFormattedException("File " + session.getFilePath() + " already exists", null, 409);
+      }
+      api.delete(session.getFilePath(), false);
+    }
+    if (!api.rename(assembledPath, session.getFilePath())) {
+      throw new ServiceFormattedException("Can't rename '" + assembledPath + "' to '" + session.getFilePath() + "'", null);
+    }
+
+    ChunkedUploadSession.remove(session);
+    session.deleteStagingDirectory();
+    return Response.ok(api.fileStatusToJSON(api.getFileStatus(session.getFilePath()))).build();
+  }
+
+  /**
+   * Abort chunked upload and delete the received chunks
+   * @param uploadId upload id
+   * @return response with success
+   */
+  @DELETE
+  @Path("/chunked/{uploadId}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response abortChunkedUpload(@PathParam("uploadId") String uploadId) {
+    try {
+      ChunkedUploadSession session = getSession(uploadId);
+      if (!session.startFinishing()) {
+        checkNotFinishing(session);
+      }
+      ChunkedUploadSession.remove(session);
+      session.deleteStagingDirectory();
+      return Response.ok(new FileOperationResult(true)).build();
+    } catch (WebApplicationException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new ServiceFormattedException(ex.getMessage(), ex);
+    }
+  }
+
+  private ChunkedUploadSession getSession(String uploadId) {
+    ChunkedUploadSession session = ChunkedUploadSession.get(context.getInstanceName(), context.getUsername(), uploadId);
+    if (session == null) {
+      throw new NotFoundFormattedException("Upload " + uploadId + " not found", null);
+    }
+    return session;
+  }
+
+  private JSONObject getUploadStatus(HdfsApi api, ChunkedUploadSession session) throws Exception {
+    TreeSet<Integer> received = getReceivedChunks(api, session);
+    JSONObject json = new JSONObject();
+    json.put("uploadId", session.getId());
+    json.put("path", session.getFilePath());
+    json.put("size", session.getSize());
+    json.put("chunkSize", session.getChunkSize());
+    json.put("chunkCount", session.getChunkCount());
+    json.put("received", new ArrayList<Integer>(received));
+    json.put("missing", getMissingChunks(received, session));
+    return json;
+  }
+
+  private TreeSet<Integer> getReceivedChunks(HdfsApi api, ChunkedUploadSession session) throws Exception {
+    TreeSet<Integer> received = new TreeSet<Integer>();
+    for (FileStatus status : api.listdir(session.getStagingPath())) {
+      String name = status.getPath().getName();
+      if (name.startsWith(ChunkedUploadSession.CHUNK_PREFIX)) {
+        received.add(Integer.parseInt(name.substring(ChunkedUploadSession.CHUNK_PREFIX.length())));
+      }
+    }
+    return received;
+  }
+
+  private List<Integer> getMissingChunks(TreeSet<Integer> received, ChunkedUploadSession session) {
+    List<Integer> missing = new ArrayList<Integer>();
+    for (int index = 0; index < session.getChunkCount(); index++) {
+      if (!received.contains(index)) {
+        missing.add(index);
+      }
+    }
+    return missing;
+  }
+
+  private void checkNotFinishing(ChunkedUploadSession session) {
+    if (session.isFinishing()) {
+      throw new ServiceFormattedException("Upload " + session.getId() + " is being completed or aborted", null, 409);
+    }
+  }
+
+  /**
+   * Delete the staging directories in the directory which belong to no session and were not
+   * modified for {@link ChunkedUploadSession#SESSION_TIMEOUT}, left by uploads which were
+   * in progress when the server was restarted
+   */
+  private void deleteOrphanedStagingDirectories(HdfsApi api, String path) {
+    try {
+      if (!api.exists(path)) {
+        return;
+      }
+      long now = System.currentTimeMillis();
+      for (FileStatus status : api.listdir(path)) {
+        String name = status.getPath().getName();
+        if (status.isDirectory() && name.startsWith(ChunkedUploadSession.STAGING_PREFIX)
+            && !ChunkedUploadSession.exists(context.getInstanceName(), name.substring(ChunkedUploadSession.STAGING_PREFIX.length()))
+            && now - status.getModificationTime() > ChunkedUploadSession.SESSION_TIMEOUT) {
+          api.delete(path + name, true);
+        }
+      }
+    } catch (Exception ex) {
+      logger.error("Can't delete orphaned staging directories in {}", path, ex);
+    }
+  }
+
+  private MessageDigest getMD5Digest() throws NoSuchAlgorithmException {
+    return MessageDigest.getInstance("MD5");
+  }
+
+  /**
+   * Wrapper for json mapping of chunked upload request
+   */
+  @XmlRootElement
+  public static class ChunkedUploadRequest {
+    @XmlElement(nillable = false, required = true)
+    public String path;
+    @XmlElement(nillable = false, required = true)
+    public String fileName;
+    @XmlElement(nillable = false, required = true)
+    public long size;
+    @XmlElement(required = false)
+    public long chunkSize;
+    @XmlElement(required = false)
+    public boolean overwrite;
+  }
 }
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.commons.hdfs;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.util.List;
+
+import org.apache.ambari.view.utils.hdfs.HdfsApi;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChunkedUploadSessionTest {
+  private static final long MB = 1024 * 1024;
+
+  private ChunkedUploadSession session;
+
+  @After
+  public void tearDown() {
+    if (session != null) {
+      ChunkedUploadSession.remove(session);
+    }
+  }
+
+  @Test
+  public void testChunkCount() {
+    Assert.assertEquals(0, ChunkedUploadSession.getChunkCount(0, MB));
+    Assert.assertEquals(1, ChunkedUploadSession.getChunkCount(1, MB));
+    Assert.assertEquals(1, ChunkedUploadSession.getChunkCount(MB, MB));
+    Assert.assertEquals(2, ChunkedUploadSession.getChunkCount(MB + 1, MB));
+  }
+
+  @Test
+  public void testChunkCountOfHugeSizeDoesNotOverflow() {
+    long chunkSize = ChunkedUploadSession.MAX_CHUNK_SIZE;
+    long count = ChunkedUploadSession.getChunkCount(Long.MAX_VALUE, chunkSize);
+    Assert.assertTrue(count > ChunkedUploadSession.MAX_CHUNK_COUNT);
+    Assert.assertEquals(Long.MAX_VALUE / chunkSize + 1, count);
+  }
+
+  @Test
+  public void testChunkSizes() {
+    session = new ChunkedUploadSession("id", "instance", "user", null, "/tmp/file", "/tmp/.upload-id",
+        2 * MB + 10, MB, false);
+    Assert.assertEquals(3, session.getChunkCount());
+    Assert.assertEquals(MB, session.getChunkSize(0));
+    Assert.assertEquals(MB, session.getChunkSize(1));
+    Assert.assertEquals(10, session.getChunkSize(2));
+    Assert.assertEquals("/tmp/.upload-id/chunk-2", session.getChunkPath(2));
+  }
+
+  @Test
+  public void testSessionOfOtherUserIsNotFound() {
+    session = new ChunkedUploadSession("id", "instance", "user", null, "/tmp/file", "/tmp/.upload-id", 10, MB, false);
+    ChunkedUploadSession.register(session);
+    Assert.assertSame(session, ChunkedUploadSession.get("instance", "user", "id"));
+    Assert.assertNull(ChunkedUploadSession.get("instance", "other", "id"));
+    Assert.assertNull(ChunkedUploadSession.get("other", "user", "id"));
+  }
+
+  @Test
+  public void testOnlyOneFinishing() {
+    session = new ChunkedUploadSession("id", "instance", "user", null, "/tmp/file", "/tmp/.upload-id", 10, MB, false);
+    Assert.assertTrue(session.startFinishing());
+    Assert.assertFalse(session.startFinishing());
+    Assert.assertTrue(session.isFinishing());
+    session.cancelFinishing();
+    Assert.assertTrue(session.startFinishing());
+  }
+
+  @Test
+  public void testExpiredSessionIsRemovedWithStagingDirectory() throws Exception {
+    HdfsApi api = createStrictMock(HdfsApi.class);
+    expect(api.delete("/tmp/.upload-id", true)).andReturn(true);
+    replay(api);
+
+    session = new ChunkedUploadSession("id", "instance", "user", api, "/tmp/file", "/tmp/.upload-id", 10, MB, false);
+    ChunkedUploadSession.register(session);
+    long now = session.getLastAccessTime();
+
+    Assert.assertTrue(ChunkedUploadSession.removeExpired(now + 1000).isEmpty());
+    Assert.assertTrue(ChunkedUploadSession.exists("instance", "id"));
+
+    List<ChunkedUploadSession> expired = ChunkedUploadSession.removeExpired(now + ChunkedUploadSession.SESSION_TIMEOUT + 1);
+    Assert.assertEquals(1, expired.size());
+    Assert.assertSame(session, expired.get(0));
+    Assert.assertFalse(ChunkedUploadSession.exists("instance", "id"));
+    verify(api);
+  }
+
+  @Test
+  public void testFinishingSessionIsNotExpired() throws Exception {
+    HdfsApi api = createNiceMock(HdfsApi.class);
+    replay(api);
+
+    session = new ChunkedUploadSession("id", "instance", "user", api, "/tmp/file", "/tmp/.upload-id", 10, MB, false);
+    ChunkedUploadSession.register(session);
+    session.startFinishing();
+
+    long now = session.getLastAccessTime();
+    Assert.assertTrue(ChunkedUploadSession.removeExpired(now + ChunkedUploadSession.SESSION_TIMEOUT + 1).isEmpty());
+    Assert.assertTrue(ChunkedUploadSession.exists("instance", "id"));
+  }
+}
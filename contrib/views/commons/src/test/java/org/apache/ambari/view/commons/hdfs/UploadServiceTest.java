@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.commons.hdfs;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import org.apache.ambari.view.ViewContext;
+import org.apache.ambari.view.utils.hdfs.ConfigurationBuilder;
+import org.apache.ambari.view.utils.hdfs.HdfsApi;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.MD5Hash;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Chunked upload to the local file system
+ */
+public class UploadServiceTest {
+  private File baseDir;
+  private UploadService service;
+
+  @Before
+  public void setUp() throws Exception {
+    baseDir = new File("target/local/UploadServiceTest").getAbsoluteFile();
+    FileUtils.deleteDirectory(baseDir);
+    baseDir.mkdirs();
+
+    Configuration conf = new Configuration();
+    conf.set("fs.defaultFS", "file:///");
+    ConfigurationBuilder configurationBuilder = createNiceMock(ConfigurationBuilder.class);
+    expect(configurationBuilder.buildConfig()).andReturn(conf).anyTimes();
+    expect(configurationBuilder.buildAuthenticationConfig()).andReturn(new HashMap<String, String>()).anyTimes();
+    replay(configurationBuilder);
+    final HdfsApi api = new HdfsApi(configurationBuilder, System.getProperty("user.name"));
+
+    ViewContext context = createNiceMock(ViewContext.class);
+    expect(context.getInstanceName()).andReturn("instance").anyTimes();
+    expect(context.getUsername()).andReturn("user").anyTimes();
+    replay(context);
+    service = new UploadService(context) {
+      @Override
+      public HdfsApi getApi(ViewContext context) {
+        return api;
+      }
+    };
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(baseDir);
+  }
+
+  @Test
+  public void testUploadInChunks() throws Exception {
+    byte[] content = createContent(25);
+    String uploadId = startUpload(content.length, 10);
+    Assert.assertTrue(new File(baseDir, ".upload-" + uploadId).isDirectory());
+
+    uploadChunk(uploadId, 2, content, null);
+    uploadChunk(uploadId, 0, content, null);
+    uploadChunk(uploadId, 1, content, null);
+
+    Response response = service.completeChunkedUpload(uploadId, MD5Hash.digest(content).toString());
+    Assert.assertEquals(200, response.getStatus());
+    Assert.assertArrayEquals(content, FileUtils.readFileToByteArray(new File(baseDir, "file.bin")));
+    Assert.assertFalse(new File(baseDir, ".upload-" + uploadId).exists());
+    assertStatus(404, getUploadStatus(uploadId));
+  }
+
+  @Test
+  public void testResumeAfterMissingChunk() throws Exception {
+    byte[] content = createContent(25);
+    String uploadId = startUpload(content.length, 10);
+    uploadChunk(uploadId, 0, content, null);
+    uploadChunk(uploadId, 2, content, null);
+
+    Map<?, ?> status = (Map<?, ?>) service.getChunkedUpload(uploadId).getEntity();
+    Assert.assertEquals(Arrays.asList(0, 2), status.get("received"));
+    Assert.assertEquals(Arrays.asList(1), status.get("missing"));
+
+    assertStatus(409, complete(uploadId));
+    Assert.assertFalse(new File(baseDir, "file.bin").exists());
+
+    uploadChunk(uploadId, 1, content, null);
+    Assert.assertEquals(Arrays.asList(), ((Map<?, ?>) service.getChunkedUpload(uploadId).getEntity()).get("missing"));
+    Assert.assertEquals(200, service.completeChunkedUpload(uploadId, null).getStatus());
+    Assert.assertArrayEquals(content, FileUtils.readFileToByteArray(new File(baseDir, "file.bin")));
+  }
+
+  @Test
+  public void testBadChunkIndex() throws Exception {
+    byte[] content = createContent(25);
+    String uploadId = startUpload(content.length, 10);
+    assertStatus(400, uploadChunk(uploadId, 3, new byte[5]));
+    assertStatus(400, uploadChunk(uploadId, -1, new byte[10]));
+  }
+
+  @Test
+  public void testBadChunk() throws Exception {
+    byte[] content = createContent(25);
+    String uploadId = startUpload(content.length, 10);
+    assertStatus(400, uploadChunk(uploadId, 0, new byte[9]));
+    try {
+      service.uploadChunk(uploadId, 0, "0123", new ByteArrayInputStream(content, 0, 10));
+      Assert.fail("Checksum mismatch expected");
+    } catch (WebApplicationException ex) {
+      Assert.assertEquals(400, ex.getResponse().getStatus());
+    }
+    List<?> received = (List<?>) ((Map<?, ?>) service.getChunkedUpload(uploadId).getEntity()).get("received");
+    Assert.assertTrue(received.isEmpty());
+  }
+
+  @Test
+  public void testTooManyChunks() throws Exception {
+    UploadService.ChunkedUploadRequest request = createRequest(Long.MAX_VALUE, ChunkedUploadSession.MAX_CHUNK_SIZE);
+    try {
+      service.startChunkedUpload(request);
+      Assert.fail("Too many chunks expected");
+    } catch (WebApplicationException ex) {
+      Assert.assertEquals(400, ex.getResponse().getStatus());
+    }
+  }
+
+  @Test
+  public void testAbort() throws Exception {
+    byte[] content = createContent(25);
+    String uploadId = startUpload(content.length, 10);
+    uploadChunk(uploadId, 0, content, null);
+
+    Assert.assertEquals(200, service.abortChunkedUpload(uploadId).getStatus());
+    Assert.assertFalse(new File(baseDir, ".upload-" + uploadId).exists());
+    assertStatus(404, getUploadStatus(uploadId));
+    assertStatus(404, complete(uploadId));
+  }
+
+  @Test
+  public void testNoAbortWhileCompleting() throws Exception {
+    byte[] content = createContent(25);
+    String uploadId = startUpload(content.length, 10);
+    ChunkedUploadSession session = ChunkedUploadSession.get("instance", "user", uploadId);
+    Assert.assertTrue(session.startFinishing());
+
+    try {
+      service.abortChunkedUpload(uploadId);
+      Assert.fail("Conflict expected");
+    } catch (WebApplicationException ex) {
+      Assert.assertEquals(409, ex.getResponse().getStatus());
+    }
+    assertStatus(409, complete(uploadId));
+    assertStatus(409, uploadChunk(uploadId, 0, Arrays.copyOf(content, 10)));
+    Assert.assertTrue(new File(baseDir, ".upload-" + uploadId).isDirectory());
+
+    session.cancelFinishing();
+    Assert.assertEquals(200, service.abortChunkedUpload(uploadId).getStatus());
+  }
+
+  @Test
+  public void testOrphanedStagingDirectoryIsDeleted() throws Exception {
+    File orphaned = new File(baseDir, ".upload-orphaned");
+    orphaned.mkdirs();
+    orphaned.setLastModified(System.currentTimeMillis() - ChunkedUploadSession.SESSION_TIMEOUT - 1000);
+    File recent = new File(baseDir, ".upload-recent");
+    recent.mkdirs();
+
+    String uploadId = startUpload(25, 10);
+    Assert.assertFalse(orphaned.exists());
+    Assert.assertTrue(recent.exists());
+    Assert.assertTrue(new File(baseDir, ".upload-" + uploadId).isDirectory());
+    service.abortChunkedUpload(uploadId);
+  }
+
+  private String startUpload(long size, long chunkSize) {
+    Response response = service.startChunkedUpload(createRequest(size, chunkSize));
+    Map<?, ?> status = (Map<?, ?>) response.getEntity();
+    Assert.assertEquals(ChunkedUploadSession.getChunkCount(size, chunkSize), ((Number) status.get("chunkCount")).longValue());
+    return (String) status.get("uploadId");
+  }
+
+  private UploadService.ChunkedUploadRequest createRequest(long size, long chunkSize) {
+    UploadService.ChunkedUploadRequest request = new UploadService.ChunkedUploadRequest();
+    request.path = baseDir.getPath();
+    request.fileName = "file.bin";
+    request.size = size;
+    request.chunkSize = chunkSize;
+    return request;
+  }
+
+  private void uploadChunk(String uploadId, int index, byte[] content, String md5) {
+    int offset = index * 10;
+    Response response = service.uploadChunk(uploadId, index, md5,
+        new ByteArrayInputStream(content, offset, Math.min(10, content.length - offset)));
+    Assert.assertEquals(200, response.getStatus());
+  }
+
+  private WebApplicationException uploadChunk(String uploadId, int index, byte[] chunk) {
+    try {
+      service.uploadChunk(uploadId, index, null, new ByteArrayInputStream(chunk));
+      return null;
+    } catch (WebApplicationException ex) {
+      return ex;
+    }
+  }
+
+  private WebApplicationException getUploadStatus(String uploadId) {
+    try {
+      service.getChunkedUpload(uploadId);
+      return null;
+    } catch (WebApplicationException ex) {
+      return ex;
+    }
+  }
+
+  private WebApplicationException complete(String uploadId) {
+    try {
+      service.completeChunkedUpload(uploadId, null);
+      return null;
+    } catch (WebApplicationException ex) {
+      return ex;
+    }
+  }
+
+  private void assertStatus(int status, WebApplicationException ex) {
+    Assert.assertNotNull("Request should fail with " + status, ex);
+    Assert.assertEquals(status, ex.getResponse().getStatus());
+  }
+
+  private byte[] createContent(int size) {
+    byte[] content = new byte[size];
+    for (int i = 0; i < size; i++) {
+      content[i] = (byte) i;
+    }
+    return content;
+  }
+}
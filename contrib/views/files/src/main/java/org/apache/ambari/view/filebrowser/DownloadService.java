@@ -25,10 +25,8 @@ import java.io.OutputStream;
 import java.net.FileNameMap;
 import java.net.URLConnection;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Map;
 import java.util.UUID;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import javax.ws.rs.Consumes;
@@ -70,6 +68,10 @@ public class DownloadService extends HdfsService {
 
   protected static final Logger LOG = LoggerFactory.getLogger(DownloadService.class);
 
+  public static final String ZIP_THREADS_PROPERTY = "zip.download.threads";
+  public static final String ZIP_READ_AHEAD_PROPERTY = "zip.download.read-ahead.bytes";
+  public static final String ZIP_STORE_COMPRESSED_PROPERTY = "zip.download.store-compressed";
+
   public DownloadService(ViewContext context) {
     super(context);
   }
@@ -125,41 +127,24 @@ public class DownloadService extends HdfsService {
     }
   }
 
-  private void zipFile(ZipOutputStream zip, String path) {
-    try {
-      FSDataInputStream in = getApi(context).open(path);
-      zip.putNextEntry(new ZipEntry(path.substring(1)));
-      byte[] chunk = new byte[1024];
-
-      int readLen = 0;
-      while(readLen != -1) {
-        zip.write(chunk, 0, readLen);
-        readLen = in.read(chunk);
-      }
-    } catch (IOException ex) {
-      LOG.error("Error zipping file {}  (file ignored): ", path, ex);
-    } catch (InterruptedException ex) {
-      LOG.error("Error zipping file {} (file ignored): ", path, ex);
-    } finally {
-      try {
-        zip.closeEntry();
-      } catch (IOException ex) {
-        LOG.error("Error closing entry {} (file ignored): ", path, ex);
-      }
-    }
+  private ParallelZipWriter createZipWriter(HdfsApi api) {
+    Map<String, String> properties = context.getProperties();
+    int threads = getIntProperty(properties, ZIP_THREADS_PROPERTY, ParallelZipWriter.DEFAULT_THREADS);
+    int readAheadBytes = getIntProperty(properties, ZIP_READ_AHEAD_PROPERTY, ParallelZipWriter.DEFAULT_READ_AHEAD_BYTES);
+    boolean storeCompressed = properties != null && Boolean.parseBoolean(properties.get(ZIP_STORE_COMPRESSED_PROPERTY));
+    return new ParallelZipWriter(api, threads, readAheadBytes, storeCompressed);
   }
 
-  private void zipDirectory(ZipOutputStream zip, String path) {
+  private int getIntProperty(Map<String, String> properties, String name, int defaultValue) {
+    String value = properties == null ? null : properties.get(name);
+    if (value == null || value.trim().isEmpty()) {
+      return defaultValue;
+    }
     try {
-      zip.putNextEntry(new ZipEntry(path.substring(1) + "/"));
-    } catch (IOException ex) {
-      LOG.error("Error zipping directory {} (directory ignored).", path, ex);
-    } finally {
-      try {
-        zip.closeEntry();
-      } catch (IOException ex) {
-        LOG.error("Error zipping directory {} (directory ignored).", path, ex);
-      }
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException ex) {
+      LOG.warn("Invalid value {} of {}, using {}", value, name, defaultValue);
+      return defaultValue;
     }
   }
 
@@ -185,32 +170,7 @@ public class DownloadService extends HdfsService {
             ServiceFormattedException {
           ZipOutputStream zip = new ZipOutputStream(output);
           try {
-            HdfsApi api = getApi(context);
-            Queue<String> files = new LinkedList<String>();
-            for (String file : request.entries) {
-              files.add(file);
-            }
-            while (!files.isEmpty()) {
-              String path = files.poll();
-              FileStatus status = api.getFileStatus(path);
-              if (status.isDirectory()) {
-                FileStatus[] subdir;
-                try {
-                  subdir = api.listdir(path);
-                } catch (AccessControlException ex) {
-                  LOG.error("Error zipping directory {}/ (directory ignored) : ", path.substring(1), ex);
-                  continue;
-                }
-                for (FileStatus file : subdir) {
-                  files.add(org.apache.hadoop.fs.Path
-                      .getPathWithoutSchemeAndAuthority(file.getPath())
-                      .toString());
-                }
-                zipDirectory(zip, path);
-              } else {
-                zipFile(zip, path);
-              }
-            }
+            createZipWriter(getApi(context)).write(zip, request.entries);
           } catch (Exception ex) {
             LOG.error("Error occurred: " ,ex);
             throw new ServiceFormattedException(ex.getMessage(), ex);
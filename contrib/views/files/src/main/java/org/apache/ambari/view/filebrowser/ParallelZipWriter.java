@@ -0,0 +1,390 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.filebrowser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.ambari.view.utils.hdfs.HdfsApi;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.security.AccessControlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes HDFS files and directories to a ZIP stream.
+ *
+ * The entries are written in order on the calling thread, while a pool of threads lists the upcoming
+ * directories, and opens the upcoming files and reads their beginning ahead. The status of the contents
+ * of a directory is taken from its listing, only the status of the given paths is looked up by the
+ * prefetch. At most one read-ahead buffer per thread is held, so the memory used is bounded by the
+ * number of threads times the read-ahead size. The rest of a file larger than the buffer is copied
+ * from the stream opened by the prefetch.
+ *
+ * Files with the extension of a compressed format can be stored without compressing them again.
+ */
+public class ParallelZipWriter {
+
+  protected static final Logger LOG = LoggerFactory.getLogger(ParallelZipWriter.class);
+
+  public static final int DEFAULT_THREADS = 4;
+  public static final int DEFAULT_READ_AHEAD_BYTES = 1024 * 1024;
+
+  /**
+   * Extensions of the files which are not compressed again when storing compressed files is enabled
+   */
+  public static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList(
+      "gz", "tgz", "bz2", "zip", "jar", "xz", "lz4", "lzo", "snappy", "deflate", "7z",
+      "orc", "parquet", "avro", "jpg", "jpeg", "png", "gif", "mp3", "mp4"));
+
+  private static final AtomicInteger nextId = new AtomicInteger(1);
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  private final HdfsApi api;
+  private final int threads;
+  private final int readAheadBytes;
+  private final boolean storeCompressed;
+
+  private long fileCount = 0;
+  private long byteCount = 0;
+  private long elapsedTime = 0;
+
+  /**
+   * Constructor
+   * @param api hdfs api
+   * @param threads number of files opened and read ahead in parallel
+   * @param readAheadBytes size of the read-ahead buffer of each file
+   * @param storeCompressed store files with the extension of a compressed format without compressing them
+   */
+  public ParallelZipWriter(HdfsApi api, int threads, int readAheadBytes, boolean storeCompressed) {
+    this.api = api;
+    this.threads = Math.max(1, threads);
+    this.readAheadBytes = Math.max(1, readAheadBytes);
+    this.storeCompressed = storeCompressed;
+  }
+
+  /**
+   * Writes the files and the contents of the directories. Files and directories which cannot be read
+   * are logged and left out of the ZIP.
+   * @param zip ZIP stream
+   * @param paths paths of the files and directories
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  public void write(ZipOutputStream zip, String[] paths) throws IOException, InterruptedException {
+    long start = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final String prefix = "zip-download-" + nextId.getAndIncrement() + "-";
+      private final AtomicInteger threadId = new AtomicInteger(1);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, prefix + threadId.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    Queue<QueuedPath> files = new LinkedList<QueuedPath>();
+    for (String path : paths) {
+      files.add(new QueuedPath(path, null));
+    }
+    Queue<PendingEntry> pending = new LinkedList<PendingEntry>();
+    try {
+      while (!files.isEmpty() || !pending.isEmpty()) {
+        while (!files.isEmpty() && pending.size() < threads) {
+          QueuedPath file = files.poll();
+          pending.add(new PendingEntry(file.path, executor.submit(new Prefetch(file.path, file.status))));
+        }
+
+        PendingEntry entry = pending.poll();
+        PrefetchedFile file = getPrefetched(entry);
+        if (file == null) {
+          continue;
+        }
+        if (file.listingError != null) {
+          LOG.error("Error zipping directory {}/ (directory ignored) : ", entry.path.substring(1), file.listingError);
+        } else if (file.children != null) {
+          for (FileStatus child : file.children) {
+            files.add(new QueuedPath(org.apache.hadoop.fs.Path
+                .getPathWithoutSchemeAndAuthority(child.getPath())
+                .toString(), child));
+          }
+          zipDirectory(zip, entry.path);
+        } else {
+          zipFile(zip, entry.path, file);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+      for (PendingEntry entry : pending) {
+        if (entry.prefetch != null) {
+          closeQuietly(entry.prefetch);
+        }
+      }
+      elapsedTime = System.currentTimeMillis() - start;
+      LOG.info("Zipped {} files, {} bytes in {} ms ({} KB/s)", fileCount, byteCount, elapsedTime,
+          elapsedTime == 0 ? byteCount / 1024 : byteCount * 1000 / 1024 / elapsedTime);
+    }
+  }
+
+  /**
+   * Waits for the prefetch of the entry
+   * @return the prefetched file or directory, null if it cannot be read and is left out
+   * @throws IOException if the status or listing of the path could not be read
+   */
+  private PrefetchedFile getPrefetched(PendingEntry entry) throws IOException, InterruptedException {
+    try {
+      return entry.prefetch.get();
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof FileMetadataException) {
+        // the status and listings used to be read on the writing thread, their failures fail the ZIP
+        Throwable metadataCause = cause.getCause();
+        if (metadataCause instanceof InterruptedException) {
+          throw (InterruptedException) metadataCause;
+        }
+        throw metadataCause instanceof IOException ? (IOException) metadataCause
+            : new IOException(metadataCause.getMessage(), metadataCause);
+      }
+      LOG.error("Error zipping file {} (file ignored): ", entry.path, cause);
+      return null;
+    }
+  }
+
+  private void zipFile(ZipOutputStream zip, String path, PrefetchedFile file) {
+    try {
+      ZipEntry zipEntry = new ZipEntry(path.substring(1));
+      boolean store = storeCompressed && isCompressed(path);
+      if (store && file.rest == null) {
+        CRC32 crc = new CRC32();
+        crc.update(file.head, 0, file.length);
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(file.length);
+        zipEntry.setCompressedSize(file.length);
+        zipEntry.setCrc(crc.getValue());
+      } else {
+        // the size and checksum of a stored entry have to be known up front, so larger files are
+        // deflated without compression instead
+        zip.setMethod(ZipOutputStream.DEFLATED);
+        zip.setLevel(store ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+      }
+      zip.putNextEntry(zipEntry);
+      zip.write(file.head, 0, file.length);
+      long length = file.length;
+      if (file.rest != null) {
+        byte[] chunk = new byte[COPY_BUFFER_SIZE];
+        int readLen;
+        while ((readLen = file.rest.read(chunk)) != -1) {
+          zip.write(chunk, 0, readLen);
+          length += readLen;
+        }
+      }
+      fileCount++;
+      byteCount += length;
+    } catch (IOException ex) {
+      LOG.error("Error zipping file {}  (file ignored): ", path, ex);
+    } finally {
+      IOUtils.closeQuietly(file.rest);
+      try {
+        zip.closeEntry();
+      } catch (IOException ex) {
+        LOG.error("Error closing entry {} (file ignored): ", path, ex);
+      }
+    }
+  }
+
+  private void zipDirectory(ZipOutputStream zip, String path) {
+    try {
+      zip.putNextEntry(new ZipEntry(path.substring(1) + "/"));
+    } catch (IOException ex) {
+      LOG.error("Error zipping directory {} (directory ignored).", path, ex);
+    } finally {
+      try {
+        zip.closeEntry();
+      } catch (IOException ex) {
+        LOG.error("Error zipping directory {} (directory ignored).", path, ex);
+      }
+    }
+  }
+
+  private void closeQuietly(Future<PrefetchedFile> prefetch) {
+    if (prefetch.isDone() && !prefetch.isCancelled()) {
+      try {
+        IOUtils.closeQuietly(prefetch.get().rest);
+      } catch (InterruptedException | ExecutionException ex) {
+        // nothing was opened
+      }
+    } else {
+      prefetch.cancel(true);
+    }
+  }
+
+  static boolean isCompressed(String path) {
+    String name = new org.apache.hadoop.fs.Path(path).getName();
+    int dot = name.lastIndexOf('.');
+    return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase());
+  }
+
+  /**
+   * @return number of files written by the last {@link #write(ZipOutputStream, String[])}
+   */
+  public long getFileCount() {
+    return fileCount;
+  }
+
+  /**
+   * @return number of bytes of the files written by the last {@link #write(ZipOutputStream, String[])}
+   */
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  /**
+   * @return time taken by the last {@link #write(ZipOutputStream, String[])} in milliseconds
+   */
+  public long getElapsedTime() {
+    return elapsedTime;
+  }
+
+  /**
+   * A path waiting to be prefetched, with its status if it is known from the listing of its directory
+   */
+  private static class QueuedPath {
+    private final String path;
+    private final FileStatus status;
+
+    private QueuedPath(String path, FileStatus status) {
+      this.path = path;
+      this.status = status;
+    }
+  }
+
+  /**
+   * A file or directory with its prefetch
+   */
+  private static class PendingEntry {
+    private final String path;
+    private final Future<PrefetchedFile> prefetch;
+
+    private PendingEntry(String path, Future<PrefetchedFile> prefetch) {
+      this.path = path;
+      this.prefetch = prefetch;
+    }
+  }
+
+  /**
+   * Beginning of a file, and the stream to read the rest from if it did not fit into the buffer,
+   * or the contents of a directory
+   */
+  private static class PrefetchedFile {
+    private final byte[] head;
+    private final int length;
+    private final InputStream rest;
+    private final FileStatus[] children;
+    private final AccessControlException listingError;
+
+    private PrefetchedFile(byte[] head, int length, InputStream rest) {
+      this.head = head;
+      this.length = length;
+      this.rest = rest;
+      this.children = null;
+      this.listingError = null;
+    }
+
+    private PrefetchedFile(FileStatus[] children, AccessControlException listingError) {
+      this.head = null;
+      this.length = 0;
+      this.rest = null;
+      this.children = children;
+      this.listingError = listingError;
+    }
+  }
+
+  /**
+   * Failure to read the status of a path or to list a directory, which fails the whole ZIP
+   */
+  private static class FileMetadataException extends Exception {
+    private FileMetadataException(Exception cause) {
+      super(cause);
+    }
+  }
+
+  private class Prefetch implements Callable<PrefetchedFile> {
+    private final String path;
+    private final FileStatus status;
+
+    private Prefetch(String path, FileStatus status) {
+      this.path = path;
+      this.status = status;
+    }
+
+    @Override
+    public PrefetchedFile call() throws Exception {
+      FileStatus fileStatus = status;
+      try {
+        if (fileStatus == null) {
+          fileStatus = api.getFileStatus(path);
+        }
+        if (fileStatus.isDirectory()) {
+          try {
+            return new PrefetchedFile(api.listdir(path), null);
+          } catch (AccessControlException ex) {
+            return new PrefetchedFile(null, ex);
+          }
+        }
+      } catch (IOException | InterruptedException ex) {
+        throw new FileMetadataException(ex);
+      }
+
+      InputStream in = api.open(path);
+      try {
+        // one byte more than the read-ahead tells if the file continues after it
+        byte[] head = new byte[readAheadBytes + 1];
+        int length = IOUtils.read(in, head);
+        if (length <= readAheadBytes) {
+          in.close();
+          return new PrefetchedFile(head, length, null);
+        }
+        return new PrefetchedFile(head, length, in);
+      } catch (Exception ex) {
+        IOUtils.closeQuietly(in);
+        throw ex;
+      }
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.filebrowser;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.ambari.view.utils.hdfs.ConfigurationBuilder;
+import org.apache.ambari.view.utils.hdfs.HdfsApi;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Zips files of the local file system
+ */
+public class ParallelZipWriterTest {
+  private File baseDir;
+  private HdfsApi api;
+  private final List<String> statusLookups = Collections.synchronizedList(new ArrayList<String>());
+
+  @Before
+  public void setUp() throws Exception {
+    baseDir = new File("target/local/ParallelZipWriterTest").getAbsoluteFile();
+    FileUtils.deleteDirectory(baseDir);
+
+    Configuration conf = new Configuration();
+    conf.set("fs.defaultFS", "file:///");
+    ConfigurationBuilder configurationBuilder = createNiceMock(ConfigurationBuilder.class);
+    expect(configurationBuilder.buildConfig()).andReturn(conf).anyTimes();
+    expect(configurationBuilder.buildAuthenticationConfig()).andReturn(new HashMap<String, String>()).anyTimes();
+    replay(configurationBuilder);
+    api = new HdfsApi(configurationBuilder, System.getProperty("user.name")) {
+      @Override
+      public FileStatus getFileStatus(String path) throws IOException, InterruptedException {
+        statusLookups.add(path);
+        return super.getFileStatus(path);
+      }
+    };
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(baseDir);
+  }
+
+  @Test
+  public void testEntriesAreWrittenInOrder() throws Exception {
+    Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+    for (int i = 0; i < 20; i++) {
+      files.put("dir/file" + i + ".txt", createContent(i * 100));
+    }
+    files.put("dir/sub/large.txt", createContent(10000));
+    writeFiles(files);
+
+    ParallelZipWriter writer = new ParallelZipWriter(api, 3, 1024, false);
+    Map<String, byte[]> zipped = zip(writer, baseDir.getPath() + "/dir");
+
+    Assert.assertEquals(21, writer.getFileCount());
+    Assert.assertEquals(29000, writer.getByteCount());
+    Assert.assertTrue(zipped.containsKey(entryName("dir/")));
+    Assert.assertTrue(zipped.containsKey(entryName("dir/sub/")));
+    for (Map.Entry<String, byte[]> file : files.entrySet()) {
+      Assert.assertArrayEquals(file.getValue(), zipped.get(entryName(file.getKey())));
+    }
+  }
+
+  @Test
+  public void testStatusOfDirectoryContentsIsTakenFromListing() throws Exception {
+    Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+    for (int i = 0; i < 10; i++) {
+      files.put("dir/sub" + (i % 2) + "/file" + i + ".txt", createContent(100));
+    }
+    files.put("single.txt", createContent(100));
+    writeFiles(files);
+
+    ParallelZipWriter writer = new ParallelZipWriter(api, 3, 1024, false);
+    Map<String, byte[]> zipped = zip(writer, baseDir.getPath() + "/dir", baseDir.getPath() + "/single.txt");
+
+    Assert.assertEquals(11, writer.getFileCount());
+    Assert.assertEquals(14, zipped.size());
+    Assert.assertEquals(Arrays.asList(baseDir.getPath() + "/dir", baseDir.getPath() + "/single.txt"),
+        new ArrayList<String>(statusLookups));
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testMissingPathFailsTheZip() throws Exception {
+    ParallelZipWriter writer = new ParallelZipWriter(api, 2, 1024, false);
+    zip(writer, baseDir.getPath() + "/missing");
+  }
+
+  @Test
+  public void testCompressedFilesAreStored() throws Exception {
+    Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+    files.put("data.gz", createContent(500));
+    files.put("large.gz", createContent(5000));
+    files.put("data.txt", createContent(500));
+    writeFiles(files);
+
+    ParallelZipWriter writer = new ParallelZipWriter(api, 2, 1024, true);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ZipOutputStream zip = new ZipOutputStream(output);
+    writer.write(zip, new String[] {
+        baseDir.getPath() + "/data.gz", baseDir.getPath() + "/large.gz", baseDir.getPath() + "/data.txt"});
+    zip.close();
+
+    ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()));
+    ZipEntry entry = in.getNextEntry();
+    Assert.assertEquals(entryName("data.gz"), entry.getName());
+    Assert.assertEquals(ZipEntry.STORED, entry.getMethod());
+    Assert.assertArrayEquals(files.get("data.gz"), IOUtils.toByteArray(in));
+    entry = in.getNextEntry();
+    Assert.assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+    Assert.assertArrayEquals(files.get("large.gz"), IOUtils.toByteArray(in));
+    entry = in.getNextEntry();
+    Assert.assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+    Assert.assertArrayEquals(files.get("data.txt"), IOUtils.toByteArray(in));
+    Assert.assertNull(in.getNextEntry());
+  }
+
+  private Map<String, byte[]> zip(ParallelZipWriter writer, String... paths) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ZipOutputStream zip = new ZipOutputStream(output);
+    writer.write(zip, paths);
+    zip.close();
+
+    Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+    ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()));
+    ZipEntry entry;
+    while ((entry = in.getNextEntry()) != null) {
+      entries.put(entry.getName(), IOUtils.toByteArray(in));
+    }
+    return entries;
+  }
+
+  private void writeFiles(Map<String, byte[]> files) throws Exception {
+    for (Map.Entry<String, byte[]> file : files.entrySet()) {
+      FileUtils.writeByteArrayToFile(new File(baseDir, file.getKey()), file.getValue());
+    }
+  }
+
+  private String entryName(String name) {
+    return baseDir.getPath().substring(1) + "/" + name;
+  }
+
+  private byte[] createContent(int length) {
+    byte[] content = new byte[length];
+    for (int i = 0; i < length; i++) {
+      content[i] = (byte) (i % 31);
+    }
+    return content;
+  }
+}
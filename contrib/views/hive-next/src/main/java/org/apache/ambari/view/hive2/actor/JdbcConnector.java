@@ -291,7 +291,8 @@ public class JdbcConnector extends HiveActor {
 
     if (resultSetOptional.isPresent()) {
       ActorRef resultSetActor = getContext().actorOf(Props.create(ResultSetIterator.class, self(),
-        resultSetOptional.get(), isAsync()).withDispatcher("akka.actor.result-dispatcher"),
+        resultSetOptional.get(), ResultSetIterator.DEFAULT_BATCH_SIZE,
+        actorConfiguration.getResultBatchMaxBytes(ResultSetIterator.DEFAULT_MAX_BATCH_BYTES), isAsync()).withDispatcher("akka.actor.result-dispatcher"),
         "ResultSetIterator:" + UUID.randomUUID().toString());
       resultSetIterator = resultSetActor;
       if (!isAsync()) {
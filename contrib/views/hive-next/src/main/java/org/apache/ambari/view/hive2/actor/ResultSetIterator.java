@@ -44,25 +44,36 @@ import java.util.List;
 public class ResultSetIterator extends HiveActor {
   private final Logger LOG = LoggerFactory.getLogger(getClass());
 
-  private static final int DEFAULT_BATCH_SIZE = 100;
+  public static final int DEFAULT_BATCH_SIZE = 100;
+  public static final long DEFAULT_MAX_BATCH_BYTES = 4 * 1024 * 1024;
   public static final String NULL = "NULL";
 
   private final ActorRef parent;
   private final ResultSet resultSet;
   private final int batchSize;
+  private final long maxBatchBytes;
 
   private List<ColumnDescription> columnDescriptions;
   private int columnCount;
   boolean async = false;
   private boolean metaDataFetched = false;
 
-  public ResultSetIterator(ActorRef parent, ResultSet resultSet, int batchSize, boolean isAsync) {
+  /**
+   * @param maxBatchBytes estimated size of the rows after which a batch is sent, even if it has fewer
+   *                      rows than the batch size, so that wide rows do not pile up in memory
+   */
+  public ResultSetIterator(ActorRef parent, ResultSet resultSet, int batchSize, long maxBatchBytes, boolean isAsync) {
     this.parent = parent;
     this.resultSet = resultSet;
     this.batchSize = batchSize;
+    this.maxBatchBytes = maxBatchBytes;
     this.async = isAsync;
   }
 
+  public ResultSetIterator(ActorRef parent, ResultSet resultSet, int batchSize, boolean isAsync) {
+    this(parent, resultSet, batchSize, DEFAULT_MAX_BATCH_BYTES, isAsync);
+  }
+
   public ResultSetIterator(ActorRef parent, ResultSet resultSet) {
     this(parent, resultSet, DEFAULT_BATCH_SIZE, true);
   }
@@ -115,10 +126,14 @@ public class ResultSetIterator extends HiveActor {
       }
     }
     int index = 0;
+    long batchBytes = 0;
     try {
-      while (resultSet.next() && index < batchSize) {
+      // check the batch limits before moving the cursor, otherwise the row after a full batch is lost
+      while (index < batchSize && batchBytes < maxBatchBytes && resultSet.next()) {
         index++;
-        rows.add(getRowFromResultSet(resultSet));
+        Row row = getRowFromResultSet(resultSet);
+        batchBytes += row.getEstimatedSize();
+        rows.add(row);
       }
 
       if (index == 0) {
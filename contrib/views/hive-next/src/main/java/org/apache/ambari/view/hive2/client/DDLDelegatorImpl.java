@@ -46,6 +46,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.concurrent.duration.Duration;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -53,6 +55,7 @@ import java.util.concurrent.TimeUnit;
 public class DDLDelegatorImpl implements DDLDelegator {
 
   public static final String NO_VALUE_MARKER = "NO_VALUE";
+  private static final int DEFAULT_RESULT_MEMORY_ROWS = 1000;
   private final Logger LOG = LoggerFactory.getLogger(getClass());
 
   private final ActorRef controller;
@@ -111,35 +114,17 @@ public class DDLDelegatorImpl implements DDLDelegator {
 
   @Override
   public Cursor<Row, ColumnDescription> getDbListCursor(ConnectionConfig config, String like) {
-    Optional<Result> rowsFromDB = getRowsFromDB(config, getDatabaseListStatements(like));
-    if (rowsFromDB.isPresent()) {
-      Result result = rowsFromDB.get();
-      return new PersistentCursor<>(result.getRows(), result.getColumns());
-    } else {
-      return new PersistentCursor<>(Lists.<Row>newArrayList(), Lists.<ColumnDescription>newArrayList());
-    }
+    return getCursorFromDB(config, createStatementJob(config, getDatabaseListStatements(like)));
   }
 
   @Override
   public Cursor<Row, ColumnDescription> getTableListCursor(ConnectionConfig config, String database, String like) {
-    Optional<Result> rowsFromDB = getRowsFromDB(config, getTableListStatements(database, like));
-    if (rowsFromDB.isPresent()) {
-      Result result = rowsFromDB.get();
-      return new PersistentCursor<>(result.getRows(), result.getColumns());
-    } else {
-      return new PersistentCursor<>(Lists.<Row>newArrayList(), Lists.<ColumnDescription>newArrayList());
-    }
+    return getCursorFromDB(config, createStatementJob(config, getTableListStatements(database, like)));
   }
 
   @Override
   public Cursor<Row, ColumnDescription> getTableDescriptionCursor(ConnectionConfig config, String database, String table, String like, boolean extended) {
-    Optional<Result> tableDescriptionOptional = getTableDescription(config, database, table, like);
-    if(tableDescriptionOptional.isPresent()) {
-      Result result = tableDescriptionOptional.get();
-      return new PersistentCursor<>(result.getRows(), result.getColumns());
-    } else {
-      return new PersistentCursor<>(Lists.<Row>newArrayList(), Lists.<ColumnDescription>newArrayList());
-    }
+    return getCursorFromDB(config, createTableDescriptionJob(config, database, table, like));
   }
 
   private String[] getDatabaseListStatements(String like) {
@@ -156,28 +141,94 @@ public class DDLDelegatorImpl implements DDLDelegator {
   }
 
   private Optional<Result> getRowsFromDB(ConnectionConfig config, String[] statements) {
+    return getResultFromDB(createStatementJob(config, statements));
+  }
+
+  private Optional<Result> getTableDescription(ConnectionConfig config, String databasePattern, String tablePattern, String columnPattern) {
+    return getResultFromDB(createTableDescriptionJob(config, databasePattern, tablePattern, columnPattern));
+  }
+
+  private ExecuteJob createStatementJob(ConnectionConfig config, String[] statements) {
     Connect connect = config.createConnectMessage();
     HiveJob job = new SQLStatementJob(HiveJob.Type.SYNC, statements, config.getUsername());
-    ExecuteJob execute = new ExecuteJob(connect, job);
 
     LOG.info("Executing query: {}, for user: {}", getJoinedStatements(statements), job.getUsername());
-
-    return getResultFromDB(execute);
+    return new ExecuteJob(connect, job);
   }
 
-  private Optional<Result> getTableDescription(ConnectionConfig config, String databasePattern, String tablePattern, String columnPattern) {
+  private ExecuteJob createTableDescriptionJob(ConnectionConfig config, String databasePattern, String tablePattern, String columnPattern) {
     Connect connect = config.createConnectMessage();
     HiveJob job = new GetColumnMetadataJob(config.getUsername(), databasePattern, tablePattern, columnPattern);
-    ExecuteJob execute = new ExecuteJob(connect, job);
 
     LOG.info("Executing query to fetch the column description for dbPattern: {}, tablePattern: {}, columnPattern: {}, for user: {}",
       databasePattern, tablePattern, columnPattern, job.getUsername());
-    return getResultFromDB(execute);
+    return new ExecuteJob(connect, job);
   }
 
   private Optional<Result> getResultFromDB(ExecuteJob job) {
-    List<ColumnDescription> descriptions = null;
-    List<Row> rows = Lists.newArrayList();
+    final List<Row> rows = Lists.newArrayList();
+    final List<List<ColumnDescription>> descriptions = Lists.newArrayList();
+    boolean hasResult = fetchResultFromDB(job, new BatchHandler() {
+      @Override
+      public void handle(Result batch) {
+        if (descriptions.isEmpty()) {
+          descriptions.add(batch.getColumns());
+        }
+        rows.addAll(batch.getRows());
+      }
+    });
+    if (!hasResult) {
+      return Optional.absent();
+    }
+    return Optional.of(new Result(rows, descriptions.isEmpty() ? null : descriptions.get(0)));
+  }
+
+  /**
+   * Fetches the result into a cursor which keeps a window of the rows in memory and spills the others to disk,
+   * so that large listings are not held in memory while they are paged through.
+   */
+  private Cursor<Row, ColumnDescription> getCursorFromDB(final ConnectionConfig config, ExecuteJob job) {
+    final PersistentCursor cursor = new PersistentCursor(config.getUsername(), ResultMemoryBudget.getInstance(context),
+      actorConfiguration.getResultMemoryRows(DEFAULT_RESULT_MEMORY_ROWS),
+      new File(actorConfiguration.getResultSpillDirectory(System.getProperty("java.io.tmpdir"))));
+    try {
+      fetchResultFromDB(job, new BatchHandler() {
+        @Override
+        public void handle(Result batch) {
+          if (cursor.getDescriptions().isEmpty()) {
+            cursor.setDescriptions(batch.getColumns());
+          }
+          try {
+            for (Row row : batch.getRows()) {
+              cursor.add(row);
+            }
+          } catch (IOException ex) {
+            throw storeFailed(config, ex);
+          }
+        }
+      });
+      cursor.complete();
+    } catch (IOException ex) {
+      cursor.close();
+      throw storeFailed(config, ex);
+    } catch (RuntimeException ex) {
+      cursor.close();
+      throw ex;
+    }
+    return cursor;
+  }
+
+  private ServiceFormattedException storeFailed(ConnectionConfig config, IOException ex) {
+    String errorMessage = "Failed to store the results for user: " + config.getUsername();
+    LOG.error(errorMessage, ex);
+    return new ServiceFormattedException(errorMessage, ex);
+  }
+
+  /**
+   * Executes the job and passes the batches of its result to the handler.
+   * @return false if the job returned no result
+   */
+  private boolean fetchResultFromDB(ExecuteJob job, BatchHandler handler) {
     Inbox inbox = Inbox.create(system);
     inbox.send(controller, job);
     Object submitResult;
@@ -191,7 +242,7 @@ public class DDLDelegatorImpl implements DDLDelegator {
 
     if (submitResult instanceof NoResult) {
       LOG.info("Query returned with no result.");
-      return Optional.absent();
+      return false;
 
     }
 
@@ -215,11 +266,7 @@ public class DDLDelegatorImpl implements DDLDelegator {
         }
 
         if (receive instanceof Result) {
-          Result result = (Result) receive;
-          if (descriptions == null) {
-            descriptions = result.getColumns();
-          }
-          rows.addAll(result.getRows());
+          handler.handle((Result) receive);
         }
 
         if (receive instanceof NoMoreItems) {
@@ -234,7 +281,7 @@ public class DDLDelegatorImpl implements DDLDelegator {
       }
 
     }
-    return Optional.of(new Result(rows, descriptions));
+    return true;
   }
 
   private String getJoinedStatements(String[] statements) {
@@ -252,4 +299,11 @@ public class DDLDelegatorImpl implements DDLDelegator {
       }).toList();
   }
 
+  /**
+   * Receives the batches of rows fetched for a job.
+   */
+  private interface BatchHandler {
+    void handle(Result batch);
+  }
+
 }
@@ -19,40 +19,256 @@
 package org.apache.ambari.view.hive2.client;
 
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
- * Wrapper over other iterables. Does not block and can be reset to start again from beginning.
+ * Cursor over rows which are fetched once and can be reset to start again from beginning. Does not block.
+ *
+ * At most a window of rows is kept in memory. When the window is full, or the user is over the
+ * {@link ResultMemoryBudget}, the rows of the window are written to a compressed temporary file as one batch.
+ * Reading streams the batches back from the file one at a time, followed by the rows still in memory.
+ * The rows are added with {@link #add(Row)} and {@link #complete()} before the cursor is read, and
+ * {@link #close()} deletes the file. The files left behind by a previous run of the server are deleted when
+ * the first cursor of this run spills to the directory.
  */
-public class PersistentCursor<T, R> implements Cursor<T, R>  {
-  private List<T> rows = Lists.newArrayList();
-  private List<R> columns = Lists.newArrayList();
+public class PersistentCursor implements Cursor<Row, ColumnDescription>, Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(PersistentCursor.class);
+  private static final int SPILL_BUFFER_SIZE = 64 * 1024;
+  static final String SPILL_FILE_PREFIX = "hive-result-";
+  static final String SPILL_FILE_SUFFIX = ".spill";
+
+  /**
+   * Spill directories already swept in this run
+   */
+  private static final Set<File> sweptDirectories = new HashSet<>();
+
+  private final String username;
+  private final ResultMemoryBudget budget;
+  private final int windowSize;
+  private final File spillDirectory;
+
+  private List<ColumnDescription> columns = Lists.newArrayList();
+  private List<Row> window = Lists.newArrayList();
+  private long windowBytes = 0;
+  private File spillFile;
+  private ObjectOutputStream spillOutput;
+  private int spilledBatches = 0;
+  private boolean completed = false;
+
+  private ObjectInputStream spillInput;
+  private int batchesRead = 0;
+  private boolean windowRead = false;
+  private Iterator<Row> batch;
   private int offset = 0;
 
-  public PersistentCursor(List<T> rows, List<R> columns) {
-    this.rows = rows;
+  /**
+   * Creates a completed cursor over rows which are kept in memory.
+   */
+  public PersistentCursor(List<Row> rows, List<ColumnDescription> columns) {
+    this(null, null, Integer.MAX_VALUE, null);
+    this.window = rows;
+    this.columns = columns;
+    this.completed = true;
+  }
+
+  /**
+   * Creates a cursor to add rows to.
+   * @param username user the rows are kept for
+   * @param budget limits the memory used by the rows of the user, may be null
+   * @param windowSize number of rows kept in memory
+   * @param spillDirectory directory of the temporary file, null for the default temporary directory
+   */
+  public PersistentCursor(String username, ResultMemoryBudget budget, int windowSize, File spillDirectory) {
+    this.username = username;
+    this.budget = budget;
+    this.windowSize = Math.max(1, windowSize);
+    this.spillDirectory = spillDirectory;
+  }
+
+  public void setDescriptions(List<ColumnDescription> columns) {
     this.columns = columns;
   }
 
+  /**
+   * Adds a row, spilling the rows in memory to disk if the window is full or the user is over the budget.
+   */
+  public void add(Row row) throws IOException {
+    Preconditions.checkState(!completed, "Cannot add rows to a completed cursor");
+    long size = row.getEstimatedSize();
+    window.add(row);
+    windowBytes += size;
+    boolean withinBudget = budget == null || budget.reserve(username, size);
+    if (window.size() >= windowSize || !withinBudget) {
+      spill();
+    }
+  }
+
+  /**
+   * Finishes adding rows and positions the cursor at the first row.
+   */
+  public void complete() throws IOException {
+    completed = true;
+    if (spillOutput != null) {
+      spillOutput.close();
+      spillOutput = null;
+    }
+    reset();
+  }
+
+  private void spill() throws IOException {
+    if (spillOutput == null) {
+      sweepSpillDirectory(spillDirectory, ManagementFactory.getRuntimeMXBean().getStartTime());
+      spillFile = File.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX, spillDirectory);
+      spillOutput = new ObjectOutputStream(new GZIPOutputStream(
+        new BufferedOutputStream(new FileOutputStream(spillFile), SPILL_BUFFER_SIZE), SPILL_BUFFER_SIZE));
+      LOG.debug("Spilling result rows of user {} to {}", username, spillFile);
+    }
+
+    Object[][] values = new Object[window.size()][];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = toSerializable(window.get(i).getRow());
+    }
+    spillOutput.writeObject(values);
+    // the written rows are not needed to resolve back references
+    spillOutput.reset();
+    spilledBatches++;
+
+    releaseWindow();
+  }
+
+  /**
+   * Deletes the spill files last modified before the start of this run, once for every directory
+   * @param directory spill directory, null for the default temporary directory
+   * @param startTime start time of this run
+   * @return number of files deleted
+   */
+  public static int sweepSpillDirectory(File directory, long startTime) {
+    File dir = directory != null ? directory : new File(System.getProperty("java.io.tmpdir"));
+    synchronized (sweptDirectories) {
+      if (!sweptDirectories.add(dir.getAbsoluteFile())) {
+        return 0;
+      }
+    }
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return 0;
+    }
+    int deleted = 0;
+    for (File file : files) {
+      String name = file.getName();
+      if (name.startsWith(SPILL_FILE_PREFIX) && name.endsWith(SPILL_FILE_SUFFIX) && file.isFile()
+        && file.lastModified() < startTime) {
+        if (file.delete()) {
+          deleted++;
+        } else {
+          LOG.warn("Failed to delete the spilled result rows {} left by a previous run", file);
+        }
+      }
+    }
+    if (deleted > 0) {
+      LOG.info("Deleted {} spilled result files left by a previous run in {}", deleted, dir);
+    }
+    return deleted;
+  }
+
+  private Object[] toSerializable(Object[] values) {
+    Object[] result = values;
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null && !(values[i] instanceof Serializable)) {
+        if (result == values) {
+          result = values.clone();
+        }
+        result[i] = values[i].toString();
+      }
+    }
+    return result;
+  }
+
+  private void releaseWindow() {
+    if (budget != null) {
+      budget.release(username, windowBytes);
+    }
+    window = Lists.newArrayList();
+    windowBytes = 0;
+  }
+
+  private Iterator<Row> readBatch() {
+    try {
+      if (spillInput == null) {
+        spillInput = new ObjectInputStream(new GZIPInputStream(
+          new BufferedInputStream(new FileInputStream(spillFile), SPILL_BUFFER_SIZE), SPILL_BUFFER_SIZE));
+      }
+      Object[][] values = (Object[][]) spillInput.readObject();
+      batchesRead++;
+      if (batchesRead == spilledBatches) {
+        closeSpillInput();
+      }
+      List<Row> rows = Lists.newArrayListWithCapacity(values.length);
+      for (Object[] row : values) {
+        rows.add(new Row(row));
+      }
+      return rows.iterator();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new HiveClientRuntimeException("Failed to read the result rows from " + spillFile, e);
+    }
+  }
+
+  private void closeSpillInput() {
+    IOUtils.closeQuietly(spillInput);
+    spillInput = null;
+  }
 
   @Override
-  public Iterator<T> iterator() {
+  public Iterator<Row> iterator() {
     return this;
   }
 
   @Override
   public boolean hasNext() {
-    return rows.size() > 0 && offset < rows.size();
+    Preconditions.checkState(completed, "Cannot read rows before the cursor is completed");
+    while (batch == null || !batch.hasNext()) {
+      if (batchesRead < spilledBatches) {
+        batch = readBatch();
+      } else if (!windowRead) {
+        batch = window.iterator();
+        windowRead = true;
+      } else {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
-  public T next() {
-    T row = rows.get(offset);
+  public Row next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
     offset++;
-    return row;
+    return batch.next();
   }
 
   @Override
@@ -67,7 +283,11 @@ public class PersistentCursor<T, R> implements Cursor<T, R>  {
 
   @Override
   public void reset() {
-    this.offset = 0;
+    closeSpillInput();
+    batchesRead = 0;
+    windowRead = false;
+    batch = null;
+    offset = 0;
   }
 
   @Override
@@ -76,7 +296,7 @@ public class PersistentCursor<T, R> implements Cursor<T, R>  {
   }
 
   @Override
-  public List<R> getDescriptions() {
+  public List<ColumnDescription> getDescriptions() {
     return columns;
   }
 
@@ -84,4 +304,25 @@ public class PersistentCursor<T, R> implements Cursor<T, R>  {
   public void keepAlive() {
     // Do Nothing as we are pre-fetching everything.
   }
+
+  /**
+   * Releases the memory of the rows and deletes the spilled rows.
+   */
+  @Override
+  public void close() {
+    closeSpillInput();
+    IOUtils.closeQuietly(spillOutput);
+    spillOutput = null;
+    releaseWindow();
+    spilledBatches = 0;
+    batchesRead = 0;
+    windowRead = true;
+    batch = null;
+    if (spillFile != null) {
+      if (!spillFile.delete()) {
+        LOG.warn("Failed to delete the spilled result rows {}", spillFile);
+      }
+      spillFile = null;
+    }
+  }
 }
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive2.client;
+
+import org.apache.ambari.view.ViewContext;
+import org.apache.ambari.view.hive2.utils.HiveActorConfiguration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the estimated memory used by the result rows the cursors of each user keep in memory.
+ * A {@link PersistentCursor} reserves the size of every row it keeps and spills its rows to disk
+ * when the user is over the limit.
+ */
+public class ResultMemoryBudget {
+  public static final long DEFAULT_USER_MEMORY_LIMIT = 64 * 1024 * 1024;
+
+  private static Map<String, ResultMemoryBudget> viewSingletonObjects = new HashMap<>();
+
+  public static synchronized ResultMemoryBudget getInstance(ViewContext context) {
+    if (!viewSingletonObjects.containsKey(context.getInstanceName())) {
+      long limit = new HiveActorConfiguration(context).getResultUserMemoryLimit(DEFAULT_USER_MEMORY_LIMIT);
+      viewSingletonObjects.put(context.getInstanceName(), new ResultMemoryBudget(limit));
+    }
+    return viewSingletonObjects.get(context.getInstanceName());
+  }
+
+  private final long userLimit;
+  private final ConcurrentMap<String, AtomicLong> usage = new ConcurrentHashMap<>();
+
+  public ResultMemoryBudget(long userLimit) {
+    this.userLimit = userLimit;
+  }
+
+  /**
+   * Reserves memory for a user. The memory is reserved even if the user goes over the limit.
+   * @param username user keeping the rows
+   * @param bytes estimated size of the rows
+   * @return false if the user is over the limit now
+   */
+  public boolean reserve(String username, long bytes) {
+    AtomicLong used = usage.get(username);
+    if (used == null) {
+      AtomicLong newUsed = new AtomicLong();
+      used = usage.putIfAbsent(username, newUsed);
+      if (used == null) {
+        used = newUsed;
+      }
+    }
+    return used.addAndGet(bytes) <= userLimit;
+  }
+
+  /**
+   * Releases memory reserved with {@link #reserve(String, long)}.
+   * @param username user keeping the rows
+   * @param bytes estimated size of the rows
+   */
+  public void release(String username, long bytes) {
+    AtomicLong used = usage.get(username);
+    if (used != null) {
+      used.addAndGet(-bytes);
+    }
+  }
+
+  /**
+   * @param username user keeping the rows
+   * @return estimated size of the rows the user keeps in memory
+   */
+  public long getUsage(String username) {
+    AtomicLong used = usage.get(username);
+    return used == null ? 0 : used.get();
+  }
+
+  public long getUserLimit() {
+    return userLimit;
+  }
+}
@@ -49,6 +49,25 @@ public class Row {
     this.row = row;
   }
 
+  /**
+   * Rough estimate of the heap used by the row, used to limit the rows kept in memory.
+   * Strings count two bytes per character, other values a fixed size.
+   * @return estimated size in bytes
+   */
+  public long getEstimatedSize() {
+    long size = 16 + 8L * row.length;
+    for (Object value : row) {
+      if (value instanceof String) {
+        size += 40 + 2L * ((String) value).length();
+      } else if (value instanceof byte[]) {
+        size += 16 + ((byte[]) value).length;
+      } else if (value != null) {
+        size += 24;
+      }
+    }
+    return size;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -34,9 +34,11 @@ import org.apache.ambari.view.hive2.utils.ResultFetchFormattedException;
 import org.apache.ambari.view.hive2.utils.ResultNotReadyFormattedException;
 import org.apache.ambari.view.hive2.utils.ServiceFormattedException;
 import org.apache.commons.collections4.map.PassiveExpiringMap;
+import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.hbase.util.Strings;
 
 import javax.ws.rs.core.Response;
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -80,10 +82,47 @@ public class ResultsPaginationController {
     }
   }
 
+  /**
+   * Map under the results cache which closes the cursors holding resources once they are removed, replaced or
+   * expired, so that their rows spilled to disk are deleted
+   */
+  static class ClosingCursorMap extends HashMap<String, Cursor<Row, ColumnDescription>> {
+    @Override
+    public Cursor<Row, ColumnDescription> put(String key, Cursor<Row, ColumnDescription> value) {
+      Cursor<Row, ColumnDescription> previous = super.put(key, value);
+      if (previous != value) {
+        close(previous);
+      }
+      return previous;
+    }
+
+    @Override
+    public Cursor<Row, ColumnDescription> remove(Object key) {
+      Cursor<Row, ColumnDescription> removed = super.remove(key);
+      close(removed);
+      return removed;
+    }
+
+    @Override
+    public void clear() {
+      List<Cursor<Row, ColumnDescription>> removed = new ArrayList<>(values());
+      super.clear();
+      for (Cursor<Row, ColumnDescription> cursor : removed) {
+        close(cursor);
+      }
+    }
+
+    private void close(Cursor<Row, ColumnDescription> cursor) {
+      if (cursor instanceof Closeable) {
+        IOUtils.closeQuietly((Closeable) cursor);
+      }
+    }
+  }
+
   private Map<String, Cursor<Row, ColumnDescription>> getResultsCache() {
     if (resultsCache == null) {
       PassiveExpiringMap<String, Cursor<Row, ColumnDescription>> resultsCacheExpiringMap =
-          new PassiveExpiringMap<>(new CustomTimeToLiveExpirationPolicy(EXPIRING_TIME));
+          new PassiveExpiringMap<>(new CustomTimeToLiveExpirationPolicy(EXPIRING_TIME), new ClosingCursorMap());
       resultsCache = Collections.synchronizedMap(resultsCacheExpiringMap);
     }
     return resultsCache;
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive2.resources.uploads;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Passes the bytes written to {@link #getOutputStream()} on one thread to an output stream written
+ * by {@link #drainTo(OutputStream)} on another thread, through a fixed number of buffers which are
+ * reused. Producing the data overlaps writing it, and the memory used is bounded by the buffers.
+ */
+public class BufferPipe {
+
+  private final BlockingQueue<Buffer> free;
+  private final BlockingQueue<Buffer> filled;
+  private final Buffer end = new Buffer(0);
+  private final PipeOutputStream outputStream = new PipeOutputStream();
+
+  /**
+   * @param bufferSize size of each buffer
+   * @param bufferCount number of buffers, at least 2 so that one can be filled while another is written
+   */
+  public BufferPipe(int bufferSize, int bufferCount) {
+    free = new ArrayBlockingQueue<>(bufferCount);
+    filled = new ArrayBlockingQueue<>(bufferCount + 1);
+    for (int i = 0; i < bufferCount; i++) {
+      free.add(new Buffer(bufferSize));
+    }
+  }
+
+  /**
+   * stream to write the data to, closing it marks the end of the data
+   */
+  public OutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  /**
+   * writes the data to the stream until the output stream of the pipe is closed
+   * @return number of bytes written
+   */
+  public long drainTo(OutputStream out) throws IOException {
+    long count = 0;
+    try {
+      while (true) {
+        Buffer buffer = filled.take();
+        if (buffer == end) {
+          return count;
+        }
+        out.write(buffer.data, 0, buffer.length);
+        count += buffer.length;
+        buffer.length = 0;
+        free.put(buffer);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing the data");
+    }
+  }
+
+  private static class Buffer {
+    private final byte[] data;
+    private int length = 0;
+
+    private Buffer(int size) {
+      data = new byte[size];
+    }
+  }
+
+  private class PipeOutputStream extends OutputStream {
+    private Buffer current;
+    private boolean closed = false;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      while (len > 0) {
+        if (current == null) {
+          current = take(free);
+        }
+        int n = Math.min(len, current.data.length - current.length);
+        System.arraycopy(b, off, current.data, current.length, n);
+        current.length += n;
+        off += n;
+        len -= n;
+        if (current.length == current.data.length) {
+          flush();
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (current != null && current.length > 0) {
+        put(current);
+        current = null;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        flush();
+        closed = true;
+        put(end);
+      }
+    }
+
+    private Buffer take(BlockingQueue<Buffer> queue) throws IOException {
+      try {
+        return queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while producing the data");
+      }
+    }
+
+    private void put(Buffer buffer) throws IOException {
+      try {
+        filled.put(buffer);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while producing the data");
+      }
+    }
+  }
+}
@@ -19,9 +19,7 @@
 package org.apache.ambari.view.hive2.resources.uploads;
 
 import com.opencsv.CSVWriter;
-import org.apache.ambari.view.hive2.client.ColumnDescription;
 import org.apache.ambari.view.hive2.client.Row;
-import org.apache.commons.codec.binary.Hex;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -72,24 +70,7 @@ public class TableDataReader extends Reader {
         StringWriter stringWriter = new StringWriter(CAPACITY);
         CSVWriter csvPrinter = new CSVWriter(stringWriter,CSV_DELIMITER);
         Row row = iterator.next();
-        // encode values so that \n and \r are overridden
-        Object[] columnValues = row.getRow();
-        String[] columns = new String[columnValues.length];
-
-        for(int i = 0; i < columnValues.length; i++){
-          String type = header.get(i).getType();
-          if(this.encode &&
-              (
-                ColumnDescription.DataTypes.STRING.toString().equals(type)
-                || ColumnDescription.DataTypes.VARCHAR.toString().equals(type)
-                || ColumnDescription.DataTypes.CHAR.toString().equals(type)
-              )
-            ){
-            columns[i] = Hex.encodeHexString(((String)columnValues[i]).getBytes()); //default charset
-          }else {
-            columns[i] = (String) columnValues[i];
-          }
-        }
+        String[] columns = TableDataWriter.getColumns(row, header, encode);
 
         csvPrinter.writeNext(columns,false);
         stringReader.close(); // close the old string reader
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive2.resources.uploads;
+
+import com.opencsv.CSVWriter;
+import org.apache.ambari.view.hive2.client.ColumnDescription;
+import org.apache.ambari.view.hive2.client.Row;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes rows to a stream in the same format as {@link TableDataReader} produces:
+ * columns separated by {@link TableDataReader#CSV_DELIMITER} and rows by endline "\n".
+ * One CSV writer is used for all the rows, instead of a writer and a string for each row.
+ */
+public class TableDataWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final List<ColumnDescriptionImpl> header;
+  private final boolean encode;
+  private final CSVWriter csvWriter;
+
+  public TableDataWriter(OutputStream out, List<ColumnDescriptionImpl> header, boolean encode) {
+    this.header = header;
+    this.encode = encode;
+    this.csvWriter = new CSVWriter(new BufferedWriter(new OutputStreamWriter(out), BUFFER_SIZE),
+      TableDataReader.CSV_DELIMITER);
+  }
+
+  /**
+   * writes all the rows of the iterator
+   * @return number of rows written
+   */
+  public long write(Iterator<Row> rows) throws IOException {
+    long count = 0;
+    while (rows.hasNext()) {
+      csvWriter.writeNext(getColumns(rows.next(), header, encode), false);
+      count++;
+    }
+    if (csvWriter.checkError()) {
+      throw new IOException("Failed to write the table data");
+    }
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    csvWriter.close();
+  }
+
+  /**
+   * converts the values of a row to the columns of the table data
+   * @param encode encode the values of string columns into HEX so that \n and \r are overridden
+   */
+  static String[] getColumns(Row row, List<ColumnDescriptionImpl> header, boolean encode) {
+    Object[] columnValues = row.getRow();
+    String[] columns = new String[columnValues.length];
+
+    for (int i = 0; i < columnValues.length; i++) {
+      String type = header.get(i).getType();
+      if (encode && columnValues[i] != null &&
+          (
+            ColumnDescription.DataTypes.STRING.toString().equals(type)
+              || ColumnDescription.DataTypes.VARCHAR.toString().equals(type)
+              || ColumnDescription.DataTypes.CHAR.toString().equals(type)
+          )
+        ) {
+        columns[i] = Hex.encodeHexString(((String) columnValues[i]).getBytes()); //default charset
+      } else {
+        columns[i] = (String) columnValues[i];
+      }
+    }
+    return columns;
+  }
+}
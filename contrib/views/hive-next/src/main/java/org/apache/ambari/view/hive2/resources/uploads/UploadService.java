@@ -44,7 +44,6 @@ import org.apache.ambari.view.hive2.utils.SharedObjectsFactory;
 import org.apache.ambari.view.utils.ambari.AmbariApi;
 import org.apache.commons.io.ByteOrderMark;
 import org.apache.commons.io.input.BOMInputStream;
-import org.apache.commons.io.input.ReaderInputStream;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -69,8 +68,14 @@ import java.io.Reader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * UI driven end points for creation of new hive table and inserting data into it.
@@ -102,6 +107,8 @@ public class UploadService extends BaseService {
   final private static String HIVE_METASTORE_LOCATION_KEY_VIEW_PROPERTY = HIVE_METASTORE_LOCATION_KEY;
   private static final String HIVE_DEFAULT_METASTORE_LOCATION = "/apps/hive/warehouse";
   final private static String HIVE_DEFAULT_DB = "default";
+  private static final int UPLOAD_BUFFER_SIZE = 1024 * 1024;
+  private static final int UPLOAD_BUFFER_COUNT = 4;
 
   public void validateForUploadFile(UploadFromHdfsInput input){
     if( null == input.getInputFileType()){
@@ -360,11 +367,12 @@ public class UploadService extends BaseService {
     }
   }
 
-  private String uploadIntoTable(Reader reader, String databaseName, String tempTableName) {
+  private String uploadIntoTable(Iterator<Row> rows, List<ColumnDescriptionImpl> header, boolean encode,
+                                 String databaseName, String tempTableName) {
     try {
       String fullPath = getHiveMetaStoreLocation(databaseName, tempTableName);
       LOG.info("Uploading file into : {}", fullPath);
-      uploadFile(fullPath, new ReaderInputStream(reader));
+      uploadFile(fullPath, rows, header, encode);
       return fullPath;
     } catch (WebApplicationException e) {
       LOG.error(getErrorMessage(e), e);
@@ -463,15 +471,45 @@ public class UploadService extends BaseService {
     }
   }
 
-  private void uploadFile(final String filePath, InputStream uploadedInputStream)
-    throws IOException, InterruptedException {
-    byte[] chunk = new byte[1024];
-    FSDataOutputStream out = getSharedObjectsFactory().getHdfsApi().create(filePath, false);
-    int n = -1;
-    while ((n = uploadedInputStream.read(chunk)) != -1) {
-      out.write(chunk, 0, n);
+  /**
+   * Converts the rows to the table data on a separate thread while the converted data is written to HDFS
+   * on the calling thread, so that parsing the input and writing to HDFS overlap.
+   */
+  private void uploadFile(final String filePath, final Iterator<Row> rows, final List<ColumnDescriptionImpl> header,
+                          final boolean encode) throws Exception {
+    long start = System.currentTimeMillis();
+    final BufferPipe pipe = new BufferPipe(UPLOAD_BUFFER_SIZE, UPLOAD_BUFFER_COUNT);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<Long> conversion = executor.submit(new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        try (TableDataWriter writer = new TableDataWriter(pipe.getOutputStream(), header, encode)) {
+          return writer.write(rows);
+        }
+      }
+    });
+    try {
+      long bytes;
+      FSDataOutputStream out = getSharedObjectsFactory().getHdfsApi().create(filePath, false);
+      try {
+        bytes = pipe.drainTo(out);
+      } finally {
+        out.close();
+      }
+      long rowCount = conversion.get();
+      LOG.info("Uploaded {} rows, {} bytes into {} in {} ms", rowCount, bytes, filePath,
+        System.currentTimeMillis() - start);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    } finally {
+      // stops the conversion if writing to HDFS failed
+      conversion.cancel(true);
+      executor.shutdownNow();
     }
-    out.close();
   }
 
   private static String getErrorMessage(WebApplicationException e) {
@@ -548,8 +586,8 @@ public class UploadService extends BaseService {
     Reader reader = getInputStreamReader(uploadedInputStream);
     DataParser dataParser = new DataParser(reader, parseOptions);
 
-    Reader csvReader = new TableDataReader(dataParser.iterator(), header, containsEndlines); // encode column values into HEX so that \n etc dont appear in the hive table data
-    String path = uploadIntoTable(csvReader, databaseName, tableName);
+    // encode column values into HEX so that \n etc dont appear in the hive table data
+    String path = uploadIntoTable(dataParser.iterator(), header, containsEndlines, databaseName, tableName);
     return path;
   }
 
@@ -30,6 +30,10 @@ public class HiveActorConfiguration {
   private static String CONNECTION_TERMINATION_TIMEOUT_PATTERN = CONNECTION_PREFIX + "%s.connection.termination.timeout";
   private static String SYNC_QUERY_TIMEOUT_PATTERN = CONNECTION_PREFIX + "%s.sync.query.timeout";
   private static String RESULT_FETCH_TIMEOUT_PATTERN = CONNECTION_PREFIX + "%s.result.fetch.timeout";
+  private static String RESULT_BATCH_MAX_BYTES_PATTERN = CONNECTION_PREFIX + "%s.result.batch.max.bytes";
+  private static String RESULT_MEMORY_ROWS_PATTERN = CONNECTION_PREFIX + "%s.result.memory.rows";
+  private static String RESULT_USER_MEMORY_LIMIT_PATTERN = CONNECTION_PREFIX + "%s.result.user.memory.limit";
+  private static String RESULT_SPILL_DIRECTORY_PATTERN = CONNECTION_PREFIX + "%s.result.spill.dir";
 
   private final ViewContext context;
 
@@ -53,6 +57,35 @@ public class HiveActorConfiguration {
     return Long.parseLong(getPropertiesFromContext(RESULT_FETCH_TIMEOUT_PATTERN, String.valueOf(defaultValue)));
   }
 
+  /**
+   * @return estimated size in bytes after which a batch of result rows is sent, even if it has fewer rows
+   * than the batch size
+   */
+  public long getResultBatchMaxBytes(long defaultValue) {
+    return Long.parseLong(getPropertiesFromContext(RESULT_BATCH_MAX_BYTES_PATTERN, String.valueOf(defaultValue)));
+  }
+
+  /**
+   * @return number of rows a cached result cursor keeps in memory before spilling them to disk
+   */
+  public int getResultMemoryRows(int defaultValue) {
+    return Integer.parseInt(getPropertiesFromContext(RESULT_MEMORY_ROWS_PATTERN, String.valueOf(defaultValue)));
+  }
+
+  /**
+   * @return estimated size in bytes of the result rows all cursors of one user keep in memory
+   */
+  public long getResultUserMemoryLimit(long defaultValue) {
+    return Long.parseLong(getPropertiesFromContext(RESULT_USER_MEMORY_LIMIT_PATTERN, String.valueOf(defaultValue)));
+  }
+
+  /**
+   * @return directory the result cursors spill their rows to
+   */
+  public String getResultSpillDirectory(String defaultValue) {
+    return getPropertiesFromContext(RESULT_SPILL_DIRECTORY_PATTERN, defaultValue);
+  }
+
   /**
    * Tries to get the specific configuration with the instance name. If not found then tries to
    * find the default set in ambari.properties. If not found then returns the default value passed
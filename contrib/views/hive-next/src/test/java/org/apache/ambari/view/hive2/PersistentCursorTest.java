@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive2;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.ambari.view.hive2.client.PersistentCursor;
+import org.apache.ambari.view.hive2.client.ResultMemoryBudget;
+import org.apache.ambari.view.hive2.client.Row;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentCursorTest {
+
+  private File spillDirectory;
+
+  @Before
+  public void setUp() throws Exception {
+    spillDirectory = Files.createTempDir();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(spillDirectory);
+  }
+
+  @Test
+  public void testRowsAreSpilledAndReadInOrder() throws Exception {
+    PersistentCursor cursor = new PersistentCursor("user", null, 10, spillDirectory);
+    List<Row> rows = createRows(25);
+    for (Row row : rows) {
+      cursor.add(row);
+    }
+    cursor.complete();
+
+    assertEquals(1, spillDirectory.list().length);
+    assertEquals(rows, readRows(cursor));
+    assertEquals(25, cursor.getOffset());
+
+    cursor.reset();
+    assertEquals(0, cursor.getOffset());
+    assertEquals(rows, readRows(cursor));
+
+    cursor.close();
+    assertEquals(0, spillDirectory.list().length);
+  }
+
+  @Test
+  public void testRowsAreSpilledWhenUserIsOverBudget() throws Exception {
+    ResultMemoryBudget budget = new ResultMemoryBudget(1000);
+    PersistentCursor cursor = new PersistentCursor("user", budget, 1000, spillDirectory);
+    List<Row> rows = createRows(100);
+    for (Row row : rows) {
+      cursor.add(row);
+      assertTrue(budget.getUsage("user") <= budget.getUserLimit());
+    }
+    cursor.complete();
+
+    assertEquals(1, spillDirectory.list().length);
+    assertEquals(rows, readRows(cursor));
+
+    cursor.close();
+    assertEquals(0, budget.getUsage("user"));
+    assertEquals(0, spillDirectory.list().length);
+  }
+
+  @Test
+  public void testRowsInMemory() throws Exception {
+    List<Row> rows = createRows(5);
+    PersistentCursor cursor = new PersistentCursor("user", null, 10, spillDirectory);
+    for (Row row : rows) {
+      cursor.add(row);
+    }
+    cursor.complete();
+
+    assertEquals(0, spillDirectory.list().length);
+    assertEquals(rows, readRows(cursor));
+    assertFalse(cursor.hasNext());
+  }
+
+  @Test
+  public void testSpillFilesOfPreviousRunAreSwept() throws Exception {
+    long startTime = System.currentTimeMillis() - 60 * 1000;
+    File previous = new File(spillDirectory, "hive-result-1.spill");
+    File current = new File(spillDirectory, "hive-result-2.spill");
+    File other = new File(spillDirectory, "other.spill");
+    for (File file : new File[]{previous, current, other}) {
+      assertTrue(file.createNewFile());
+    }
+    assertTrue(previous.setLastModified(startTime - 1000));
+    assertTrue(other.setLastModified(startTime - 1000));
+
+    assertEquals(1, PersistentCursor.sweepSpillDirectory(spillDirectory, startTime));
+    assertFalse(previous.exists());
+    assertTrue(current.exists());
+    assertTrue(other.exists());
+
+    // swept once per run
+    assertTrue(current.setLastModified(startTime - 1000));
+    assertEquals(0, PersistentCursor.sweepSpillDirectory(spillDirectory, startTime));
+    assertTrue(current.exists());
+  }
+
+  private List<Row> readRows(PersistentCursor cursor) {
+    List<Row> rows = Lists.newArrayList();
+    for (Row row : cursor) {
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  private List<Row> createRows(int count) {
+    List<Row> rows = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      rows.add(new Row(new Object[]{i, "value" + i, null, (long) i * 2}));
+    }
+    return rows;
+  }
+}
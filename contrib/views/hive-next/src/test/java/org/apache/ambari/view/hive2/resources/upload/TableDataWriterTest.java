@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive2.resources.upload;
+
+import org.apache.ambari.view.hive2.client.ColumnDescription;
+import org.apache.ambari.view.hive2.client.Row;
+import org.apache.ambari.view.hive2.resources.uploads.BufferPipe;
+import org.apache.ambari.view.hive2.resources.uploads.ColumnDescriptionImpl;
+import org.apache.ambari.view.hive2.resources.uploads.TableDataReader;
+import org.apache.ambari.view.hive2.resources.uploads.TableDataWriter;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TableDataWriterTest {
+
+  private List<Row> createRows(int numberOfRows, int numberOfCols) {
+    List<Row> rows = new ArrayList<>();
+    int x = 0;
+    for (int i = 0; i < numberOfRows; i++) {
+      Object[] objArray = new Object[numberOfCols];
+      for (int j = 0; j < numberOfCols; j++) {
+        objArray[j] = j == 1 ? "line\n" + x++ : x++ + "";
+      }
+      rows.add(new Row(objArray));
+    }
+    return rows;
+  }
+
+  private List<ColumnDescriptionImpl> createHeader(int numberOfCols) {
+    List<ColumnDescriptionImpl> colDescs = new LinkedList<>();
+    for (int i = 0; i < numberOfCols; i++) {
+      String type = i == 1 ? ColumnDescription.DataTypes.STRING.toString() : ColumnDescription.DataTypes.INT.toString();
+      colDescs.add(new ColumnDescriptionImpl("col" + (i + 1), type, i));
+    }
+    return colDescs;
+  }
+
+  @Test
+  public void testSameDataAsTableDataReader() throws Exception {
+    List<Row> rows = createRows(100, 5);
+    List<ColumnDescriptionImpl> header = createHeader(5);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TableDataWriter writer = new TableDataWriter(out, header, true);
+    Assert.assertEquals(100, writer.write(rows.iterator()));
+    writer.close();
+
+    String expected = IOUtils.toString(new TableDataReader(rows.iterator(), header, true));
+    Assert.assertEquals(expected, out.toString());
+    Assert.assertEquals(100, expected.split("\n").length);
+  }
+
+  @Test
+  public void testWriteThroughBufferPipe() throws Exception {
+    final List<Row> rows = createRows(10000, 5);
+    final List<ColumnDescriptionImpl> header = createHeader(5);
+    final BufferPipe pipe = new BufferPipe(1024, 2);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Long> conversion = executor.submit(new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          try (TableDataWriter writer = new TableDataWriter(pipe.getOutputStream(), header, false)) {
+            return writer.write(rows.iterator());
+          }
+        }
+      });
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      long bytes = pipe.drainTo(out);
+      Assert.assertEquals(10000L, conversion.get().longValue());
+
+      String expected = IOUtils.toString(new TableDataReader(rows.iterator(), header, false));
+      Assert.assertEquals(expected.length(), bytes);
+      Assert.assertEquals(expected, out.toString());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}